@@ -0,0 +1,121 @@
+package com.vinorsoft.ecm.benchmark;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.vinorsoft.ecm.application.impl.RenditionServiceImpl;
+import com.vinorsoft.ecm.application.impl.UploadServiceImpl;
+import com.vinorsoft.ecm.domain.CompressJobRepository;
+import com.vinorsoft.ecm.domain.StoragePendingDeleteRepository;
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionControl;
+import com.vinorsoft.ecm.infrastructure.archive.ZipStreamWriter;
+import com.vinorsoft.ecm.infrastructure.background.CompressJobQueue;
+import com.vinorsoft.ecm.infrastructure.cache.FileECMCache;
+import com.vinorsoft.ecm.infrastructure.mapper.FileECMMapperImpl;
+import com.vinorsoft.ecm.infrastructure.media.FfmpegRunner;
+import com.vinorsoft.ecm.infrastructure.metrics.EcmMetrics;
+import com.vinorsoft.ecm.infrastructure.storage.BlobStores;
+import com.vinorsoft.ecm.infrastructure.storage.ContentAddressedStore;
+import com.vinorsoft.ecm.infrastructure.storage.FileAccessTracker;
+import com.vinorsoft.ecm.infrastructure.storage.FileIngestor;
+import com.vinorsoft.ecm.infrastructure.storage.LocalBlobStore;
+import com.vinorsoft.ecm.infrastructure.storage.StorageLayout;
+import com.vinorsoft.ecm.infrastructure.storage.StorageTiering;
+import com.vinorsoft.ecm.infrastructure.web.FileDownloadWriter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Các bean thật của đường upload/download/ZIP, cấu hình từ
+ * {@code application.yml}, nhưng không có auto-configuration của Spring Boot:
+ * repository R2DBC được thay bằng bản trong bộ nhớ và transaction không chạm
+ * DB, nên benchmark chạy offline và không tính thời gian truy vấn.
+ * <p>
+ * File được ghi vào một thư mục tạm dưới {@code java.io.tmpdir} (đổi bằng
+ * {@code -jvmArgsAppend -Djava.io.tmpdir=...} để đo trên đĩa thật thay vì
+ * tmpfs) và bị xóa khi đóng.
+ */
+final class BenchmarkContext implements AutoCloseable {
+	private final AnnotationConfigApplicationContext context;
+	private final Path uploadDir;
+
+	private BenchmarkContext(AnnotationConfigApplicationContext context, Path uploadDir) {
+		this.context = context;
+		this.uploadDir = uploadDir;
+	}
+
+	static BenchmarkContext start(Map<String, Object> properties) throws IOException {
+		Path uploadDir = Files.createTempDirectory("ecm-jmh");
+		Map<String, Object> overrides = new HashMap<>(properties);
+		overrides.put("upload.path", uploadDir.toString());
+		// Giới hạn mặc định (1000MB) nhỏ hơn file lớn nhất được đo
+		overrides.putIfAbsent("spring.servlet.multipart.max-file-size", "2048MB");
+
+		AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+		context.getBeanFactory().setConversionService(ApplicationConversionService.getSharedInstance());
+		MutablePropertySources propertySources = context.getEnvironment().getPropertySources();
+		propertySources.addFirst(new MapPropertySource("benchmark", overrides));
+		new YamlPropertySourceLoader().load("application", new ClassPathResource("application.yml"))
+				.forEach(propertySources::addLast);
+
+		context.registerBean(SimpleMeterRegistry.class);
+		context.registerBean(InMemoryFileECMRepository.class);
+		context.registerBean(InMemoryFileBlobRepository.class);
+		context.registerBean(InMemoryFileDocumentRepository.class);
+		context.registerBean(CompressJobRepository.class, () -> unsupported(CompressJobRepository.class));
+		context.registerBean(StoragePendingDeleteRepository.class,
+				() -> unsupported(StoragePendingDeleteRepository.class));
+		context.registerBean(TransactionalOperator.class,
+				() -> TransactionalOperator.create(new NoOpTransactionManager()));
+		context.register(EcmMetrics.class, FileECMCache.class, FileIngestor.class, ContentAddressedStore.class,
+				StorageLayout.class, LocalBlobStore.class, BlobStores.class, FileAccessTracker.class,
+				StorageTiering.class, ZipStreamWriter.class, CompressJobQueue.class, FileDownloadWriter.class,
+				FfmpegRunner.class, AdmissionControl.class, RenditionServiceImpl.class, FileECMMapperImpl.class,
+				UploadServiceImpl.class);
+		context.refresh();
+		return new BenchmarkContext(context, uploadDir);
+	}
+
+	<T> T getBean(Class<T> type) {
+		return context.getBean(type);
+	}
+
+	@Override
+	public void close() throws IOException {
+		context.close();
+		try (Stream<Path> paths = Files.walk(uploadDir)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+
+	/** Repository không được dùng tới trong benchmark (ví dụ hàng đợi nén khi nén bị tắt). */
+	private static <T> T unsupported(Class<T> type) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				(proxy, method, args) -> {
+					if (method.getDeclaringClass() == Object.class) {
+						return switch (method.getName()) {
+							case "equals" -> proxy == args[0];
+							case "hashCode" -> System.identityHashCode(proxy);
+							default -> type.getSimpleName() + " (unsupported)";
+						};
+					}
+					throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+				}));
+	}
+}
@@ -0,0 +1,60 @@
+package com.vinorsoft.ecm.benchmark;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.server.reactive.AbstractServerHttpResponse;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Response chỉ đếm rồi release từng buffer thay vì gom body lại như
+ * {@code MockServerHttpResponse}, để tải file lớn không chiếm heap. Không hỗ
+ * trợ zero-copy nên đo đường đọc file theo buffer.
+ */
+class DiscardingServerHttpResponse extends AbstractServerHttpResponse {
+	private long bytesWritten;
+
+	DiscardingServerHttpResponse() {
+		super(DefaultDataBufferFactory.sharedInstance);
+	}
+
+	long getBytesWritten() {
+		return bytesWritten;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T getNativeResponse() {
+		return (T) this;
+	}
+
+	@Override
+	protected void applyStatusCode() {
+	}
+
+	@Override
+	protected void applyHeaders() {
+	}
+
+	@Override
+	protected void applyCookies() {
+	}
+
+	@Override
+	protected Mono<Void> writeWithInternal(Publisher<? extends DataBuffer> body) {
+		return Flux.from(body)
+				.doOnNext(buffer -> {
+					bytesWritten += buffer.readableByteCount();
+					DataBufferUtils.release(buffer);
+				})
+				.then();
+	}
+
+	@Override
+	protected Mono<Void> writeAndFlushWithInternal(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+		return Flux.from(body).concatMap(this::writeWithInternal).then();
+	}
+}
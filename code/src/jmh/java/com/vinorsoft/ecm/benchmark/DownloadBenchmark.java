@@ -0,0 +1,73 @@
+package com.vinorsoft.ecm.benchmark;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.util.unit.DataSize;
+
+import com.vinorsoft.ecm.application.UploadService;
+import com.vinorsoft.ecm.infrastructure.web.FileDownloadWriter;
+
+/**
+ * Tải một file như {@code UploadController.downloadFile}: lấy metadata (qua
+ * cache), chọn bản gốc/bản nén rồi ghi toàn bộ file ra response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class DownloadBenchmark {
+	@Param({ "1KB", "1MB", "64MB", "1GB" })
+	private String size;
+
+	private BenchmarkContext context;
+	private UploadService uploadService;
+	private FileDownloadWriter fileDownloadWriter;
+	private UUID fileId;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		context = BenchmarkContext.start(Map.of());
+		uploadService = context.getBean(UploadService.class);
+		fileDownloadWriter = context.getBean(FileDownloadWriter.class);
+		fileId = uploadService.saveFile(new SyntheticFilePart("document.pdf", MediaType.APPLICATION_PDF,
+				SyntheticFilePart.chunk(1), DataSize.parse(size).toBytes(), 1), null, "benchmark")
+				.block()
+				.getId();
+	}
+
+	@Benchmark
+	public long download() {
+		DiscardingServerHttpResponse response = new DiscardingServerHttpResponse();
+		uploadService.getFileInfo(fileId)
+				.flatMap(fileECM -> uploadService.resolveFileContent(fileECM, false)
+						.flatMap(content -> fileDownloadWriter.write(MockServerHttpRequest.get("/download").build(),
+								response, content.getStore(), content.getKey(), content.getSize(),
+								MediaType.parseMediaType(fileECM.getContentType()), null, null)))
+				.block();
+		return response.getBytesWritten();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		context.close();
+	}
+}
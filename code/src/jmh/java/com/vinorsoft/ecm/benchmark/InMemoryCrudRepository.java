@@ -0,0 +1,114 @@
+package com.vinorsoft.ecm.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.reactivestreams.Publisher;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link ReactiveCrudRepository} lưu trong một {@link ConcurrentHashMap}, thay
+ * cho repository R2DBC khi chạy benchmark không có Postgres.
+ */
+abstract class InMemoryCrudRepository<T, ID> implements ReactiveCrudRepository<T, ID> {
+	protected final Map<ID, T> rows = new ConcurrentHashMap<>();
+
+	/** Id của bản ghi; gán id mới nếu chưa có (như DEFAULT của cột id). */
+	protected abstract ID idOf(T entity);
+
+	@Override
+	public <S extends T> Mono<S> save(S entity) {
+		return Mono.fromSupplier(() -> {
+			rows.put(idOf(entity), entity);
+			return entity;
+		});
+	}
+
+	@Override
+	public <S extends T> Flux<S> saveAll(Iterable<S> entities) {
+		return Flux.fromIterable(entities).concatMap(this::save);
+	}
+
+	@Override
+	public <S extends T> Flux<S> saveAll(Publisher<S> entityStream) {
+		return Flux.from(entityStream).concatMap(this::save);
+	}
+
+	@Override
+	public Mono<T> findById(ID id) {
+		return Mono.fromSupplier(() -> rows.get(id));
+	}
+
+	@Override
+	public Mono<T> findById(Publisher<ID> id) {
+		return Mono.from(id).flatMap(this::findById);
+	}
+
+	@Override
+	public Mono<Boolean> existsById(ID id) {
+		return Mono.fromSupplier(() -> rows.containsKey(id));
+	}
+
+	@Override
+	public Mono<Boolean> existsById(Publisher<ID> id) {
+		return Mono.from(id).flatMap(this::existsById);
+	}
+
+	@Override
+	public Flux<T> findAll() {
+		return Flux.defer(() -> Flux.fromIterable(rows.values()));
+	}
+
+	@Override
+	public Flux<T> findAllById(Iterable<ID> ids) {
+		return Flux.fromIterable(ids).concatMap(this::findById);
+	}
+
+	@Override
+	public Flux<T> findAllById(Publisher<ID> idStream) {
+		return Flux.from(idStream).concatMap(this::findById);
+	}
+
+	@Override
+	public Mono<Long> count() {
+		return Mono.fromSupplier(() -> (long) rows.size());
+	}
+
+	@Override
+	public Mono<Void> deleteById(ID id) {
+		return Mono.fromRunnable(() -> rows.remove(id));
+	}
+
+	@Override
+	public Mono<Void> deleteById(Publisher<ID> id) {
+		return Mono.from(id).flatMap(this::deleteById);
+	}
+
+	@Override
+	public Mono<Void> delete(T entity) {
+		return deleteById(idOf(entity));
+	}
+
+	@Override
+	public Mono<Void> deleteAllById(Iterable<? extends ID> ids) {
+		return Flux.fromIterable(ids).concatMap(this::deleteById).then();
+	}
+
+	@Override
+	public Mono<Void> deleteAll(Iterable<? extends T> entities) {
+		return Flux.fromIterable(entities).concatMap(this::delete).then();
+	}
+
+	@Override
+	public Mono<Void> deleteAll(Publisher<? extends T> entityStream) {
+		return Flux.from(entityStream).concatMap(this::delete).then();
+	}
+
+	@Override
+	public Mono<Void> deleteAll() {
+		return Mono.fromRunnable(rows::clear);
+	}
+}
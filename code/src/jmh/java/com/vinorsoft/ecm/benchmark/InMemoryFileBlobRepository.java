@@ -0,0 +1,49 @@
+package com.vinorsoft.ecm.benchmark;
+
+import java.time.LocalDateTime;
+
+import com.vinorsoft.ecm.domain.FileBlob;
+import com.vinorsoft.ecm.domain.FileBlobRepository;
+
+import reactor.core.publisher.Mono;
+
+/** Đếm tham chiếu giống các câu SQL của {@link FileBlobRepository}, mỗi hash cập nhật nguyên tử. */
+class InMemoryFileBlobRepository extends InMemoryCrudRepository<FileBlob, String> implements FileBlobRepository {
+
+	@Override
+	protected String idOf(FileBlob entity) {
+		return entity.getHash();
+	}
+
+	@Override
+	public Mono<FileBlob> acquire(String hash, String storageBackend, String filePath, long fileSize) {
+		return Mono.fromSupplier(() -> rows.compute(hash, (key, blob) -> {
+			if (blob == null) {
+				blob = new FileBlob();
+				blob.setHash(hash);
+				blob.setStorageBackend(storageBackend);
+				blob.setFilePath(filePath);
+				blob.setFileSize(fileSize);
+				blob.setCreatedAt(LocalDateTime.now());
+			}
+			blob.setRefCount(blob.getRefCount() + 1);
+			return blob;
+		}));
+	}
+
+	@Override
+	public Mono<FileBlob> release(String hash) {
+		return Mono.fromSupplier(() -> rows.computeIfPresent(hash, (key, blob) -> {
+			blob.setRefCount(blob.getRefCount() - 1);
+			return blob;
+		}));
+	}
+
+	@Override
+	public Mono<Integer> deleteUnreferenced(String hash) {
+		return Mono.fromSupplier(() -> {
+			FileBlob blob = rows.get(hash);
+			return blob != null && blob.getRefCount() <= 0 && rows.remove(hash, blob) ? 1 : 0;
+		});
+	}
+}
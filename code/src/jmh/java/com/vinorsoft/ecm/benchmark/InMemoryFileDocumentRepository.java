@@ -0,0 +1,63 @@
+package com.vinorsoft.ecm.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import com.vinorsoft.ecm.domain.FileDocument;
+import com.vinorsoft.ecm.domain.FileDocumentRepository;
+import com.vinorsoft.ecm.domain.FileECM;
+
+import reactor.core.publisher.Mono;
+
+/** Cấp số phiên bản giống {@link FileDocumentRepository}, mỗi tài liệu cập nhật nguyên tử. */
+class InMemoryFileDocumentRepository extends InMemoryCrudRepository<FileDocument, UUID>
+		implements FileDocumentRepository {
+	private final InMemoryFileECMRepository fileECMRepository;
+
+	InMemoryFileDocumentRepository(InMemoryFileECMRepository fileECMRepository) {
+		this.fileECMRepository = fileECMRepository;
+	}
+
+	@Override
+	protected UUID idOf(FileDocument entity) {
+		if (entity.getId() == null) {
+			entity.setId(UUID.randomUUID());
+		}
+		return entity.getId();
+	}
+
+	@Override
+	public Mono<FileDocument> create() {
+		return Mono.fromSupplier(() -> {
+			FileDocument document = new FileDocument();
+			document.setLatestVersion(1);
+			document.setCreatedAt(LocalDateTime.now());
+			rows.put(idOf(document), document);
+			return document;
+		});
+	}
+
+	@Override
+	public Mono<Integer> createAll(UUID[] ids) {
+		return Mono.fromSupplier(() -> {
+			for (UUID id : ids) {
+				FileDocument document = new FileDocument();
+				document.setId(id);
+				document.setLatestVersion(1);
+				document.setCreatedAt(LocalDateTime.now());
+				rows.put(id, document);
+			}
+			return ids.length;
+		});
+	}
+
+	@Override
+	public Mono<FileDocument> nextVersion(UUID fileId) {
+		return fileECMRepository.findById(fileId)
+				.map(FileECM::getDocumentId)
+				.mapNotNull(documentId -> rows.computeIfPresent(documentId, (key, document) -> {
+					document.setLatestVersion(document.getLatestVersion() + 1);
+					return document;
+				}));
+	}
+}
@@ -0,0 +1,137 @@
+package com.vinorsoft.ecm.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.vinorsoft.ecm.domain.FileECM;
+import com.vinorsoft.ecm.domain.FileECMRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class InMemoryFileECMRepository extends InMemoryCrudRepository<FileECM, UUID> implements FileECMRepository {
+
+	@Override
+	protected UUID idOf(FileECM entity) {
+		if (entity.getId() == null) {
+			entity.setId(UUID.randomUUID());
+		}
+		return entity.getId();
+	}
+
+	@Override
+	public Mono<FileECM> findVersion(UUID documentId, int version) {
+		return Flux.defer(() -> Flux.fromStream(rows.values().stream()
+				.filter(file -> documentId.equals(file.getDocumentId()) && file.getVersion() == version)))
+				.next();
+	}
+
+	@Override
+	public Mono<FileECM> findLatestVersion(UUID documentId) {
+		return findAllVersions(documentId).next();
+	}
+
+	@Override
+	public Flux<FileECM> findAllVersions(UUID documentId) {
+		return Flux.defer(() -> Flux.fromStream(rows.values().stream()
+				.filter(file -> documentId.equals(file.getDocumentId()))
+				.sorted(Comparator.comparing(FileECM::getVersion).reversed())));
+	}
+
+	@Override
+	public Flux<FileECM> findVersionOfDocuments(Collection<UUID> documentIds, int version) {
+		return Flux.fromIterable(documentIds).concatMap(documentId -> findVersion(documentId, version));
+	}
+
+	@Override
+	public Flux<FileECM> findLatestVersionOfDocuments(Collection<UUID> documentIds) {
+		return Flux.fromIterable(documentIds).concatMap(this::findLatestVersion);
+	}
+
+	@Override
+	public Mono<Integer> updateCompressedFile(UUID id, String compressedPath, long compressedSize) {
+		return Mono.fromSupplier(() -> rows.computeIfPresent(id, (key, file) -> {
+			file.setCompressedPath(compressedPath);
+			file.setCompressedSize(compressedSize);
+			return file;
+		}) != null ? 1 : 0);
+	}
+
+	@Override
+	public Flux<FileECM> findOwnFilesAfter(UUID afterId, int limit) {
+		return Flux.defer(() -> Flux.fromStream(rows.values().stream()
+				.filter(file -> file.getBlobHash() == null && FileECM.STORAGE_LOCAL.equals(file.getStorageBackend())
+						&& file.getId().compareTo(afterId) > 0)
+				.sorted(Comparator.comparing(FileECM::getId))
+				.limit(limit)));
+	}
+
+	@Override
+	public Mono<Integer> updateFilePaths(UUID id, String oldFilePath, String filePath, String compressedPath) {
+		return Mono.fromSupplier(() -> {
+			AtomicBoolean updated = new AtomicBoolean();
+			rows.computeIfPresent(id, (key, file) -> {
+				if (file.getFilePath().equals(oldFilePath)) {
+					file.setFilePath(filePath);
+					file.setCompressedPath(compressedPath);
+					updated.set(true);
+				}
+				return file;
+			});
+			return updated.get() ? 1 : 0;
+		});
+	}
+
+	@Override
+	public Flux<FileECM> insertRows(UUID[] ids, UUID[] documentIds, Integer[] versions, String[] fileNames,
+			String[] filePaths, String[] contentTypes, Long[] fileSizes, String[] categories, String[] blobHashes,
+			String[] storageBackends, LocalDateTime uploadedAt) {
+		return Flux.range(0, ids.length).map(i -> {
+			FileECM file = new FileECM(fileNames[i], filePaths[i], contentTypes[i], fileSizes[i], categories[i],
+					versions[i], uploadedAt, uploadedAt);
+			file.setId(ids[i]);
+			file.setDocumentId(documentIds[i]);
+			file.setBlobHash(blobHashes[i]);
+			file.setStorageBackend(storageBackends[i]);
+			rows.put(file.getId(), file);
+			return file;
+		});
+	}
+
+	@Override
+	public Mono<FileECM> deleteReturning(UUID id) {
+		return Mono.fromSupplier(() -> rows.remove(id));
+	}
+
+	/** Thống kê đọc không được lưu: benchmark không chạy chuyển tầng. */
+	@Override
+	public Mono<Integer> recordAccesses(UUID[] ids, Integer[] reads, LocalDateTime accessedAt) {
+		return Mono.just(0);
+	}
+
+	@Override
+	public Flux<FileECM> findIdleFiles(String storageBackend, LocalDateTime idleBefore, int frequentReads,
+			LocalDateTime frequentIdleBefore, int limit) {
+		return Flux.empty();
+	}
+
+	@Override
+	public Mono<Integer> updateStorageLocation(UUID id, String oldStorageBackend, String oldFilePath,
+			String storageBackend, String filePath) {
+		return Mono.fromSupplier(() -> {
+			AtomicBoolean updated = new AtomicBoolean();
+			rows.computeIfPresent(id, (key, file) -> {
+				if (file.getStorageBackend().equals(oldStorageBackend) && file.getFilePath().equals(oldFilePath)) {
+					file.setStorageBackend(storageBackend);
+					file.setFilePath(filePath);
+					updated.set(true);
+				}
+				return file;
+			});
+			return updated.get() ? 1 : 0;
+		});
+	}
+}
@@ -0,0 +1,60 @@
+package com.vinorsoft.ecm.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vinorsoft.ecm.domain.FileECM;
+import com.vinorsoft.ecm.infrastructure.mapper.FileECMMapper;
+import com.vinorsoft.ecm.infrastructure.mapper.FileECMMapperImpl;
+import com.vinorsoft.ecm.interfaces.dto.FileECMDTO;
+
+/** Chuyển {@link FileECM} sang DTO cho một file và cho danh sách 100 file (get-files-info). */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class MapperBenchmark {
+	private final FileECMMapper mapper = new FileECMMapperImpl();
+	private FileECM file;
+	private List<FileECM> files;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		files = IntStream.range(0, 100).mapToObj(MapperBenchmark::file).toList();
+		file = files.get(0);
+	}
+
+	@Benchmark
+	public FileECMDTO toDTO() {
+		return mapper.toDTO(file);
+	}
+
+	@Benchmark
+	public List<FileECMDTO> toListDTO() {
+		return mapper.toListDTO(files);
+	}
+
+	private static FileECM file(int index) {
+		FileECM file = new FileECM("document-" + index + ".pdf", "/data/uploads/benchmark/" + index + ".pdf",
+				"application/pdf", 1024L * index, "benchmark", 1, LocalDateTime.now(), LocalDateTime.now());
+		file.setId(UUID.randomUUID());
+		return file;
+	}
+}
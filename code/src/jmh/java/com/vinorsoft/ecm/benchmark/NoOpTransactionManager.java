@@ -0,0 +1,39 @@
+package com.vinorsoft.ecm.benchmark;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.AbstractReactiveTransactionManager;
+import org.springframework.transaction.reactive.GenericReactiveTransaction;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Transaction manager không làm gì: vẫn đi qua toàn bộ phần quản lý
+ * transaction của Spring ({@code TransactionalOperator}) nhưng không có kết
+ * nối DB.
+ */
+class NoOpTransactionManager extends AbstractReactiveTransactionManager {
+
+	@Override
+	protected Object doGetTransaction(TransactionSynchronizationManager synchronizationManager) {
+		return new Object();
+	}
+
+	@Override
+	protected Mono<Void> doBegin(TransactionSynchronizationManager synchronizationManager, Object transaction,
+			TransactionDefinition definition) {
+		return Mono.empty();
+	}
+
+	@Override
+	protected Mono<Void> doCommit(TransactionSynchronizationManager synchronizationManager,
+			GenericReactiveTransaction status) {
+		return Mono.empty();
+	}
+
+	@Override
+	protected Mono<Void> doRollback(TransactionSynchronizationManager synchronizationManager,
+			GenericReactiveTransaction status) {
+		return Mono.empty();
+	}
+}
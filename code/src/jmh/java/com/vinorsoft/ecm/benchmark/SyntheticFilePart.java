@@ -0,0 +1,89 @@
+package com.vinorsoft.ecm.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FilePart;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * {@link FilePart} có nội dung sinh sẵn, trả về theo từng buffer pooled của
+ * Netty như multipart parser khi chạy trên Reactor Netty. Mỗi buffer là một bản
+ * sao của {@code chunk}; 8 byte đầu của file được thay bằng {@code seed} để các
+ * upload có nội dung (và SHA-256) khác nhau.
+ */
+class SyntheticFilePart implements FilePart {
+	static final int CHUNK_SIZE = 8 * 1024;
+
+	private static final DataBufferFactory BUFFER_FACTORY = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+
+	private final String filename;
+	private final HttpHeaders headers = new HttpHeaders();
+	private final byte[] chunk;
+	private final long size;
+	private final long seed;
+
+	SyntheticFilePart(String filename, MediaType contentType, byte[] chunk, long size, long seed) {
+		this.filename = filename;
+		this.chunk = chunk;
+		this.size = size;
+		this.seed = seed;
+		headers.setContentType(contentType);
+		headers.setContentDisposition(ContentDisposition.formData().name(name()).filename(filename).build());
+	}
+
+	/** Nội dung dễ nén vừa phải (khoảng 2:1 với deflate), giống văn bản hơn dữ liệu ngẫu nhiên. */
+	static byte[] chunk(long seed) {
+		Random random = new Random(seed);
+		byte[] chunk = new byte[CHUNK_SIZE];
+		for (int i = 0; i < chunk.length; i++) {
+			chunk[i] = (byte) ('a' + random.nextInt(16));
+		}
+		return chunk;
+	}
+
+	@Override
+	public String name() {
+		return "file";
+	}
+
+	@Override
+	public String filename() {
+		return filename;
+	}
+
+	@Override
+	public HttpHeaders headers() {
+		return headers;
+	}
+
+	@Override
+	public Flux<DataBuffer> content() {
+		long chunkCount = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		return Flux.range(0, (int) chunkCount).map(index -> {
+			int length = (int) Math.min(CHUNK_SIZE, size - (long) index * CHUNK_SIZE);
+			DataBuffer buffer = BUFFER_FACTORY.allocateBuffer(length);
+			if (index == 0 && length >= Long.BYTES) {
+				buffer.write(ByteBuffer.allocate(Long.BYTES).putLong(0, seed));
+				return buffer.write(chunk, Long.BYTES, length - Long.BYTES);
+			}
+			return buffer.write(chunk, 0, length);
+		});
+	}
+
+	@Override
+	public Mono<Void> transferTo(Path dest) {
+		return DataBufferUtils.write(content(), dest);
+	}
+}
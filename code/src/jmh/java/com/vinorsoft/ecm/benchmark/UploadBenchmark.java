@@ -0,0 +1,76 @@
+package com.vinorsoft.ecm.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+import com.vinorsoft.ecm.application.UploadService;
+import com.vinorsoft.ecm.domain.FileECM;
+
+/**
+ * {@code UploadService.saveFile} đầy đủ: kiểm tra, ghi đĩa (và SHA-256 khi bật
+ * dedup), lưu bản ghi. Mỗi lần gọi có nội dung khác nhau nên dedup luôn tạo blob
+ * mới, tức là đo trường hợp xấu nhất.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class UploadBenchmark {
+	@Param({ "1KB", "1MB", "64MB", "1GB" })
+	private String size;
+
+	@Param({ "false", "true" })
+	private boolean dedup;
+
+	private BenchmarkContext context;
+	private UploadService uploadService;
+	private byte[] chunk;
+	private long fileSize;
+	private long seed;
+	private FileECM saved;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		context = BenchmarkContext.start(Map.of("upload.dedup.enabled", dedup));
+		uploadService = context.getBean(UploadService.class);
+		chunk = SyntheticFilePart.chunk(1);
+		fileSize = DataSize.parse(size).toBytes();
+	}
+
+	@Benchmark
+	public FileECM saveFile() {
+		saved = uploadService.saveFile(
+				new SyntheticFilePart("document.pdf", MediaType.APPLICATION_PDF, chunk, fileSize, ++seed),
+				null, "benchmark").block();
+		return saved;
+	}
+
+	// Xóa ngay sau mỗi lần để file lớn không làm đầy đĩa; ngoài phần được đo
+	@TearDown(Level.Invocation)
+	public void deleteFile() {
+		uploadService.deleteFile(saved.getId()).block();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		context.close();
+	}
+}
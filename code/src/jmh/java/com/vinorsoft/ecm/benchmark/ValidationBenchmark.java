@@ -0,0 +1,58 @@
+package com.vinorsoft.ecm.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.vinorsoft.ecm.application.impl.UploadServiceImpl;
+
+/** Kiểm tra tên file, thư mục, phần mở rộng và MIME type của một upload. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+	private BenchmarkContext context;
+	private UploadServiceImpl uploadService;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		context = BenchmarkContext.start(Map.of());
+		uploadService = context.getBean(UploadServiceImpl.class);
+	}
+
+	@Benchmark
+	public Boolean validateUpload() {
+		return uploadService.validateUpload("Báo cáo quý 3 (bản cuối).docx", "hop-dong_2024",
+				"application/vnd.openxmlformats-officedocument.wordprocessingml.document").block();
+	}
+
+	@Benchmark
+	public boolean isValidFileName() {
+		return uploadService.isValidFileName("Báo cáo quý 3 (bản cuối).docx");
+	}
+
+	@Benchmark
+	public boolean isValidFileNameRejected() {
+		return uploadService.isValidFileName("bao-cao|quy-3.docx");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		context.close();
+	}
+}
@@ -0,0 +1,82 @@
+package com.vinorsoft.ecm.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+import com.vinorsoft.ecm.application.UploadService;
+import com.vinorsoft.ecm.infrastructure.archive.ZipCompressionMode;
+
+/**
+ * Tạo và đọc hết file ZIP của {@code files} file qua
+ * {@code UploadService.getMultipleFileContent}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ZipBenchmark {
+	@Param({ "1", "10", "100" })
+	private int files;
+
+	@Param({ "64KB", "1MB" })
+	private String fileSize;
+
+	@Param({ "STORED", "DEFLATED" })
+	private ZipCompressionMode compression;
+
+	private BenchmarkContext context;
+	private UploadService uploadService;
+	private List<UUID> fileIds;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		context = BenchmarkContext.start(Map.of());
+		uploadService = context.getBean(UploadService.class);
+		byte[] chunk = SyntheticFilePart.chunk(1);
+		long size = DataSize.parse(fileSize).toBytes();
+		fileIds = new ArrayList<>(files);
+		for (int i = 0; i < files; i++) {
+			fileIds.add(uploadService.saveFile(new SyntheticFilePart("document-" + i + ".txt", MediaType.TEXT_PLAIN,
+					chunk, size, i), null, "benchmark").block().getId());
+		}
+	}
+
+	@Benchmark
+	public long zip() {
+		return uploadService.getMultipleFileContent(fileIds, null, false, compression)
+				.flatMapMany(content -> content)
+				.reduce(0L, (total, buffer) -> {
+					long next = total + buffer.readableByteCount();
+					DataBufferUtils.release(buffer);
+					return next;
+				})
+				.block();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		context.close();
+	}
+}
@@ -0,0 +1,46 @@
+package com.vinorsoft.ecm.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Id các file đã upload và chưa bị xóa, để chọn ngẫu nhiên cho download/xóa. */
+final class FilePool {
+	private final List<UUID> fileIds = new ArrayList<>();
+
+	synchronized void add(UUID fileId) {
+		fileIds.add(fileId);
+	}
+
+	synchronized Optional<UUID> pick() {
+		return fileIds.isEmpty()
+				? Optional.empty()
+				: Optional.of(fileIds.get(ThreadLocalRandom.current().nextInt(fileIds.size())));
+	}
+
+	synchronized List<UUID> pick(int count) {
+		List<UUID> picked = new ArrayList<>(count);
+		for (int i = 0; i < count && !fileIds.isEmpty(); i++) {
+			picked.add(fileIds.get(ThreadLocalRandom.current().nextInt(fileIds.size())));
+		}
+		return picked;
+	}
+
+	/** Lấy ra khỏi pool để các request khác không tải file đang bị xóa. */
+	synchronized Optional<UUID> take() {
+		if (fileIds.isEmpty()) {
+			return Optional.empty();
+		}
+		int index = ThreadLocalRandom.current().nextInt(fileIds.size());
+		UUID fileId = fileIds.get(index);
+		fileIds.set(index, fileIds.get(fileIds.size() - 1));
+		fileIds.remove(fileIds.size() - 1);
+		return Optional.of(fileId);
+	}
+
+	synchronized int size() {
+		return fileIds.size();
+	}
+}
@@ -0,0 +1,154 @@
+package com.vinorsoft.ecm.loadtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.sql.DataSource;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.vinorsoft.ecm.EcmApplication;
+import com.vinorsoft.ecm.infrastructure.constants.ApiControllerConstants;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Load test end-to-end: khởi động Postgres nhúng, chạy các migration, khởi
+ * động ứng dụng trên một cổng ngẫu nhiên rồi gửi tải hỗn hợp
+ * upload/download/download-multiple/delete qua HTTP.
+ * <p>
+ * Tham số là các thuộc tính {@code loadtest.*} ({@link LoadTestOptions});
+ * các tham số khác được truyền cho ứng dụng như khi chạy thật, ví dụ
+ * {@code --upload.dedup.enabled=false} hoặc
+ * {@code --spring.r2dbc.pool.max-size=20}. Client và server chạy chung JVM nên
+ * số đo tài nguyên gồm cả phần của client (một kết nối và vài buffer cho mỗi
+ * client ảo).
+ */
+public final class LoadTest {
+
+	private LoadTest() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		Path uploadDir = Files.createTempDirectory("ecm-loadtest");
+		try (EmbeddedPostgres postgres = EmbeddedPostgres.builder().start()) {
+			migrate(postgres.getPostgresDatabase());
+
+			// Thuộc tính hệ thống đè application.yml, tham số dòng lệnh vẫn đè được các giá trị này
+			setDefault("spring.r2dbc.url", "r2dbc:postgresql://localhost:" + postgres.getPort() + "/postgres");
+			setDefault("spring.r2dbc.username", "postgres");
+			setDefault("spring.r2dbc.password", "postgres");
+			setDefault("upload.path", uploadDir.toString());
+			setDefault("server.port", "0");
+			setDefault("logging.level.root", "WARN");
+			setDefault("logging.level.org.springframework.web", "WARN");
+
+			try (ConfigurableApplicationContext app = new SpringApplicationBuilder(EcmApplication.class).run(args)) {
+				Environment environment = app.getEnvironment();
+				LoadTestOptions options = Binder.get(environment)
+						.bind("loadtest", Bindable.ofInstance(new LoadTestOptions()))
+						.orElseGet(LoadTestOptions::new);
+				int port = ((WebServerApplicationContext) app).getWebServer().getPort();
+				run(options, webClient(environment, port, options.getConcurrency()));
+			}
+		} finally {
+			deleteRecursively(uploadDir);
+		}
+		System.exit(0);
+	}
+
+	private static void run(LoadTestOptions options, WebClient webClient) {
+		TrafficGenerator traffic = new TrafficGenerator(webClient, options);
+		System.out.printf("Load test: concurrency=%d, duration=%s, warmup=%s%n  mix=%s%n  sizes=%s%n",
+				options.getConcurrency(), options.getDuration(), options.getWarmup(), options.getMix(),
+				options.getSizes());
+
+		traffic.seed(options.getSeedFiles());
+		traffic.run(options.getWarmup());
+		traffic.stats().values().forEach(OperationStats::reset);
+
+		long start = System.nanoTime();
+		try (ResourceSampler sampler = new ResourceSampler(options.getSampleInterval())) {
+			traffic.run(options.getDuration());
+			Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+			// Để các kết nối và buffer đã xong kịp được trả lại trước khi đo lúc kết thúc
+			sleep(options.getSampleInterval());
+			LoadTestReport.print(traffic.stats(), elapsed, sampler, ResourceSampler.Sample.take(),
+					traffic.poolSize());
+		}
+	}
+
+	private static WebClient webClient(Environment environment, int port, int concurrency) {
+		ConnectionProvider connections = ConnectionProvider.builder("loadtest")
+				.maxConnections(concurrency)
+				.pendingAcquireMaxCount(-1)
+				.build();
+		return WebClient.builder()
+				.baseUrl("http://localhost:" + port + ApiControllerConstants.API_FILE_UPLOAD)
+				.clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+				.defaultHeaders(headers -> headers.setBasicAuth(
+						environment.getRequiredProperty("spring.security.user.name"),
+						environment.getRequiredProperty("spring.security.user.password")))
+				.build();
+	}
+
+	/** Chạy các file {@code db/migration/V<n>__*.sql} theo thứ tự phiên bản. */
+	private static void migrate(DataSource dataSource) throws IOException, SQLException {
+		Resource[] migrations = new PathMatchingResourcePatternResolver()
+				.getResources("classpath:db/migration/V*__*.sql");
+		Arrays.sort(migrations, Comparator.comparingInt(LoadTest::migrationVersion));
+		try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+			for (Resource migration : migrations) {
+				statement.execute(migration.getContentAsString(StandardCharsets.UTF_8));
+			}
+		}
+	}
+
+	private static int migrationVersion(Resource migration) {
+		String name = migration.getFilename();
+		return Integer.parseInt(name.substring(1, name.indexOf("__")));
+	}
+
+	private static void setDefault(String key, String value) {
+		if (System.getProperty(key) == null) {
+			System.setProperty(key, value);
+		}
+	}
+
+	private static void sleep(Duration duration) {
+		try {
+			Thread.sleep(duration.toMillis());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void deleteRecursively(Path dir) throws IOException {
+		try (Stream<Path> paths = Files.walk(dir)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+				Files.deleteIfExists(path);
+			}
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.vinorsoft.ecm.loadtest;
+
+import java.time.Duration;
+
+import lombok.Data;
+
+/**
+ * Tham số của load test, đọc từ các thuộc tính {@code loadtest.*} (ví dụ
+ * {@code --loadtest.concurrency=128}) cùng chỗ với cấu hình của ứng dụng.
+ */
+@Data
+public class LoadTestOptions {
+	/** Số client chạy song song, mỗi client gửi request kế tiếp ngay khi request trước xong. */
+	private int concurrency = 32;
+
+	/** Thời gian đo. */
+	private Duration duration = Duration.ofSeconds(60);
+
+	/** Chạy trước khi đo để JIT, cache và pool ổn định; không tính vào kết quả. */
+	private Duration warmup = Duration.ofSeconds(10);
+
+	/** Tỉ lệ các loại request, dạng {@code loại:trọng số,...}. */
+	private String mix = "upload:30,download:50,download-multiple:10,delete:10";
+
+	/** Phân bố kích thước file upload, dạng {@code kích thước:trọng số,...}. */
+	private String sizes = "16KB:70,1MB:25,32MB:5";
+
+	/** Số file upload sẵn trước khi chạy để download có file để tải. */
+	private int seedFiles = 100;
+
+	/** Số file trong mỗi request download-multiple. */
+	private int zipFiles = 10;
+
+	/**
+	 * Request chạy quá thời gian này bị hủy và tính là lỗi, để một request treo
+	 * không giữ client ảo (và cả lần chạy) mãi mãi.
+	 */
+	private Duration requestTimeout = Duration.ofMinutes(2);
+
+	/** Chu kỳ lấy mẫu heap, direct memory, file descriptor và thread. */
+	private Duration sampleInterval = Duration.ofSeconds(1);
+}
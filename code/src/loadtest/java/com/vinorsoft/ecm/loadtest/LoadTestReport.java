@@ -0,0 +1,65 @@
+package com.vinorsoft.ecm.loadtest;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+
+final class LoadTestReport {
+	private static final String ROW = "%-18s %9s %7s %9s %9s %9s %9s %9s %9s%n";
+
+	private LoadTestReport() {
+	}
+
+	static void print(Map<Operation, OperationStats> stats, Duration elapsed, ResourceSampler sampler,
+			ResourceSampler.Sample end, int remainingFiles) {
+		double seconds = elapsed.toNanos() / 1e9;
+		System.out.printf("%nKết quả sau %.1fs:%n", seconds);
+		System.out.printf(ROW, "request", "count", "errors", "req/s", "MB/s", "p50 ms", "p99 ms", "p999 ms",
+				"max ms");
+
+		Histogram all = new Histogram(3);
+		long totalErrors = 0;
+		long totalBytes = 0;
+		for (Map.Entry<Operation, OperationStats> entry : stats.entrySet()) {
+			OperationStats.Snapshot snapshot = entry.getValue().snapshot();
+			all.add(snapshot.latencies());
+			totalErrors += snapshot.errors();
+			totalBytes += snapshot.bytes();
+			printRow(entry.getKey().label(), snapshot, seconds);
+		}
+		printRow("total", new OperationStats.Snapshot(all, totalErrors, totalBytes), seconds);
+
+		ResourceSampler.Sample start = sampler.start();
+		ResourceSampler.Sample peak = sampler.peak().max(end);
+		System.out.printf("%nTài nguyên (bắt đầu / đỉnh / kết thúc):%n");
+		System.out.printf("  heap used         %s / %s / %s%n", mb(start.heapBytes()), mb(peak.heapBytes()),
+				mb(end.heapBytes()));
+		System.out.printf("  direct (NIO)      %s / %s / %s%n", mb(start.directBytes()), mb(peak.directBytes()),
+				mb(end.directBytes()));
+		System.out.printf("  direct (Netty)    %s / %s / %s%n", mb(start.nettyDirectBytes()),
+				mb(peak.nettyDirectBytes()), mb(end.nettyDirectBytes()));
+		System.out.printf("  open files        %d / %d / %d%n", start.openFiles(), peak.openFiles(), end.openFiles());
+		System.out.printf("  threads           %d / %d / %d%n", start.threads(), peak.threads(), end.threads());
+		System.out.printf("  GC                %d lần, %d ms%n", sampler.gcCount(), sampler.gcMillis());
+		System.out.printf("  file còn lại      %d%n", remainingFiles);
+	}
+
+	private static void printRow(String label, OperationStats.Snapshot snapshot, double seconds) {
+		if (snapshot.count() == 0) {
+			System.out.printf(ROW, label, 0, 0, "-", "-", "-", "-", "-", "-");
+			return;
+		}
+		System.out.printf(ROW, label, snapshot.count(), snapshot.errors(),
+				String.format("%.1f", snapshot.count() / seconds),
+				String.format("%.1f", snapshot.bytes() / seconds / (1024 * 1024)),
+				String.format("%.1f", snapshot.percentileMillis(50)),
+				String.format("%.1f", snapshot.percentileMillis(99)),
+				String.format("%.1f", snapshot.percentileMillis(99.9)),
+				String.format("%.1f", snapshot.maxMillis()));
+	}
+
+	private static String mb(long bytes) {
+		return bytes < 0 ? "n/a" : String.format("%.1f MB", bytes / (1024.0 * 1024));
+	}
+}
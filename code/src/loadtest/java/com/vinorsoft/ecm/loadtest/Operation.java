@@ -0,0 +1,27 @@
+package com.vinorsoft.ecm.loadtest;
+
+import java.util.Arrays;
+
+enum Operation {
+	UPLOAD("upload"),
+	DOWNLOAD("download"),
+	DOWNLOAD_MULTIPLE("download-multiple"),
+	DELETE("delete");
+
+	private final String label;
+
+	Operation(String label) {
+		this.label = label;
+	}
+
+	String label() {
+		return label;
+	}
+
+	static Operation fromLabel(String label) {
+		return Arrays.stream(values())
+				.filter(operation -> operation.label.equals(label))
+				.findFirst()
+				.orElseThrow(() -> new IllegalArgumentException("Loại request không hỗ trợ: " + label));
+	}
+}
@@ -0,0 +1,51 @@
+package com.vinorsoft.ecm.loadtest;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/** Độ trễ (HdrHistogram), số lỗi và số byte của một loại request; ghi được từ nhiều thread. */
+final class OperationStats {
+	private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+	private final Recorder latencies = new Recorder(MAX_LATENCY_NANOS, 3);
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder bytes = new LongAdder();
+
+	void success(long latencyNanos, long transferredBytes) {
+		latencies.recordValue(Math.min(latencyNanos, MAX_LATENCY_NANOS));
+		bytes.add(transferredBytes);
+	}
+
+	void failure(long latencyNanos) {
+		latencies.recordValue(Math.min(latencyNanos, MAX_LATENCY_NANOS));
+		errors.increment();
+	}
+
+	void reset() {
+		latencies.reset();
+		errors.reset();
+		bytes.reset();
+	}
+
+	/** Lấy kết quả từ lần {@link #reset()} gần nhất. */
+	Snapshot snapshot() {
+		return new Snapshot(latencies.getIntervalHistogram(), errors.sum(), bytes.sum());
+	}
+
+	record Snapshot(Histogram latencies, long errors, long bytes) {
+		long count() {
+			return latencies.getTotalCount();
+		}
+
+		double percentileMillis(double percentile) {
+			return latencies.getValueAtPercentile(percentile) / 1_000_000.0;
+		}
+
+		double maxMillis() {
+			return latencies.getMaxValue() / 1_000_000.0;
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package com.vinorsoft.ecm.loadtest;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.management.UnixOperatingSystemMXBean;
+
+import io.netty.buffer.PooledByteBufAllocator;
+
+/**
+ * Lấy mẫu định kỳ tài nguyên của JVM: heap, direct memory (NIO và pool của
+ * Netty), file descriptor đang mở và số thread; giữ giá trị lúc bắt đầu, đỉnh
+ * và lúc kết thúc. Số đo lúc kết thúc cao hơn lúc bắt đầu sau khi đã hết tải
+ * là dấu hiệu rò rỉ buffer hoặc file.
+ */
+final class ResourceSampler implements AutoCloseable {
+	private static final BufferPoolMXBean DIRECT_POOL = ManagementFactory
+			.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+			.filter(pool -> pool.getName().equals("direct"))
+			.findFirst()
+			.orElse(null);
+
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "loadtest-sampler");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Sample start;
+	private final long gcCountAtStart;
+	private final long gcMillisAtStart;
+	private volatile Sample peak;
+
+	ResourceSampler(Duration interval) {
+		start = Sample.take();
+		peak = start;
+		gcCountAtStart = totalGcCount();
+		gcMillisAtStart = totalGcMillis();
+		executor.scheduleAtFixedRate(() -> peak = peak.max(Sample.take()), interval.toMillis(),
+				interval.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	Sample start() {
+		return start;
+	}
+
+	Sample peak() {
+		return peak;
+	}
+
+	/** Số lần GC từ lúc bắt đầu lấy mẫu. */
+	long gcCount() {
+		return totalGcCount() - gcCountAtStart;
+	}
+
+	/** Tổng thời gian GC (ms) từ lúc bắt đầu lấy mẫu. */
+	long gcMillis() {
+		return totalGcMillis() - gcMillisAtStart;
+	}
+
+	private static long totalGcCount() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream()
+				.mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+	}
+
+	private static long totalGcMillis() {
+		return ManagementFactory.getGarbageCollectorMXBeans().stream()
+				.mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	record Sample(long heapBytes, long directBytes, long nettyDirectBytes, long openFiles, int threads) {
+		static Sample take() {
+			OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+			return new Sample(
+					ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+					DIRECT_POOL != null ? DIRECT_POOL.getMemoryUsed() : -1,
+					PooledByteBufAllocator.DEFAULT.metric().usedDirectMemory(),
+					os instanceof UnixOperatingSystemMXBean unix ? unix.getOpenFileDescriptorCount() : -1,
+					ManagementFactory.getThreadMXBean().getThreadCount());
+		}
+
+		Sample max(Sample other) {
+			return new Sample(Math.max(heapBytes, other.heapBytes), Math.max(directBytes, other.directBytes),
+					Math.max(nettyDirectBytes, other.nettyDirectBytes), Math.max(openFiles, other.openFiles),
+					Math.max(threads, other.threads));
+		}
+	}
+}
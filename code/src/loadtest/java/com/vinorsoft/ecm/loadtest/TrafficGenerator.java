@@ -0,0 +1,193 @@
+package com.vinorsoft.ecm.loadtest;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import com.vinorsoft.ecm.infrastructure.constants.ApiControllerConstants;
+import com.vinorsoft.ecm.interfaces.dto.FileECMDTO;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Các client ảo chạy vòng lặp đóng: mỗi client chọn loại request theo
+ * {@link LoadTestOptions#getMix()}, gửi, chờ xong rồi gửi request kế tiếp. Khi
+ * chưa có file nào để tải hoặc xóa thì client upload thay.
+ */
+final class TrafficGenerator {
+	private static final int CHUNK_SIZE = 64 * 1024;
+	private static final String CATEGORY = "loadtest";
+
+	private final WebClient webClient;
+	private final LoadTestOptions options;
+	private final WeightedChoice<Operation> mix;
+	private final WeightedChoice<Long> sizes;
+	private final FilePool filePool = new FilePool();
+	private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+	private final DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+	// Nội dung ngẫu nhiên (không nén được) dùng lại cho mọi upload
+	private final byte[] chunk = new byte[CHUNK_SIZE];
+	private final AtomicLong uploadCounter = new AtomicLong();
+
+	TrafficGenerator(WebClient webClient, LoadTestOptions options) {
+		this.webClient = webClient;
+		this.options = options;
+		this.mix = new WeightedChoice<>(options.getMix(), Operation::fromLabel);
+		this.sizes = new WeightedChoice<>(options.getSizes(), size -> DataSize.parse(size).toBytes());
+		for (Operation operation : Operation.values()) {
+			stats.put(operation, new OperationStats());
+		}
+		ThreadLocalRandom.current().nextBytes(chunk);
+	}
+
+	Map<Operation, OperationStats> stats() {
+		return stats;
+	}
+
+	int poolSize() {
+		return filePool.size();
+	}
+
+	/** Upload {@code count} file với {@code concurrency} request song song. */
+	void seed(int count) {
+		Flux.range(0, count)
+				.flatMap(i -> timed(Operation.UPLOAD, upload()), options.getConcurrency())
+				.blockLast();
+	}
+
+	/** Chạy tải trong {@code duration} rồi chờ các request đang chạy kết thúc. */
+	void run(Duration duration) {
+		long deadline = System.nanoTime() + duration.toNanos();
+		Flux.range(0, options.getConcurrency())
+				.flatMap(user -> Mono.defer(this::next).repeat(() -> System.nanoTime() < deadline),
+						options.getConcurrency())
+				.blockLast();
+	}
+
+	private Mono<Void> next() {
+		return switch (mix.next()) {
+			case UPLOAD -> timed(Operation.UPLOAD, upload());
+			case DOWNLOAD -> filePool.pick()
+					.map(fileId -> timed(Operation.DOWNLOAD, download(fileId)))
+					.orElseGet(() -> timed(Operation.UPLOAD, upload()));
+			case DOWNLOAD_MULTIPLE -> {
+				List<UUID> fileIds = filePool.pick(options.getZipFiles());
+				yield fileIds.isEmpty()
+						? timed(Operation.UPLOAD, upload())
+						: timed(Operation.DOWNLOAD_MULTIPLE, downloadMultiple(fileIds));
+			}
+			case DELETE -> filePool.take()
+					.map(fileId -> timed(Operation.DELETE, delete(fileId)))
+					.orElseGet(() -> timed(Operation.UPLOAD, upload()));
+		};
+	}
+
+	private Mono<Void> timed(Operation operation, Mono<Long> request) {
+		OperationStats operationStats = stats.get(operation);
+		return Mono.defer(() -> {
+			long start = System.nanoTime();
+			return request
+					.timeout(options.getRequestTimeout())
+					.doOnNext(bytes -> operationStats.success(System.nanoTime() - start, bytes))
+					.onErrorResume(e -> {
+						operationStats.failure(System.nanoTime() - start);
+						return Mono.empty();
+					})
+					.then();
+		});
+	}
+
+	private Mono<Long> upload() {
+		long size = sizes.next();
+		long counter = uploadCounter.incrementAndGet();
+		MultipartBodyBuilder body = new MultipartBodyBuilder();
+		body.asyncPart("file", content(size, counter), DataBuffer.class)
+				.filename("loadtest-" + counter + ".pdf")
+				.contentType(MediaType.APPLICATION_PDF);
+		return webClient.post()
+				.uri(builder -> builder.path(ApiControllerConstants.API_FILE_UPLOAD_UPLOAD)
+						.queryParam("category", CATEGORY)
+						.build())
+				.body(BodyInserters.fromMultipartData(body.build()))
+				.exchangeToMono(response -> checkStatus(response).bodyToMono(FileECMDTO.class))
+				.map(file -> {
+					filePool.add(file.getId());
+					return size;
+				});
+	}
+
+	private Mono<Long> download(UUID fileId) {
+		return webClient.get()
+				.uri(builder -> builder.path(ApiControllerConstants.API_FILE_UPLOAD_DOWNLOAD)
+						.queryParam("fileId", fileId)
+						.build())
+				.exchangeToMono(response -> countBytes(checkStatus(response)));
+	}
+
+	private Mono<Long> downloadMultiple(List<UUID> fileIds) {
+		return webClient.get()
+				.uri(builder -> builder.path(ApiControllerConstants.API_FILE_UPLOAD_DOWNLOAD_MULTIPLE)
+						.queryParam("fileIds", fileIds.toArray())
+						.build())
+				.exchangeToMono(response -> countBytes(checkStatus(response)));
+	}
+
+	private Mono<Long> delete(UUID fileId) {
+		return webClient.delete()
+				.uri(builder -> builder.path(ApiControllerConstants.API_FILE_UPLOAD_DELETE_FILE)
+						.queryParam("fileId", fileId)
+						.build())
+				.exchangeToMono(response -> checkStatus(response).releaseBody().thenReturn(0L));
+	}
+
+	/**
+	 * Nội dung {@code size} byte; 8 byte đầu là số thứ tự upload để mỗi file
+	 * có SHA-256 khác nhau (không bị dedup).
+	 */
+	private Flux<DataBuffer> content(long size, long counter) {
+		long chunkCount = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		return Flux.range(0, (int) chunkCount).map(index -> {
+			int length = (int) Math.min(CHUNK_SIZE, size - (long) index * CHUNK_SIZE);
+			if (index == 0 && length >= Long.BYTES) {
+				byte[] first = new byte[length];
+				System.arraycopy(chunk, 0, first, 0, length);
+				ByteBuffer.wrap(first).putLong(counter);
+				return bufferFactory.wrap(first);
+			}
+			return bufferFactory.wrap(ByteBuffer.wrap(chunk, 0, length));
+		});
+	}
+
+	private static ClientResponse checkStatus(ClientResponse response) {
+		if (!response.statusCode().is2xxSuccessful()) {
+			throw new IllegalStateException("HTTP " + response.statusCode().value());
+		}
+		return response;
+	}
+
+	private static Mono<Long> countBytes(ClientResponse response) {
+		return response.bodyToFlux(DataBuffer.class)
+				.reduce(0L, (total, buffer) -> {
+					long next = total + buffer.readableByteCount();
+					DataBufferUtils.release(buffer);
+					return next;
+				});
+	}
+}
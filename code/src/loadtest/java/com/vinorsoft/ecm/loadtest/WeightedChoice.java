@@ -0,0 +1,44 @@
+package com.vinorsoft.ecm.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/** Chọn ngẫu nhiên theo trọng số từ chuỗi dạng {@code giá trị:trọng số,...}. */
+final class WeightedChoice<T> {
+	private final List<T> values = new ArrayList<>();
+	private final List<Integer> cumulativeWeights = new ArrayList<>();
+	private int totalWeight;
+
+	WeightedChoice(String spec, Function<String, T> parser) {
+		for (String entry : spec.split(",")) {
+			String[] parts = entry.trim().split(":");
+			if (parts.length != 2) {
+				throw new IllegalArgumentException("Sai cú pháp '" + entry + "', cần dạng giá trị:trọng số");
+			}
+			int weight = Integer.parseInt(parts[1].trim());
+			if (weight < 0) {
+				throw new IllegalArgumentException("Trọng số âm: " + entry);
+			}
+			if (weight > 0) {
+				totalWeight += weight;
+				values.add(parser.apply(parts[0].trim()));
+				cumulativeWeights.add(totalWeight);
+			}
+		}
+		if (totalWeight == 0) {
+			throw new IllegalArgumentException("Không có lựa chọn nào có trọng số dương: " + spec);
+		}
+	}
+
+	T next() {
+		int point = ThreadLocalRandom.current().nextInt(totalWeight);
+		for (int i = 0; i < values.size(); i++) {
+			if (point < cumulativeWeights.get(i)) {
+				return values.get(i);
+			}
+		}
+		throw new IllegalStateException();
+	}
+}
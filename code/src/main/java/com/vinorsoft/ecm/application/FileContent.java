@@ -0,0 +1,19 @@
+package com.vinorsoft.ecm.application;
+
+import com.vinorsoft.ecm.infrastructure.storage.BlobStore;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * File thực tế sẽ được gửi cho client: bản gốc hoặc bản nén nếu có, nằm ở
+ * {@code key} của {@code store}.
+ */
+@Getter
+@AllArgsConstructor
+public class FileContent {
+    private final BlobStore store;
+    private final String key;
+    private final long size;
+    private final boolean compressed;
+}
@@ -0,0 +1,23 @@
+package com.vinorsoft.ecm.application;
+
+import java.util.UUID;
+
+import com.vinorsoft.ecm.domain.FileECM;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Kết quả tra cứu của một id trong lô: {@code file} là null nếu id không tồn
+ * tại.
+ */
+@Getter
+@AllArgsConstructor
+public class FileLookup {
+    private final UUID fileId;
+    private final FileECM file;
+
+    public boolean isFound() {
+        return file != null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.vinorsoft.ecm.application;
+
+import com.vinorsoft.ecm.domain.FileECM;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Kết quả lưu một file trong lô upload nhiều file: {@code file} là bản ghi đã
+ * lưu nếu thành công, ngược lại {@code error} là lý do và nội dung đã ghi của
+ * file đã bị xóa. {@code REJECTED} là file không được ghi vì service quá tải,
+ * có thể gửi lại sau.
+ */
+@Getter
+@AllArgsConstructor
+public class FileUploadResult {
+    public enum Status {
+        SAVED, FAILED, REJECTED
+    }
+
+    private final String fileName;
+    private final Status status;
+    private final FileECM file;
+    private final String error;
+
+    public static FileUploadResult saved(String fileName, FileECM file) {
+        return new FileUploadResult(fileName, Status.SAVED, file, null);
+    }
+
+    public static FileUploadResult failed(String fileName, String error) {
+        return new FileUploadResult(fileName, Status.FAILED, null, error);
+    }
+
+    public static FileUploadResult rejected(String fileName, String error) {
+        return new FileUploadResult(fileName, Status.REJECTED, null, error);
+    }
+
+    public boolean isSaved() {
+        return status == Status.SAVED;
+    }
+}
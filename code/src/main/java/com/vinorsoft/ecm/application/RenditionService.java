@@ -0,0 +1,45 @@
+package com.vinorsoft.ecm.application;
+
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import com.vinorsoft.ecm.domain.FileECM;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Ảnh thu nhỏ (rendition) JPEG của ảnh và khung hình đại diện của video, theo
+ * các kích thước trong {@code upload.rendition.sizes}, để giao diện không phải
+ * tải cả file gốc chỉ để hiển thị lưới ảnh.
+ */
+public interface RenditionService {
+
+    /**
+     * Tên file rendition {@code <fileId>_r<size>.jpg}, nằm dưới thư mục
+     * category theo layout hiện tại của {@code upload.path}.
+     */
+    Pattern FILE_NAME = Pattern.compile("^[0-9a-fA-F]{8}(-[0-9a-fA-F]{4}){3}-[0-9a-fA-F]{12}_r[0-9]+\\.jpg$");
+
+    static String fileName(UUID fileId, int size) {
+        return fileId + "_r" + size + ".jpg";
+    }
+
+    /** File có thể tạo rendition: ảnh hoặc video đọc được từ đĩa. */
+    boolean supports(FileECM file);
+
+    /** Tạo trước rendition ở mọi kích thước trên nền; lỗi chỉ được ghi log. */
+    void generateAsync(FileECM file);
+
+    /**
+     * Rendition kích thước {@code size} (null: kích thước nhỏ nhất), được tạo
+     * ngay nếu chưa có. Nhiều request cùng lúc cho một rendition chưa có chỉ
+     * chạy ffmpeg một lần.
+     *
+     * @throws IllegalArgumentException (trong Mono) nếu {@code size} không được
+     *                                  cấu hình.
+     */
+    Mono<FileContent> getRendition(FileECM file, Integer size);
+
+    /** Xóa mọi rendition của file; lỗi chỉ được ghi log. */
+    Mono<Void> deleteRenditions(FileECM file);
+}
@@ -1,11 +1,13 @@
 package com.vinorsoft.ecm.application;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.UUID;
 
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.codec.multipart.FilePart;
 import com.vinorsoft.ecm.domain.FileECM;
+import com.vinorsoft.ecm.infrastructure.archive.ZipCompressionMode;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -14,13 +16,67 @@ public interface UploadService {
 
     Mono<FileECM> saveFile(FilePart file, UUID fileId, String category);
 
-    Mono<byte[]> getFileContent(UUID fileId);
+    /**
+     * Lưu mỗi file thành phiên bản 1 của một tài liệu mới. Nội dung được ghi
+     * song song có giới hạn; bản ghi được thêm theo lô, mỗi lô một transaction.
+     * File lỗi (không hợp lệ, quá lớn, lỗi ghi hoặc lỗi lưu lô chứa nó) có kết
+     * quả {@code FAILED} và không để lại nội dung trong kho; các file khác vẫn
+     * được lưu. Kết quả theo đúng thứ tự các file.
+     */
+    Flux<FileUploadResult> saveFiles(Flux<FilePart> files, String category);
 
-    Mono<InputStreamResource> getMultipleFileContent(List<UUID> fileIds);
+    /**
+     * Tạo bản ghi cho một file đã được ghi đầy đủ vào {@code stagingPath} (ví
+     * dụ upload nhiều phần). File staging được chuyển vào kho lưu trữ; nếu lỗi
+     * thì file có thể đã bị xóa.
+     */
+    Mono<FileECM> saveStagedFile(Path stagingPath, long size, String fileName, String contentType, String category,
+            UUID fileId);
+
+    /** Kiểm tra tên file, thư mục, phần mở rộng và MIME type của một upload. */
+    Mono<Boolean> validateUpload(String fileName, String category, String contentType);
+
+    /**
+     * File trên đĩa để stream xuống client, không nạp nội dung lên heap. Trả về
+     * bản nén nếu đã có, trừ khi {@code original} là true.
+     */
+    Mono<FileContent> resolveFileContent(FileECM fileECM, boolean original);
+
+    /**
+     * Nội dung ZIP của các file, stream trực tiếp ra response. Số file ZIP
+     * được tạo đồng thời do nhóm {@code zips} của
+     * {@link com.vinorsoft.ecm.infrastructure.admission.AdmissionControl} giới hạn.
+     * <p>
+     * {@code version}/{@code latest} chọn phiên bản như
+     * {@link #getFileVersion(UUID, Integer, boolean)} cho từng file; file không
+     * có phiên bản đó bị bỏ qua như file không tồn tại.
+     */
+    Mono<Flux<DataBuffer>> getMultipleFileContent(List<UUID> fileIds, Integer version, boolean latest,
+            ZipCompressionMode compressionMode);
 
     Mono<FileECM> getFileInfo(UUID fileId);
 
-    Flux<FileECM> getFileInfos(List<UUID> fileId);
+    /**
+     * Phiên bản {@code version} của tài liệu chứa phiên bản {@code fileId};
+     * phiên bản mới nhất nếu {@code version} là null và {@code latest} là true;
+     * chính {@code fileId} nếu không chọn gì. Lỗi nếu không tồn tại.
+     */
+    Mono<FileECM> getFileVersion(UUID fileId, Integer version, boolean latest);
+
+    /** Mọi phiên bản của tài liệu chứa phiên bản {@code fileId}, mới nhất trước. */
+    Flux<FileECM> getFileVersions(UUID fileId);
+
+    /**
+     * Các file theo đúng thứ tự {@code fileIds}; lỗi nếu có id không tồn tại
+     * (thông báo lỗi liệt kê toàn bộ id thiếu).
+     */
+    Flux<FileECM> getFileInfos(List<UUID> fileIds);
+
+    /**
+     * Tra cứu theo lô, mỗi id trong {@code fileIds} có đúng một kết quả theo
+     * đúng thứ tự, kể cả id không tồn tại.
+     */
+    Flux<FileLookup> lookupFiles(List<UUID> fileIds);
 
     Mono<Boolean> deleteFile(UUID fileId);
 }
@@ -0,0 +1,10 @@
+package com.vinorsoft.ecm.application;
+
+import java.util.UUID;
+
+/** Phiên upload không tồn tại, đã hết hạn hoặc đã commit. */
+public class UploadSessionNotFoundException extends RuntimeException {
+    public UploadSessionNotFoundException(UUID sessionId) {
+        super("Phiên upload không tồn tại hoặc đã hết hạn: " + sessionId);
+    }
+}
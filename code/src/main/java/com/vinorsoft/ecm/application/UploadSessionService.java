@@ -0,0 +1,41 @@
+package com.vinorsoft.ecm.application;
+
+import java.util.UUID;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import com.vinorsoft.ecm.domain.FileECM;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Upload nhiều phần có thể tiếp tục: tạo phiên, gửi từng chunk (song song,
+ * theo thứ tự bất kỳ, gửi lại được), xem các chunk đã nhận rồi commit để tạo
+ * {@link FileECM}.
+ */
+public interface UploadSessionService {
+
+    /**
+     * @param fileId file cần tạo phiên bản mới; null nếu là file mới.
+     */
+    Mono<UploadSessionStatus> createSession(String fileName, String contentType, long fileSize, String category,
+            UUID fileId);
+
+    /**
+     * Ghi chunk bắt đầu tại {@code offset}. {@code offset} phải là bội của
+     * {@code chunkSize} và nội dung phải dài đúng bằng chunk đó.
+     */
+    Mono<Void> writeChunk(UUID sessionId, long offset, Flux<DataBuffer> content);
+
+    Mono<UploadSessionStatus> getStatus(UUID sessionId);
+
+    /**
+     * Tạo {@link FileECM} từ các chunk đã nhận; bản ghi file được tạo và phiên
+     * được xóa trong cùng transaction. Lỗi với
+     * {@link UploadSessionStateException} nếu còn thiếu chunk.
+     */
+    Mono<FileECM> commit(UUID sessionId);
+
+    Mono<Void> abort(UUID sessionId);
+}
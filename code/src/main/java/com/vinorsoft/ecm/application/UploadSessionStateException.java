@@ -0,0 +1,8 @@
+package com.vinorsoft.ecm.application;
+
+/** Thao tác không hợp lệ với trạng thái hiện tại của phiên upload (ví dụ commit khi còn thiếu chunk). */
+public class UploadSessionStateException extends RuntimeException {
+    public UploadSessionStateException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.vinorsoft.ecm.application;
+
+import java.util.List;
+
+import com.vinorsoft.ecm.domain.UploadSession;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/** Phiên upload cùng danh sách chỉ số các chunk đã nhận (tăng dần). */
+@Getter
+@AllArgsConstructor
+public class UploadSessionStatus {
+    private final UploadSession session;
+    private final List<Integer> receivedChunks;
+}
@@ -1,5 +1,20 @@
 package com.vinorsoft.ecm.application;
 
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
 public interface VideoCompressionService {
-    String compressVideo(String inputPath);
+    /**
+     * Nén video đồng bộ trên thread gọi, hết thời gian cho phép thì hủy ffmpeg.
+     *
+     * @return đường dẫn file đã nén; file dở dang bị xóa nếu lỗi.
+     */
+    String compressVideo(String inputPath) throws IOException, InterruptedException, TimeoutException;
+
+    /**
+     * Như {@link #compressVideo(String)} nhưng ghi ra {@code outputPath}; định
+     * dạng đầu ra được xác định theo phần mở rộng của {@code outputPath}.
+     */
+    String compressVideo(String inputPath, String outputPath)
+            throws IOException, InterruptedException, TimeoutException;
 }
@@ -0,0 +1,267 @@
+package com.vinorsoft.ecm.application.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.vinorsoft.ecm.application.FileContent;
+import com.vinorsoft.ecm.application.RenditionService;
+import com.vinorsoft.ecm.domain.FileECM;
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionControl;
+import com.vinorsoft.ecm.infrastructure.media.FfmpegRunner;
+import com.vinorsoft.ecm.infrastructure.metrics.EcmMetrics;
+import com.vinorsoft.ecm.infrastructure.metrics.PipelineStage;
+import com.vinorsoft.ecm.infrastructure.storage.BlobStores;
+import com.vinorsoft.ecm.infrastructure.storage.LocalBlobStore;
+import com.vinorsoft.ecm.infrastructure.storage.StorageLayout;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Tạo rendition bằng ffmpeg: ảnh được thu nhỏ, video lấy một khung hình đại
+ * diện (filter {@code thumbnail}), cả hai được co lại vừa khung
+ * {@code size x size} (không phóng to) và lưu thành JPEG.
+ * <p>
+ * Rendition nằm cùng cây thư mục với file gốc trên {@code upload.path}, tên
+ * {@link RenditionService#fileName} và chia thư mục theo {@code fileId}, nên tìm
+ * được mà không cần bảng riêng và không đổi khi file gốc được chuyển tầng lưu
+ * trữ. Mỗi phiên bản là bất biến nên rendition không bao giờ phải tạo lại. Sau
+ * khi đổi sang layout sharded, rendition cũ nằm phẳng trong thư mục category
+ * vẫn được đọc và xóa cho đến khi {@code StorageLayoutMigrator} chuyển chúng.
+ * <p>
+ * ffmpeg chạy trên scheduler riêng {@code upload.rendition.workers} thread để
+ * giới hạn số tiến trình song song. Rendition được ghi vào tên tạm rồi đổi tên,
+ * nên request khác không bao giờ đọc phải file dở dang.
+ */
+@Service
+@Slf4j
+public class RenditionServiceImpl implements RenditionService {
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    @Value("${upload.rendition.enabled:false}")
+    private boolean enabled;
+
+    @Value("${upload.rendition.sizes:256,1024}")
+    private String sizesConfig;
+
+    @Value("${upload.rendition.image-types:image/jpeg,image/png,image/webp,image/gif,image/bmp,image/tiff}")
+    private String imageTypesConfig;
+
+    @Value("${upload.allowed-media-types}")
+    private String allowedMediaTypesConfig;
+
+    @Value("${upload.rendition.workers:2}")
+    private int workers;
+
+    @Value("${upload.rendition.timeout:1m}")
+    private Duration timeout;
+
+    /** Chất lượng JPEG của ffmpeg (-q:v), 2 (tốt nhất) đến 31. */
+    @Value("${upload.rendition.quality:4}")
+    private int quality;
+
+    private final FfmpegRunner ffmpegRunner;
+    private final StorageLayout storageLayout;
+    private final BlobStores blobStores;
+    private final AdmissionControl admissionControl;
+    private final EcmMetrics metrics;
+
+    private Set<Integer> sizes;
+    private Set<String> imageTypes;
+    private Scheduler scheduler;
+
+    /** Rendition đang được tạo, theo {@code <fileId>_<size>}; request đến sau dùng chung kết quả. */
+    private final Map<String, Mono<Path>> inFlight = new ConcurrentHashMap<>();
+
+    public RenditionServiceImpl(FfmpegRunner ffmpegRunner, StorageLayout storageLayout, BlobStores blobStores,
+            AdmissionControl admissionControl, EcmMetrics metrics) {
+        this.ffmpegRunner = ffmpegRunner;
+        this.storageLayout = storageLayout;
+        this.blobStores = blobStores;
+        this.admissionControl = admissionControl;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    public void init() {
+        sizes = Arrays.stream(sizesConfig.split(","))
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (sizes.isEmpty() || sizes.stream().anyMatch(size -> size <= 0)) {
+            throw new IllegalStateException("upload.rendition.sizes phải là các số dương: " + sizesConfig);
+        }
+        // Loại không được phép upload thì không bao giờ có file để tạo rendition
+        Set<String> allowedMediaTypes = Arrays.stream(allowedMediaTypesConfig.split(",")).map(String::trim)
+                .collect(Collectors.toSet());
+        imageTypes = Arrays.stream(imageTypesConfig.split(",")).map(String::trim)
+                .filter(allowedMediaTypes::contains)
+                .collect(Collectors.toSet());
+        scheduler = Schedulers.newBoundedElastic(workers, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE,
+                "ecm-rendition");
+        if (enabled) {
+            log.info("Tạo rendition: sizes={}, imageTypes={}, workers={}", sizes, imageTypes, workers);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    @Override
+    public boolean supports(FileECM file) {
+        return enabled && (isImage(file) || isVideo(file)) && sourcePath(file) != null;
+    }
+
+    @Override
+    public void generateAsync(FileECM file) {
+        if (!supports(file)) {
+            return;
+        }
+        Flux.fromIterable(sizes)
+                .concatMap(size -> renditionPath(file, size)
+                        .flatMap(target -> generateOnce(file, size, target, false)))
+                .subscribe(null, e -> log.error("Không thể tạo rendition: fileId={}: {}", file.getId(),
+                        e.getMessage()));
+    }
+
+    @Override
+    public Mono<FileContent> getRendition(FileECM file, Integer size) {
+        int requestedSize = size != null ? size : sizes.iterator().next();
+        if (!sizes.contains(requestedSize)) {
+            return Mono.error(new IllegalArgumentException("Kích thước rendition không hợp lệ: " + size
+                    + ", cho phép: " + sizes));
+        }
+        if (!supports(file)) {
+            return Mono.error(new IOException("File không có rendition: fileId=" + file.getId()));
+        }
+        return renditionPath(file, requestedSize)
+                .flatMap(target -> readable(target)
+                        .switchIfEmpty(legacyRenditionPath(file, requestedSize).flatMap(RenditionServiceImpl::readable))
+                        .switchIfEmpty(Mono.defer(() -> generateOnce(file, requestedSize, target, true))))
+                .flatMap(path -> Mono.fromCallable(() -> new FileContent(blobStores.get(LocalBlobStore.NAME),
+                        path.toString(), Files.size(path), false))
+                        .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    @Override
+    public Mono<Void> deleteRenditions(FileECM file) {
+        if (!isImage(file) && !isVideo(file)) {
+            return Mono.empty();
+        }
+        return Flux.fromIterable(sizes)
+                .concatMap(size -> Flux.concat(renditionPath(file, size), legacyRenditionPath(file, size))
+                        .distinct()
+                        .concatMap(path -> Mono.fromCallable(() -> Files.deleteIfExists(path))
+                                .subscribeOn(Schedulers.boundedElastic())))
+                .onErrorResume(e -> {
+                    log.error("Lỗi khi xóa rendition: fileId={}: {}", file.getId(), e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Request đến khi rendition đang được tạo chờ kết quả của lần tạo đó thay vì
+     * chạy thêm ffmpeg. Lần tạo do request gây ra ({@code onRequest}) phải xin
+     * chỗ trong nhóm {@code transcodes} của {@link AdmissionControl} và bị từ
+     * chối khi quá tải; lần tạo sau upload chỉ xếp hàng trên scheduler.
+     */
+    private Mono<Path> generateOnce(FileECM file, int size, Path target, boolean onRequest) {
+        String key = file.getId() + "_" + size;
+        return inFlight.computeIfAbsent(key, k -> {
+            Mono<Path> generation = metrics.timed(PipelineStage.RENDITION,
+                    Mono.fromCallable(() -> generate(file, size, target)).subscribeOn(scheduler));
+            return (onRequest ? admissionControl.transcodes().admit(1, permit -> generation) : generation)
+                    .doFinally(signal -> inFlight.remove(k))
+                    .cache();
+        });
+    }
+
+    private Path generate(FileECM file, int size, Path target) throws Exception {
+        // Node khác có thể đã tạo xong trong lúc chờ thread
+        if (Files.isReadable(target)) {
+            return target;
+        }
+        Path source = sourcePath(file);
+        Path partial = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + PARTIAL_SUFFIX);
+        long startTime = System.nanoTime();
+        try {
+            ffmpegRunner.run(arguments(source, partial, size, isVideo(file), quality), timeout);
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+        log.info("Đã tạo rendition: fileId={}, size={}, path={} ({} ms)", file.getId(), size, target,
+                Duration.ofNanos(System.nanoTime() - startTime).toMillis());
+        return target;
+    }
+
+    /*
+     * thumbnail: chọn khung hình tiêu biểu trong các khung đầu video (bỏ qua khung đen đầu video).
+     * scale=min(iw,S):min(ih,S) + force_original_aspect_ratio=decrease: vừa khung SxS, giữ tỷ lệ, không phóng to.
+     * -f image2 -c:v mjpeg: ghi JPEG dù tên tạm không có đuôi .jpg; -update 1: một file duy nhất.
+     */
+    static List<String> arguments(Path source, Path output, int size, boolean video, int quality) {
+        String scale = "scale='min(iw," + size + ")':'min(ih," + size + ")':force_original_aspect_ratio=decrease";
+        return List.of(
+                "-y", "-i", source.toString(), "-an",
+                "-vf", video ? "thumbnail," + scale : scale,
+                "-frames:v", "1", "-q:v", String.valueOf(quality),
+                "-f", "image2", "-c:v", "mjpeg", "-update", "1",
+                output.toString());
+    }
+
+    private Mono<Path> renditionPath(FileECM file, int size) {
+        return storageLayout.newFilePath(file.getCategory(), RenditionService.fileName(file.getId(), size));
+    }
+
+    /** Vị trí theo layout phẳng, khi rendition được tạo trước lúc đổi sang layout sharded. */
+    private Mono<Path> legacyRenditionPath(FileECM file, int size) {
+        return storageLayout.isSharded()
+                ? storageLayout.flatFilePath(file.getCategory(), RenditionService.fileName(file.getId(), size))
+                : Mono.empty();
+    }
+
+    private static Mono<Path> readable(Path path) {
+        return Mono.fromCallable(() -> Files.isReadable(path) ? path : null)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /** Đường dẫn file gốc trên đĩa, hoặc null nếu file nằm trên backend không phải đĩa (S3). */
+    private Path sourcePath(FileECM file) {
+        try {
+            return blobStores.get(file.getStorageBackend()).localPath(file.getFilePath());
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private boolean isImage(FileECM file) {
+        return file.getContentType() != null && imageTypes.contains(file.getContentType());
+    }
+
+    private static boolean isVideo(FileECM file) {
+        return file.getContentType() != null && file.getContentType().startsWith("video/");
+    }
+}
@@ -1,44 +1,59 @@
 package com.vinorsoft.ecm.application.impl;
 
 import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
-import java.nio.ByteBuffer;
-import java.nio.channels.AsynchronousFileChannel;
 import java.nio.file.Files;
-import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Executors;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.MediaType;
 import org.springframework.http.codec.multipart.FilePart;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import com.vinorsoft.ecm.application.FileContent;
+import com.vinorsoft.ecm.application.FileLookup;
+import com.vinorsoft.ecm.application.FileUploadResult;
+import com.vinorsoft.ecm.application.RenditionService;
 import com.vinorsoft.ecm.application.UploadService;
+import com.vinorsoft.ecm.domain.FileBlob;
+import com.vinorsoft.ecm.domain.FileBlobRepository;
+import com.vinorsoft.ecm.domain.FileDocument;
+import com.vinorsoft.ecm.domain.FileDocumentRepository;
 import com.vinorsoft.ecm.domain.FileECM;
 import com.vinorsoft.ecm.domain.FileECMRepository;
-import com.vinorsoft.ecm.interfaces.dto.FileDataDTO;
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionControl;
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionRejectedException;
+import com.vinorsoft.ecm.infrastructure.background.CompressJobQueue;
+import com.vinorsoft.ecm.infrastructure.archive.ZipCompressionMode;
+import com.vinorsoft.ecm.infrastructure.archive.ZipEntrySource;
+import com.vinorsoft.ecm.infrastructure.archive.ZipStreamWriter;
+import com.vinorsoft.ecm.infrastructure.cache.FileECMCache;
+import com.vinorsoft.ecm.infrastructure.metrics.EcmMetrics;
+import com.vinorsoft.ecm.infrastructure.metrics.PipelineStage;
+import com.vinorsoft.ecm.infrastructure.storage.BlobStore;
+import com.vinorsoft.ecm.infrastructure.storage.BlobStores;
+import com.vinorsoft.ecm.infrastructure.storage.ContentAddressedStore;
+import com.vinorsoft.ecm.infrastructure.storage.FileIngestor;
+import com.vinorsoft.ecm.infrastructure.storage.StorageTiering;
 
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
@@ -64,25 +79,71 @@ public class UploadServiceImpl implements UploadService {
     @Value("${spring.servlet.multipart.max-file-size}")
     private String maxFileSize;
 
-    @Value("${spring.servlet.compress.enabled}")
-    private Boolean enableCompression;
-
     @Value("${upload.path}")
     private String BASE_UPLOAD_DIR;
 
-    @Qualifier("fileCompressQueue")
-    BlockingQueue<FileECM> fileCompressQueue;
+    @Value("${upload.archive.stored-extensions}")
+    private String storedExtensionsConfig;
 
-    private final FileECMRepository fileECMRepository;
+    @Value("${upload.lookup.batch-size:500}")
+    private int lookupBatchSize;
+
+    @Value("${upload.dedup.enabled:false}")
+    private boolean dedupEnabled;
+
+    @Value("${upload.batch.concurrency:4}")
+    private int batchConcurrency;
+
+    @Value("${upload.batch.insert-size:100}")
+    private int batchInsertSize;
 
-    public UploadServiceImpl(FileECMRepository fileECMRepository) {
+    private Set<String> STORED_EXTENSIONS;
+
+    private long maxFileSizeBytes;
+
+    private final FileECMRepository fileECMRepository;
+    private final FileBlobRepository fileBlobRepository;
+    private final FileDocumentRepository fileDocumentRepository;
+    private final FileIngestor fileIngestor;
+    private final ContentAddressedStore contentAddressedStore;
+    private final BlobStores blobStores;
+    private final StorageTiering storageTiering;
+    private final RenditionService renditionService;
+    private final ZipStreamWriter zipStreamWriter;
+    private final FileECMCache fileECMCache;
+    private final CompressJobQueue compressJobQueue;
+    private final TransactionalOperator transactionalOperator;
+    private final AdmissionControl admissionControl;
+    private final EcmMetrics metrics;
+
+    public UploadServiceImpl(FileECMRepository fileECMRepository, FileBlobRepository fileBlobRepository,
+            FileDocumentRepository fileDocumentRepository, FileIngestor fileIngestor,
+            ContentAddressedStore contentAddressedStore, BlobStores blobStores, StorageTiering storageTiering,
+            RenditionService renditionService, ZipStreamWriter zipStreamWriter, FileECMCache fileECMCache,
+            CompressJobQueue compressJobQueue, TransactionalOperator transactionalOperator,
+            AdmissionControl admissionControl, EcmMetrics metrics) {
         this.fileECMRepository = fileECMRepository;
+        this.fileBlobRepository = fileBlobRepository;
+        this.fileDocumentRepository = fileDocumentRepository;
+        this.contentAddressedStore = contentAddressedStore;
+        this.blobStores = blobStores;
+        this.storageTiering = storageTiering;
+        this.renditionService = renditionService;
+        this.fileECMCache = fileECMCache;
+        this.compressJobQueue = compressJobQueue;
+        this.transactionalOperator = transactionalOperator;
+        this.admissionControl = admissionControl;
+        this.fileIngestor = fileIngestor;
+        this.zipStreamWriter = zipStreamWriter;
+        this.metrics = metrics;
     }
 
     @PostConstruct
     public void init() {
         ALLOWED_EXTENSIONS = new HashSet<>(Arrays.asList(allowedExtensionsConfig.split(",")));
         ALLOWED_MEDIA_TYPES = new HashSet<>(Arrays.asList(allowedMediaTypesConfig.split(",")));
+        STORED_EXTENSIONS = new HashSet<>(Arrays.asList(storedExtensionsConfig.split(",")));
+        maxFileSizeBytes = parseMaxFileSize(maxFileSize);
 
         // Kiểm tra và tạo thư mục BASE_UPLOAD_DIR nếu chưa tồn tại
         try {
@@ -100,173 +161,443 @@ public class UploadServiceImpl implements UploadService {
     }
 
     public Mono<FileECM> saveFile(FilePart file, UUID fileId, String category) {
+        return writeFile(file, category)
+                .flatMap(written -> saveWritten(written, fileId)
+                        // Không để lại file mồ côi khi lưu DB thất bại
+                        .onErrorResume(e -> discard(written).then(Mono.error(e))))
+                .doOnSuccess(path -> log.info("File saved at: {}", path))
+                .doOnSuccess(renditionService::generateAsync)
+                .doOnError(e -> log.error("Lỗi khi lưu file: {}", e.getMessage(), e))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Flux<FileUploadResult> saveFiles(Flux<FilePart> files, String category) {
+        // Ghi xong file nào thì file đó có thể vào lô; lô được lưu tuần tự nên mỗi
+        // request chỉ giữ một kết nối DB, trong lúc các file sau vẫn được ghi tiếp
+        return files
+                .flatMapSequential(file -> writeBatchFile(file, category), batchConcurrency)
+                .buffer(batchInsertSize)
+                .concatMap(this::saveBatch);
+    }
+
+    /** Kiểm tra rồi ghi nội dung file vào kho; chưa có bản ghi. */
+    private Mono<WrittenFile> writeFile(FilePart file, String category) {
         String originalFileName = file.filename();
 
-        return validateFile(originalFileName, category, file)
-                .flatMap(valid -> {
-                    if (!valid) {
-                        return Mono.error(new IOException("File hoặc thư mục không hợp lệ."));
-                    }
+        return getContentType(file)
+                .flatMap(contentType -> validateUpload(originalFileName, category, contentType)
+                        .flatMap(valid -> {
+                            if (!valid) {
+                                return Mono.error(new IOException("File hoặc thư mục không hợp lệ."));
+                            }
 
-                    Mono<Integer> versionMono = (fileId == null)
-                            ? Mono.just(1)
-                            : fileECMRepository.findById(fileId)
-                                    .map(files -> files.getVersion() + 1)
-                                    .defaultIfEmpty(1);
-
-                    return versionMono.flatMap(nextVersion -> {
-                        String newFileName = UUID.randomUUID() + "_v" + nextVersion + "_" + originalFileName;
-                        return getSafeCategoryDir(category)
-                                .flatMap(categoryDir -> {
-                                    Path targetPath = categoryDir.resolve(newFileName);
-                                    return saveLargeFile(file, targetPath)
-                                            .then(getFileSize(file))
-                                            .flatMap(size -> getContentType(file)
-                                                    .flatMap(contentType -> {
-                                                        FileECM fileEntity = new FileECM(originalFileName,
-                                                                targetPath.toString(),
-                                                                contentType, size, category, nextVersion,
-                                                                LocalDateTime.now(),
-                                                                LocalDateTime.now());
-
-                                                        return fileECMRepository.save(fileEntity)
-                                                                .doOnSuccess(
-                                                                        f -> {
-                                                                            log.info(
-                                                                                    "File đã lưu vào DB: fileId={}, version={}",
-                                                                                    f.getId(), nextVersion);
-                                                                            if (enableCompression)
-                                                                                try {
-                                                                                    fileCompressQueue.put(f);
-                                                                                } catch (Exception e) {
-                                                                                    log.error(
-                                                                                            "Lỗi thêm file vào compress queue {}",
-                                                                                            f);
-                                                                                }
-                                                                        })
-                                                                .doOnError(e -> log.error("Lỗi khi lưu file vào DB: {}",
-                                                                        e.getMessage(), e));
-                                                    }));
-                                });
-                    })
-                            .doOnSuccess(path -> log.info("File saved at: {}", path))
-                            .doOnError(e -> log.error("Lỗi khi lưu file: {}", e.getMessage(), e));
-                }).subscribeOn(Schedulers.boundedElastic());
-    }
-
-    private Mono<Path> getSafeCategoryDir(String category) {
-        try {
-            if (category == null || category.isBlank() || category.contains("..") || category.contains("/")) {
-                log.warn("Thư mục không hợp lệ: {}", category);
-                return Mono.error(new IllegalArgumentException("Tên thư mục không hợp lệ"));
-            }
+                            if (dedupEnabled) {
+                                Path stagingPath = contentAddressedStore.newStagingPath();
+                                // Hash được tính trong cùng lần ghi
+                                return metrics.timed(PipelineStage.DISK_WRITE, fileIngestor.ingestHashed(
+                                        metrics.countBytesIn(file.content()), stagingPath, maxFileSizeBytes))
+                                        .doOnNext(ingested -> metrics.recordUploadSize(ingested.getSize()))
+                                        .map(ingested -> new WrittenFile(originalFileName, contentType, category,
+                                                ingested.getSize(), stagingPath, ingested.getSha256(), null, null));
+                            }
+                            BlobStore store = blobStores.primary();
+                            // Số phiên bản chỉ được cấp khi lưu bản ghi nên không có trong tên file
+                            String newFileName = UUID.randomUUID() + "_" + originalFileName;
+                            return store.newKey(category, newFileName)
+                                    // Ghi một lần duy nhất, kích thước lấy từ số byte đã ghi
+                                    .flatMap(key -> metrics.timed(PipelineStage.DISK_WRITE, store.put(key,
+                                            metrics.countBytesIn(file.content()), maxFileSizeBytes))
+                                            .doOnNext(metrics::recordUploadSize)
+                                            .map(size -> new WrittenFile(originalFileName, contentType, category,
+                                                    size, null, null, store, key)));
+                        }));
+    }
 
-            Path baseDir = Paths.get(BASE_UPLOAD_DIR).toRealPath(); // Chuẩn hóa thư mục gốc
-            Path categoryDir = baseDir.resolve(category).normalize(); // Chuẩn hóa đường dẫn
+    private Mono<FileECM> saveWritten(WrittenFile written, UUID fileId) {
+        return written.isBlob()
+                ? saveBlob(written.stagingPath(), written.size(), written.sha256(), written.fileName(),
+                        written.contentType(), written.category(), fileId)
+                : saveOwnFile(written.store(), written.key(), written.size(), written.fileName(),
+                        written.contentType(), written.category(), fileId);
+    }
 
-            // Kiểm tra xem đường dẫn có nằm trong BASE_UPLOAD_DIR không
-            if (!categoryDir.startsWith(baseDir)) {
-                log.warn("Đường dẫn truy cập bị chặn: {}", categoryDir);
-                return Mono.error(new SecurityException("Hành vi path traversal bị phát hiện!"));
-            }
+    /** Xóa nội dung đã ghi của file không lưu được bản ghi. */
+    private Mono<Void> discard(WrittenFile written) {
+        return written.isBlob()
+                ? fileIngestor.deletePartial(written.stagingPath())
+                : discard(written.store(), written.key());
+    }
 
-            // Tạo thư mục nếu chưa tồn tại
-            if (!Files.exists(categoryDir)) {
-                Files.createDirectories(categoryDir);
-            }
+    /**
+     * Lỗi của từng file được giữ lại trong kết quả thay vì làm hỏng cả lô. File
+     * chỉ được ghi khi có chỗ trong nhóm {@code batch-writes} của
+     * {@link AdmissionControl} (dùng chung cho mọi request); hàng đợi đầy hoặc
+     * chờ quá lâu thì file bị từ chối. Chỗ được trả lại khi ghi xong, lỗi hoặc
+     * request bị hủy.
+     */
+    private Mono<BatchFile> writeBatchFile(FilePart file, String category) {
+        return admissionControl.batchWrites().admit(1, permit -> writeFile(file, category))
+                .map(written -> new BatchFile(file.filename(), written, null, false))
+                .onErrorResume(e -> {
+                    log.warn("Không ghi được file trong lô: fileName={}: {}", file.filename(), e.getMessage());
+                    return Mono.just(new BatchFile(file.filename(), null, e.getMessage(),
+                            e instanceof AdmissionRejectedException));
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
 
-            return Mono.just(categoryDir);
-        } catch (IOException | InvalidPathException e) {
-            log.error("Lỗi khi kiểm tra thư mục: {}", e.getMessage(), e);
-            return Mono.error(new IOException("Lỗi xử lý thư mục lưu trữ"));
-        }
+    /** Lưu bản ghi cho các file đã ghi được của một lô trong một transaction. */
+    private Flux<FileUploadResult> saveBatch(List<BatchFile> batch) {
+        List<WrittenFile> written = batch.stream().map(BatchFile::written).filter(Objects::nonNull).toList();
+        Mono<Map<WrittenFile, FileECM>> saved = written.isEmpty()
+                ? Mono.just(Map.of())
+                : insertBatch(written)
+                        .doOnNext(files -> files.values().forEach(renditionService::generateAsync))
+                        .doOnSuccess(files -> log.info("Đã lưu lô {} file vào DB", files.size()))
+                        .onErrorResume(e -> {
+                            log.error("Lỗi khi lưu lô {} file vào DB: {}", written.size(), e.getMessage(), e);
+                            return Flux.fromIterable(written)
+                                    .concatMap(this::discard)
+                                    .then(Mono.error(e));
+                        });
+        return saved
+                .map(files -> batch.stream()
+                        .map(file -> file.written() != null
+                                ? FileUploadResult.saved(file.fileName(), files.get(file.written()))
+                                : file.rejected()
+                                        ? FileUploadResult.rejected(file.fileName(), file.error())
+                                        : FileUploadResult.failed(file.fileName(), file.error()))
+                        .toList())
+                .onErrorResume(e -> Mono.just(batch.stream()
+                        .map(file -> file.rejected()
+                                ? FileUploadResult.rejected(file.fileName(), file.error())
+                                : FileUploadResult.failed(file.fileName(),
+                                        file.error() != null ? file.error() : "Không lưu được bản ghi."))
+                        .toList()))
+                .flatMapIterable(results -> results);
     }
 
-    private Mono<Void> saveLargeFile(FilePart filePart, Path targetPath) {
-        return Mono.fromCallable(() -> AsynchronousFileChannel.open(targetPath,
-                StandardOpenOption.CREATE, StandardOpenOption.WRITE))
-                .flatMapMany(channel -> filePart.content()
-                        .concatMap(dataBuffer -> {
-                            ByteBuffer byteBuffer = dataBuffer.toByteBuffer(0, dataBuffer.readableByteCount());
-                            return Mono.fromCallable(() -> {
-                                channel.write(byteBuffer, channel.size()).get();
-                                return dataBuffer.readableByteCount();
-                            });
-                        }))
+    /**
+     * Mỗi file là phiên bản 1 của một tài liệu mới nên không phải khóa dòng tài
+     * liệu nào: id được cấp sẵn và tài liệu, bản ghi, job nén được thêm bằng một
+     * câu lệnh nhiều dòng cho mỗi loại. Riêng blob vẫn được tăng tham chiếu theo
+     * từng hash (khóa dòng như {@link #saveBlob}), theo thứ tự hash để hai lô có
+     * chung nội dung không khóa chéo nhau. Lỗi thì blob mới của lô bị xóa như
+     * trong {@link #saveBlob}.
+     */
+    private Mono<Map<WrittenFile, FileECM>> insertBatch(List<WrittenFile> written) {
+        LocalDateTime now = LocalDateTime.now();
+        BlobStore store = blobStores.primary();
+        Map<WrittenFile, FileECM> entities = new HashMap<>();
+        List<FileBlob> created = new ArrayList<>();
+        Mono<Void> blobs = Flux.fromIterable(written)
+                .filter(WrittenFile::isBlob)
+                .sort(Comparator.comparing(WrittenFile::sha256))
+                .concatMap(file -> fileBlobRepository.acquire(file.sha256(), store.name(),
+                        store.blobKey(file.sha256()), file.size())
+                        .flatMap(blob -> contentAddressedStore.publish(file.stagingPath(),
+                                blobStores.get(blob.getStorageBackend()), blob.getFilePath())
+                                .doOnNext(stored -> {
+                                    if (createdBlob(blob, stored)) {
+                                        created.add(blob);
+                                    }
+                                    FileECM entity = newVersionOne(file, blob.getFilePath(),
+                                            blob.getStorageBackend(), now);
+                                    entity.setBlobHash(file.sha256());
+                                    entities.put(file, entity);
+                                })))
                 .then();
+        return blobs
+                .then(Mono.defer(() -> {
+                    written.stream()
+                            .filter(file -> !file.isBlob())
+                            .forEach(file -> entities.put(file, newVersionOne(file, file.key(), file.store().name(),
+                                    now)));
+                    List<FileECM> files = new ArrayList<>(entities.values());
+                    UUID[] documentIds = files.stream().map(FileECM::getDocumentId).toArray(UUID[]::new);
+                    return fileDocumentRepository.createAll(documentIds)
+                            .thenMany(fileECMRepository.insertAll(files, batchInsertSize))
+                            .collectMap(FileECM::getId)
+                            .flatMap(inserted -> compressJobQueue.enqueueAll(files).thenReturn(inserted));
+                }))
+                .map(inserted -> {
+                    Map<WrittenFile, FileECM> saved = new HashMap<>();
+                    entities.forEach((file, entity) -> saved.put(file, inserted.get(entity.getId())));
+                    return saved;
+                })
+                .onErrorResume(e -> Flux.fromIterable(created)
+                        .concatMap(this::discardBlob)
+                        .then(Mono.error(e)))
+                .as(transactionalOperator::transactional)
+                .as(save -> metrics.timed(PipelineStage.DB_SAVE, save));
     }
 
-    public Mono<byte[]> getFileContent(UUID fileId) {
-        return fileECMRepository.findById(fileId)
-                .flatMap(files -> {
-                    if (files == null) {
-                        log.warn("File không tồn tại: fileId={}", fileId);
-                        return Mono.error(new IOException("File không tồn tại."));
-                    }
+    private static FileECM newVersionOne(WrittenFile file, String filePath, String storageBackend,
+            LocalDateTime now) {
+        FileECM entity = new FileECM(file.fileName(), filePath, file.contentType(), file.size(), file.category(), 1,
+                now, now);
+        entity.setId(UUID.randomUUID());
+        entity.setDocumentId(UUID.randomUUID());
+        entity.setStorageBackend(storageBackend);
+        return entity;
+    }
 
-                    try {
-                        Path filePath = Paths.get(files.getFilePath());
-                        byte[] fileContent = Files.readAllBytes(filePath);
-                        log.info("File content retrieved: fileId={}, version={}, path={}", fileId, files.getVersion(),
-                                files.getFilePath());
-                        return Mono.just(fileContent);
-                    } catch (IOException e) {
-                        log.error("Lỗi khi đọc fileId {}: {}", fileId, e.getMessage(), e);
-                        return Mono.error(e);
-                    }
-                }).subscribeOn(Schedulers.boundedElastic());
+    public Mono<FileECM> saveStagedFile(Path stagingPath, long size, String fileName, String contentType,
+            String category, UUID fileId) {
+        Mono<FileECM> saved;
+        if (dedupEnabled) {
+            // Các chunk được ghi không theo thứ tự nên phải đọc lại file một lần để tính hash
+            saved = fileIngestor.sha256(stagingPath)
+                    .flatMap(hash -> saveBlob(stagingPath, size, hash, fileName, contentType, category, fileId));
+        } else {
+            BlobStore store = blobStores.primary();
+            String newFileName = UUID.randomUUID() + "_" + fileName;
+            saved = store.newKey(category, newFileName)
+                    .flatMap(key -> store.putFile(stagingPath, key)
+                            .then(saveOwnFile(store, key, size, fileName, contentType, category, fileId))
+                            // File staging còn nguyên nên có thể commit lại
+                            .onErrorResume(e -> discard(store, key).then(Mono.error(e)))
+                            .flatMap(file -> Mono.fromCallable(() -> Files.deleteIfExists(stagingPath))
+                                    .subscribeOn(Schedulers.boundedElastic())
+                                    .thenReturn(file)));
+        }
+        return saved
+                .doOnSuccess(file -> {
+                    metrics.recordUploadSize(size);
+                    log.info("File saved at: {}", file.getFilePath());
+                    renditionService.generateAsync(file);
+                })
+                .doOnError(e -> log.error("Lỗi khi lưu file: {}", e.getMessage(), e));
     }
 
-    public Mono<InputStreamResource> getMultipleFileContent(List<UUID> fileIds) {
-        return Flux.fromIterable(fileIds)
-                .flatMap(fileId -> getFileInfo(fileId)
-                        .onErrorResume(e -> {
-                            log.warn("Lỗi khi lấy file: fileId={}, error={}", fileId, e.getMessage());
-                            return Mono.empty();
-                        })
-                        .flatMap(fileECM -> {
-                            Path filePath = Paths.get(fileECM.getFilePath());
-                            return Mono.just(new FileDataDTO(fileECM.getFileName(), filePath));
+    /**
+     * Tạo bản ghi phiên bản mới: phiên bản tiếp theo của tài liệu chứa
+     * {@code fileId}, hoặc phiên bản 1 của tài liệu mới nếu {@code fileId} là
+     * null hoặc không tồn tại. Phải chạy trong transaction: số phiên bản được
+     * cấp bằng cách khóa dòng tài liệu đến khi commit.
+     */
+    private Mono<FileECM> saveVersion(FileECM fileEntity, UUID fileId) {
+        Mono<FileDocument> document = fileId == null
+                ? fileDocumentRepository.create()
+                : fileDocumentRepository.nextVersion(fileId)
+                        .switchIfEmpty(Mono.defer(() -> {
+                            log.warn("Không tìm thấy file để tạo phiên bản mới, tạo tài liệu mới: fileId={}", fileId);
+                            return fileDocumentRepository.create();
+                        }));
+        return document.flatMap(allocated -> {
+            fileEntity.setDocumentId(allocated.getId());
+            fileEntity.setVersion(allocated.getLatestVersion());
+            return fileECMRepository.save(fileEntity);
+        });
+    }
+
+    /** Lưu bản ghi cho file đã nằm ở {@code key} của {@code store} (cách lưu cũ, mỗi file một bản). */
+    private Mono<FileECM> saveOwnFile(BlobStore store, String key, long size, String fileName, String contentType,
+            String category, UUID fileId) {
+        FileECM fileEntity = new FileECM(fileName, key, contentType, size, category, null,
+                LocalDateTime.now(), LocalDateTime.now());
+        fileEntity.setStorageBackend(store.name());
+
+        // Lưu file và job nén trong cùng transaction để không mất job
+        return saveVersion(fileEntity, fileId)
+                .flatMap(f -> compressJobQueue.enqueue(f).thenReturn(f))
+                .as(transactionalOperator::transactional)
+                .as(save -> metrics.timed(PipelineStage.DB_SAVE, save))
+                .doOnSuccess(f -> log.info("File đã lưu vào DB: fileId={}, documentId={}, version={}", f.getId(),
+                        f.getDocumentId(), f.getVersion()))
+                .doOnError(e -> log.error("Lỗi khi lưu file vào DB: {}", e.getMessage(), e));
+    }
+
+    /** Xóa nội dung vừa ghi khi không lưu được bản ghi; lỗi chỉ được ghi log. */
+    private Mono<Void> discard(BlobStore store, String key) {
+        return store.delete(key)
+                .doOnNext(deleted -> log.warn("Đã xóa file không lưu được bản ghi: backend={}, key={}", store.name(),
+                        key))
+                .onErrorResume(e -> {
+                    log.error("Không thể xóa file {} trên backend {}: {}", key, store.name(), e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Lưu nội dung theo SHA-256: upload trùng nội dung chỉ tăng số tham chiếu
+     * của blob có sẵn, file staging bị bỏ đi thay vì ghi thêm một bản. Nếu lỗi
+     * trước khi file staging được dùng thì file staging vẫn còn nguyên.
+     * <p>
+     * Nội dung đã có giữ nguyên backend cũ; chỉ nội dung mới được ghi vào
+     * backend hiện tại. Nội dung mới được đưa vào store trước khi commit, nên
+     * nếu lỗi thì blob vừa tạo bị xóa ngay trong transaction, khi còn giữ khóa
+     * dòng: rollback bỏ dòng FILE_BLOB của nó, và upload cùng nội dung đang chờ
+     * khóa sẽ không thấy blob sắp bị xóa.
+     */
+    private Mono<FileECM> saveBlob(Path stagingPath, long size, String hash, String fileName, String contentType,
+            String category, UUID fileId) {
+        // Dòng blob bị khóa từ lúc tăng tham chiếu đến khi commit, nên lệnh xóa
+        // cùng nội dung không thể xen vào giữa
+        BlobStore store = blobStores.primary();
+        return fileBlobRepository.acquire(hash, store.name(), store.blobKey(hash), size)
+                .flatMap(blob -> contentAddressedStore.publish(stagingPath, blobStores.get(blob.getStorageBackend()),
+                        blob.getFilePath())
+                        .flatMap(stored -> {
+                            log.info("Blob {}: hash={}, backend={}, refCount={}",
+                                    stored ? "mới" : "đã có, dùng lại", hash, blob.getStorageBackend(),
+                                    blob.getRefCount());
+                            FileECM fileEntity = new FileECM(fileName, blob.getFilePath(), contentType, size,
+                                    category, null, LocalDateTime.now(), LocalDateTime.now());
+                            fileEntity.setBlobHash(hash);
+                            fileEntity.setStorageBackend(blob.getStorageBackend());
+                            return saveVersion(fileEntity, fileId)
+                                    .flatMap(f -> compressJobQueue.enqueue(f).thenReturn(f))
+                                    .onErrorResume(e -> createdBlob(blob, stored)
+                                            ? discardBlob(blob).then(Mono.error(e))
+                                            : Mono.error(e));
                         }))
+                .as(transactionalOperator::transactional)
+                .as(save -> metrics.timed(PipelineStage.DB_SAVE, save))
+                .doOnSuccess(f -> log.info("File đã lưu vào DB: fileId={}, documentId={}, version={}, blob={}",
+                        f.getId(), f.getDocumentId(), f.getVersion(), hash))
+                .doOnError(e -> log.error("Lỗi khi lưu file vào DB: {}", e.getMessage(), e));
+    }
+
+    /**
+     * Blob do lần lưu này tạo: nội dung vừa được ghi vào store và dòng FILE_BLOB
+     * vừa được thêm (một tham chiếu). Blob bị mất nội dung được ghi lại thì
+     * không tính, vì dòng của nó vẫn còn sau rollback.
+     */
+    private static boolean createdBlob(FileBlob blob, boolean stored) {
+        return stored && blob.getRefCount() == 1;
+    }
+
+    private Mono<Void> discardBlob(FileBlob blob) {
+        return discard(blobStores.get(blob.getStorageBackend()), blob.getFilePath());
+    }
+
+    public Mono<FileContent> resolveFileContent(FileECM fileECM, boolean original) {
+        return Mono.fromCallable(() -> {
+            // Ưu tiên bản nén nếu có; bản nén bị mất thì quay về bản gốc. Bản
+            // nén luôn nằm trên đĩa local, cạnh bản gốc
+            if (!original && fileECM.hasCompressedCopy()) {
+                Path compressedPath = Paths.get(fileECM.getCompressedPath());
+                if (Files.isReadable(compressedPath)) {
+                    log.info("File content resolved: fileId={}, version={}, path={} (compressed)", fileECM.getId(),
+                            fileECM.getVersion(), compressedPath);
+                    return new FileContent(blobStores.get(FileECM.STORAGE_LOCAL), fileECM.getCompressedPath(),
+                            fileECM.getCompressedSize(), true);
+                }
+                log.warn("Bản nén không tồn tại, dùng bản gốc: fileId={}, path={}", fileECM.getId(),
+                        compressedPath);
+            }
+
+            // Backend không nằm trên đĩa thì không kiểm tra trước: file bị mất
+            // sẽ báo lỗi ngay khi bắt đầu đọc, trước khi response được gửi
+            BlobStore store = blobStores.get(fileECM.getStorageBackend());
+            Path filePath = store.localPath(fileECM.getFilePath());
+            if (filePath != null && !Files.isReadable(filePath)) {
+                log.warn("File không tồn tại trên hệ thống: fileId={}, path={}", fileECM.getId(),
+                        fileECM.getFilePath());
+                throw new IOException("File không tồn tại.");
+            }
+            log.info("File content resolved: fileId={}, version={}, backend={}, path={}", fileECM.getId(),
+                    fileECM.getVersion(), store.name(), fileECM.getFilePath());
+            return new FileContent(store, fileECM.getFilePath(), fileECM.getFileSize(), false);
+        })
+                .doOnNext(content -> storageTiering.recordRead(fileECM, content.isCompressed()))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    public Mono<Flux<DataBuffer>> getMultipleFileContent(List<UUID> fileIds, Integer version, boolean latest,
+            ZipCompressionMode compressionMode) {
+        return lookupFiles(fileIds)
+                .filter(lookup -> {
+                    if (!lookup.isFound()) {
+                        log.warn("Bỏ qua file không tồn tại: fileId={}", lookup.getFileId());
+                    }
+                    return lookup.isFound();
+                })
+                .map(FileLookup::getFile)
                 .collectList()
-                .flatMap(fileDataList -> Mono.fromCallable(() -> {
-                    PipedOutputStream pos = new PipedOutputStream();
-                    PipedInputStream pis = new PipedInputStream(pos, 8192); // Dùng buffer để tránh deadlock
-
-                    // Chạy tiến trình zip trong background
-                    Executors.newSingleThreadExecutor().submit(() -> {
-                        try (ZipOutputStream zos = new ZipOutputStream(pos)) {
-                            for (FileDataDTO fileData : fileDataList) {
-                                ZipEntry zipEntry = new ZipEntry(fileData.getFileName());
-                                zos.putNextEntry(zipEntry);
-
-                                try (InputStream fis = Files.newInputStream(fileData.getFilePath())) {
-                                    byte[] buffer = new byte[8192];
-                                    int bytesRead;
-                                    while ((bytesRead = fis.read(buffer)) != -1) {
-                                        zos.write(buffer, 0, bytesRead);
-                                    }
-                                }
+                .flatMap(files -> selectVersions(files, version, latest))
+                .flatMap(files -> Mono.fromCallable(() -> toZipEntries(files, compressionMode))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .map(entries -> {
+                    metrics.recordZipEntries(entries.size());
+                    return metrics.timed(PipelineStage.ZIP_BUILD, zipStreamWriter.write(entries));
+                });
+    }
 
-                                zos.closeEntry();
-                            }
-                            zos.finish();
-                        } catch (IOException e) {
-                            log.error("Lỗi khi tạo file ZIP", e);
-                        } finally {
-                            try {
-                                pos.close();
-                            } catch (IOException ignored) {
-                            }
+    /**
+     * Thay mỗi file bằng phiên bản được chọn của tài liệu của nó, giữ thứ tự;
+     * các tài liệu được tra theo lô như {@link #lookupFiles(List)}. Nhiều
+     * phiên bản của cùng một tài liệu chỉ cho một file.
+     */
+    private Mono<List<FileECM>> selectVersions(List<FileECM> files, Integer version, boolean latest) {
+        if (version == null && !latest) {
+            return Mono.just(files);
+        }
+        List<UUID> documentIds = files.stream().map(FileECM::getDocumentId).distinct().toList();
+        return metrics.timed(PipelineStage.METADATA_LOOKUP, Flux.fromIterable(documentIds)
+                .buffer(lookupBatchSize)
+                .concatMap(batch -> version != null
+                        ? fileECMRepository.findVersionOfDocuments(batch, version)
+                        : fileECMRepository.findLatestVersionOfDocuments(batch))
+                .collectMap(FileECM::getDocumentId))
+                .map(selected -> {
+                    List<FileECM> versions = new ArrayList<>(files.size());
+                    Set<UUID> added = new HashSet<>();
+                    for (FileECM file : files) {
+                        FileECM selectedVersion = selected.get(file.getDocumentId());
+                        if (selectedVersion == null) {
+                            log.warn("Bỏ qua file không có phiên bản {}: fileId={}", version, file.getId());
+                        } else if (added.add(selectedVersion.getId())) {
+                            versions.add(selectedVersion);
                         }
-                    });
+                    }
+                    return versions;
+                });
+    }
 
-                    return new InputStreamResource(pis);
-                }).subscribeOn(Schedulers.boundedElastic()));
+    private List<ZipEntrySource> toZipEntries(List<FileECM> files, ZipCompressionMode compressionMode) {
+        List<ZipEntrySource> entries = new ArrayList<>(files.size());
+        Map<String, Integer> nameCounts = new HashMap<>();
+        for (FileECM fileECM : files) {
+            BlobStore store = blobStores.get(fileECM.getStorageBackend());
+            Path filePath = store.localPath(fileECM.getFilePath());
+            if (filePath != null && !Files.isReadable(filePath)) {
+                log.warn("Bỏ qua file không tồn tại trên hệ thống: fileId={}, path={}", fileECM.getId(), filePath);
+                continue;
+            }
+            boolean stored = switch (compressionMode) {
+                case STORED -> true;
+                case DEFLATED -> false;
+                case AUTO -> STORED_EXTENSIONS.contains(getFileExtension(fileECM.getFileName()).toLowerCase());
+            };
+            storageTiering.recordRead(fileECM, false);
+            String entryName = uniqueEntryName(fileECM.getFileName(), nameCounts);
+            entries.add(filePath != null
+                    ? new ZipEntrySource(entryName, filePath, fileECM.getFileSize(), fileECM.getUpdatedAt(), stored)
+                    : new ZipEntrySource(entryName, store.get(fileECM.getFilePath(), 0, fileECM.getFileSize()),
+                            fileECM.getFileSize(), fileECM.getUpdatedAt(), stored));
+        }
+        return entries;
+    }
+
+    // Hai file trùng tên trong cùng một ZIP sẽ bị ghi đè khi giải nén
+    private String uniqueEntryName(String fileName, Map<String, Integer> nameCounts) {
+        int count = nameCounts.merge(fileName, 1, Integer::sum);
+        if (count == 1) {
+            return fileName;
+        }
+        int lastDotIndex = fileName.lastIndexOf(".");
+        String uniqueName = (lastDotIndex == -1)
+                ? fileName + " (" + (count - 1) + ")"
+                : fileName.substring(0, lastDotIndex) + " (" + (count - 1) + ")" + fileName.substring(lastDotIndex);
+        return nameCounts.containsKey(uniqueName) ? uniqueEntryName(fileName, nameCounts) : uniqueName;
     }
 
     public Mono<FileECM> getFileInfo(UUID fileId) {
-        return fileECMRepository.findById(fileId)
+        return metrics.timed(PipelineStage.METADATA_LOOKUP, fileECMCache.get(fileId))
                 .flatMap(files -> {
                     if (files == null) {
                         log.warn("File không tồn tại: fileId={}", fileId);
@@ -279,25 +610,64 @@ public class UploadServiceImpl implements UploadService {
                 });
     }
 
+    public Mono<FileECM> getFileVersion(UUID fileId, Integer version, boolean latest) {
+        if (version == null && !latest) {
+            return getFileInfo(fileId);
+        }
+        return getFileInfo(fileId)
+                .flatMap(file -> {
+                    // Phiên bản được yêu cầu chính là bản ghi đã có trong cache
+                    if (version != null && version.equals(file.getVersion())) {
+                        return Mono.just(file);
+                    }
+                    return metrics.timed(PipelineStage.METADATA_LOOKUP, version != null
+                            ? fileECMRepository.findVersion(file.getDocumentId(), version)
+                            : fileECMRepository.findLatestVersion(file.getDocumentId()));
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    log.warn("Phiên bản không tồn tại: fileId={}, version={}", fileId, version);
+                    return Mono.error(new IOException("Phiên bản không tồn tại."));
+                }))
+                .doOnNext(file -> log.info("Phiên bản được chọn: fileId={}, version={} -> id={}, version={}", fileId,
+                        version != null ? version : "latest", file.getId(), file.getVersion()));
+    }
+
+    public Flux<FileECM> getFileVersions(UUID fileId) {
+        return getFileInfo(fileId)
+                .flatMapMany(file -> metrics.timed(PipelineStage.METADATA_LOOKUP,
+                        fileECMRepository.findAllVersions(file.getDocumentId())));
+    }
+
     public Flux<FileECM> getFileInfos(List<UUID> fileIds) {
-        return Flux.fromIterable(fileIds)
-                .flatMap(fileId -> fileECMRepository.findById(fileId)
-                        .switchIfEmpty(Mono.error(new IOException("File không tồn tại: " + fileId))));
+        return lookupFiles(fileIds)
+                .collectList()
+                .flatMapMany(lookups -> {
+                    List<UUID> missingIds = lookups.stream()
+                            .filter(lookup -> !lookup.isFound())
+                            .map(FileLookup::getFileId)
+                            .toList();
+                    if (!missingIds.isEmpty()) {
+                        return Flux.error(new IOException("File không tồn tại: " + missingIds));
+                    }
+                    return Flux.fromIterable(lookups).map(FileLookup::getFile);
+                });
+    }
+
+    public Flux<FileLookup> lookupFiles(List<UUID> fileIds) {
+        List<UUID> distinctIds = new ArrayList<>(new LinkedHashSet<>(fileIds));
+        return metrics.timed(PipelineStage.METADATA_LOOKUP, fileECMCache.getAll(distinctIds, lookupBatchSize))
+                .flatMapMany(found -> Flux.fromIterable(fileIds)
+                        .map(fileId -> new FileLookup(fileId, found.get(fileId))));
     }
 
     public Mono<Boolean> deleteFile(UUID fileId) {
-        return fileECMRepository.findById(fileId)
+        return fileECMCache.get(fileId)
                 .switchIfEmpty(Mono.defer(() -> {
                     log.warn("Không tìm thấy file để xóa: fileId={}", fileId);
                     return Mono.error(new IOException("Không tìm thấy file để xóa: fileId=" + fileId));
                 }))
-                .flatMap(file -> Mono.fromCallable(() -> Files.deleteIfExists(Paths.get(file.getFilePath())))
-                        .subscribeOn(Schedulers.boundedElastic()) // Chạy xóa file trên threadpool khác
-                        .doOnSuccess(deleted -> log.info("File system deleted: fileId={}, path={}, deleted={}",
-                                file.getId(), file.getFilePath(), deleted))
-                        .doOnError(e -> log.error("Lỗi khi xóa file trên hệ thống: fileId={}, error={}",
-                                fileId, e.getMessage(), e))
-                        .then(fileECMRepository.delete(file)) // Xóa trong database
+                .flatMap(file -> (file.getBlobHash() != null ? deleteBlobFile(file) : deleteOwnFile(file))
+                        .doOnSuccess(unused -> fileECMCache.invalidate(fileId))
                         .doOnSuccess(unused -> log.info("DB deleted: fileId={}", fileId))
                         .thenReturn(true) // Trả về true khi xóa thành công
                 )
@@ -307,44 +677,88 @@ public class UploadServiceImpl implements UploadService {
                 });
     }
 
-    private Mono<Boolean> validateFile(String originalFileName, String category, FilePart file) {
+    /**
+     * Xóa bản ghi trước, rồi xóa file theo vị trí trong bản ghi vừa xóa: file
+     * có thể vừa được chuyển tầng lưu trữ nên vị trí trong cache không còn đúng.
+     */
+    private Mono<Void> deleteOwnFile(FileECM cached) {
+        return fileECMRepository.deleteReturning(cached.getId()) // Xóa trong database
+                .flatMap(file -> deleteCompressed(file)
+                        .then(renditionService.deleteRenditions(file))
+                        .then(Mono.defer(() -> blobStores.get(file.getStorageBackend()).delete(file.getFilePath())))
+                        .doOnSuccess(deleted -> log.info("File system deleted: fileId={}, path={}, deleted={}",
+                                file.getId(), file.getFilePath(), deleted))
+                        // Bản ghi đã xóa nên không báo lỗi cho client, file sót lại chỉ được ghi log
+                        .onErrorResume(e -> {
+                            log.error("Lỗi khi xóa file trên hệ thống: fileId={}, error={}", file.getId(),
+                                    e.getMessage(), e);
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    /**
+     * Xóa bản ghi và giảm tham chiếu của blob; file blob chỉ bị xóa khi không
+     * còn bản ghi nào dùng. File được xóa trong lúc còn giữ khóa dòng blob để
+     * không xóa nhầm nội dung mà một upload đồng thời vừa đưa vào.
+     */
+    private Mono<Void> deleteBlobFile(FileECM file) {
+        return fileECMRepository.delete(file)
+                .then(fileBlobRepository.release(file.getBlobHash()))
+                .flatMap(blob -> {
+                    if (blob.getRefCount() > 0) {
+                        log.info("Blob vẫn còn được dùng: hash={}, refCount={}", blob.getHash(), blob.getRefCount());
+                        return Mono.empty();
+                    }
+                    return contentAddressedStore.deleteBlob(blobStores.get(blob.getStorageBackend()),
+                            blob.getFilePath())
+                            .doOnSuccess(deleted -> log.info("Blob deleted: hash={}, path={}, deleted={}",
+                                    blob.getHash(), blob.getFilePath(), deleted))
+                            .then(fileBlobRepository.deleteUnreferenced(blob.getHash()));
+                })
+                .as(transactionalOperator::transactional)
+                // Bản nén và rendition là riêng của từng bản ghi, không dùng chung như blob
+                .then(deleteCompressed(file))
+                .then(renditionService.deleteRenditions(file))
+                .then();
+    }
+
+    private Mono<Boolean> deleteCompressed(FileECM file) {
+        return Mono.fromCallable(() -> file.getCompressedPath() != null
+                && Files.deleteIfExists(Paths.get(file.getCompressedPath())))
+                .subscribeOn(Schedulers.boundedElastic()); // Chạy xóa file trên threadpool khác
+    }
+
+    public Mono<Boolean> validateUpload(String originalFileName, String category, String contentType) {
+        return metrics.timed(PipelineStage.VALIDATION,
+                Mono.fromSupplier(() -> isValidUpload(originalFileName, category, contentType)));
+    }
+
+    private boolean isValidUpload(String originalFileName, String category, String contentType) {
         if (category == null || !CATEGORY_PATTERN.matcher(category).matches()) {
             log.warn("Thư mục không hợp lệ: {}", category);
-            return Mono.just(false);
+            return false;
         }
 
         if (originalFileName == null || !isValidFileName(originalFileName)
                 || !FILENAME_PATTERN.matcher(originalFileName).matches()) {
             log.warn("Tên file không hợp lệ: {}", originalFileName);
-            return Mono.just(false);
+            return false;
         }
 
-        long maxSizeBytes = parseMaxFileSize(maxFileSize);
         String fileExtension = getFileExtension(originalFileName);
+        if (!ALLOWED_EXTENSIONS.contains(fileExtension.toLowerCase())) {
+            log.warn("Định dạng file không được phép: .{}", fileExtension);
+            return false;
+        }
 
-        return Mono.zip(getFileSize(file), getContentType(file))
-                .map(tuple -> {
-                    long fileSize = tuple.getT1();
-                    String contentType = tuple.getT2();
-
-                    if (fileSize > maxSizeBytes) {
-                        log.warn("File vượt quá giới hạn {}: {} bytes", maxFileSize, fileSize);
-                        return false;
-                    }
-
-                    if (!ALLOWED_EXTENSIONS.contains(fileExtension.toLowerCase())) {
-                        log.warn("Định dạng file không được phép: .{}", fileExtension);
-                        return false;
-                    }
-
-                    if (contentType == null || !ALLOWED_MEDIA_TYPES.contains(contentType)) {
-                        log.warn("MIME Type không hợp lệ: {}", contentType);
-                        return false;
-                    }
+        // Kích thước không kiểm tra ở đây mà được giới hạn trong lúc ghi (FileIngestor)
+        if (contentType == null || !ALLOWED_MEDIA_TYPES.contains(contentType)) {
+            log.warn("MIME Type không hợp lệ: {}", contentType);
+            return false;
+        }
 
-                    return true;
-                })
-                .defaultIfEmpty(false);
+        return true;
     }
 
     public boolean isValidFileName(String fileName) {
@@ -380,22 +794,28 @@ public class UploadServiceImpl implements UploadService {
         }
     }
 
-    private Mono<Long> getFileSize(FilePart filePart) {
-        return createTempFile(filePart.filename())
-                .flatMap(tempFile -> filePart.transferTo(tempFile)
-                        .then(Mono.fromCallable(() -> Files.size(tempFile.toPath()))));
-    }
-
     private Mono<String> getContentType(FilePart filePart) {
         return Mono.justOrEmpty(filePart.headers().getContentType()) // Get content type
                 .map(MediaType::toString) // Convert to string
                 .defaultIfEmpty("application/octet-stream"); // Default if not available
     }
 
-    private Mono<File> createTempFile(String filename) {
-        return Mono.fromCallable(() -> {
-            Path tempFile = Files.createTempFile("upload-", "-" + filename);
-            return tempFile.toFile();
-        });
+    /**
+     * Nội dung đã ghi xong nhưng chưa có bản ghi: file staging chờ đưa vào kho
+     * blob nếu có {@code sha256}, ngược lại là {@code key} đã ghi trên
+     * {@code store}.
+     */
+    private record WrittenFile(String fileName, String contentType, String category, long size, Path stagingPath,
+            String sha256, BlobStore store, String key) {
+        boolean isBlob() {
+            return sha256 != null;
+        }
+    }
+
+    /**
+     * Một file của lô upload: đã ghi được ({@code written}) hoặc lỗi
+     * ({@code error}; {@code rejected} nếu bị từ chối vì quá tải).
+     */
+    private record BatchFile(String fileName, WrittenFile written, String error, boolean rejected) {
     }
 }
@@ -0,0 +1,224 @@
+package com.vinorsoft.ecm.application.impl;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.unit.DataSize;
+
+import com.vinorsoft.ecm.application.UploadService;
+import com.vinorsoft.ecm.application.UploadSessionNotFoundException;
+import com.vinorsoft.ecm.application.UploadSessionService;
+import com.vinorsoft.ecm.application.UploadSessionStateException;
+import com.vinorsoft.ecm.application.UploadSessionStatus;
+import com.vinorsoft.ecm.domain.FileECM;
+import com.vinorsoft.ecm.domain.UploadSession;
+import com.vinorsoft.ecm.domain.UploadSessionRepository;
+import com.vinorsoft.ecm.infrastructure.metrics.EcmMetrics;
+import com.vinorsoft.ecm.infrastructure.metrics.PipelineStage;
+import com.vinorsoft.ecm.infrastructure.storage.FileIngestor;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Mỗi phiên có một file tạm dưới {@code <upload.path>/.sessions}; chunk được
+ * ghi thẳng vào đúng vị trí trong file đó nên có thể đến song song trên nhiều
+ * kết nối. Danh sách chunk đã nhận nằm trong DB để mọi node (dùng chung thư
+ * mục upload) đều xem và commit được.
+ */
+@Service
+@Slf4j
+public class UploadSessionServiceImpl implements UploadSessionService {
+    private static final String SESSION_DIR = ".sessions";
+
+    @Value("${upload.path}")
+    private String baseUploadDir;
+
+    @Value("${upload.session.chunk-size:8MB}")
+    private DataSize chunkSize;
+
+    @Value("${upload.session.max-file-size:20GB}")
+    private DataSize maxFileSize;
+
+    @Value("${upload.session.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${upload.session.gc-batch-size:100}")
+    private int gcBatchSize;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadService uploadService;
+    private final FileIngestor fileIngestor;
+    private final TransactionalOperator transactionalOperator;
+    private final EcmMetrics metrics;
+
+    private Path sessionDir;
+
+    public UploadSessionServiceImpl(UploadSessionRepository uploadSessionRepository, UploadService uploadService,
+            FileIngestor fileIngestor, TransactionalOperator transactionalOperator, EcmMetrics metrics) {
+        this.uploadSessionRepository = uploadSessionRepository;
+        this.uploadService = uploadService;
+        this.fileIngestor = fileIngestor;
+        this.transactionalOperator = transactionalOperator;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        sessionDir = Files.createDirectories(Paths.get(baseUploadDir).resolve(SESSION_DIR)).toRealPath();
+    }
+
+    public Mono<UploadSessionStatus> createSession(String fileName, String contentType, long fileSize,
+            String category, UUID fileId) {
+        if (fileSize < 0 || fileSize > maxFileSize.toBytes()) {
+            log.warn("Kích thước file không hợp lệ: fileSize={}, max={}", fileSize, maxFileSize.toBytes());
+            return Mono.error(new IllegalArgumentException("Kích thước file không hợp lệ: " + fileSize));
+        }
+
+        return uploadService.validateUpload(fileName, category, contentType)
+                .flatMap(valid -> {
+                    if (!valid) {
+                        return Mono.error(new IOException("File hoặc thư mục không hợp lệ."));
+                    }
+
+                    int size = (int) chunkSize.toBytes();
+                    UploadSession session = new UploadSession();
+                    session.setFileId(fileId);
+                    session.setFileName(fileName);
+                    session.setContentType(contentType);
+                    session.setCategory(category);
+                    session.setFileSize(fileSize);
+                    session.setChunkSize(size);
+                    session.setChunkCount((int) ((fileSize + size - 1) / size));
+                    session.setStagingPath(sessionDir.resolve(UUID.randomUUID() + ".upload").toString());
+                    session.setStatus(UploadSession.STATUS_OPEN);
+                    session.setCreatedAt(LocalDateTime.now());
+                    session.setExpiresAt(LocalDateTime.now().plus(ttl));
+
+                    Path stagingPath = Paths.get(session.getStagingPath());
+                    return Mono.fromCallable(() -> Files.createFile(stagingPath))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .then(uploadSessionRepository.save(session))
+                            .onErrorResume(e -> fileIngestor.deletePartial(stagingPath).then(Mono.error(e)));
+                })
+                .doOnSuccess(session -> log.info("Đã tạo phiên upload: sessionId={}, fileName={}, size={}, chunks={}",
+                        session.getId(), fileName, fileSize, session.getChunkCount()))
+                .map(session -> new UploadSessionStatus(session, List.of()));
+    }
+
+    public Mono<Void> writeChunk(UUID sessionId, long offset, Flux<DataBuffer> content) {
+        return findActive(sessionId)
+                .flatMap(session -> {
+                    if (!UploadSession.STATUS_OPEN.equals(session.getStatus())) {
+                        return Mono.error(new UploadSessionStateException("Phiên upload đang được commit"));
+                    }
+                    if (offset < 0 || offset % session.getChunkSize() != 0 || offset >= session.getFileSize()) {
+                        return Mono.error(new IllegalArgumentException("Offset không hợp lệ: " + offset));
+                    }
+
+                    int chunkIndex = (int) (offset / session.getChunkSize());
+                    return metrics.timed(PipelineStage.DISK_WRITE, fileIngestor.writeAt(content,
+                            Paths.get(session.getStagingPath()), offset, session.chunkLength(chunkIndex)))
+                            .then(uploadSessionRepository.markChunkReceived(sessionId, chunkIndex, ttl.toSeconds()))
+                            .doOnSuccess(marked -> log.debug("Đã nhận chunk: sessionId={}, chunk={}/{}, new={}",
+                                    sessionId, chunkIndex, session.getChunkCount(), marked != null && marked > 0));
+                })
+                .then();
+    }
+
+    public Mono<UploadSessionStatus> getStatus(UUID sessionId) {
+        return findActive(sessionId)
+                .flatMap(session -> uploadSessionRepository.findReceivedChunks(sessionId)
+                        .collectList()
+                        .map(receivedChunks -> new UploadSessionStatus(session, receivedChunks)));
+    }
+
+    public Mono<FileECM> commit(UUID sessionId) {
+        return uploadSessionRepository.claimForCommit(sessionId, ttl.toSeconds())
+                .switchIfEmpty(Mono.defer(() -> findActive(sessionId)
+                        .flatMap(session -> Mono.error(new UploadSessionStateException(
+                                UploadSession.STATUS_OPEN.equals(session.getStatus())
+                                        ? "Phiên upload chưa nhận đủ chunk"
+                                        : "Phiên upload đang được commit")))))
+                .flatMap(session -> uploadSessionRepository.deleteById(sessionId)
+                        .then(uploadService.saveStagedFile(Paths.get(session.getStagingPath()), session.getFileSize(),
+                                session.getFileName(), session.getContentType(), session.getCategory(),
+                                session.getFileId()))
+                        // Bản ghi file được tạo và phiên được xóa trong cùng transaction
+                        .as(transactionalOperator::transactional)
+                        .doOnSuccess(file -> log.info("Đã commit phiên upload: sessionId={}, fileId={}", sessionId,
+                                file.getId()))
+                        .onErrorResume(e -> releaseFailedCommit(session).then(Mono.error(e))));
+    }
+
+    public Mono<Void> abort(UUID sessionId) {
+        return uploadSessionRepository.deleteOpen(sessionId)
+                .switchIfEmpty(Mono.error(new UploadSessionNotFoundException(sessionId)))
+                .flatMap(session -> fileIngestor.deletePartial(Paths.get(session.getStagingPath())))
+                .doOnSuccess(unused -> log.info("Đã hủy phiên upload: sessionId={}", sessionId));
+    }
+
+    /**
+     * Xóa các phiên đã hết hạn (bị bỏ dở) cùng file tạm, theo từng lô cho đến
+     * khi hết.
+     */
+    @Scheduled(fixedDelayString = "${upload.session.gc-interval:10m}",
+            initialDelayString = "${upload.session.gc-interval:10m}")
+    public Mono<Void> deleteExpiredSessions() {
+        return deleteExpiredBatch()
+                .expand(deleted -> deleted < gcBatchSize ? Mono.empty() : deleteExpiredBatch())
+                .reduce(0L, Long::sum)
+                .doOnNext(total -> {
+                    if (total > 0) {
+                        log.info("Đã xóa {} phiên upload hết hạn", total);
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.error("Lỗi khi xóa phiên upload hết hạn: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Long> deleteExpiredBatch() {
+        return uploadSessionRepository.deleteExpired(gcBatchSize)
+                .concatMap(session -> fileIngestor.deletePartial(Paths.get(session.getStagingPath()))
+                        .thenReturn(session))
+                .count();
+    }
+
+    /**
+     * Commit lỗi: mở lại phiên để client commit lại nếu file tạm vẫn còn, nếu
+     * không thì xóa phiên.
+     */
+    private Mono<Void> releaseFailedCommit(UploadSession session) {
+        return Mono.fromCallable(() -> Files.exists(Paths.get(session.getStagingPath())))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(exists -> exists
+                        ? uploadSessionRepository.reopen(session.getId()).then()
+                        : uploadSessionRepository.deleteById(session.getId()))
+                .onErrorResume(e -> {
+                    log.error("Lỗi khi mở lại phiên upload {}: {}", session.getId(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<UploadSession> findActive(UUID sessionId) {
+        return uploadSessionRepository.findActive(sessionId)
+                .switchIfEmpty(Mono.error(new UploadSessionNotFoundException(sessionId)));
+    }
+}
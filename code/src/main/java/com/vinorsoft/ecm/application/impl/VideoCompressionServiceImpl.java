@@ -2,18 +2,36 @@ package com.vinorsoft.ecm.application.impl;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import com.vinorsoft.ecm.application.VideoCompressionService;
+import com.vinorsoft.ecm.infrastructure.media.FfmpegRunner;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class VideoCompressionServiceImpl implements VideoCompressionService {
     private static final Logger logger = LoggerFactory.getLogger(VideoCompressionServiceImpl.class);
 
+    @Value("${upload.compress.timeout:2h}")
+    private Duration timeout;
+
+    @Value("${upload.compress.ffmpeg-threads:0}")
+    private int ffmpegThreads;
+
+    private final FfmpegRunner ffmpegRunner;
+
+    public VideoCompressionServiceImpl(FfmpegRunner ffmpegRunner) {
+        this.ffmpegRunner = ffmpegRunner;
+    }
+
     /*
      * -vcodec libx265: Sử dụng H.265 để giảm dung lượng so với H.264.
      * -crf 28: Giữ chất lượng tốt trong khi giảm kích thước.
@@ -22,44 +40,43 @@ public class VideoCompressionServiceImpl implements VideoCompressionService {
      * -r 24: Giảm số khung hình trên giây xuống 24 FPS.
      * -vf scale=1280:720: Giảm độ phân giải xuống 1920:1080 (FullHD).
      * -acodec aac -b:a 64k: Nén âm thanh bằng AAC với bitrate 64kbps.
+     * -threads: Giới hạn số thread của mỗi ffmpeg (0 = ffmpeg tự chọn).
      */
-    @Async
-    public String compressVideo(String inputPath) {
+    public String compressVideo(String inputPath) throws IOException, InterruptedException, TimeoutException {
+        // Tạo đường dẫn output (tự động thêm "_compress" nhưng giữ nguyên phần mở rộng)
+        return compressVideo(inputPath, getOutputPath(inputPath));
+    }
+
+    public String compressVideo(String inputPath, String outputPath)
+            throws IOException, InterruptedException, TimeoutException {
 
         // Kiểm tra file đầu vào có tồn tại không
         File inputFile = new File(inputPath);
         if (!inputFile.exists() || !inputFile.isFile()) {
             logger.error("Input file does not exist: " + inputPath);
-            return null;
+            throw new IOException("Input file does not exist: " + inputPath);
         }
 
-        // Tạo đường dẫn output (tự động thêm "_compress" nhưng giữ nguyên phần mở rộng)
-        String outputPath = getOutputPath(inputPath);
-
-        // Câu lệnh FFmpeg để scale về Full HD (1920px) nhưng giữ nguyên tỷ lệ
-        String command = "ffmpeg -i " + inputPath +
-                " -vcodec libx265 -crf 28 -preset slow" +
-                " -b:v 1000k -r 24 -vf \"scale='if(gt(iw,ih),1920,-1)':'if(gt(iw,ih),-1,1920)'\"" +
-                " -acodec aac -b:a 64k " + outputPath;
+        // Scale về Full HD (1920px) nhưng giữ nguyên tỷ lệ
+        List<String> arguments = List.of(
+                "-y", "-i", inputPath,
+                "-vcodec", "libx265", "-crf", "28", "-preset", "slow",
+                "-b:v", "1000k", "-r", "24", "-vf", "scale='if(gt(iw,ih),1920,-1)':'if(gt(iw,ih),-1,1920)'",
+                "-acodec", "aac", "-b:a", "64k",
+                "-threads", String.valueOf(ffmpegThreads),
+                outputPath);
 
+        logger.info("Starting video compression: " + inputPath);
+        long startTime = System.nanoTime();
         try {
-            logger.info("Starting video compression: " + inputPath);
-            ProcessBuilder processBuilder = new ProcessBuilder("bash", "-c", command);
-            processBuilder.redirectErrorStream(true);
-            Process process = processBuilder.start();
-            int exitCode = process.waitFor();
-
-            if (exitCode == 0) {
-                logger.info("Compression successful: " + outputPath);
-                return outputPath;
-            } else {
-                logger.error("Compression failed with exit code: " + exitCode);
-                return null;
-            }
-        } catch (IOException | InterruptedException e) {
-            logger.error("Error during video compression: ", e);
-            return null;
+            ffmpegRunner.run(arguments, timeout);
+        } catch (IOException | InterruptedException | TimeoutException e) {
+            Files.deleteIfExists(Paths.get(outputPath));
+            throw e;
         }
+        logger.info("Compression successful: {} ({} ms)", outputPath,
+                Duration.ofNanos(System.nanoTime() - startTime).toMillis());
+        return outputPath;
     }
 
     // Hàm tạo đường dẫn output (inputPath + "_compress" nhưng giữ nguyên phần mở
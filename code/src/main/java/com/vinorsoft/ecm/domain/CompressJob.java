@@ -0,0 +1,51 @@
+package com.vinorsoft.ecm.domain;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@Table("COMPRESS_JOB")
+public class CompressJob {
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_DONE = "DONE";
+    public static final String STATUS_DEAD = "DEAD";
+
+    @Id
+    private UUID id;
+
+    @Column(value = "FILE_ID")
+    private UUID fileId;
+
+    @Column(value = "STATUS")
+    private String status;
+
+    @Column(value = "ATTEMPTS")
+    private int attempts;
+
+    @Column(value = "MAX_ATTEMPTS")
+    private int maxAttempts;
+
+    @Column(value = "AVAILABLE_AT")
+    private LocalDateTime availableAt;
+
+    @Column(value = "LOCKED_BY")
+    private String lockedBy;
+
+    @Column(value = "LAST_ERROR")
+    private String lastError;
+
+    @Column(value = "CREATED_AT")
+    private LocalDateTime createdAt;
+
+    @Column(value = "UPDATED_AT")
+    private LocalDateTime updatedAt;
+}
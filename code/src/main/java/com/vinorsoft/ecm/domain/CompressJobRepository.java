@@ -0,0 +1,87 @@
+package com.vinorsoft.ecm.domain;
+
+import java.util.UUID;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Hàng đợi job nén lưu trong Postgres, dùng chung được giữa nhiều node ECM.
+ * Thời gian luôn lấy theo {@code now()} của DB để các node không phụ thuộc
+ * đồng hồ của nhau.
+ */
+@Repository
+public interface CompressJobRepository extends ReactiveCrudRepository<CompressJob, UUID> {
+
+    /** Bỏ qua nếu file đã có job đang chờ hoặc đang chạy. */
+    @Modifying
+    @Query("""
+            INSERT INTO COMPRESS_JOB (FILE_ID, STATUS, MAX_ATTEMPTS, AVAILABLE_AT)
+            VALUES (:fileId, 'PENDING', :maxAttempts, now())
+            ON CONFLICT (FILE_ID) WHERE STATUS IN ('PENDING', 'RUNNING') DO NOTHING
+            """)
+    Mono<Integer> enqueue(@Param("fileId") UUID fileId, @Param("maxAttempts") int maxAttempts);
+
+    /** Như {@link #enqueue(UUID, int)} cho nhiều file trong một câu lệnh. */
+    @Modifying
+    @Query("""
+            INSERT INTO COMPRESS_JOB (FILE_ID, STATUS, MAX_ATTEMPTS, AVAILABLE_AT)
+            SELECT f.id, 'PENDING', :maxAttempts, now() FROM unnest(CAST(:fileIds AS UUID[])) AS f(id)
+            ON CONFLICT (FILE_ID) WHERE STATUS IN ('PENDING', 'RUNNING') DO NOTHING
+            """)
+    Mono<Integer> enqueueAll(@Param("fileIds") UUID[] fileIds, @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * Nhận tối đa {@code limit} job đến hạn. Job RUNNING có lease đã hết hạn
+     * (node chạy nó đã chết) cũng được nhận lại. {@code SKIP LOCKED} để các
+     * node không chờ nhau trên cùng một dòng.
+     */
+    @Query("""
+            UPDATE COMPRESS_JOB
+            SET STATUS = 'RUNNING', ATTEMPTS = ATTEMPTS + 1, LOCKED_BY = :workerId,
+                AVAILABLE_AT = now() + make_interval(secs => :visibilitySeconds), UPDATED_AT = now()
+            WHERE ID IN (
+                SELECT ID FROM COMPRESS_JOB
+                WHERE STATUS IN ('PENDING', 'RUNNING') AND AVAILABLE_AT <= now()
+                ORDER BY AVAILABLE_AT
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED)
+            RETURNING *
+            """)
+    Flux<CompressJob> claim(@Param("workerId") String workerId, @Param("limit") int limit,
+            @Param("visibilitySeconds") long visibilitySeconds);
+
+    @Modifying
+    @Query("""
+            UPDATE COMPRESS_JOB SET STATUS = 'DONE', LOCKED_BY = NULL, LAST_ERROR = NULL, UPDATED_AT = now()
+            WHERE ID = :id AND LOCKED_BY = :workerId
+            """)
+    Mono<Integer> complete(@Param("id") UUID id, @Param("workerId") String workerId);
+
+    @Modifying
+    @Query("""
+            UPDATE COMPRESS_JOB
+            SET STATUS = 'PENDING', LOCKED_BY = NULL, LAST_ERROR = :error,
+                AVAILABLE_AT = now() + make_interval(secs => :delaySeconds), UPDATED_AT = now()
+            WHERE ID = :id AND LOCKED_BY = :workerId
+            """)
+    Mono<Integer> retryLater(@Param("id") UUID id, @Param("workerId") String workerId,
+            @Param("error") String error, @Param("delaySeconds") long delaySeconds);
+
+    @Modifying
+    @Query("""
+            UPDATE COMPRESS_JOB SET STATUS = 'DEAD', LOCKED_BY = NULL, LAST_ERROR = :error, UPDATED_AT = now()
+            WHERE ID = :id AND LOCKED_BY = :workerId
+            """)
+    Mono<Integer> deadLetter(@Param("id") UUID id, @Param("workerId") String workerId,
+            @Param("error") String error);
+
+    @Query("SELECT COUNT(*) FROM COMPRESS_JOB WHERE STATUS IN ('PENDING', 'RUNNING')")
+    Mono<Long> countActive();
+}
@@ -0,0 +1,38 @@
+package com.vinorsoft.ecm.domain;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Nội dung file lưu theo SHA-256, dùng chung giữa các {@link FileECM} có cùng
+ * nội dung.
+ */
+@Data
+@NoArgsConstructor
+@Table("FILE_BLOB")
+public class FileBlob {
+    @Id
+    @Column(value = "HASH")
+    private String hash;
+
+    @Column(value = "FILE_PATH")
+    private String filePath;
+
+    @Column(value = "STORAGE_BACKEND")
+    private String storageBackend;
+
+    @Column(value = "FILE_SIZE")
+    private long fileSize;
+
+    @Column(value = "REF_COUNT")
+    private int refCount;
+
+    @Column(value = "CREATED_AT")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,42 @@
+package com.vinorsoft.ecm.domain;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Đếm tham chiếu của blob. Các câu lệnh đều khóa dòng của blob đến hết
+ * transaction, nên upload và xóa cùng một nội dung được thực hiện tuần tự.
+ */
+@Repository
+public interface FileBlobRepository extends ReactiveCrudRepository<FileBlob, String> {
+
+    /**
+     * Tạo blob mới với một tham chiếu, hoặc tăng số tham chiếu nếu nội dung đã
+     * có.
+     *
+     * @return blob sau khi cập nhật; {@code storageBackend} và {@code filePath}
+     *         là nơi đang lưu nội dung này, có thể khác backend được yêu cầu
+     *         nếu nội dung đã có từ trước.
+     */
+    @Query("""
+            INSERT INTO FILE_BLOB (HASH, STORAGE_BACKEND, FILE_PATH, FILE_SIZE, REF_COUNT)
+            VALUES (:hash, :storageBackend, :filePath, :fileSize, 1)
+            ON CONFLICT (HASH) DO UPDATE SET REF_COUNT = FILE_BLOB.REF_COUNT + 1
+            RETURNING *
+            """)
+    Mono<FileBlob> acquire(@Param("hash") String hash, @Param("storageBackend") String storageBackend,
+            @Param("filePath") String filePath, @Param("fileSize") long fileSize);
+
+    /** @return blob sau khi giảm số tham chiếu; rỗng nếu blob không tồn tại. */
+    @Query("UPDATE FILE_BLOB SET REF_COUNT = REF_COUNT - 1 WHERE HASH = :hash RETURNING *")
+    Mono<FileBlob> release(@Param("hash") String hash);
+
+    @Modifying
+    @Query("DELETE FROM FILE_BLOB WHERE HASH = :hash AND REF_COUNT <= 0")
+    Mono<Integer> deleteUnreferenced(@Param("hash") String hash);
+}
@@ -0,0 +1,30 @@
+package com.vinorsoft.ecm.domain;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Tài liệu logic gom các phiên bản {@link FileECM} ({@code DOCUMENT_ID}).
+ * {@code latestVersion} là số phiên bản được cấp gần nhất; phiên bản đó có
+ * thể đã bị xóa, số phiên bản không bao giờ được dùng lại.
+ */
+@Data
+@NoArgsConstructor
+@Table("FILE_DOCUMENT")
+public class FileDocument {
+    @Id
+    private UUID id;
+
+    @Column(value = "LATEST_VERSION")
+    private int latestVersion;
+
+    @Column(value = "CREATED_AT")
+    private LocalDateTime createdAt;
+}
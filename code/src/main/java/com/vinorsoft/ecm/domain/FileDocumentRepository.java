@@ -0,0 +1,42 @@
+package com.vinorsoft.ecm.domain;
+
+import java.util.UUID;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Cấp số phiên bản. Phải gọi trong transaction lưu bản ghi {@link FileECM}:
+ * dòng tài liệu bị khóa đến khi commit, nên các upload đồng thời của cùng một
+ * tài liệu nhận số phiên bản tuần tự, không trùng.
+ */
+@Repository
+public interface FileDocumentRepository extends ReactiveCrudRepository<FileDocument, UUID> {
+
+    /** Tài liệu mới với phiên bản 1. */
+    @Query("INSERT INTO FILE_DOCUMENT (LATEST_VERSION) VALUES (1) RETURNING *")
+    Mono<FileDocument> create();
+
+    /** Nhiều tài liệu mới với phiên bản 1 trong một câu lệnh, id do bên gọi cấp. */
+    @Modifying
+    @Query("INSERT INTO FILE_DOCUMENT (ID, LATEST_VERSION) SELECT d.id, 1 FROM unnest(CAST(:ids AS UUID[])) AS d(id)")
+    Mono<Integer> createAll(@Param("ids") UUID[] ids);
+
+    /**
+     * Cấp số phiên bản tiếp theo cho tài liệu chứa phiên bản {@code fileId}.
+     *
+     * @return tài liệu với {@code latestVersion} là số vừa cấp; rỗng nếu
+     *         {@code fileId} không tồn tại.
+     */
+    @Query("""
+            UPDATE FILE_DOCUMENT d SET LATEST_VERSION = d.LATEST_VERSION + 1
+            FROM FILE_ECM f WHERE f.ID = :fileId AND d.ID = f.DOCUMENT_ID
+            RETURNING d.*
+            """)
+    Mono<FileDocument> nextVersion(@Param("fileId") UUID fileId);
+}
@@ -16,6 +16,8 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @Table("FILE_ECM")
 public class FileECM {
+    public static final String STORAGE_LOCAL = "local";
+
     @Id
     private UUID id;
 
@@ -42,6 +44,10 @@ public class FileECM {
     @Column(value = "CATEGORY")
     private String category;
 
+    /** Tài liệu mà bản ghi này là một phiên bản ({@link FileDocument}). */
+    @Column(value = "DOCUMENT_ID")
+    private UUID documentId;
+
     @Column(value = "VERSION")
     private Integer version;
 
@@ -51,6 +57,25 @@ public class FileECM {
     @Column(value = "UPDATE_AT")
     private LocalDateTime updatedAt;
 
+    /** Bản nén do worker nén video tạo ra; null nếu chưa có hoặc không nhỏ hơn bản gốc. */
+    @Size(max = 2000)
+    @Column(value = "COMPRESSED_PATH")
+    private String compressedPath;
+
+    @Column(value = "COMPRESSED_SIZE")
+    private Long compressedSize;
+
+    /** SHA-256 của {@link FileBlob} chứa nội dung; null nếu file được lưu riêng. */
+    @Size(max = 64)
+    @Column(value = "BLOB_HASH")
+    private String blobHash;
+
+    /** Backend đang giữ nội dung; {@code filePath} là key trong backend đó. */
+    @Size(max = 20)
+    @NotNull
+    @Column(value = "STORAGE_BACKEND")
+    private String storageBackend = STORAGE_LOCAL;
+
     public FileECM(@Size(max = 1000) @NotNull String fileName, @Size(max = 2000) @NotNull String filePath,
             @Size(max = 50) @NotNull String contentType, long fileSize, @Size(max = 255) @NotNull String category,
             Integer version, LocalDateTime dateUpload, LocalDateTime updatedAt) {
@@ -63,4 +88,18 @@ public class FileECM {
         this.dateUpload = dateUpload;
         this.updatedAt = updatedAt;
     }
+
+    /** Có bản nén để gửi thay bản gốc (file bản nén có thể đã bị mất trên đĩa). */
+    public boolean hasCompressedCopy() {
+        return compressedPath != null && compressedSize != null;
+    }
+
+    /**
+     * ETag mạnh của bản gốc hoặc bản nén, chỉ tính từ metadata. Mỗi phiên bản
+     * là một bản ghi bất biến nên id + version + size đủ làm ETag mạnh; bản
+     * nén là một biểu diễn khác nên có ETag riêng.
+     */
+    public String eTag(boolean compressed) {
+        return "\"" + id + "-v" + version + "-" + (compressed ? compressedSize + "-c" : fileSize) + "\"";
+    }
 }
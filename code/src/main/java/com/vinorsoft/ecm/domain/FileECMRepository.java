@@ -1,10 +1,188 @@
 package com.vinorsoft.ecm.domain;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
 @Repository
 public interface FileECMRepository extends ReactiveCrudRepository<FileECM, UUID> {
+
+    /**
+     * Lấy nhiều bản ghi bằng các câu {@code WHERE id IN (...)}, mỗi câu tối đa
+     * {@code batchSize} id, thay vì một lần {@code findById} cho từng id. Thứ
+     * tự kết quả không được đảm bảo và id không tồn tại sẽ không có trong kết
+     * quả.
+     */
+    default Flux<FileECM> findAllByIdInBatches(List<UUID> ids, int batchSize) {
+        return Flux.fromIterable(ids)
+                .buffer(batchSize)
+                .concatMap(this::findAllById);
+    }
+
+    /**
+     * Thêm nhiều bản ghi bằng một câu INSERT cho mỗi {@code batchSize} bản ghi
+     * thay vì một câu cho từng bản ghi. Bản ghi phải có sẵn {@code id},
+     * {@code documentId} và {@code version}; {@code dateUpload} của bản ghi đầu
+     * tiên được dùng cho mọi bản ghi trong lô. Thứ tự kết quả không được đảm bảo.
+     */
+    default Flux<FileECM> insertAll(List<FileECM> files, int batchSize) {
+        return Flux.fromIterable(files)
+                .buffer(batchSize)
+                .concatMap(batch -> insertRows(
+                        batch.stream().map(FileECM::getId).toArray(UUID[]::new),
+                        batch.stream().map(FileECM::getDocumentId).toArray(UUID[]::new),
+                        batch.stream().map(FileECM::getVersion).toArray(Integer[]::new),
+                        batch.stream().map(FileECM::getFileName).toArray(String[]::new),
+                        batch.stream().map(FileECM::getFilePath).toArray(String[]::new),
+                        batch.stream().map(FileECM::getContentType).toArray(String[]::new),
+                        batch.stream().map(FileECM::getFileSize).toArray(Long[]::new),
+                        batch.stream().map(FileECM::getCategory).toArray(String[]::new),
+                        batch.stream().map(FileECM::getBlobHash).toArray(String[]::new),
+                        batch.stream().map(FileECM::getStorageBackend).toArray(String[]::new),
+                        batch.get(0).getDateUpload()));
+    }
+
+    /** Một câu INSERT nhiều dòng; phần tử thứ {@code i} của các mảng là dòng thứ {@code i}. */
+    @Query("""
+            INSERT INTO FILE_ECM (ID, DOCUMENT_ID, VERSION, FILE_NAME, FILE_PATH, CONTENT_TYPE, FILE_SIZE, CATEGORY,
+                BLOB_HASH, STORAGE_BACKEND, DATE_UPLOAD, UPDATE_AT)
+            SELECT r.id, r.document_id, r.version, r.file_name, r.file_path, r.content_type, r.file_size, r.category,
+                r.blob_hash, r.storage_backend, :uploadedAt, :uploadedAt
+            FROM unnest(CAST(:ids AS UUID[]), CAST(:documentIds AS UUID[]), CAST(:versions AS INTEGER[]),
+                CAST(:fileNames AS VARCHAR[]), CAST(:filePaths AS VARCHAR[]), CAST(:contentTypes AS VARCHAR[]),
+                CAST(:fileSizes AS BIGINT[]), CAST(:categories AS VARCHAR[]), CAST(:blobHashes AS VARCHAR[]),
+                CAST(:storageBackends AS VARCHAR[]))
+                AS r(id, document_id, version, file_name, file_path, content_type, file_size, category, blob_hash,
+                    storage_backend)
+            RETURNING *
+            """)
+    Flux<FileECM> insertRows(@Param("ids") UUID[] ids, @Param("documentIds") UUID[] documentIds,
+            @Param("versions") Integer[] versions, @Param("fileNames") String[] fileNames,
+            @Param("filePaths") String[] filePaths, @Param("contentTypes") String[] contentTypes,
+            @Param("fileSizes") Long[] fileSizes, @Param("categories") String[] categories,
+            @Param("blobHashes") String[] blobHashes, @Param("storageBackends") String[] storageBackends,
+            @Param("uploadedAt") LocalDateTime uploadedAt);
+
+    /** Phiên bản {@code version} của tài liệu {@code documentId}. */
+    @Query("SELECT * FROM FILE_ECM WHERE DOCUMENT_ID = :documentId AND VERSION = :version")
+    Mono<FileECM> findVersion(@Param("documentId") UUID documentId, @Param("version") int version);
+
+    /** Phiên bản mới nhất còn tồn tại của tài liệu {@code documentId}. */
+    @Query("SELECT * FROM FILE_ECM WHERE DOCUMENT_ID = :documentId ORDER BY VERSION DESC LIMIT 1")
+    Mono<FileECM> findLatestVersion(@Param("documentId") UUID documentId);
+
+    /** Mọi phiên bản của tài liệu {@code documentId}, mới nhất trước. */
+    @Query("SELECT * FROM FILE_ECM WHERE DOCUMENT_ID = :documentId ORDER BY VERSION DESC")
+    Flux<FileECM> findAllVersions(@Param("documentId") UUID documentId);
+
+    /** Phiên bản {@code version} của từng tài liệu; tài liệu không có phiên bản đó không có trong kết quả. */
+    @Query("SELECT * FROM FILE_ECM WHERE DOCUMENT_ID IN (:documentIds) AND VERSION = :version")
+    Flux<FileECM> findVersionOfDocuments(@Param("documentIds") Collection<UUID> documentIds,
+            @Param("version") int version);
+
+    /** Phiên bản mới nhất của từng tài liệu. */
+    @Query("""
+            SELECT DISTINCT ON (DOCUMENT_ID) * FROM FILE_ECM WHERE DOCUMENT_ID IN (:documentIds)
+            ORDER BY DOCUMENT_ID, VERSION DESC
+            """)
+    Flux<FileECM> findLatestVersionOfDocuments(@Param("documentIds") Collection<UUID> documentIds);
+
+    /**
+     * Chỉ cập nhật cột bản nén, không ghi đè các cột khác có thể đã thay đổi
+     * trong lúc nén.
+     *
+     * @return số bản ghi được cập nhật (0 nếu file đã bị xóa).
+     */
+    @Modifying
+    @Query("UPDATE FILE_ECM SET COMPRESSED_PATH = :compressedPath, COMPRESSED_SIZE = :compressedSize WHERE ID = :id")
+    Mono<Integer> updateCompressedFile(@Param("id") UUID id, @Param("compressedPath") String compressedPath,
+            @Param("compressedSize") long compressedSize);
+
+    /**
+     * Duyệt các bản ghi có file riêng (không dùng blob) trên đĩa local theo
+     * thứ tự id, bắt đầu sau {@code afterId}, để xử lý theo lô mà không dùng
+     * OFFSET.
+     */
+    @Query("""
+            SELECT * FROM FILE_ECM WHERE BLOB_HASH IS NULL AND STORAGE_BACKEND = 'local' AND ID > :afterId
+            ORDER BY ID LIMIT :limit
+            """)
+    Flux<FileECM> findOwnFilesAfter(@Param("afterId") UUID afterId, @Param("limit") int limit);
+
+    /**
+     * Đổi đường dẫn file và bản nén khi file được chuyển chỗ. Chỉ cập nhật nếu
+     * {@code FILE_PATH} vẫn là {@code oldFilePath}.
+     *
+     * @return số bản ghi được cập nhật (0 nếu file đã bị xóa hoặc đổi chỗ).
+     */
+    @Modifying
+    @Query("""
+            UPDATE FILE_ECM SET FILE_PATH = :filePath, COMPRESSED_PATH = :compressedPath
+            WHERE ID = :id AND FILE_PATH = :oldFilePath
+            """)
+    Mono<Integer> updateFilePaths(@Param("id") UUID id, @Param("oldFilePath") String oldFilePath,
+            @Param("filePath") String filePath, @Param("compressedPath") String compressedPath);
+
+    /**
+     * Xóa bản ghi và trả về chính bản ghi vừa xóa, để xóa file theo vị trí
+     * hiện tại trong DB thay vì bản trong cache có thể đã cũ (file vừa được
+     * chuyển tầng lưu trữ).
+     */
+    @Query("DELETE FROM FILE_ECM WHERE ID = :id RETURNING *")
+    Mono<FileECM> deleteReturning(@Param("id") UUID id);
+
+    /**
+     * Cộng dồn số lần đọc của nhiều file trong một câu lệnh;
+     * {@code reads[i]} là số lần đọc của {@code ids[i]}.
+     */
+    @Modifying
+    @Query("""
+            UPDATE FILE_ECM f SET ACCESS_COUNT = f.ACCESS_COUNT + a.reads, LAST_ACCESSED_AT = :accessedAt
+            FROM unnest(CAST(:ids AS UUID[]), CAST(:reads AS INTEGER[])) AS a(id, reads)
+            WHERE f.ID = a.id
+            """)
+    Mono<Integer> recordAccesses(@Param("ids") UUID[] ids, @Param("reads") Integer[] reads,
+            @Param("accessedAt") LocalDateTime accessedAt);
+
+    /**
+     * File riêng (không dùng blob) trên {@code storageBackend} không được đọc
+     * từ trước {@code idleBefore}; file có từ {@code frequentReads} lần đọc trở
+     * lên phải không được đọc từ trước {@code frequentIdleBefore}. File lâu
+     * nhất chưa được đọc đứng trước.
+     */
+    @Query("""
+            SELECT * FROM FILE_ECM
+            WHERE BLOB_HASH IS NULL AND STORAGE_BACKEND = :storageBackend
+              AND COALESCE(LAST_ACCESSED_AT, DATE_UPLOAD) < :idleBefore
+              AND (ACCESS_COUNT < :frequentReads OR COALESCE(LAST_ACCESSED_AT, DATE_UPLOAD) < :frequentIdleBefore)
+            ORDER BY COALESCE(LAST_ACCESSED_AT, DATE_UPLOAD) LIMIT :limit
+            """)
+    Flux<FileECM> findIdleFiles(@Param("storageBackend") String storageBackend,
+            @Param("idleBefore") LocalDateTime idleBefore, @Param("frequentReads") int frequentReads,
+            @Param("frequentIdleBefore") LocalDateTime frequentIdleBefore, @Param("limit") int limit);
+
+    /**
+     * Đổi nơi lưu file sau khi đã copy sang tầng khác và đếm lại số lần đọc từ
+     * 0. Chỉ cập nhật nếu file vẫn nằm ở {@code oldStorageBackend}/{@code oldFilePath}.
+     *
+     * @return số bản ghi được cập nhật (0 nếu file đã bị xóa hoặc đổi chỗ).
+     */
+    @Modifying
+    @Query("""
+            UPDATE FILE_ECM SET STORAGE_BACKEND = :storageBackend, FILE_PATH = :filePath, ACCESS_COUNT = 0
+            WHERE ID = :id AND STORAGE_BACKEND = :oldStorageBackend AND FILE_PATH = :oldFilePath
+            """)
+    Mono<Integer> updateStorageLocation(@Param("id") UUID id, @Param("oldStorageBackend") String oldStorageBackend,
+            @Param("oldFilePath") String oldFilePath, @Param("storageBackend") String storageBackend,
+            @Param("filePath") String filePath);
 }
@@ -0,0 +1,37 @@
+package com.vinorsoft.ecm.domain;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@Table("STORAGE_PENDING_DELETE")
+public class StoragePendingDelete {
+    @Id
+    private UUID id;
+
+    @Column(value = "STORAGE_BACKEND")
+    private String storageBackend;
+
+    @Column(value = "FILE_PATH")
+    private String filePath;
+
+    @Column(value = "DELETE_AFTER")
+    private LocalDateTime deleteAfter;
+
+    @Column(value = "ATTEMPTS")
+    private int attempts;
+
+    @Column(value = "LAST_ERROR")
+    private String lastError;
+
+    @Column(value = "CREATED_AT")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,52 @@
+package com.vinorsoft.ecm.domain;
+
+import java.util.UUID;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Nội dung cũ chờ xóa sau khi file được chuyển tầng, lưu trong Postgres để
+ * không bị sót khi service dừng giữa chừng. Thời gian lấy theo {@code now()}
+ * của DB như {@link CompressJobRepository}.
+ */
+@Repository
+public interface StoragePendingDeleteRepository extends ReactiveCrudRepository<StoragePendingDelete, UUID> {
+
+    @Modifying
+    @Query("""
+            INSERT INTO STORAGE_PENDING_DELETE (STORAGE_BACKEND, FILE_PATH, DELETE_AFTER)
+            VALUES (:storageBackend, :filePath, now() + make_interval(secs => :delaySeconds))
+            """)
+    Mono<Integer> schedule(@Param("storageBackend") String storageBackend, @Param("filePath") String filePath,
+            @Param("delaySeconds") long delaySeconds);
+
+    /**
+     * Nhận tối đa {@code limit} dòng đến hạn và lùi hạn của chúng thêm
+     * {@code retrySeconds}: node nhận dòng chết giữa chừng hoặc xóa lỗi thì
+     * dòng được nhận lại sau chừng đó. {@code SKIP LOCKED} để các node không
+     * chờ nhau trên cùng một dòng.
+     */
+    @Query("""
+            UPDATE STORAGE_PENDING_DELETE
+            SET ATTEMPTS = ATTEMPTS + 1, DELETE_AFTER = now() + make_interval(secs => :retrySeconds)
+            WHERE ID IN (
+                SELECT ID FROM STORAGE_PENDING_DELETE
+                WHERE DELETE_AFTER <= now()
+                ORDER BY DELETE_AFTER
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED)
+            RETURNING *
+            """)
+    Flux<StoragePendingDelete> claim(@Param("limit") int limit, @Param("retrySeconds") long retrySeconds);
+
+    @Modifying
+    @Query("UPDATE STORAGE_PENDING_DELETE SET LAST_ERROR = :error WHERE ID = :id")
+    Mono<Integer> recordFailure(@Param("id") UUID id, @Param("error") String error);
+}
@@ -0,0 +1,76 @@
+package com.vinorsoft.ecm.domain;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@Table("UPLOAD_SESSION")
+public class UploadSession {
+    public static final String STATUS_OPEN = "OPEN";
+    public static final String STATUS_COMMITTING = "COMMITTING";
+
+    @Id
+    private UUID id;
+
+    /** File cần tạo phiên bản mới; null nếu là file mới. */
+    @Column(value = "FILE_ID")
+    private UUID fileId;
+
+    @Size(max = 1000)
+    @NotNull
+    @Column(value = "FILE_NAME")
+    private String fileName;
+
+    @Size(max = 50)
+    @NotNull
+    @Column(value = "CONTENT_TYPE")
+    private String contentType;
+
+    @Size(max = 255)
+    @NotNull
+    @Column(value = "CATEGORY")
+    private String category;
+
+    @Column(value = "FILE_SIZE")
+    private long fileSize;
+
+    @Column(value = "CHUNK_SIZE")
+    private int chunkSize;
+
+    @Column(value = "CHUNK_COUNT")
+    private int chunkCount;
+
+    @Size(max = 2000)
+    @NotNull
+    @Column(value = "STAGING_PATH")
+    private String stagingPath;
+
+    @Column(value = "STATUS")
+    private String status;
+
+    @Column(value = "CREATED_AT")
+    private LocalDateTime createdAt;
+
+    @Column(value = "EXPIRES_AT")
+    private LocalDateTime expiresAt;
+
+    /** Vị trí bắt đầu của chunk. */
+    public long chunkOffset(int chunkIndex) {
+        return (long) chunkIndex * chunkSize;
+    }
+
+    /** Kích thước của chunk; chunk cuối có thể nhỏ hơn {@code chunkSize}. */
+    public long chunkLength(int chunkIndex) {
+        return Math.min(chunkSize, fileSize - chunkOffset(chunkIndex));
+    }
+}
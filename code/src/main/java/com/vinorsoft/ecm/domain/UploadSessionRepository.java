@@ -0,0 +1,80 @@
+package com.vinorsoft.ecm.domain;
+
+import java.util.UUID;
+
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Phiên upload nhiều phần và các chunk đã nhận (bảng UPLOAD_CHUNK). Thời gian
+ * hết hạn luôn tính theo {@code now()} của DB.
+ */
+@Repository
+public interface UploadSessionRepository extends ReactiveCrudRepository<UploadSession, UUID> {
+
+    @Query("SELECT * FROM UPLOAD_SESSION WHERE ID = :id AND EXPIRES_AT > now()")
+    Mono<UploadSession> findActive(@Param("id") UUID id);
+
+    /**
+     * Ghi nhận chunk đã được ghi xong và gia hạn phiên. Không có tác dụng nếu
+     * phiên không còn OPEN; gửi lại một chunk đã nhận thì không tính thêm.
+     *
+     * @return 0 nếu phiên không còn nhận chunk hoặc chunk đã được ghi nhận.
+     */
+    @Modifying
+    @Query("""
+            WITH OPEN_SESSION AS (
+                UPDATE UPLOAD_SESSION SET EXPIRES_AT = now() + make_interval(secs => :ttlSeconds)
+                WHERE ID = :sessionId AND STATUS = 'OPEN' AND EXPIRES_AT > now()
+                RETURNING ID)
+            INSERT INTO UPLOAD_CHUNK (SESSION_ID, CHUNK_INDEX)
+            SELECT ID, :chunkIndex FROM OPEN_SESSION
+            ON CONFLICT (SESSION_ID, CHUNK_INDEX) DO NOTHING
+            """)
+    Mono<Integer> markChunkReceived(@Param("sessionId") UUID sessionId, @Param("chunkIndex") int chunkIndex,
+            @Param("ttlSeconds") long ttlSeconds);
+
+    @Query("SELECT CHUNK_INDEX FROM UPLOAD_CHUNK WHERE SESSION_ID = :sessionId ORDER BY CHUNK_INDEX")
+    Flux<Integer> findReceivedChunks(@Param("sessionId") UUID sessionId);
+
+    /**
+     * Chuyển phiên sang COMMITTING nếu đã nhận đủ chunk, để chỉ một request
+     * commit được và không chunk nào được ghi nhận thêm.
+     *
+     * @return rỗng nếu phiên không còn OPEN, đã hết hạn hoặc còn thiếu chunk.
+     */
+    @Query("""
+            UPDATE UPLOAD_SESSION SET STATUS = 'COMMITTING',
+                EXPIRES_AT = now() + make_interval(secs => :ttlSeconds)
+            WHERE ID = :id AND STATUS = 'OPEN' AND EXPIRES_AT > now()
+                AND CHUNK_COUNT = (SELECT COUNT(*) FROM UPLOAD_CHUNK WHERE SESSION_ID = :id)
+            RETURNING *
+            """)
+    Mono<UploadSession> claimForCommit(@Param("id") UUID id, @Param("ttlSeconds") long ttlSeconds);
+
+    @Modifying
+    @Query("UPDATE UPLOAD_SESSION SET STATUS = 'OPEN' WHERE ID = :id AND STATUS = 'COMMITTING'")
+    Mono<Integer> reopen(@Param("id") UUID id);
+
+    @Query("DELETE FROM UPLOAD_SESSION WHERE ID = :id AND STATUS = 'OPEN' RETURNING *")
+    Mono<UploadSession> deleteOpen(@Param("id") UUID id);
+
+    /**
+     * Xóa tối đa {@code limit} phiên đã hết hạn; mỗi phiên chỉ được trả về cho
+     * một node để xóa file tạm.
+     */
+    @Query("""
+            DELETE FROM UPLOAD_SESSION WHERE ID IN (
+                SELECT ID FROM UPLOAD_SESSION WHERE EXPIRES_AT <= now()
+                LIMIT :limit
+                FOR UPDATE SKIP LOCKED)
+            RETURNING *
+            """)
+    Flux<UploadSession> deleteExpired(@Param("limit") int limit);
+}
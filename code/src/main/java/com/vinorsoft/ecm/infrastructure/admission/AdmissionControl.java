@@ -0,0 +1,160 @@
+package com.vinorsoft.ecm.infrastructure.admission;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Các nhóm giới hạn tải dùng chung của service:
+ * <ul>
+ * <li>{@code upload-bytes}: tổng số byte (theo {@code Content-Length}) của các
+ * upload đang được nhận;</li>
+ * <li>{@code downloads}: số download/rendition đang được gửi;</li>
+ * <li>{@code zips}: số file ZIP đang được tạo;</li>
+ * <li>{@code transcodes}: số rendition đang được tạo theo request;</li>
+ * <li>{@code batch-writes}: số file của các request upload nhiều file đang
+ * được ghi.</li>
+ * </ul>
+ * Giới hạn, phần đang dùng, số request đang chờ và số request bị từ chối của
+ * từng nhóm được xuất thành metric với tag {@code pool}.
+ */
+@Component
+@Slf4j
+public class AdmissionControl {
+    public static final String LIMIT = "ecm.admission.limit";
+    public static final String IN_USE = "ecm.admission.in.use";
+    public static final String QUEUED = "ecm.admission.queued";
+    public static final String REJECTED = "ecm.admission.rejected";
+
+    @Value("${upload.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${upload.admission.max-wait:2s}")
+    private Duration maxWait;
+
+    @Value("${upload.admission.retry-after:5s}")
+    private Duration retryAfter;
+
+    @Value("${upload.admission.upload-bytes.limit:1GB}")
+    private DataSize uploadBytesLimit;
+
+    @Value("${upload.admission.upload-bytes.max-queued:200}")
+    private int uploadBytesMaxQueued;
+
+    /** Upload không có Content-Length được tính bằng kích thước file tối đa. */
+    @Value("${spring.servlet.multipart.max-file-size}")
+    private DataSize maxFileSize;
+
+    @Value("${upload.admission.downloads.limit:512}")
+    private int downloadsLimit;
+
+    @Value("${upload.admission.downloads.max-queued:512}")
+    private int downloadsMaxQueued;
+
+    @Value("${upload.archive.max-concurrent:8}")
+    private int zipsLimit;
+
+    @Value("${upload.admission.zips.max-queued:16}")
+    private int zipsMaxQueued;
+
+    @Value("${upload.admission.transcodes.limit:2}")
+    private int transcodesLimit;
+
+    @Value("${upload.admission.transcodes.max-queued:16}")
+    private int transcodesMaxQueued;
+
+    @Value("${upload.batch.max-concurrent-writes:32}")
+    private int batchWritesLimit;
+
+    @Value("${upload.admission.batch-writes.max-queued:256}")
+    private int batchWritesMaxQueued;
+
+    /** File trong lô chờ lâu hơn request đơn lẻ: các file trước có thể đang ghi nhiều MB. */
+    @Value("${upload.admission.batch-writes.max-wait:30s}")
+    private Duration batchWritesMaxWait;
+
+    private final MeterRegistry meterRegistry;
+
+    private AdmissionPool uploadBytes;
+    private AdmissionPool downloads;
+    private AdmissionPool zips;
+    private AdmissionPool transcodes;
+    private AdmissionPool batchWrites;
+
+    public AdmissionControl(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        uploadBytes = new AdmissionPool("upload-bytes", uploadBytesLimit.toBytes(), uploadBytesMaxQueued, maxWait);
+        downloads = new AdmissionPool("downloads", downloadsLimit, downloadsMaxQueued, maxWait);
+        zips = new AdmissionPool("zips", zipsLimit, zipsMaxQueued, maxWait);
+        transcodes = new AdmissionPool("transcodes", transcodesLimit, transcodesMaxQueued, maxWait);
+        batchWrites = new AdmissionPool("batch-writes", batchWritesLimit, batchWritesMaxQueued, batchWritesMaxWait);
+        for (AdmissionPool pool : List.of(uploadBytes, downloads, zips, transcodes, batchWrites)) {
+            Gauge.builder(LIMIT, pool, AdmissionPool::getLimit)
+                    .tag("pool", pool.getName())
+                    .description("Giới hạn của nhóm")
+                    .register(meterRegistry);
+            Gauge.builder(IN_USE, pool, AdmissionPool::getInUse)
+                    .tag("pool", pool.getName())
+                    .description("Phần giới hạn đang được dùng")
+                    .register(meterRegistry);
+            Gauge.builder(QUEUED, pool, AdmissionPool::getQueued)
+                    .tag("pool", pool.getName())
+                    .description("Số request đang chờ")
+                    .register(meterRegistry);
+            FunctionCounter.builder(REJECTED, pool, AdmissionPool::getRejected)
+                    .tag("pool", pool.getName())
+                    .description("Số request bị từ chối vì quá tải")
+                    .register(meterRegistry);
+        }
+        log.info("Giới hạn tải: enabled={}, uploadBytes={}, downloads={}, zips={}, transcodes={}, batchWrites={}, "
+                + "maxWait={}", enabled, uploadBytesLimit, downloadsLimit, zipsLimit, transcodesLimit, batchWritesLimit,
+                maxWait);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Thời gian client nên chờ trước khi thử lại, gửi trong header {@code Retry-After}. */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public AdmissionPool uploadBytes() {
+        return uploadBytes;
+    }
+
+    /** Số byte được tính cho một upload có {@code Content-Length} là {@code contentLength} (-1 nếu không có). */
+    public long uploadWeight(long contentLength) {
+        return contentLength >= 0 ? contentLength : maxFileSize.toBytes();
+    }
+
+    public AdmissionPool downloads() {
+        return downloads;
+    }
+
+    public AdmissionPool zips() {
+        return zips;
+    }
+
+    public AdmissionPool transcodes() {
+        return transcodes;
+    }
+
+    public AdmissionPool batchWrites() {
+        return batchWrites;
+    }
+}
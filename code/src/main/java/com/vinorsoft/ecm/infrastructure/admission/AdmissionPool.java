@@ -0,0 +1,173 @@
+package com.vinorsoft.ecm.infrastructure.admission;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Nhóm {@code limit} đơn vị (số request, số byte...) cấp cho request mà không
+ * chặn thread. Request không đủ chỗ xếp hàng theo thứ tự đến, tối đa
+ * {@code maxQueued} request và chờ tối đa {@code maxWait}; hàng đợi đầy hoặc
+ * chờ quá lâu thì bị từ chối bằng {@link AdmissionRejectedException} thay vì
+ * làm chậm mọi request đang chạy.
+ * <p>
+ * Request xin nhiều hơn {@code limit} được tính là {@code limit}, tức chạy một
+ * mình thay vì không bao giờ được nhận.
+ */
+public class AdmissionPool {
+    private final String name;
+    private final long limit;
+    private final int maxQueued;
+    private final Duration maxWait;
+
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private long inUse;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public AdmissionPool(String name, long limit, int maxQueued, Duration maxWait) {
+        if (limit <= 0 || maxQueued < 0) {
+            throw new IllegalArgumentException("Giới hạn không hợp lệ cho " + name + ": limit=" + limit
+                    + ", maxQueued=" + maxQueued);
+        }
+        this.name = name;
+        this.limit = limit;
+        this.maxQueued = maxQueued;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * Chạy {@code work} trong lúc giữ {@code amount} đơn vị; đơn vị được trả lại
+     * khi {@code work} kết thúc, lỗi hoặc bị hủy.
+     */
+    public <T> Mono<T> admit(long amount, Function<Permit, Mono<T>> work) {
+        return Mono.usingWhen(acquire(amount), work, Permit::releaseAsync, (permit, e) -> permit.releaseAsync(),
+                Permit::releaseAsync);
+    }
+
+    /** Xin {@code amount} đơn vị; bên nhận phải gọi {@link Permit#release()} đúng một lần. */
+    public Mono<Permit> acquire(long amount) {
+        long weight = Math.max(1, Math.min(amount, limit));
+        return Mono.<Permit>create(sink -> {
+            Waiter waiter = new Waiter(weight, sink);
+            // Đăng ký trước khi xếp hàng: request bị hủy trong lúc chờ rời hàng đợi
+            sink.onCancel(() -> cancel(waiter));
+            Permit granted = null;
+            boolean queueFull = false;
+            synchronized (this) {
+                if (waiter.cancelled) {
+                    return;
+                }
+                if (waiters.isEmpty() && inUse + weight <= limit) {
+                    inUse += weight;
+                    granted = new Permit(weight);
+                    // Bị hủy trước khi kịp giao permit thì cancel() trả lại
+                    waiter.permit = granted;
+                } else if (waiters.size() >= maxQueued) {
+                    queueFull = true;
+                } else {
+                    waiters.addLast(waiter);
+                }
+            }
+            if (granted != null) {
+                sink.success(granted);
+            } else if (queueFull) {
+                rejected.incrementAndGet();
+                sink.error(new AdmissionRejectedException(name, "hàng đợi đầy (" + maxQueued + ")"));
+            }
+        }).timeout(maxWait, Mono.defer(() -> {
+            rejected.incrementAndGet();
+            return Mono.error(new AdmissionRejectedException(name, "chờ quá " + maxWait));
+        }));
+    }
+
+    private void release(long weight) {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            inUse -= weight;
+            Waiter next;
+            while ((next = waiters.peekFirst()) != null && inUse + next.weight <= limit) {
+                waiters.pollFirst();
+                inUse += next.weight;
+                next.permit = new Permit(next.weight);
+                granted.add(next);
+            }
+        }
+        granted.forEach(waiter -> waiter.sink.success(waiter.permit));
+    }
+
+    private void cancel(Waiter waiter) {
+        Permit permit;
+        synchronized (this) {
+            waiter.cancelled = true;
+            if (waiters.remove(waiter)) {
+                return;
+            }
+            permit = waiter.permit;
+        }
+        // Được cấp cùng lúc với bị hủy: giá trị sẽ bị bỏ nên phải trả lại ở đây
+        if (permit != null) {
+            permit.release();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    public synchronized long getInUse() {
+        return inUse;
+    }
+
+    public synchronized int getQueued() {
+        return waiters.size();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /** Phần đã được cấp; trả lại nhiều lần chỉ có tác dụng lần đầu. */
+    public class Permit {
+        private final long weight;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(long weight) {
+            this.weight = weight;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                AdmissionPool.this.release(weight);
+            }
+        }
+
+        private Mono<Void> releaseAsync() {
+            return Mono.fromRunnable(this::release);
+        }
+    }
+
+    private static class Waiter {
+        private final long weight;
+        private final MonoSink<Permit> sink;
+        private Permit permit;
+        private boolean cancelled;
+
+        Waiter(long weight, MonoSink<Permit> sink) {
+            this.weight = weight;
+            this.sink = sink;
+        }
+    }
+}
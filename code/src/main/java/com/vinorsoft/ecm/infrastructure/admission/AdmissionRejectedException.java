@@ -0,0 +1,15 @@
+package com.vinorsoft.ecm.infrastructure.admission;
+
+/** Request bị từ chối vì {@link AdmissionPool} đã đầy và hàng đợi đầy hoặc chờ quá lâu. */
+public class AdmissionRejectedException extends RuntimeException {
+    private final String pool;
+
+    public AdmissionRejectedException(String pool, String reason) {
+        super("Quá tải " + pool + ": " + reason);
+        this.pool = pool;
+    }
+
+    public String getPool() {
+        return pool;
+    }
+}
@@ -0,0 +1,8 @@
+package com.vinorsoft.ecm.infrastructure.archive;
+
+public enum ZipCompressionMode {
+    /** STORED cho các định dạng đã nén sẵn (upload.archive.stored-extensions), DEFLATED cho phần còn lại. */
+    AUTO,
+    STORED,
+    DEFLATED
+}
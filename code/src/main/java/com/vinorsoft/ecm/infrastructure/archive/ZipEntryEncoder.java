@@ -0,0 +1,213 @@
+package com.vinorsoft.ecm.infrastructure.archive;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SynchronousSink;
+
+/**
+ * Mã hóa dữ liệu của một entry: đọc file theo từng chunk, tính CRC32 và nén
+ * DEFLATE (hoặc giữ nguyên với STORED). Mỗi lần downstream request thì mới đọc
+ * chunk tiếp theo, nên tốc độ đọc đĩa đi theo tốc độ client nhận. Entry không
+ * nằm trên đĩa local được mã hóa theo từng buffer của luồng nội dung.
+ * <p>
+ * Mỗi entry có {@link Deflater} riêng nên nhiều entry có thể được nén song song
+ * trên các worker khác nhau.
+ */
+final class ZipEntryEncoder {
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ZipEntrySource source;
+    private final int compressionLevel;
+    private final byte[] name;
+    private final long dosTime;
+    private final boolean zip64;
+    private final CRC32 crc = new CRC32();
+
+    private FileChannel channel;
+    private Deflater deflater;
+    private byte[] input;
+    private byte[] output;
+    private long size;
+    private long compressedSize;
+
+    ZipEntryEncoder(ZipEntrySource source, int compressionLevel) {
+        this.source = source;
+        this.compressionLevel = compressionLevel;
+        this.name = ZipRecords.encodeName(source.getName());
+        this.dosTime = ZipRecords.dosTime(source.getLastModified());
+        this.zip64 = source.getSize() >= ZipRecords.ZIP64_ENTRY_THRESHOLD;
+    }
+
+    private int method() {
+        return source.isStored() ? ZipRecords.METHOD_STORED : ZipRecords.METHOD_DEFLATED;
+    }
+
+    byte[] localHeader() {
+        return ZipRecords.localHeader(name, method(), dosTime, zip64);
+    }
+
+    /** Chỉ gọi được sau khi {@link #encode} đã hoàn tất. */
+    byte[] dataDescriptor() {
+        boolean zip64Descriptor = zip64 || size >= ZipRecords.ZIP32_MAX || compressedSize >= ZipRecords.ZIP32_MAX;
+        return ZipRecords.dataDescriptor(crc.getValue(), compressedSize, size, zip64Descriptor);
+    }
+
+    ZipRecords.CentralEntry centralEntry(long localHeaderOffset) {
+        return new ZipRecords.CentralEntry(name, method(), dosTime, crc.getValue(), compressedSize, size,
+                localHeaderOffset);
+    }
+
+    Flux<DataBuffer> encode(DataBufferFactory bufferFactory) {
+        if (source.getPath() == null) {
+            return encodeStream(bufferFactory);
+        }
+        return Flux.<DataBuffer, ZipEntryEncoder>generate(() -> {
+            open();
+            return this;
+        }, (encoder, sink) -> {
+            encoder.next(sink, bufferFactory);
+            return encoder;
+        }, ZipEntryEncoder::close);
+    }
+
+    private Flux<DataBuffer> encodeStream(DataBufferFactory bufferFactory) {
+        return Flux.using(() -> {
+            if (!source.isStored()) {
+                deflater = new Deflater(compressionLevel, true);
+                output = new byte[CHUNK_SIZE];
+            }
+            return this;
+        }, encoder -> source.getContent()
+                .concatMapIterable(dataBuffer -> {
+                    try {
+                        return encoder.update(dataBuffer, bufferFactory);
+                    } finally {
+                        DataBufferUtils.release(dataBuffer);
+                    }
+                })
+                .concatWith(Flux.defer(() -> Flux.fromIterable(encoder.finish(bufferFactory)))),
+                ZipEntryEncoder::close);
+    }
+
+    private List<DataBuffer> update(DataBuffer dataBuffer, DataBufferFactory bufferFactory) {
+        byte[] bytes = new byte[dataBuffer.readableByteCount()];
+        dataBuffer.read(bytes);
+        crc.update(bytes);
+        size += bytes.length;
+        if (deflater == null) {
+            compressedSize += bytes.length;
+            return List.of(bufferFactory.wrap(bytes));
+        }
+        deflater.setInput(bytes);
+        return drain(bufferFactory, deflater::needsInput);
+    }
+
+    private List<DataBuffer> finish(DataBufferFactory bufferFactory) {
+        if (deflater == null) {
+            return List.of();
+        }
+        deflater.finish();
+        return drain(bufferFactory, deflater::finished);
+    }
+
+    /** Lấy hết dữ liệu đã nén cho đến khi {@code done}. */
+    private List<DataBuffer> drain(DataBufferFactory bufferFactory, BooleanSupplier done) {
+        List<DataBuffer> chunks = new ArrayList<>();
+        while (!done.getAsBoolean()) {
+            int deflated = deflater.deflate(output, 0, output.length);
+            if (deflated > 0) {
+                compressedSize += deflated;
+                chunks.add(bufferFactory.wrap(Arrays.copyOf(output, deflated)));
+            }
+        }
+        return chunks;
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(source.getPath(), StandardOpenOption.READ);
+        input = new byte[CHUNK_SIZE];
+        if (!source.isStored()) {
+            deflater = new Deflater(compressionLevel, true);
+            output = new byte[CHUNK_SIZE];
+        }
+    }
+
+    private void next(SynchronousSink<DataBuffer> sink, DataBufferFactory bufferFactory) {
+        try {
+            if (deflater == null) {
+                int read = read();
+                if (read < 0) {
+                    sink.complete();
+                    return;
+                }
+                crc.update(input, 0, read);
+                size += read;
+                compressedSize += read;
+                sink.next(bufferFactory.wrap(Arrays.copyOf(input, read)));
+                return;
+            }
+
+            // Deflater giữ lại dữ liệu trong buffer nội bộ, nên có thể phải nạp
+            // nhiều chunk đầu vào mới có một chunk đầu ra
+            while (true) {
+                int deflated = deflater.deflate(output, 0, output.length);
+                if (deflated > 0) {
+                    compressedSize += deflated;
+                    sink.next(bufferFactory.wrap(Arrays.copyOf(output, deflated)));
+                    return;
+                }
+                if (deflater.finished()) {
+                    sink.complete();
+                    return;
+                }
+                if (deflater.needsInput()) {
+                    int read = read();
+                    if (read < 0) {
+                        deflater.finish();
+                    } else {
+                        crc.update(input, 0, read);
+                        size += read;
+                        deflater.setInput(input, 0, read);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            sink.error(e);
+        }
+    }
+
+    private int read() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(input);
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        return read;
+    }
+
+    private void close() {
+        if (deflater != null) {
+            deflater.end();
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
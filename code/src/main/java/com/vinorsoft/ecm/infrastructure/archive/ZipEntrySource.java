@@ -0,0 +1,43 @@
+package com.vinorsoft.ecm.infrastructure.archive;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import lombok.Getter;
+import reactor.core.publisher.Flux;
+
+@Getter
+public class ZipEntrySource {
+    /** Tên entry trong file ZIP (đã được làm duy nhất). */
+    private final String name;
+    /** File trên đĩa local; null nếu nội dung được đọc từ {@link #content}. */
+    private final Path path;
+    /** Nội dung của file không nằm trên đĩa local (S3...), chỉ được subscribe một lần. */
+    private final Flux<DataBuffer> content;
+    /** Kích thước dự kiến, dùng để quyết định có cần ZIP64 cho entry hay không. */
+    private final long size;
+    private final LocalDateTime lastModified;
+    /** true: ghi nguyên dạng (STORED), không nén lại media đã nén sẵn. */
+    private final boolean stored;
+
+    public ZipEntrySource(String name, Path path, long size, LocalDateTime lastModified, boolean stored) {
+        this(name, path, null, size, lastModified, stored);
+    }
+
+    public ZipEntrySource(String name, Flux<DataBuffer> content, long size, LocalDateTime lastModified,
+            boolean stored) {
+        this(name, null, content, size, lastModified, stored);
+    }
+
+    private ZipEntrySource(String name, Path path, Flux<DataBuffer> content, long size, LocalDateTime lastModified,
+            boolean stored) {
+        this.name = name;
+        this.path = path;
+        this.content = content;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.stored = stored;
+    }
+}
@@ -0,0 +1,37 @@
+package com.vinorsoft.ecm.infrastructure.archive;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+/**
+ * Một phần dữ liệu của entry do worker nén tạo ra. Header và data descriptor
+ * không phụ thuộc offset nên worker có thể tạo trước; offset và central
+ * directory được tính ở bước ghép tuần tự.
+ */
+final class ZipPart {
+    enum Kind {
+        HEADER, DATA, DESCRIPTOR
+    }
+
+    final Kind kind;
+    final DataBuffer buffer;
+    /** Chỉ có ở DESCRIPTOR: thông tin entry (offset header được điền lúc ghép). */
+    final ZipEntryEncoder encoder;
+
+    private ZipPart(Kind kind, DataBuffer buffer, ZipEntryEncoder encoder) {
+        this.kind = kind;
+        this.buffer = buffer;
+        this.encoder = encoder;
+    }
+
+    static ZipPart header(DataBuffer buffer) {
+        return new ZipPart(Kind.HEADER, buffer, null);
+    }
+
+    static ZipPart data(DataBuffer buffer) {
+        return new ZipPart(Kind.DATA, buffer, null);
+    }
+
+    static ZipPart descriptor(DataBuffer buffer, ZipEntryEncoder encoder) {
+        return new ZipPart(Kind.DESCRIPTOR, buffer, encoder);
+    }
+}
@@ -0,0 +1,207 @@
+package com.vinorsoft.ecm.infrastructure.archive;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Các bản ghi nhị phân của định dạng ZIP (APPNOTE 6.3), gồm cả ZIP64.
+ * <p>
+ * Mọi entry đều đặt bit 3 (data descriptor) vì CRC chỉ biết được sau khi đọc
+ * hết file; kích thước thật nằm trong data descriptor và central directory.
+ */
+final class ZipRecords {
+    static final int METHOD_STORED = 0;
+    static final int METHOD_DEFLATED = 8;
+
+    /** Entry lớn hơn ngưỡng này dùng ZIP64 (chừa khoảng cho dữ liệu nén phình ra). */
+    static final long ZIP64_ENTRY_THRESHOLD = 0xF0000000L;
+    static final long ZIP32_MAX = 0xFFFFFFFFL;
+    private static final int ZIP16_MAX = 0xFFFF;
+
+    private static final int LOCAL_HEADER_SIG = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIG = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIG = 0x02014b50;
+    private static final int ZIP64_END_SIG = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIG = 0x07064b50;
+    private static final int END_SIG = 0x06054b50;
+
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final int VERSION_MADE_BY = (3 << 8) | VERSION_ZIP64; // Unix
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int EXTERNAL_ATTRIBUTES = 0100644 << 16; // -rw-r--r--
+    private static final int ZIP64_EXTRA_TAG = 0x0001;
+
+    private ZipRecords() {
+    }
+
+    /** Thông tin của một entry đã ghi xong, dùng cho central directory. */
+    static final class CentralEntry {
+        final byte[] name;
+        final int method;
+        final long dosTime;
+        final long crc;
+        final long compressedSize;
+        final long size;
+        final long localHeaderOffset;
+
+        CentralEntry(byte[] name, int method, long dosTime, long crc, long compressedSize, long size,
+                long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+    }
+
+    static byte[] encodeName(String name) {
+        return name.getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] localHeader(byte[] name, int method, long dosTime, boolean zip64) {
+        int extraLength = zip64 ? 20 : 0;
+        ByteBuffer buf = allocate(30 + name.length + extraLength);
+        buf.putInt(LOCAL_HEADER_SIG);
+        buf.putShort((short) (zip64 ? VERSION_ZIP64 : VERSION_DEFAULT));
+        buf.putShort((short) (FLAG_DATA_DESCRIPTOR | FLAG_UTF8));
+        buf.putShort((short) method);
+        buf.putInt((int) dosTime);
+        buf.putInt(0); // crc: nằm trong data descriptor
+        buf.putInt(zip64 ? (int) ZIP32_MAX : 0);
+        buf.putInt(zip64 ? (int) ZIP32_MAX : 0);
+        buf.putShort((short) name.length);
+        buf.putShort((short) extraLength);
+        buf.put(name);
+        if (zip64) {
+            buf.putShort((short) ZIP64_EXTRA_TAG);
+            buf.putShort((short) 16);
+            buf.putLong(0);
+            buf.putLong(0);
+        }
+        return buf.array();
+    }
+
+    static byte[] dataDescriptor(long crc, long compressedSize, long size, boolean zip64) {
+        ByteBuffer buf = allocate(zip64 ? 24 : 16);
+        buf.putInt(DATA_DESCRIPTOR_SIG);
+        buf.putInt((int) crc);
+        if (zip64) {
+            buf.putLong(compressedSize);
+            buf.putLong(size);
+        } else {
+            buf.putInt((int) compressedSize);
+            buf.putInt((int) size);
+        }
+        return buf.array();
+    }
+
+    static byte[] centralDirectory(List<CentralEntry> entries) {
+        int totalLength = 0;
+        for (CentralEntry entry : entries) {
+            totalLength += 46 + entry.name.length + zip64ExtraLength(entry);
+        }
+
+        ByteBuffer buf = allocate(totalLength);
+        for (CentralEntry entry : entries) {
+            boolean sizeOverflow = entry.size >= ZIP32_MAX;
+            boolean compressedOverflow = entry.compressedSize >= ZIP32_MAX;
+            boolean offsetOverflow = entry.localHeaderOffset >= ZIP32_MAX;
+            int extraLength = zip64ExtraLength(entry);
+
+            buf.putInt(CENTRAL_HEADER_SIG);
+            buf.putShort((short) VERSION_MADE_BY);
+            buf.putShort((short) (extraLength > 0 ? VERSION_ZIP64 : VERSION_DEFAULT));
+            buf.putShort((short) (FLAG_DATA_DESCRIPTOR | FLAG_UTF8));
+            buf.putShort((short) entry.method);
+            buf.putInt((int) entry.dosTime);
+            buf.putInt((int) entry.crc);
+            buf.putInt((int) (compressedOverflow ? ZIP32_MAX : entry.compressedSize));
+            buf.putInt((int) (sizeOverflow ? ZIP32_MAX : entry.size));
+            buf.putShort((short) entry.name.length);
+            buf.putShort((short) extraLength);
+            buf.putShort((short) 0); // comment
+            buf.putShort((short) 0); // disk number start
+            buf.putShort((short) 0); // internal attributes
+            buf.putInt(EXTERNAL_ATTRIBUTES);
+            buf.putInt((int) (offsetOverflow ? ZIP32_MAX : entry.localHeaderOffset));
+            buf.put(entry.name);
+            if (extraLength > 0) {
+                buf.putShort((short) ZIP64_EXTRA_TAG);
+                buf.putShort((short) (extraLength - 4));
+                if (sizeOverflow) {
+                    buf.putLong(entry.size);
+                }
+                if (compressedOverflow) {
+                    buf.putLong(entry.compressedSize);
+                }
+                if (offsetOverflow) {
+                    buf.putLong(entry.localHeaderOffset);
+                }
+            }
+        }
+        return buf.array();
+    }
+
+    static byte[] endOfCentralDirectory(int entryCount, long centralDirectoryOffset, long centralDirectorySize) {
+        boolean zip64 = entryCount >= ZIP16_MAX || centralDirectoryOffset >= ZIP32_MAX
+                || centralDirectorySize >= ZIP32_MAX;
+        ByteBuffer buf = allocate((zip64 ? 56 + 20 : 0) + 22);
+        if (zip64) {
+            long zip64EndOffset = centralDirectoryOffset + centralDirectorySize;
+            buf.putInt(ZIP64_END_SIG);
+            buf.putLong(44); // kích thước phần còn lại của bản ghi
+            buf.putShort((short) VERSION_MADE_BY);
+            buf.putShort((short) VERSION_ZIP64);
+            buf.putInt(0);
+            buf.putInt(0);
+            buf.putLong(entryCount);
+            buf.putLong(entryCount);
+            buf.putLong(centralDirectorySize);
+            buf.putLong(centralDirectoryOffset);
+
+            buf.putInt(ZIP64_LOCATOR_SIG);
+            buf.putInt(0);
+            buf.putLong(zip64EndOffset);
+            buf.putInt(1);
+        }
+        buf.putInt(END_SIG);
+        buf.putShort((short) 0);
+        buf.putShort((short) 0);
+        buf.putShort((short) Math.min(entryCount, ZIP16_MAX));
+        buf.putShort((short) Math.min(entryCount, ZIP16_MAX));
+        buf.putInt((int) Math.min(centralDirectorySize, ZIP32_MAX));
+        buf.putInt((int) Math.min(centralDirectoryOffset, ZIP32_MAX));
+        buf.putShort((short) 0); // comment
+        return buf.array();
+    }
+
+    static long dosTime(LocalDateTime time) {
+        if (time == null || time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16); // 1980-01-01 00:00
+        }
+        return ((long) (time.getYear() - 1980) << 25)
+                | ((long) time.getMonthValue() << 21)
+                | ((long) time.getDayOfMonth() << 16)
+                | ((long) time.getHour() << 11)
+                | ((long) time.getMinute() << 5)
+                | (time.getSecond() >> 1);
+    }
+
+    private static int zip64ExtraLength(CentralEntry entry) {
+        int fields = (entry.size >= ZIP32_MAX ? 1 : 0)
+                + (entry.compressedSize >= ZIP32_MAX ? 1 : 0)
+                + (entry.localHeaderOffset >= ZIP32_MAX ? 1 : 0);
+        return fields == 0 ? 0 : 4 + fields * 8;
+    }
+
+    private static ByteBuffer allocate(int length) {
+        return ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
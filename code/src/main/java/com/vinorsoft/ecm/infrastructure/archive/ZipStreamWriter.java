@@ -0,0 +1,130 @@
+package com.vinorsoft.ecm.infrastructure.archive;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Tạo file ZIP dạng luồng {@code Flux<DataBuffer>} ghi thẳng xuống response,
+ * không qua pipe hay thread riêng cho từng request.
+ * <p>
+ * Việc đọc và nén chạy trên một scheduler dùng chung có giới hạn thread; nhiều
+ * entry liên tiếp được đọc và nén trước song song trong một cửa sổ có giới hạn
+ * ({@code upload.archive.read-ahead}), ngoài cửa sổ đó chunk chỉ được tạo khi
+ * client request (backpressure). Lỗi I/O giữa chừng làm
+ * Flux lỗi và kết nối bị hủy, client không nhận một file ZIP cụt mà tưởng là
+ * hoàn chỉnh.
+ * <p>
+ * Số file ZIP được tạo đồng thời ({@code upload.archive.max-concurrent}) được
+ * giới hạn bởi nhóm {@code zips} của
+ * {@link com.vinorsoft.ecm.infrastructure.admission.AdmissionControl}, giữ đến
+ * khi response được gửi xong.
+ */
+@Component
+@Slf4j
+public class ZipStreamWriter {
+    @Value("${upload.archive.threads:4}")
+    private int threads;
+
+    @Value("${upload.archive.compression-level:6}")
+    private int compressionLevel;
+
+    @Value("${upload.archive.read-ahead:4}")
+    private int readAhead;
+
+    @Value("${upload.archive.read-ahead-chunks:8}")
+    private int readAheadChunks;
+
+    private final DataBufferFactory bufferFactory = DefaultDataBufferFactory.sharedInstance;
+
+    private Scheduler scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Schedulers.newBoundedElastic(threads, Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "ecm-zip");
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    public Flux<DataBuffer> write(List<ZipEntrySource> entries) {
+        return Flux.defer(() -> {
+            ArchiveState state = new ArchiveState();
+            // Tối đa readAhead entry được đọc và nén trước song song, mỗi entry
+            // giữ tối đa readAheadChunks chunk; flatMapSequential vẫn trả ra
+            // đúng thứ tự được yêu cầu
+            return Flux.fromIterable(entries)
+                    .flatMapSequential(entry -> encodeEntry(entry).subscribeOn(scheduler),
+                            readAhead, readAheadChunks)
+                    .map(state::accept)
+                    .concatWith(Mono.fromSupplier(state::finish))
+                    .doOnDiscard(ZipPart.class, part -> DataBufferUtils.release(part.buffer))
+                    .doOnComplete(() -> log.info("Tạo ZIP hoàn tất: entries={}, bytes={}",
+                            state.entries.size(), state.offset))
+                    .doOnError(e -> log.error("Lỗi khi tạo file ZIP: {}", e.getMessage(), e));
+        });
+    }
+
+    private Flux<ZipPart> encodeEntry(ZipEntrySource entry) {
+        return Flux.defer(() -> {
+            ZipEntryEncoder encoder = new ZipEntryEncoder(entry, compressionLevel);
+            return Flux.concat(
+                    Mono.fromSupplier(() -> ZipPart.header(bufferFactory.wrap(encoder.localHeader()))),
+                    encoder.encode(bufferFactory).map(ZipPart::data),
+                    Mono.fromSupplier(() -> ZipPart.descriptor(bufferFactory.wrap(encoder.dataDescriptor()),
+                            encoder)));
+        });
+    }
+
+    /**
+     * Trạng thái của một file ZIP: offset hiện tại và các entry đã ghi. Chỉ
+     * được truy cập tuần tự ở bước ghép.
+     */
+    private final class ArchiveState {
+        private final List<ZipRecords.CentralEntry> entries = new ArrayList<>();
+        private long offset;
+        private long headerOffset;
+
+        private DataBuffer accept(ZipPart part) {
+            if (part.kind == ZipPart.Kind.HEADER) {
+                headerOffset = offset;
+            } else if (part.kind == ZipPart.Kind.DESCRIPTOR) {
+                entries.add(part.encoder.centralEntry(headerOffset));
+            }
+            offset += part.buffer.readableByteCount();
+            return part.buffer;
+        }
+
+        private DataBuffer emit(byte[] bytes) {
+            offset += bytes.length;
+            return bufferFactory.wrap(bytes);
+        }
+
+        private DataBuffer finish() {
+            long centralDirectoryOffset = offset;
+            byte[] centralDirectory = ZipRecords.centralDirectory(entries);
+            byte[] end = ZipRecords.endOfCentralDirectory(entries.size(), centralDirectoryOffset,
+                    centralDirectory.length);
+            byte[] bytes = new byte[centralDirectory.length + end.length];
+            System.arraycopy(centralDirectory, 0, bytes, 0, centralDirectory.length);
+            System.arraycopy(end, 0, bytes, centralDirectory.length, end.length);
+            return emit(bytes);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.vinorsoft.ecm.infrastructure.background;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.vinorsoft.ecm.domain.CompressJobRepository;
+import com.vinorsoft.ecm.domain.FileECM;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Đưa file vào hàng đợi nén bền vững (bảng COMPRESS_JOB). Nên gọi trong cùng
+ * transaction với việc lưu {@link FileECM} để không mất job khi service
+ * restart.
+ * <p>
+ * Số job đang chờ hoặc đang chạy được đếm định kỳ và xuất qua gauge
+ * {@value #QUEUE_DEPTH}; gauge không truy vấn DB mỗi lần được đọc.
+ */
+@Component
+@Slf4j
+public class CompressJobQueue {
+    public static final String QUEUE_DEPTH = "ecm.compress.queue.depth";
+
+    @Value("${spring.servlet.compress.enabled}")
+    private boolean enableCompression;
+
+    @Value("${upload.compress.max-attempts:5}")
+    private int maxAttempts;
+
+    private final CompressJobRepository compressJobRepository;
+    private final AtomicLong queueDepth = new AtomicLong();
+
+    public CompressJobQueue(CompressJobRepository compressJobRepository, MeterRegistry meterRegistry) {
+        this.compressJobRepository = compressJobRepository;
+        Gauge.builder(QUEUE_DEPTH, queueDepth, AtomicLong::get)
+                .description("Số job nén đang chờ hoặc đang chạy")
+                .register(meterRegistry);
+    }
+
+    public Mono<Void> enqueue(FileECM fileECM) {
+        if (!enableCompression || !isCompressible(fileECM)) {
+            return Mono.empty();
+        }
+        return compressJobRepository.enqueue(fileECM.getId(), maxAttempts)
+                .doOnSuccess(inserted -> log.info("Đã thêm job nén: fileId={}, inserted={}", fileECM.getId(),
+                        inserted))
+                .then();
+    }
+
+    /** Như {@link #enqueue(FileECM)} cho nhiều file, bằng một câu lệnh. */
+    public Mono<Void> enqueueAll(List<FileECM> files) {
+        UUID[] fileIds = files.stream()
+                .filter(CompressJobQueue::isCompressible)
+                .map(FileECM::getId)
+                .toArray(UUID[]::new);
+        if (!enableCompression || fileIds.length == 0) {
+            return Mono.empty();
+        }
+        return compressJobRepository.enqueueAll(fileIds, maxAttempts)
+                .doOnSuccess(inserted -> log.info("Đã thêm {} job nén cho {} file", inserted, fileIds.length))
+                .then();
+    }
+
+    public Mono<Long> countActive() {
+        return compressJobRepository.countActive();
+    }
+
+    @Scheduled(fixedDelayString = "${upload.metrics.queue-depth-interval:30s}")
+    public Mono<Void> refreshQueueDepth() {
+        if (!enableCompression) {
+            return Mono.empty();
+        }
+        return countActive()
+                .doOnNext(queueDepth::set)
+                .onErrorResume(e -> {
+                    log.warn("Không thể đếm job nén: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /** ffmpeg đọc file và ghi bản nén cạnh bản gốc, nên chỉ nén file trên đĩa local. */
+    static boolean isCompressible(FileECM fileECM) {
+        return fileECM.getContentType() != null && fileECM.getContentType().startsWith("video/")
+                && FileECM.STORAGE_LOCAL.equals(fileECM.getStorageBackend());
+    }
+}
@@ -1,47 +1,291 @@
 package com.vinorsoft.ecm.infrastructure.background;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.concurrent.BlockingQueue;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
 
 import com.vinorsoft.ecm.application.VideoCompressionService;
+import com.vinorsoft.ecm.domain.CompressJob;
+import com.vinorsoft.ecm.domain.CompressJobRepository;
 import com.vinorsoft.ecm.domain.FileECM;
 import com.vinorsoft.ecm.domain.FileECMRepository;
+import com.vinorsoft.ecm.infrastructure.cache.FileECMCache;
+import com.vinorsoft.ecm.infrastructure.metrics.EcmMetrics;
+import com.vinorsoft.ecm.infrastructure.metrics.PipelineStage;
 
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Nhóm worker nén video lấy việc từ bảng COMPRESS_JOB. Số worker bị giới hạn
+ * bởi số CPU vì mỗi ffmpeg đã dùng nhiều core. Nén xong thì lưu đường dẫn và
+ * kích thước bản nén vào bản ghi {@link FileECM} để download phục vụ bản nhỏ
+ * hơn.
+ * <p>
+ * Một thread poll nhận job theo lô (bằng số worker đang rảnh) với
+ * {@code FOR UPDATE SKIP LOCKED}, nên nhiều node chia nhau job mà không nhận
+ * trùng. Job lỗi được thử lại với backoff tăng dần, quá số lần cho phép thì
+ * chuyển sang DEAD. Node chết giữa chừng thì job được node khác nhận lại khi
+ * hết visibility timeout.
+ */
+@Component
 @Slf4j
 public class FileCompressConsumer {
-    BlockingQueue<FileECM> emailQueue;
+    private static final Duration DB_TIMEOUT = Duration.ofSeconds(30);
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    @Value("${spring.servlet.compress.enabled}")
+    private boolean enableCompression;
+
+    @Value("${upload.compress.workers:1}")
+    private int workers;
+
+    @Value("${upload.compress.poll-interval:5s}")
+    private Duration pollInterval;
+
+    /** Phải lớn hơn upload.compress.timeout để job đang chạy không bị node khác nhận. */
+    @Value("${upload.compress.visibility-timeout:3h}")
+    private Duration visibilityTimeout;
+
+    @Value("${upload.compress.retry-backoff:1m}")
+    private Duration retryBackoff;
+
+    @Value("${upload.compress.retry-backoff-max:1h}")
+    private Duration retryBackoffMax;
 
+    private final CompressJobRepository compressJobRepository;
     private final FileECMRepository fileECMRepository;
     private final VideoCompressionService videoCompressionService;
+    private final FileECMCache fileECMCache;
+    private final EcmMetrics metrics;
 
-    public FileCompressConsumer(FileECMRepository fileECMRepository, VideoCompressionService videoCompressionService) {
+    private final String workerId = ManagementFactory.getRuntimeMXBean().getName() + "-"
+            + UUID.randomUUID().toString().substring(0, 8);
+
+    private ExecutorService executor;
+    private Thread poller;
+    private Semaphore freeSlots;
+
+    public FileCompressConsumer(CompressJobRepository compressJobRepository, FileECMRepository fileECMRepository,
+            VideoCompressionService videoCompressionService, FileECMCache fileECMCache, EcmMetrics metrics) {
+        this.compressJobRepository = compressJobRepository;
         this.fileECMRepository = fileECMRepository;
         this.videoCompressionService = videoCompressionService;
+        this.fileECMCache = fileECMCache;
+        this.metrics = metrics;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enableCompression) {
+            return;
+        }
+        int workerCount = Math.max(1, Math.min(workers, Runtime.getRuntime().availableProcessors()));
+        freeSlots = new Semaphore(workerCount);
+        executor = Executors.newFixedThreadPool(workerCount, workerThreadFactory());
+        poller = new Thread(this::run, "ecm-compress-poller");
+        poller.setDaemon(true);
+        poller.start();
+        log.info("Đã khởi động {} worker nén video: workerId={}", workerCount, workerId);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (poller != null) {
+            poller.interrupt();
+        }
+        if (executor != null) {
+            // Ngắt các worker đang chờ ffmpeg (ffmpeg sẽ bị hủy); job quay lại
+            // hàng đợi khi hết visibility timeout
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
     }
 
     public void run() {
         try {
-            while (true) {
-                FileECM fileEcm = emailQueue.take();
+            while (!Thread.currentThread().isInterrupted()) {
+                // Chờ có ít nhất một worker rảnh rồi nhận job cho tất cả worker rảnh
+                freeSlots.acquire();
+                int slots = 1 + freeSlots.drainPermits();
+                List<CompressJob> jobs = claim(slots);
+                freeSlots.release(slots - jobs.size());
+
+                for (CompressJob job : jobs) {
+                    recordWait(job);
+                    executor.submit(() -> {
+                        try {
+                            process(job);
+                        } finally {
+                            freeSlots.release();
+                        }
+                    });
+                }
+                if (jobs.isEmpty()) {
+                    Thread.sleep(pollInterval.toMillis());
+                }
+            }
+        } catch (InterruptedException ex) {
+            log.info("Dừng nhận job nén: workerId={}", workerId);
+            Thread.currentThread().interrupt();
+        }
+    }
 
-                String pattern = "MM/dd/yyyy HH:mm:ss.SSS";
-                DateFormat df = new SimpleDateFormat(pattern);
-                log.info(Thread.currentThread().getName() + " file recive at " + df.format(new Date()) + " type: "
-                        + fileEcm.getContentType());
+    private List<CompressJob> claim(int limit) throws InterruptedException {
+        try {
+            List<CompressJob> jobs = compressJobRepository
+                    .claim(workerId, limit, visibilityTimeout.toSeconds())
+                    .collectList()
+                    .block(DB_TIMEOUT);
+            return jobs != null ? jobs : List.of();
+        } catch (RuntimeException ex) {
+            log.error("Lỗi khi nhận job nén: {}", ex.getMessage());
+            Thread.sleep(pollInterval.toMillis());
+            return List.of();
+        }
+    }
 
-                try {
+    private void process(CompressJob job) {
+        if (job.getAttempts() > job.getMaxAttempts()) {
+            // Lease hết hạn quá nhiều lần (worker chết hoặc bị kill khi đang chạy job này)
+            deadLetter(job, "Vượt quá " + job.getMaxAttempts() + " lần thử");
+            return;
+        }
 
-                } catch (Exception ex) {
-                    log.error("Error when consume file: {} for type {} with id {}", ex,
-                            fileEcm.getContentType(), fileEcm.getId());
+        try {
+            FileECM fileEcm = fileECMRepository.findById(job.getFileId()).block(DB_TIMEOUT);
+            if (fileEcm == null) {
+                log.info("File của job nén không còn tồn tại: jobId={}, fileId={}", job.getId(), job.getFileId());
+            } else {
+                log.info("Bắt đầu job nén: jobId={}, fileId={}, attempt={}/{}", job.getId(), fileEcm.getId(),
+                        job.getAttempts(), job.getMaxAttempts());
+                long startTime = System.nanoTime();
+                boolean success = false;
+                try {
+                    compress(fileEcm);
+                    success = true;
+                } finally {
+                    metrics.record(PipelineStage.COMPRESS_RUN, Duration.ofNanos(System.nanoTime() - startTime),
+                            success);
                 }
             }
+            compressJobRepository.complete(job.getId(), workerId).block(DB_TIMEOUT);
         } catch (InterruptedException ex) {
-            log.error("Error when consume file: " + ex);
+            // Service đang dừng: để lease hết hạn, job sẽ được nhận lại
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            log.error("Error when consume file: {} with job {} for file {}", ex.getMessage(), job.getId(),
+                    job.getFileId(), ex);
+            if (job.getAttempts() >= job.getMaxAttempts()) {
+                deadLetter(job, ex.toString());
+            } else {
+                retryLater(job, ex.toString());
+            }
+        }
+    }
+
+    /**
+     * Thời gian từ lúc thêm job đến lúc được nhận, tính theo giờ của DB (cả hai
+     * mốc đều do {@code now()} của DB ghi). Job thử lại tính từ lần thêm đầu tiên.
+     */
+    private void recordWait(CompressJob job) {
+        if (job.getCreatedAt() != null && job.getUpdatedAt() != null) {
+            metrics.record(PipelineStage.COMPRESS_WAIT, Duration.between(job.getCreatedAt(), job.getUpdatedAt()),
+                    true);
+        }
+    }
+
+    private void retryLater(CompressJob job, String error) {
+        long delaySeconds = Math.min(retryBackoffMax.toSeconds(),
+                retryBackoff.toSeconds() << Math.min(job.getAttempts() - 1, 20));
+        log.warn("Job nén sẽ thử lại sau {}s: jobId={}, attempt={}/{}", delaySeconds, job.getId(),
+                job.getAttempts(), job.getMaxAttempts());
+        try {
+            compressJobRepository.retryLater(job.getId(), workerId, truncate(error), delaySeconds).block(DB_TIMEOUT);
+        } catch (RuntimeException ex) {
+            log.error("Lỗi khi cập nhật job nén {}: {}", job.getId(), ex.getMessage());
+        }
+    }
+
+    private void deadLetter(CompressJob job, String error) {
+        log.error("Job nén chuyển sang DEAD: jobId={}, fileId={}, error={}", job.getId(), job.getFileId(), error);
+        try {
+            compressJobRepository.deadLetter(job.getId(), workerId, truncate(error)).block(DB_TIMEOUT);
+        } catch (RuntimeException ex) {
+            log.error("Lỗi khi cập nhật job nén {}: {}", job.getId(), ex.getMessage());
         }
     }
+
+    private void compress(FileECM fileEcm) throws IOException, InterruptedException, TimeoutException {
+        if (!CompressJobQueue.isCompressible(fileEcm)) {
+            log.debug("Bỏ qua file không phải video hoặc không nằm trên đĩa local: fileId={}", fileEcm.getId());
+            return;
+        }
+
+        Path compressedPath = Paths.get(fileEcm.getBlobHash() != null
+                ? videoCompressionService.compressVideo(fileEcm.getFilePath(), blobCompressedPath(fileEcm))
+                : videoCompressionService.compressVideo(fileEcm.getFilePath()));
+        long compressedSize = Files.size(compressedPath);
+        if (compressedSize >= fileEcm.getFileSize()) {
+            log.info("Bản nén không nhỏ hơn bản gốc, bỏ qua: fileId={}, original={}, compressed={}",
+                    fileEcm.getId(), fileEcm.getFileSize(), compressedSize);
+            Files.deleteIfExists(compressedPath);
+            return;
+        }
+
+        Integer updated = fileECMRepository
+                .updateCompressedFile(fileEcm.getId(), compressedPath.toString(), compressedSize)
+                .block(DB_TIMEOUT);
+        fileECMCache.invalidate(fileEcm.getId());
+        if (updated == null || updated == 0) {
+            log.warn("File đã bị xóa trong lúc nén, xóa bản nén: fileId={}", fileEcm.getId());
+            Files.deleteIfExists(compressedPath);
+            return;
+        }
+        log.info("Đã lưu bản nén: fileId={}, original={}, compressed={}, path={}", fileEcm.getId(),
+                fileEcm.getFileSize(), compressedSize, compressedPath);
+    }
+
+    /**
+     * Blob dùng chung giữa nhiều bản ghi và không có phần mở rộng, nên bản nén
+     * được đặt tên riêng theo bản ghi, lấy phần mở rộng từ tên file gốc.
+     */
+    private static String blobCompressedPath(FileECM fileEcm) {
+        String fileName = fileEcm.getFileName();
+        int lastDotIndex = fileName.lastIndexOf('.');
+        String extension = lastDotIndex == -1 ? "" : fileName.substring(lastDotIndex);
+        Path blobPath = Paths.get(fileEcm.getFilePath());
+        return blobPath.resolveSibling(blobPath.getFileName() + "_" + fileEcm.getId() + "_compress" + extension)
+                .toString();
+    }
+
+    private static String truncate(String error) {
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "ecm-compress-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
 }
@@ -0,0 +1,145 @@
+package com.vinorsoft.ecm.infrastructure.bandwidth;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Giới hạn tốc độ gửi của các luồng download bằng token bucket (byte/giây):
+ * <ul>
+ * <li>{@code upload.bandwidth.per-client}: cộng mọi luồng của một client (tài
+ * khoản đăng nhập);</li>
+ * <li>{@code upload.bandwidth.per-endpoint}: cộng mọi luồng của một endpoint
+ * ({@code endpoint=tốc độ,...});</li>
+ * <li>{@code upload.bandwidth.total}: tổng của mọi luồng. Khi tổng bị vượt,
+ * mỗi luồng chỉ được gửi theo phần của mình: {@code total} chia cho các luồng
+ * đang gửi theo trọng số endpoint ({@code upload.bandwidth.weights}). Khi tổng
+ * còn dư thì không luồng nào bị giới hạn bởi phần này, nên băng thông của luồng
+ * đã kết thúc hoặc đang gửi chậm được các luồng khác dùng.</li>
+ * </ul>
+ * Tốc độ 0 là không giới hạn. Việc chờ nằm giữa hai buffer và dùng timer của
+ * Reactor: luồng đơn giản là chưa request buffer tiếp theo (backpressure),
+ * không có thread nào bị chặn.
+ */
+@Component
+@Slf4j
+public class BandwidthShaper {
+    @Value("${upload.bandwidth.enabled:false}")
+    private boolean enabled;
+
+    @Value("${upload.bandwidth.total:0}")
+    private DataSize total;
+
+    @Value("${upload.bandwidth.per-client:0}")
+    private DataSize perClient;
+
+    @Value("${upload.bandwidth.per-endpoint:}")
+    private String perEndpointConfig;
+
+    @Value("${upload.bandwidth.weights:}")
+    private String weightsConfig;
+
+    /** Số byte mỗi bucket được gửi liền không bị giới hạn. */
+    @Value("${upload.bandwidth.burst:1MB}")
+    private DataSize burst;
+
+    private final Map<String, Long> endpointRates = new HashMap<>();
+    private final Map<String, Integer> weights = new HashMap<>();
+    private final Map<String, TokenBucket> endpointBuckets = new HashMap<>();
+    private Cache<String, TokenBucket> clientBuckets;
+    private TokenBucket totalBucket;
+
+    /** Tổng trọng số của các luồng đang gửi. */
+    private final AtomicLong activeWeight = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        parse(perEndpointConfig, "upload.bandwidth.per-endpoint",
+                (endpoint, value) -> endpointRates.put(endpoint, DataSize.parse(value).toBytes()));
+        parse(weightsConfig, "upload.bandwidth.weights",
+                (endpoint, value) -> weights.put(endpoint, Integer.valueOf(value)));
+        endpointRates.forEach((endpoint, rate) -> endpointBuckets.put(endpoint, newBucket()));
+        clientBuckets = Caffeine.newBuilder().expireAfterAccess(Duration.ofMinutes(10)).build();
+        totalBucket = newBucket();
+        if (enabled) {
+            log.info("Giới hạn băng thông: total={}, perClient={}, perEndpoint={}, weights={}", total, perClient,
+                    endpointRates, weights);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * {@code body} được gửi không nhanh hơn các giới hạn của {@code client} và
+     * {@code endpoint}; {@code client} null thì không giới hạn theo client.
+     */
+    public Flux<DataBuffer> shape(Publisher<? extends DataBuffer> body, String client, String endpoint) {
+        TokenBucket clientBucket = client != null && perClient.toBytes() > 0
+                ? clientBuckets.get(client, key -> newBucket())
+                : null;
+        TokenBucket endpointBucket = endpointBuckets.get(endpoint);
+        long endpointRate = endpointRates.getOrDefault(endpoint, 0L);
+        int weight = weights.getOrDefault(endpoint, 1);
+        return Flux.defer(() -> {
+            activeWeight.addAndGet(weight);
+            TokenBucket streamBucket = newBucket();
+            return Flux.<DataBuffer>from(body)
+                    .concatMap(buffer -> {
+                        long bytes = buffer.readableByteCount();
+                        long waitNanos = 0;
+                        if (clientBucket != null) {
+                            waitNanos = clientBucket.charge(bytes, perClient.toBytes());
+                        }
+                        if (endpointBucket != null) {
+                            waitNanos = Math.max(waitNanos, endpointBucket.charge(bytes, endpointRate));
+                        }
+                        // Phần của luồng chỉ được tính khi tổng bị vượt, để không tích nợ lúc còn dư
+                        if (total.toBytes() > 0 && totalBucket.charge(bytes, total.toBytes()) > 0) {
+                            double share = (double) total.toBytes() * weight / Math.max(weight, activeWeight.get());
+                            waitNanos = Math.max(waitNanos, streamBucket.charge(bytes, share));
+                        }
+                        // Buffer được gửi ngay, luồng chờ trả hết nợ rồi mới nhận buffer tiếp theo
+                        return waitNanos == 0
+                                ? Mono.just(buffer)
+                                : Flux.just(buffer).concatWith(Mono.delay(Duration.ofNanos(waitNanos))
+                                        .then(Mono.<DataBuffer>empty()));
+                    }, 1)
+                    .doFinally(signal -> activeWeight.addAndGet(-weight));
+        });
+    }
+
+    private TokenBucket newBucket() {
+        return new TokenBucket(burst.toBytes(), System::nanoTime);
+    }
+
+    private static void parse(String config, String property, BiConsumer<String, String> entry) {
+        for (String item : config.split(",")) {
+            if (item.isBlank()) {
+                continue;
+            }
+            String[] parts = item.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalStateException(property + " không hợp lệ: " + item);
+            }
+            entry.accept(parts[0].trim(), parts[1].trim());
+        }
+    }
+}
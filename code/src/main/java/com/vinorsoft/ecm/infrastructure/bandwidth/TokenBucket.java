@@ -0,0 +1,44 @@
+package com.vinorsoft.ecm.infrastructure.bandwidth;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket tính theo byte, cho phép nợ: một buffer luôn được gửi ngay và
+ * trừ hết vào số token, kể cả khi thành âm; luồng phải chờ đến khi trả hết nợ
+ * trước khi gửi buffer tiếp theo. Nhờ vậy không phải giữ buffer trong lúc chờ
+ * và không cần biết trước kích thước buffer. Tốc độ được truyền vào mỗi lần
+ * dùng nên có thể thay đổi theo thời gian (chia sẻ công bằng).
+ */
+class TokenBucket {
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final long burst;
+    private final LongSupplier nanoClock;
+
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(long burst, LongSupplier nanoClock) {
+        this.burst = burst;
+        this.nanoClock = nanoClock;
+        this.tokens = burst;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * Trừ {@code bytes} token.
+     *
+     * @return số nano giây phải chờ trước khi gửi tiếp (0 nếu không nợ).
+     */
+    synchronized long charge(long bytes, double bytesPerSecond) {
+        refill(bytesPerSecond);
+        tokens -= bytes;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / bytesPerSecond * NANOS_PER_SECOND);
+    }
+
+    private void refill(double bytesPerSecond) {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * bytesPerSecond / NANOS_PER_SECOND);
+        lastRefill = now;
+    }
+}
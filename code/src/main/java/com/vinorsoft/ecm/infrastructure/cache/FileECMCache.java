@@ -0,0 +1,87 @@
+package com.vinorsoft.ecm.infrastructure.cache;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.vinorsoft.ecm.domain.FileECM;
+import com.vinorsoft.ecm.domain.FileECMRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Cache metadata {@link FileECM} theo id, đặt trước {@link FileECMRepository}.
+ * <p>
+ * Giới hạn theo số phần tử và TTL; nhiều request cùng miss một id chỉ tạo một
+ * câu truy vấn. Id không tồn tại không được cache. Object trả về được dùng
+ * chung nên không được sửa trực tiếp; sau khi ghi DB phải gọi
+ * {@link #invalidate(UUID)}.
+ */
+@Component
+@Slf4j
+public class FileECMCache {
+    public static final String CACHE_NAME = "fileEcm";
+
+    @Value("${upload.cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${upload.cache.ttl:10m}")
+    private Duration ttl;
+
+    private final FileECMRepository fileECMRepository;
+    private final MeterRegistry meterRegistry;
+
+    private AsyncCache<UUID, FileECM> cache;
+
+    public FileECMCache(FileECMRepository fileECMRepository, MeterRegistry meterRegistry) {
+        this.fileECMRepository = fileECMRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        // cache.gets{result=hit|miss}, cache.evictions, cache.size...
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+        log.info("FileECM cache: maximumSize={}, ttl={}", maximumSize, ttl);
+    }
+
+    public Mono<FileECM> get(UUID fileId) {
+        // suppressCancel: một subscriber hủy không được hủy truy vấn đang dùng chung
+        return Mono.fromFuture(() -> cache.get(fileId,
+                (key, executor) -> fileECMRepository.findById(key).toFuture()), true);
+    }
+
+    /**
+     * Lấy nhiều id: id đã có trong cache không truy vấn lại, phần còn lại được
+     * lấy theo lô. Id không tồn tại không có trong Map kết quả.
+     */
+    public Mono<Map<UUID, FileECM>> getAll(Collection<UUID> fileIds, int batchSize) {
+        return Mono.fromFuture(() -> cache.getAll(fileIds,
+                (keys, executor) -> fileECMRepository.findAllByIdInBatches(new ArrayList<>(keys), batchSize)
+                        .collectMap(FileECM::getId)
+                        .toFuture()),
+                true);
+    }
+
+    public void invalidate(UUID fileId) {
+        if (fileId != null) {
+            cache.synchronous().invalidate(fileId);
+        }
+    }
+}
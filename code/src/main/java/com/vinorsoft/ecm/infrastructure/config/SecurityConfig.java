@@ -1,10 +1,16 @@
 package com.vinorsoft.ecm.infrastructure.config;
 
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.config.Customizer;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.core.userdetails.MapReactiveUserDetailsService;
 import org.springframework.security.core.userdetails.User;
@@ -12,9 +18,22 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
+
+import com.vinorsoft.ecm.infrastructure.security.ApiKeyAuthenticationManager;
+import com.vinorsoft.ecm.infrastructure.security.BearerApiKeyConverter;
+import com.vinorsoft.ecm.infrastructure.security.CachingAuthenticationManager;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 
+/**
+ * HTTP Basic (BCrypt, kết quả thành công được cache) và API key qua
+ * {@code Authorization: Bearer <key>}.
+ */
 @Configuration
 @EnableWebFluxSecurity
+@Slf4j
 public class SecurityConfig {
     @Value("${spring.security.user.name}")
     private String username;
@@ -22,15 +41,46 @@ public class SecurityConfig {
     @Value("${spring.security.user.password}")
     private String password;
 
+    @Value("${upload.security.credential-cache.enabled:true}")
+    private boolean credentialCacheEnabled;
+
+    @Value("${upload.security.credential-cache.maximum-size:10000}")
+    private long credentialCacheMaximumSize;
+
+    @Value("${upload.security.credential-cache.ttl:5m}")
+    private Duration credentialCacheTtl;
+
+    /** Các API key dạng {@code tên=key,...}. */
+    @Value("${upload.security.api-keys:}")
+    private String apiKeysConfig;
+
     @Bean
-    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
-        return http
+    public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http, MeterRegistry meterRegistry) {
+        // BCrypt chạy trên boundedElastic, không chặn event loop
+        UserDetailsRepositoryReactiveAuthenticationManager bcrypt =
+                new UserDetailsRepositoryReactiveAuthenticationManager(userDetailsService());
+        bcrypt.setPasswordEncoder(passwordEncoder());
+        ReactiveAuthenticationManager basicAuthentication = bcrypt;
+        if (credentialCacheEnabled) {
+            basicAuthentication = new CachingAuthenticationManager(basicAuthentication, credentialCacheMaximumSize,
+                    credentialCacheTtl, meterRegistry);
+        }
+        Map<String, String> apiKeys = parseApiKeys();
+        ApiKeyAuthenticationManager apiKeyAuthentication = new ApiKeyAuthenticationManager(apiKeys);
+        ReactiveAuthenticationManager httpBasicAuthentication = basicAuthentication;
+        http
                 .csrf(ServerHttpSecurity.CsrfSpec::disable)
                 .authorizeExchange(exchanges -> exchanges
                         .pathMatchers("/public/**").permitAll()
                         .anyExchange().authenticated())
-                .httpBasic(Customizer.withDefaults())
-                .build();
+                .httpBasic(basic -> basic.authenticationManager(httpBasicAuthentication));
+        if (!apiKeys.isEmpty()) {
+            AuthenticationWebFilter apiKeyFilter = new AuthenticationWebFilter(apiKeyAuthentication);
+            apiKeyFilter.setServerAuthenticationConverter(new BearerApiKeyConverter());
+            http.addFilterAt(apiKeyFilter, SecurityWebFiltersOrder.HTTP_BASIC);
+        }
+        log.info("Xác thực: credentialCache={}, apiKeys={}", credentialCacheEnabled, apiKeys.size());
+        return http.build();
     }
 
     @Bean
@@ -46,4 +96,23 @@ public class SecurityConfig {
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
     }
+
+    /** @return tên principal theo key */
+    private Map<String, String> parseApiKeys() {
+        Map<String, String> keys = new HashMap<>();
+        for (String item : apiKeysConfig.split(",")) {
+            if (item.isBlank()) {
+                continue;
+            }
+            String[] parts = item.split("=", 2);
+            if (parts.length != 2 || parts[0].isBlank()) {
+                // Không ghi nội dung vào log: có thể là key
+                throw new IllegalStateException("upload.security.api-keys phải có dạng tên=key,...");
+            }
+            if (keys.put(parts[1].trim(), parts[0].trim()) != null) {
+                throw new IllegalStateException("API key bị trùng: " + parts[0].trim());
+            }
+        }
+        return keys;
+    }
 }
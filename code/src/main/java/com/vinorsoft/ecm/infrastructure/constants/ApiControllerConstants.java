@@ -4,9 +4,18 @@ public class ApiControllerConstants {
     public static final String API_FILE_UPLOAD = "/api/v1/ecm";
     public static final String API_FILE_UPLOAD_GET_FILE_INFO = "/get-file-info";
     public static final String API_FILE_UPLOAD_GET_FILES_INFO = "/get-files-info";
+    public static final String API_FILE_UPLOAD_GET_FILE_VERSIONS = "/get-file-versions";
     public static final String API_FILE_UPLOAD_UPLOAD = "/upload";
     public static final String API_FILE_UPLOAD_UPLOAD_MULTIPLE = "/upload-multiple";
     public static final String API_FILE_UPLOAD_DOWNLOAD = "/download";
     public static final String API_FILE_UPLOAD_DOWNLOAD_MULTIPLE = "/download-multiple";
+    public static final String API_FILE_UPLOAD_RENDITION = "/rendition";
+    public static final String API_FILE_UPLOAD_PRESIGN = "/presign";
     public static final String API_FILE_UPLOAD_DELETE_FILE = "/delete";
+    public static final String API_FILE_UPLOAD_SESSIONS = "/upload-sessions";
+    public static final String API_FILE_UPLOAD_SESSION = "/upload-sessions/{sessionId}";
+    public static final String API_FILE_UPLOAD_SESSION_CHUNKS = "/upload-sessions/{sessionId}/chunks";
+    public static final String API_FILE_UPLOAD_SESSION_COMMIT = "/upload-sessions/{sessionId}/commit";
+    public static final String PUBLIC = "/public";
+    public static final String PUBLIC_DOWNLOAD = "/download/{fileId}";
 }
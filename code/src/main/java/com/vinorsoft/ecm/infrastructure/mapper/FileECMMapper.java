@@ -4,8 +4,10 @@ import java.util.List;
 
 import org.mapstruct.*;
 
+import com.vinorsoft.ecm.application.FileUploadResult;
 import com.vinorsoft.ecm.domain.FileECM;
 import com.vinorsoft.ecm.interfaces.dto.FileECMDTO;
+import com.vinorsoft.ecm.interfaces.dto.FileUploadResultDTO;
 
 @Mapper(unmappedTargetPolicy = ReportingPolicy.IGNORE, componentModel = MappingConstants.ComponentModel.SPRING)
 public interface FileECMMapper {
@@ -16,4 +18,6 @@ public interface FileECMMapper {
     List<FileECM> toListEntity(List<FileECMDTO> files);
 
     List<FileECMDTO> toListDTO(List<FileECM> files);
+
+    List<FileUploadResultDTO> toResultDTOs(List<FileUploadResult> results);
 }
@@ -0,0 +1,13 @@
+package com.vinorsoft.ecm.infrastructure.mapper;
+
+import java.util.List;
+
+import org.mapstruct.*;
+
+import com.vinorsoft.ecm.domain.UploadSession;
+import com.vinorsoft.ecm.interfaces.dto.UploadSessionDTO;
+
+@Mapper(unmappedTargetPolicy = ReportingPolicy.IGNORE, componentModel = MappingConstants.ComponentModel.SPRING)
+public interface UploadSessionMapper {
+    UploadSessionDTO toDTO(UploadSession session, List<Integer> receivedChunks);
+}
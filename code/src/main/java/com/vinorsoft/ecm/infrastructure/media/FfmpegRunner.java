@@ -0,0 +1,93 @@
+package com.vinorsoft.ecm.infrastructure.media;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Chạy ffmpeg với danh sách tham số (không qua shell, nên đường dẫn có dấu
+ * cách hay ký tự đặc biệt không bị hiểu sai). stdout/stderr luôn được đọc hết
+ * trên một thread riêng để ffmpeg không bị treo khi pipe đầy; chỉ giữ lại vài
+ * dòng cuối để ghi log khi lỗi.
+ */
+@Component
+@Slf4j
+public class FfmpegRunner {
+    private static final int OUTPUT_TAIL_LINES = 20;
+
+    @Value("${upload.ffmpeg.path:ffmpeg}")
+    private String ffmpegPath;
+
+    /**
+     * @throws TimeoutException nếu quá {@code timeout}; process đã bị hủy.
+     * @throws IOException      nếu ffmpeg kết thúc với mã lỗi khác 0.
+     */
+    public void run(List<String> arguments, Duration timeout)
+            throws IOException, InterruptedException, TimeoutException {
+        List<String> command = new ArrayList<>(arguments.size() + 3);
+        command.add(ffmpegPath);
+        command.add("-hide_banner");
+        command.add("-nostdin");
+        command.addAll(arguments);
+
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectErrorStream(true);
+        Process process = processBuilder.start();
+
+        Deque<String> outputTail = new ArrayDeque<>(OUTPUT_TAIL_LINES);
+        Thread drainer = new Thread(() -> drain(process, outputTail), "ffmpeg-drain-" + process.pid());
+        drainer.setDaemon(true);
+        drainer.start();
+
+        try {
+            if (!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                throw new TimeoutException("ffmpeg chạy quá " + timeout + ": " + command);
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            throw e;
+        } finally {
+            drainer.join(1000);
+        }
+
+        int exitCode = process.exitValue();
+        if (exitCode != 0) {
+            String tail;
+            synchronized (outputTail) {
+                tail = String.join("\n", outputTail);
+            }
+            throw new IOException("ffmpeg lỗi với exit code " + exitCode + ":\n" + tail);
+        }
+    }
+
+    private void drain(Process process, Deque<String> outputTail) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                synchronized (outputTail) {
+                    if (outputTail.size() == OUTPUT_TAIL_LINES) {
+                        outputTail.removeFirst();
+                    }
+                    outputTail.addLast(line);
+                }
+            }
+        } catch (IOException e) {
+            log.debug("Dừng đọc output ffmpeg: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.vinorsoft.ecm.infrastructure.metrics;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Metric của luồng upload/download: thời gian từng bước ({@link PipelineStage}),
+ * số request đang chạy, số byte vào/ra và kích thước file. Các meter được tạo
+ * sẵn một lần nên việc ghi nhận không phải tra cứu registry.
+ * <p>
+ * Byte vào/ra là counter; tốc độ byte/s lấy bằng {@code rate()} trên Prometheus.
+ */
+@Component
+public class EcmMetrics {
+    public static final String STAGE_DURATION = "ecm.stage.duration";
+    public static final String IN_FLIGHT = "ecm.requests.in.flight";
+    public static final String BYTES_IN = "ecm.bytes.in";
+    public static final String BYTES_OUT = "ecm.bytes.out";
+    public static final String UPLOAD_SIZE = "ecm.upload.size";
+    public static final String ZIP_ENTRIES = "ecm.zip.entries";
+
+    static final String OUTCOME_SUCCESS = "success";
+    static final String OUTCOME_ERROR = "error";
+    static final String OUTCOME_CANCELLED = "cancelled";
+
+    private final MeterRegistry meterRegistry;
+    private final Map<PipelineStage, Map<String, Timer>> stageTimers = new EnumMap<>(PipelineStage.class);
+    private final AtomicInteger uploadsInFlight = new AtomicInteger();
+    private final AtomicInteger downloadsInFlight = new AtomicInteger();
+    private final Counter bytesIn;
+    private final Counter bytesOut;
+    private final DistributionSummary uploadSize;
+    private final DistributionSummary zipEntries;
+
+    public EcmMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (PipelineStage stage : PipelineStage.values()) {
+            stageTimers.put(stage, List.of(OUTCOME_SUCCESS, OUTCOME_ERROR, OUTCOME_CANCELLED).stream()
+                    .collect(Collectors.toMap(Function.identity(), outcome -> Timer.builder(STAGE_DURATION)
+                            .description("Thời gian của từng bước xử lý")
+                            .tag("stage", stage.getTagValue())
+                            .tag("outcome", outcome)
+                            .register(meterRegistry))));
+        }
+        Gauge.builder(IN_FLIGHT, uploadsInFlight, AtomicInteger::get)
+                .description("Số request đang xử lý")
+                .tag("operation", "upload")
+                .register(meterRegistry);
+        Gauge.builder(IN_FLIGHT, downloadsInFlight, AtomicInteger::get)
+                .description("Số request đang xử lý")
+                .tag("operation", "download")
+                .register(meterRegistry);
+        bytesIn = Counter.builder(BYTES_IN)
+                .description("Số byte nội dung upload đã nhận")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        bytesOut = Counter.builder(BYTES_OUT)
+                .description("Số byte nội dung download đã gửi")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        uploadSize = DistributionSummary.builder(UPLOAD_SIZE)
+                .description("Kích thước file upload")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        zipEntries = DistributionSummary.builder(ZIP_ENTRIES)
+                .description("Số file trong mỗi ZIP download-multiple")
+                .register(meterRegistry);
+    }
+
+    /** Đo thời gian từ lúc subscribe đến khi {@code source} kết thúc. */
+    public <T> Mono<T> timed(PipelineStage stage, Mono<T> source) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return source
+                    .doOnSuccess(value -> sample.stop(timer(stage, OUTCOME_SUCCESS)))
+                    .doOnError(e -> sample.stop(timer(stage, OUTCOME_ERROR)))
+                    .doOnCancel(() -> sample.stop(timer(stage, OUTCOME_CANCELLED)));
+        });
+    }
+
+    /** Như {@link #timed(PipelineStage, Mono)}, tính đến phần tử cuối cùng. */
+    public <T> Flux<T> timed(PipelineStage stage, Flux<T> source) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return source
+                    .doOnComplete(() -> sample.stop(timer(stage, OUTCOME_SUCCESS)))
+                    .doOnError(e -> sample.stop(timer(stage, OUTCOME_ERROR)))
+                    .doOnCancel(() -> sample.stop(timer(stage, OUTCOME_CANCELLED)));
+        });
+    }
+
+    /** Ghi nhận thời gian của bước chạy ngoài Reactor (worker nén). */
+    public void record(PipelineStage stage, Duration duration, boolean success) {
+        timer(stage, success ? OUTCOME_SUCCESS : OUTCOME_ERROR).record(duration);
+    }
+
+    public <T> Mono<T> trackUpload(Mono<T> source) {
+        return Mono.defer(() -> {
+            uploadsInFlight.incrementAndGet();
+            return source.doFinally(signal -> uploadsInFlight.decrementAndGet());
+        });
+    }
+
+    public <T> Mono<T> trackDownload(Mono<T> source) {
+        return Mono.defer(() -> {
+            downloadsInFlight.incrementAndGet();
+            return source.doFinally(signal -> downloadsInFlight.decrementAndGet());
+        });
+    }
+
+    public <T> Flux<T> trackDownload(Flux<T> source) {
+        return Flux.defer(() -> {
+            downloadsInFlight.incrementAndGet();
+            return source.doFinally(signal -> downloadsInFlight.decrementAndGet());
+        });
+    }
+
+    /** Đếm byte ngay khi từng buffer đến, trước khi được ghi xuống đĩa. */
+    public Flux<DataBuffer> countBytesIn(Flux<DataBuffer> content) {
+        return content.doOnNext(dataBuffer -> bytesIn.increment(dataBuffer.readableByteCount()));
+    }
+
+    public Flux<DataBuffer> countBytesOut(Flux<DataBuffer> content) {
+        return content.doOnNext(dataBuffer -> bytesOut.increment(dataBuffer.readableByteCount()));
+    }
+
+    /** Response ghi bằng zero-copy không đi qua buffer nên được đếm khi đã gửi xong. */
+    public void recordBytesOut(long bytes) {
+        if (bytes > 0) {
+            bytesOut.increment(bytes);
+        }
+    }
+
+    public void recordUploadSize(long bytes) {
+        uploadSize.record(bytes);
+    }
+
+    public void recordZipEntries(int count) {
+        zipEntries.record(count);
+    }
+
+    private Timer timer(PipelineStage stage, String outcome) {
+        return stageTimers.get(stage).get(outcome);
+    }
+}
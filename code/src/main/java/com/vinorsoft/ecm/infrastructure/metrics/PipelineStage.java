@@ -0,0 +1,29 @@
+package com.vinorsoft.ecm.infrastructure.metrics;
+
+/** Các bước xử lý được đo thời gian, là giá trị của tag {@code stage}. */
+public enum PipelineStage {
+    VALIDATION("validation"),
+    DISK_WRITE("disk_write"),
+    DB_SAVE("db_save"),
+    METADATA_LOOKUP("metadata_lookup"),
+    ZIP_BUILD("zip_build"),
+    /** Từ lúc job nén được thêm vào hàng đợi đến lúc worker nhận. */
+    COMPRESS_WAIT("compress_wait"),
+    COMPRESS_RUN("compress_run"),
+    /** Chuyển một file từ tầng nóng xuống tầng lạnh, tính cả copy nội dung. */
+    TIER_DEMOTE("tier_demote"),
+    /** Đưa một file vừa được đọc từ tầng lạnh lên lại tầng nóng. */
+    TIER_PROMOTE("tier_promote"),
+    /** Tạo một rendition (ảnh thu nhỏ, khung hình video) bằng ffmpeg. */
+    RENDITION("rendition");
+
+    private final String tagValue;
+
+    PipelineStage(String tagValue) {
+        this.tagValue = tagValue;
+    }
+
+    public String getTagValue() {
+        return tagValue;
+    }
+}
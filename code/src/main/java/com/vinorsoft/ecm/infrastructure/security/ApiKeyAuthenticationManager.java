@@ -0,0 +1,72 @@
+package com.vinorsoft.ecm.infrastructure.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.web.authentication.preauth.PreAuthenticatedAuthenticationToken;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Xác thực API key (header {@code Authorization: Bearer <key>}, xem
+ * {@link BearerApiKeyConverter}). Mỗi key thuộc một principal, cấu hình bằng
+ * {@code upload.security.api-keys} ({@code tên=key,...}).
+ * <p>
+ * Chỉ giữ SHA-256 của key và tìm theo giá trị băm, nên thời gian tìm không phụ
+ * thuộc vào việc key gửi lên giống key thật đến đâu, và không cần BCrypt vì
+ * key đủ dài để không dò được.
+ */
+public class ApiKeyAuthenticationManager implements ReactiveAuthenticationManager {
+    /** Độ dài tối thiểu của key. */
+    public static final int MIN_KEY_LENGTH = 32;
+
+    private static final List<SimpleGrantedAuthority> AUTHORITIES = List.of(new SimpleGrantedAuthority("ROLE_USER"));
+
+    private final Map<String, String> principalsByKeyHash = new HashMap<>();
+
+    /** @param keys tên principal theo key */
+    public ApiKeyAuthenticationManager(Map<String, String> keys) {
+        keys.forEach((key, principal) -> {
+            if (key.length() < MIN_KEY_LENGTH) {
+                throw new IllegalStateException("API key của " + principal + " phải dài ít nhất " + MIN_KEY_LENGTH
+                        + " ký tự");
+            }
+            principalsByKeyHash.put(hash(key), principal);
+        });
+    }
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        String principal = authentication.getCredentials() instanceof String key
+                ? principalsByKeyHash.get(hash(key))
+                : null;
+        if (principal == null) {
+            return Mono.error(new BadCredentialsException("API key không hợp lệ"));
+        }
+        return Mono.just(UsernamePasswordAuthenticationToken.authenticated(principal, null, AUTHORITIES));
+    }
+
+    /** Token chưa xác thực chứa {@code key}, dùng cho {@link BearerApiKeyConverter}. */
+    static Authentication unauthenticated(String key) {
+        return new PreAuthenticatedAuthenticationToken(null, key);
+    }
+
+    private static String hash(String key) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Không tạo được SHA-256", e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.vinorsoft.ecm.infrastructure.security;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.server.authentication.ServerAuthenticationConverter;
+import org.springframework.web.server.ServerWebExchange;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Đọc API key từ header {@code Authorization: Bearer <key>}; request không có
+ * header này được chuyển tiếp cho các cách xác thực khác (HTTP Basic).
+ */
+public class BearerApiKeyConverter implements ServerAuthenticationConverter {
+    private static final String BEARER = "Bearer ";
+
+    @Override
+    public Mono<Authentication> convert(ServerWebExchange exchange) {
+        String authorization = exchange.getRequest().getHeaders().getFirst(HttpHeaders.AUTHORIZATION);
+        if (authorization == null || !authorization.regionMatches(true, 0, BEARER, 0, BEARER.length())) {
+            return Mono.empty();
+        }
+        return Mono.just(ApiKeyAuthenticationManager.unauthenticated(authorization.substring(BEARER.length()).trim()));
+    }
+}
@@ -0,0 +1,86 @@
+package com.vinorsoft.ecm.infrastructure.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.HexFormat;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import reactor.core.publisher.Mono;
+
+/**
+ * Cache kết quả xác thực HTTP Basic thành công, để mỗi request không phải chạy
+ * lại BCrypt (cố ý chậm, 50-100 ms CPU). Key là HMAC-SHA256 của
+ * {@code username:password} với khóa ngẫu nhiên sinh khi khởi động, nên bộ nhớ
+ * không giữ mật khẩu hay một giá trị băm dò ngược được.
+ * <p>
+ * Chỉ kết quả thành công được cache, trong {@code ttl}; sai mật khẩu luôn phải
+ * qua BCrypt. Nhiều request cùng miss một key chỉ chạy một lần xác thực.
+ * Xác thực thất bại không làm future trong cache lỗi (Caffeine ghi log kèm
+ * stack trace cho mỗi future lỗi, nên sai mật khẩu liên tục sẽ làm ngập log):
+ * loader trả về null và lỗi {@link BadCredentialsException} được tạo bên ngoài
+ * cache.
+ */
+public class CachingAuthenticationManager implements ReactiveAuthenticationManager {
+    public static final String CACHE_NAME = "credentials";
+
+    private static final String HMAC = "HmacSHA256";
+
+    private final ReactiveAuthenticationManager delegate;
+    private final AsyncCache<String, Authentication> cache;
+    private final SecretKeySpec hmacKey;
+
+    public CachingAuthenticationManager(ReactiveAuthenticationManager delegate, long maximumSize, Duration ttl,
+            MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .buildAsync();
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.hmacKey = new SecretKeySpec(key, HMAC);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        if (!(authentication instanceof UsernamePasswordAuthenticationToken)
+                || !(authentication.getCredentials() instanceof String password)) {
+            return delegate.authenticate(authentication);
+        }
+        String key = cacheKey(authentication.getName(), password);
+        // suppressCancel: một request hủy không được hủy lần xác thực đang dùng chung
+        return Mono.fromFuture(() -> cache.get(key,
+                (k, executor) -> delegate.authenticate(authentication)
+                        .onErrorResume(AuthenticationException.class, e -> Mono.empty())
+                        .toFuture()), true)
+                .switchIfEmpty(Mono.error(() -> new BadCredentialsException("Sai tên đăng nhập hoặc mật khẩu")));
+    }
+
+    private String cacheKey(String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(hmacKey);
+            return HexFormat.of().formatHex(mac.doFinal((username + ":" + password)
+                    .getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Không tạo được " + HMAC, e);
+        }
+    }
+}
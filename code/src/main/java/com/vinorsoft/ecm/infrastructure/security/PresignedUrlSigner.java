@@ -0,0 +1,115 @@
+package com.vinorsoft.ecm.infrastructure.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.UUID;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ký và kiểm tra URL download có hạn dùng: chữ ký là HMAC-SHA256 (base64url)
+ * của {@code fileId}, {@code original} và thời điểm hết hạn (giây epoch) với
+ * khóa {@code upload.presign.secret}. Kiểm tra chỉ cần khóa, không cần DB hay
+ * tài khoản; mọi node dùng chung khóa thì URL dùng được trên mọi node. Đổi khóa
+ * làm mọi URL đã cấp mất hiệu lực.
+ */
+@Component
+@Slf4j
+public class PresignedUrlSigner {
+    private static final String HMAC = "HmacSHA256";
+    private static final int MIN_SECRET_LENGTH = 32;
+
+    @Value("${upload.presign.enabled:false}")
+    private boolean enabled;
+
+    @Value("${upload.presign.secret:}")
+    private String secret;
+
+    @Value("${upload.presign.default-ttl:15m}")
+    private Duration defaultTtl;
+
+    @Value("${upload.presign.max-ttl:7d}")
+    private Duration maxTtl;
+
+    private final Clock clock;
+
+    private SecretKeySpec key;
+
+    public PresignedUrlSigner() {
+        this(Clock.systemUTC());
+    }
+
+    PresignedUrlSigner(Clock clock) {
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        if (secret.length() < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException("upload.presign.secret phải dài ít nhất " + MIN_SECRET_LENGTH + " ký tự");
+        }
+        key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC);
+        log.info("URL ký sẵn: defaultTtl={}, maxTtl={}", defaultTtl, maxTtl);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Thời điểm hết hạn của URL cấp bây giờ; {@code ttl} null là
+     * {@code upload.presign.default-ttl}.
+     *
+     * @throws IllegalArgumentException nếu {@code ttl} không dương hoặc vượt quá {@code upload.presign.max-ttl}
+     */
+    public Instant expiresAt(Duration ttl) {
+        Duration validity = ttl != null ? ttl : defaultTtl;
+        if (validity.isZero() || validity.isNegative() || validity.compareTo(maxTtl) > 0) {
+            throw new IllegalArgumentException("Thời hạn URL phải trong khoảng (0, " + maxTtl + "]: " + validity);
+        }
+        return clock.instant().plus(validity).truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    public String sign(UUID fileId, boolean original, long expires) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            byte[] signature = mac.doFinal((fileId + "\n" + original + "\n" + expires)
+                    .getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Không tạo được " + HMAC, e);
+        }
+    }
+
+    /** Chữ ký đúng và URL chưa hết hạn. */
+    public boolean verify(UUID fileId, boolean original, long expires, String signature) {
+        if (!enabled || signature == null || expires <= clock.instant().getEpochSecond()) {
+            return false;
+        }
+        // So sánh thời gian hằng định để không dò được chữ ký theo từng byte
+        return MessageDigest.isEqual(sign(fileId, original, expires).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /** Số giây còn lại đến {@code expires}, không âm. */
+    public long secondsUntil(long expires) {
+        return Math.max(0, expires - clock.instant().getEpochSecond());
+    }
+}
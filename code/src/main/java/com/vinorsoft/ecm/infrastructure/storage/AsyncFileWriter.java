@@ -0,0 +1,104 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Ghi một luồng {@link DataBuffer} vào {@link AsynchronousFileChannel} bằng
+ * {@link CompletionHandler}, không chặn thread nào trong lúc chờ đĩa.
+ * <p>
+ * Vị trí của mỗi buffer được tự tính từ tổng số byte trước nó (không gọi
+ * {@code channel.size()}), nên tối đa {@code maxInFlight} buffer được ghi cùng
+ * lúc ở các vị trí khác nhau; buffer tiếp theo chỉ được request khi một lần
+ * ghi xong. Mỗi buffer được release ngay khi ghi xong hoặc lỗi.
+ */
+final class AsyncFileWriter {
+
+    private AsyncFileWriter() {
+    }
+
+    /** @return tổng số byte đã ghi. */
+    static Mono<Long> write(Flux<DataBuffer> content, AsynchronousFileChannel channel, long position,
+            int maxInFlight) {
+        return Mono.defer(() -> {
+            // Hàm map của flatMap được gọi tuần tự theo thứ tự buffer đến
+            AtomicLong nextPosition = new AtomicLong(position);
+            return content
+                    .flatMap(dataBuffer -> {
+                        long bufferPosition = nextPosition.getAndAdd(dataBuffer.readableByteCount());
+                        return Mono.<Integer>create(sink -> new BufferWrite(channel, dataBuffer, bufferPosition, sink)
+                                .start());
+                    }, maxInFlight)
+                    .reduce(0L, Long::sum);
+        });
+    }
+
+    /**
+     * Ghi một buffer (có thể gồm nhiều ByteBuffer và bị ghi thiếu) rồi
+     * release nó. Mỗi lần ghi xong, handler phát lệnh ghi tiếp cho phần còn
+     * lại.
+     */
+    private static final class BufferWrite implements CompletionHandler<Integer, ByteBuffer> {
+        private final AsynchronousFileChannel channel;
+        private final DataBuffer dataBuffer;
+        private final DataBuffer.ByteBufferIterator buffers;
+        private final MonoSink<Integer> sink;
+        private long position;
+        private int written;
+
+        BufferWrite(AsynchronousFileChannel channel, DataBuffer dataBuffer, long position, MonoSink<Integer> sink) {
+            this.channel = channel;
+            this.dataBuffer = dataBuffer;
+            this.buffers = dataBuffer.readableByteBuffers();
+            this.position = position;
+            this.sink = sink;
+        }
+
+        void start() {
+            writeNext(null);
+        }
+
+        private void writeNext(ByteBuffer current) {
+            while (current == null || !current.hasRemaining()) {
+                if (!buffers.hasNext()) {
+                    release();
+                    sink.success(written);
+                    return;
+                }
+                current = buffers.next();
+            }
+            try {
+                channel.write(current, position, current, this);
+            } catch (RuntimeException e) {
+                failed(e, current);
+            }
+        }
+
+        @Override
+        public void completed(Integer count, ByteBuffer current) {
+            position += count;
+            written += count;
+            writeNext(current);
+        }
+
+        @Override
+        public void failed(Throwable e, ByteBuffer current) {
+            release();
+            sink.error(e);
+        }
+
+        private void release() {
+            buffers.close();
+            DataBufferUtils.release(dataBuffer);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class BlobStat {
+    private final long size;
+    private final Instant lastModified;
+}
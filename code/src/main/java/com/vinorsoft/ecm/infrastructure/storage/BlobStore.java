@@ -0,0 +1,52 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.nio.file.Path;
+
+import org.springframework.core.io.buffer.DataBuffer;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Nơi lưu nội dung file (đĩa local, S3...). Key do chính store cấp và được
+ * ghi vào {@code FILE_PATH} cùng tên store ({@code STORAGE_BACKEND}), nên file
+ * cũ vẫn đọc được từ đúng nơi sau khi đổi {@code upload.storage.backend}.
+ */
+public interface BlobStore {
+
+    /** Tên ghi vào cột {@code STORAGE_BACKEND}. */
+    String name();
+
+    /** Key cho file mới {@code fileName} của {@code category}. */
+    Mono<String> newKey(String category, String fileName);
+
+    /** Key của nội dung lưu theo SHA-256 ({@link ContentAddressedStore}). */
+    String blobKey(String hash);
+
+    /**
+     * Ghi nội dung vào {@code key}. Nội dung ghi dở (lỗi, vượt
+     * {@code maxBytes}, bị hủy) không để lại ở store.
+     *
+     * @return số byte đã ghi.
+     */
+    Mono<Long> put(String key, Flux<DataBuffer> content, long maxBytes);
+
+    /** Đưa file local đã ghi xong vào {@code key}; file nguồn giữ nguyên. */
+    Mono<Void> putFile(Path source, String key);
+
+    /** Đọc {@code count} byte bắt đầu từ {@code position}; lỗi nếu key không tồn tại. */
+    Flux<DataBuffer> get(String key, long position, long count);
+
+    /** Rỗng nếu key không tồn tại. */
+    Mono<BlobStat> stat(String key);
+
+    Mono<Boolean> delete(String key);
+
+    /**
+     * File trên đĩa local của {@code key}, để gửi bằng zero-copy hoặc xử lý
+     * bằng công cụ ngoài (ffmpeg); {@code null} nếu store không lưu trên đĩa.
+     */
+    default Path localPath(String key) {
+        return null;
+    }
+}
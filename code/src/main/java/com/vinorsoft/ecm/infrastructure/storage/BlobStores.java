@@ -0,0 +1,54 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Các {@link BlobStore} đang được cấu hình. File mới được ghi vào store
+ * {@code upload.storage.backend}; file đã có được đọc từ store ghi trong
+ * {@code STORAGE_BACKEND} của nó, nên các store cũ vẫn phải được cấu hình
+ * cho đến khi không còn file nào nằm ở đó.
+ */
+@Component
+@Slf4j
+public class BlobStores {
+    @Value("${upload.storage.backend:local}")
+    private String backend;
+
+    private final Map<String, BlobStore> stores;
+
+    public BlobStores(List<BlobStore> stores) {
+        this.stores = stores.stream().collect(Collectors.toMap(BlobStore::name, Function.identity()));
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!stores.containsKey(backend)) {
+            throw new IllegalStateException("upload.storage.backend=" + backend + " chưa được cấu hình, có: "
+                    + stores.keySet());
+        }
+        log.info("Lưu file mới vào backend: {}", backend);
+    }
+
+    /** Store dùng cho file mới. */
+    public BlobStore primary() {
+        return stores.get(backend);
+    }
+
+    /** Store đang giữ file có {@code STORAGE_BACKEND} là {@code name}. */
+    public BlobStore get(String name) {
+        BlobStore store = stores.get(name != null ? name : LocalBlobStore.NAME);
+        if (store == null) {
+            throw new IllegalStateException("Backend lưu trữ không được cấu hình: " + name);
+        }
+        return store;
+    }
+}
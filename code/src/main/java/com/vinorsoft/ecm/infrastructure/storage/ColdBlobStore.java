@@ -0,0 +1,122 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Tầng lạnh trên một thư mục khác {@code upload.path} (ổ HDD, mount mạng...),
+ * nơi {@link StorageTiering} chuyển các file lâu không được đọc tới. Key là
+ * đường dẫn tuyệt đối {@code <upload.storage.cold.path>/<category>/ab/cd/<file>}.
+ * <p>
+ * Thư mục thường nằm trên ổ đĩa khác nên không hard link được; file được copy
+ * vào tên tạm rồi đổi tên, để key chỉ xuất hiện khi đã đủ nội dung.
+ */
+@Component
+@ConditionalOnProperty(name = "upload.storage.cold.enabled", havingValue = "true")
+@Slf4j
+public class ColdBlobStore implements BlobStore {
+    public static final String NAME = "cold";
+
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    @Value("${upload.storage.cold.path}")
+    private String coldPath;
+
+    private final StorageLayout storageLayout;
+    private final FileIngestor fileIngestor;
+
+    private Path baseDir;
+
+    public ColdBlobStore(StorageLayout storageLayout, FileIngestor fileIngestor) {
+        this.storageLayout = storageLayout;
+        this.fileIngestor = fileIngestor;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        baseDir = Files.createDirectories(Paths.get(coldPath)).toRealPath();
+        log.info("Tầng lưu trữ lạnh: {}", baseDir);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Mono<String> newKey(String category, String fileName) {
+        return Mono.fromCallable(() -> {
+            Path path = baseDir.resolve(storageLayout.objectKey(category, fileName));
+            Files.createDirectories(path.getParent());
+            return path.toString();
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public String blobKey(String hash) {
+        return baseDir.resolve(ContentAddressedStore.relativeBlobKey(hash)).toString();
+    }
+
+    @Override
+    public Mono<Long> put(String key, Flux<DataBuffer> content, long maxBytes) {
+        Path target = Paths.get(key);
+        Path partial = target.resolveSibling(target.getFileName() + PARTIAL_SUFFIX);
+        return fileIngestor.ingest(content, partial, maxBytes)
+                .flatMap(size -> Mono.fromCallable(() -> Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .onErrorResume(e -> fileIngestor.deletePartial(partial).then(Mono.error(e)))
+                        .thenReturn(size));
+    }
+
+    @Override
+    public Mono<Void> putFile(Path source, String key) {
+        return Mono.fromCallable(() -> {
+            Path target = Paths.get(key);
+            Files.createDirectories(target.getParent());
+            Path partial = target.resolveSibling(target.getFileName() + PARTIAL_SUFFIX);
+            try {
+                Files.copy(source, partial, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.deleteIfExists(partial);
+                throw e;
+            }
+            return target;
+        }).subscribeOn(Schedulers.boundedElastic()).then();
+    }
+
+    @Override
+    public Flux<DataBuffer> get(String key, long position, long count) {
+        return LocalBlobStore.read(Paths.get(key), position, count);
+    }
+
+    @Override
+    public Mono<BlobStat> stat(String key) {
+        return LocalBlobStore.stat(Paths.get(key));
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key) {
+        return Mono.fromCallable(() -> Files.deleteIfExists(Paths.get(key)))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return Paths.get(key);
+    }
+}
@@ -0,0 +1,90 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Lưu nội dung file theo SHA-256 dưới key {@code blobs/ab/cd/<hash>} của
+ * {@link BlobStore}, mỗi nội dung chỉ một bản. Upload được ghi vào thư mục
+ * staging local trước (hash chỉ biết sau khi nhận hết nội dung) rồi mới được
+ * đưa vào store, nên blob không bao giờ bị đọc khi đang ghi dở.
+ * <p>
+ * Số tham chiếu nằm ở bảng FILE_BLOB; lớp này chỉ lo phần nội dung và phải
+ * được gọi khi đang giữ khóa dòng blob tương ứng (trong transaction).
+ */
+@Component
+@Slf4j
+public class ContentAddressedStore {
+    private static final String BLOB_DIR = "blobs";
+    private static final String STAGING_DIR = ".staging";
+    /** File staging cũ hơn thời gian này khi khởi động là do upload bị ngắt giữa chừng. */
+    private static final Duration STALE_STAGING_AGE = Duration.ofDays(1);
+
+    @Value("${upload.path}")
+    private String baseUploadDir;
+
+    private Path stagingDir;
+
+    @PostConstruct
+    public void init() throws IOException {
+        stagingDir = Files.createDirectories(Paths.get(baseUploadDir).resolve(STAGING_DIR)).toRealPath();
+        cleanStaleStaging();
+    }
+
+    public Path newStagingPath() {
+        return stagingDir.resolve(UUID.randomUUID() + ".part");
+    }
+
+    /** Key tương đối của nội dung {@code hash}; mỗi store tự quyết định gốc của key. */
+    static String relativeBlobKey(String hash) {
+        return BLOB_DIR + "/" + hash.substring(0, 2) + "/" + hash.substring(2, 4) + "/" + hash;
+    }
+
+    /**
+     * Đưa file staging thành blob {@code blobKey} của {@code store}. Nếu blob
+     * đã có thì bỏ file staging; nếu chưa có (nội dung mới, hoặc blob bị mất)
+     * thì ghi file staging vào store rồi xóa.
+     *
+     * @return true nếu file staging đã được dùng làm blob.
+     */
+    public Mono<Boolean> publish(Path stagingPath, BlobStore store, String blobKey) {
+        return store.stat(blobKey)
+                .map(existing -> false)
+                .switchIfEmpty(Mono.defer(() -> store.putFile(stagingPath, blobKey).thenReturn(true)))
+                .flatMap(stored -> Mono.fromCallable(() -> Files.deleteIfExists(stagingPath))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .thenReturn(stored));
+    }
+
+    public Mono<Boolean> deleteBlob(BlobStore store, String blobKey) {
+        return store.delete(blobKey);
+    }
+
+    private void cleanStaleStaging() {
+        Instant threshold = Instant.now().minus(STALE_STAGING_AGE);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(stagingDir, "*.part")) {
+            for (Path file : files) {
+                if (Files.getLastModifiedTime(file).toInstant().isBefore(threshold)) {
+                    Files.deleteIfExists(file);
+                    log.warn("Đã xóa file staging cũ: {}", file);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Lỗi khi dọn thư mục staging {}: {}", stagingDir, e.getMessage());
+        }
+    }
+}
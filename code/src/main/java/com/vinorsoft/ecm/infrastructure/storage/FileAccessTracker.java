@@ -0,0 +1,93 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.vinorsoft.ecm.domain.FileECMRepository;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Đếm số lần đọc của từng file trong bộ nhớ và ghi dồn xuống DB
+ * ({@code LAST_ACCESSED_AT}, {@code ACCESS_COUNT}) mỗi
+ * {@code upload.tiering.access-flush-interval}, nên download không phải ghi DB.
+ * Mỗi node ghi phần đếm của mình; số lần đọc chưa kịp ghi sẽ mất nếu service
+ * dừng đột ngột, chấp nhận được vì chỉ dùng để chọn file chuyển tầng.
+ */
+@Component
+@Slf4j
+public class FileAccessTracker {
+    @Value("${upload.tiering.enabled:false}")
+    private boolean enabled;
+
+    @Value("${upload.tiering.access-flush-batch-size:1000}")
+    private int batchSize;
+
+    private final FileECMRepository fileECMRepository;
+
+    private final Map<UUID, Integer> pending = new ConcurrentHashMap<>();
+
+    public FileAccessTracker(FileECMRepository fileECMRepository) {
+        this.fileECMRepository = fileECMRepository;
+    }
+
+    public void record(UUID fileId) {
+        if (enabled && fileId != null) {
+            pending.merge(fileId, 1, Integer::sum);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${upload.tiering.access-flush-interval:30s}",
+            initialDelayString = "${upload.tiering.access-flush-interval:30s}")
+    public Mono<Void> flush() {
+        Map<UUID, Integer> reads = drain();
+        if (reads.isEmpty()) {
+            return Mono.empty();
+        }
+        LocalDateTime accessedAt = LocalDateTime.now();
+        return Flux.fromIterable(reads.entrySet())
+                .buffer(batchSize)
+                .concatMap(batch -> fileECMRepository.recordAccesses(
+                        batch.stream().map(Map.Entry::getKey).toArray(UUID[]::new),
+                        batch.stream().map(Map.Entry::getValue).toArray(Integer[]::new),
+                        accessedAt)
+                        .onErrorResume(e -> {
+                            // Giữ lại để ghi ở lần sau
+                            log.error("Lỗi khi ghi thống kê đọc file: {}", e.getMessage());
+                            restore(batch);
+                            return Mono.empty();
+                        }))
+                .reduce(0, Integer::sum)
+                .doOnNext(updated -> log.debug("Đã ghi thống kê đọc của {} file", updated))
+                .then();
+    }
+
+    /**
+     * Lấy và xóa các số lần đọc đang chờ ghi; lần đọc đến trong lúc này được
+     * đếm cho lần ghi sau.
+     */
+    Map<UUID, Integer> drain() {
+        Map<UUID, Integer> drained = new HashMap<>();
+        for (UUID fileId : pending.keySet()) {
+            Integer reads = pending.remove(fileId);
+            if (reads != null) {
+                drained.put(fileId, reads);
+            }
+        }
+        return drained;
+    }
+
+    void restore(List<Map.Entry<UUID, Integer>> reads) {
+        reads.forEach(entry -> pending.merge(entry.getKey(), entry.getValue(), Integer::sum));
+    }
+}
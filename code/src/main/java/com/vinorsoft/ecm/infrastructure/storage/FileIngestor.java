@@ -0,0 +1,187 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Ghi nội dung upload xuống đích cuối cùng trong một lần duyệt duy nhất: vừa
+ * ghi vừa đếm byte và chặn ngay khi vượt quá giới hạn, không tạo file tạm và
+ * không đọc lại file sau khi ghi. Khi cần, SHA-256 cũng được tính ngay trong
+ * lần duyệt đó.
+ * <p>
+ * Việc ghi đĩa dùng {@link AsyncFileWriter} (bất đồng bộ, giới hạn số lệnh ghi
+ * đang chạy); file chỉ được coi là ghi xong sau khi đã force xuống đĩa theo
+ * {@code upload.write.durability} và đóng.
+ */
+@Component
+@Slf4j
+public class FileIngestor {
+    private static final int HASH_BUFFER_SIZE = 256 * 1024;
+
+    @Value("${upload.write.max-in-flight:4}")
+    private int maxInFlight;
+
+    @Value("${upload.write.durability:data}")
+    private WriteDurability durability;
+
+    /**
+     * @return số byte đã ghi. Nếu lỗi, vượt giới hạn hoặc bị hủy giữa chừng thì
+     *         file ghi dở sẽ bị xóa.
+     */
+    public Mono<Long> ingest(Flux<DataBuffer> content, Path targetPath, long maxBytes) {
+        return ingest(content, targetPath, maxBytes, null).map(IngestedFile::getSize);
+    }
+
+    /**
+     * Như {@link #ingest(Flux, Path, long)} nhưng tính thêm SHA-256 của nội
+     * dung trên chính các buffer đang được ghi.
+     */
+    public Mono<IngestedFile> ingestHashed(Flux<DataBuffer> content, Path targetPath, long maxBytes) {
+        return Mono.defer(() -> ingest(content, targetPath, maxBytes, sha256()));
+    }
+
+    private Mono<IngestedFile> ingest(Flux<DataBuffer> content, Path targetPath, long maxBytes,
+            MessageDigest digest) {
+        return Mono.defer(() -> {
+            AtomicLong received = new AtomicLong();
+            return writeFile(limit(content, maxBytes, received, digest), targetPath, 0,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+                    .map(written -> new IngestedFile(written,
+                            digest != null ? HexFormat.of().formatHex(digest.digest()) : null))
+                    .onErrorResume(e -> deletePartial(targetPath).then(Mono.error(e)))
+                    .doOnCancel(() -> deletePartial(targetPath).subscribe());
+        });
+    }
+
+    /**
+     * Ghi đúng {@code length} byte vào {@code targetPath} bắt đầu từ
+     * {@code position} bằng các lệnh ghi theo vị trí, nên nhiều phần của cùng
+     * một file có thể được ghi song song từ các request khác nhau. File được
+     * tạo nếu chưa có; vùng chưa ghi để trống.
+     *
+     * @return số byte đã ghi. Lỗi nếu nội dung dài hoặc ngắn hơn {@code length}.
+     */
+    public Mono<Long> writeAt(Flux<DataBuffer> content, Path targetPath, long position, long length) {
+        return Mono.defer(() -> writeFile(limit(content, length, new AtomicLong(), null), targetPath, position,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE))
+                .flatMap(written -> written == length
+                        ? Mono.just(written)
+                        : Mono.error(new IOException("Thiếu dữ liệu: nhận " + written + "/" + length + " byte")));
+    }
+
+    /**
+     * Chặn ngay khi tổng số byte vượt {@code maxBytes} và cập nhật
+     * {@code digest} (nếu có) trên chính các buffer được chuyển đi ghi.
+     */
+    static Flux<DataBuffer> limit(Flux<DataBuffer> content, long maxBytes, AtomicLong received,
+            MessageDigest digest) {
+        return content.<DataBuffer>handle((dataBuffer, sink) -> {
+            long total = received.addAndGet(dataBuffer.readableByteCount());
+            if (total > maxBytes) {
+                DataBufferUtils.release(dataBuffer);
+                sink.error(new FileSizeLimitExceededException(maxBytes));
+                return;
+            }
+            if (digest != null) {
+                // Đọc qua ByteBuffer không làm thay đổi vị trí đọc của buffer
+                try (DataBuffer.ByteBufferIterator buffers = dataBuffer.readableByteBuffers()) {
+                    buffers.forEachRemaining(digest::update);
+                }
+            }
+            sink.next(dataBuffer);
+        }).doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    /**
+     * Mở file, ghi bất đồng bộ rồi force (theo {@link #durability}) và đóng.
+     * Mở, force và đóng là lệnh chặn nên chạy trên boundedElastic, không
+     * chạy trên event loop.
+     */
+    private Mono<Long> writeFile(Flux<DataBuffer> content, Path targetPath, long position, OpenOption... options) {
+        return Mono.usingWhen(
+                Mono.fromCallable(() -> AsynchronousFileChannel.open(targetPath, options))
+                        .subscribeOn(Schedulers.boundedElastic()),
+                channel -> AsyncFileWriter.write(content, channel, position, maxInFlight),
+                channel -> Mono.fromRunnable(() -> forceAndClose(channel)).subscribeOn(Schedulers.boundedElastic()),
+                (channel, e) -> Mono.fromRunnable(() -> closeQuietly(channel)),
+                channel -> Mono.fromRunnable(() -> closeQuietly(channel)));
+    }
+
+    private void forceAndClose(AsynchronousFileChannel channel) {
+        try (channel) {
+            if (durability != WriteDurability.NONE) {
+                channel.force(durability == WriteDurability.FULL);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** SHA-256 của file đã ghi xong, đọc tuần tự theo từng buffer. */
+    public Mono<String> sha256(Path path) {
+        return Mono.fromCallable(() -> {
+            MessageDigest digest = sha256();
+            ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static void closeQuietly(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Không thể đóng file: {}", e.getMessage());
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không được hỗ trợ", e);
+        }
+    }
+
+    public Mono<Void> deletePartial(Path targetPath) {
+        return Mono.fromCallable(() -> Files.deleteIfExists(targetPath))
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnNext(deleted -> {
+                    if (deleted) {
+                        log.warn("Đã xóa file ghi dở: {}", targetPath);
+                    }
+                })
+                .onErrorResume(IOException.class, e -> {
+                    log.error("Không thể xóa file ghi dở {}: {}", targetPath, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+}
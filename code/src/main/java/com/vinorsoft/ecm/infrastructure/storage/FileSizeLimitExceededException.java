@@ -0,0 +1,16 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.io.IOException;
+
+public class FileSizeLimitExceededException extends IOException {
+    private final long maxBytes;
+
+    public FileSizeLimitExceededException(long maxBytes) {
+        super("File vượt quá giới hạn " + maxBytes + " bytes");
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+}
@@ -0,0 +1,13 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class IngestedFile {
+    /** Số byte đã ghi. */
+    private final long size;
+    /** SHA-256 dạng hex chữ thường; null nếu không tính hash. */
+    private final String sha256;
+}
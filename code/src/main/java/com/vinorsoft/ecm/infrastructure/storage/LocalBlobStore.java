@@ -0,0 +1,138 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Lưu file dưới {@code upload.path} theo {@link StorageLayout}. Key là đường
+ * dẫn tuyệt đối, giống {@code FILE_PATH} của dữ liệu có trước khi có
+ * {@link BlobStore}.
+ */
+@Component
+@Slf4j
+public class LocalBlobStore implements BlobStore {
+    public static final String NAME = "local";
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    @Value("${upload.path}")
+    private String baseUploadDir;
+
+    private final StorageLayout storageLayout;
+    private final FileIngestor fileIngestor;
+
+    private Path baseDir;
+
+    public LocalBlobStore(StorageLayout storageLayout, FileIngestor fileIngestor) {
+        this.storageLayout = storageLayout;
+        this.fileIngestor = fileIngestor;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        baseDir = Files.createDirectories(Paths.get(baseUploadDir)).toRealPath();
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Mono<String> newKey(String category, String fileName) {
+        return storageLayout.newFilePath(category, fileName).map(Path::toString);
+    }
+
+    @Override
+    public String blobKey(String hash) {
+        return baseDir.resolve(ContentAddressedStore.relativeBlobKey(hash)).toString();
+    }
+
+    @Override
+    public Mono<Long> put(String key, Flux<DataBuffer> content, long maxBytes) {
+        return fileIngestor.ingest(content, Paths.get(key), maxBytes);
+    }
+
+    /**
+     * Tạo hard link thay vì copy: staging nằm cùng ổ đĩa với {@code upload.path}
+     * nên chỉ tốn một thao tác metadata, và file xuất hiện ở key khi đã đầy
+     * đủ. Chỉ copy khi hệ thống file không hỗ trợ link.
+     */
+    @Override
+    public Mono<Void> putFile(Path source, String key) {
+        return Mono.fromCallable(() -> {
+            Path target = Paths.get(key);
+            storageLayout.createDirectory(target.getParent());
+            try {
+                Files.createLink(target, source);
+            } catch (FileAlreadyExistsException e) {
+                throw e;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                log.warn("Không tạo được hard link {}, copy file: {}", target, e.getMessage());
+                Files.copy(source, target);
+            }
+            return target;
+        }).subscribeOn(Schedulers.boundedElastic()).then();
+    }
+
+    @Override
+    public Flux<DataBuffer> get(String key, long position, long count) {
+        return read(Paths.get(key), position, count);
+    }
+
+    @Override
+    public Mono<BlobStat> stat(String key) {
+        return stat(Paths.get(key));
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key) {
+        return Mono.fromCallable(() -> Files.deleteIfExists(Paths.get(key)))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Path localPath(String key) {
+        return Paths.get(key);
+    }
+
+    /** Đọc {@code count} byte của file bắt đầu từ {@code position}, dùng chung cho các store trên đĩa. */
+    static Flux<DataBuffer> read(Path path, long position, long count) {
+        return DataBufferUtils.takeUntilByteCount(
+                DataBufferUtils.readAsynchronousFileChannel(
+                        () -> AsynchronousFileChannel.open(path, StandardOpenOption.READ),
+                        position, DefaultDataBufferFactory.sharedInstance, READ_BUFFER_SIZE),
+                count);
+    }
+
+    static Mono<BlobStat> stat(Path path) {
+        return Mono.fromCallable(() -> {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                return new BlobStat(attributes.size(), attributes.lastModifiedTime().toInstant());
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+}
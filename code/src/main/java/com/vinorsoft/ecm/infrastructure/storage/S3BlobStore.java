@@ -0,0 +1,360 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Lưu file trên dịch vụ tương thích S3 (AWS S3, MinIO...) qua REST API, ký
+ * bằng SigV4 ({@link S3RequestSigner}). Key có dạng
+ * {@code <category>/ab/cd/<file>} theo {@link StorageLayout}.
+ * <p>
+ * Nội dung lớn hơn {@code part-size} được gửi bằng multipart upload: nội dung
+ * được cắt thành các part khi đang nhận và tối đa {@code upload-concurrency}
+ * part được gửi song song, nên bộ nhớ dùng cho mỗi upload không vượt quá
+ * khoảng {@code part-size * (upload-concurrency + 1)}. Upload lỗi hoặc bị hủy
+ * thì multipart upload bị abort, không để lại part rác. Download dùng GET với
+ * {@code Range}.
+ */
+@Component
+@ConditionalOnProperty(name = "upload.storage.s3.enabled", havingValue = "true")
+@Slf4j
+public class S3BlobStore implements BlobStore {
+    public static final String NAME = "s3";
+
+    /** S3 không nhận part nhỏ hơn 5MB, trừ part cuối. */
+    private static final DataSize MIN_PART_SIZE = DataSize.ofMegabytes(5);
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final Pattern UPLOAD_ID = Pattern.compile("<UploadId>([^<]+)</UploadId>");
+    private static final Pattern ERROR_CODE = Pattern.compile("<Code>([^<]+)</Code>");
+
+    @Value("${upload.storage.s3.endpoint}")
+    private String endpoint;
+
+    @Value("${upload.storage.s3.region:us-east-1}")
+    private String region;
+
+    @Value("${upload.storage.s3.bucket}")
+    private String bucket;
+
+    @Value("${upload.storage.s3.access-key}")
+    private String accessKey;
+
+    @Value("${upload.storage.s3.secret-key}")
+    private String secretKey;
+
+    @Value("${upload.storage.s3.path-style-access:true}")
+    private boolean pathStyleAccess;
+
+    @Value("${upload.storage.s3.part-size:8MB}")
+    private DataSize partSize;
+
+    @Value("${upload.storage.s3.upload-concurrency:4}")
+    private int uploadConcurrency;
+
+    private final WebClient.Builder webClientBuilder;
+    private final StorageLayout storageLayout;
+
+    private WebClient webClient;
+    private S3RequestSigner signer;
+    private String baseUrl;
+    private String host;
+    private String pathPrefix;
+
+    public S3BlobStore(WebClient.Builder webClientBuilder, StorageLayout storageLayout) {
+        this.webClientBuilder = webClientBuilder;
+        this.storageLayout = storageLayout;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (partSize.compareTo(MIN_PART_SIZE) < 0) {
+            throw new IllegalStateException("upload.storage.s3.part-size phải từ " + MIN_PART_SIZE + " trở lên");
+        }
+        URI uri = URI.create(endpoint);
+        String authority = uri.getPort() == -1 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+        host = pathStyleAccess ? authority : bucket + "." + authority;
+        pathPrefix = pathStyleAccess ? "/" + bucket : "";
+        baseUrl = uri.getScheme() + "://" + host;
+        signer = new S3RequestSigner(accessKey, secretKey, region);
+        webClient = webClientBuilder.build();
+        log.info("Backend S3: endpoint={}, bucket={}, partSize={}, uploadConcurrency={}", endpoint, bucket,
+                partSize, uploadConcurrency);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public Mono<String> newKey(String category, String fileName) {
+        return Mono.fromSupplier(() -> storageLayout.objectKey(category, fileName));
+    }
+
+    @Override
+    public String blobKey(String hash) {
+        return ContentAddressedStore.relativeBlobKey(hash);
+    }
+
+    /**
+     * Nội dung nhỏ hơn một part được gửi bằng một lệnh PUT; lớn hơn thì dùng
+     * multipart upload.
+     */
+    @Override
+    public Mono<Long> put(String key, Flux<DataBuffer> content, long maxBytes) {
+        return Mono.defer(() -> split(FileIngestor.limit(content, maxBytes, new AtomicLong(), null))
+                .switchOnFirst((first, parts) -> {
+                    if (!first.hasValue()) {
+                        // Nội dung rỗng (hoặc lỗi trước byte đầu tiên)
+                        return first.isOnError()
+                                ? Mono.error(first.getThrowable())
+                                : putObject(key, new Part(List.of()));
+                    }
+                    if (first.get().size() < partSize.toBytes()) {
+                        return parts.next().flatMap(part -> putObject(key, part));
+                    }
+                    return putMultipart(key, parts);
+                })
+                .next())
+                .doOnSuccess(size -> log.debug("Đã ghi S3: key={}, size={}", key, size));
+    }
+
+    @Override
+    public Mono<Void> putFile(Path source, String key) {
+        return put(key, DataBufferUtils.readAsynchronousFileChannel(
+                () -> AsynchronousFileChannel.open(source, StandardOpenOption.READ),
+                DefaultDataBufferFactory.sharedInstance, READ_BUFFER_SIZE), Long.MAX_VALUE).then();
+    }
+
+    @Override
+    public Flux<DataBuffer> get(String key, long position, long count) {
+        if (count <= 0) {
+            return Flux.empty();
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RANGE, "bytes=" + position + "-" + (position + count - 1));
+        return request(HttpMethod.GET, key, new TreeMap<>(), headers)
+                .exchangeToFlux(response -> response.statusCode().is2xxSuccessful()
+                        ? response.bodyToFlux(DataBuffer.class)
+                        : S3BlobStore.<DataBuffer>error(response, HttpMethod.GET, key).flux());
+    }
+
+    @Override
+    public Mono<BlobStat> stat(String key) {
+        return request(HttpMethod.HEAD, key, new TreeMap<>(), new HttpHeaders())
+                .exchangeToMono(response -> {
+                    if (response.statusCode().value() == HttpStatus.NOT_FOUND.value()) {
+                        return response.releaseBody().then(Mono.empty());
+                    }
+                    if (!response.statusCode().is2xxSuccessful()) {
+                        return error(response, HttpMethod.HEAD, key);
+                    }
+                    HttpHeaders headers = response.headers().asHttpHeaders();
+                    long lastModified = headers.getLastModified();
+                    return response.releaseBody().thenReturn(new BlobStat(headers.getContentLength(),
+                            lastModified >= 0 ? Instant.ofEpochMilli(lastModified) : null));
+                });
+    }
+
+    @Override
+    public Mono<Boolean> delete(String key) {
+        return request(HttpMethod.DELETE, key, new TreeMap<>(), new HttpHeaders())
+                .exchangeToMono(response -> response.statusCode().is2xxSuccessful()
+                        ? response.releaseBody().thenReturn(true)
+                        : error(response, HttpMethod.DELETE, key));
+    }
+
+    /**
+     * Cắt nội dung thành các part ít nhất {@code part-size} byte (part cuối có
+     * thể nhỏ hơn) ngay khi nhận, không chờ hết nội dung.
+     */
+    private Flux<Part> split(Flux<DataBuffer> content) {
+        return Flux.defer(() -> {
+            long partBytes = partSize.toBytes();
+            AtomicLong pending = new AtomicLong();
+            return content.bufferUntil(dataBuffer -> {
+                if (pending.addAndGet(dataBuffer.readableByteCount()) < partBytes) {
+                    return false;
+                }
+                pending.set(0);
+                return true;
+            }).map(Part::new);
+        })
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .doOnDiscard(Part.class, Part::release);
+    }
+
+    private Mono<Long> putObject(String key, Part part) {
+        return request(HttpMethod.PUT, key, new TreeMap<>(), part.headers())
+                .body(BodyInserters.fromDataBuffers(Flux.fromIterable(part.buffers())))
+                .exchangeToMono(response -> response.statusCode().is2xxSuccessful()
+                        ? response.releaseBody().thenReturn(part.size())
+                        : error(response, HttpMethod.PUT, key));
+    }
+
+    private Mono<Long> putMultipart(String key, Flux<Part> parts) {
+        return createMultipart(key).flatMap(uploadId -> parts.index()
+                .flatMapSequential(part -> uploadPart(key, uploadId, part.getT1().intValue() + 1, part.getT2()),
+                        uploadConcurrency, 1)
+                .collectList()
+                .flatMap(completed -> completeMultipart(key, uploadId, completed)
+                        .thenReturn(completed.stream().mapToLong(CompletedPart::size).sum()))
+                .onErrorResume(e -> abortMultipart(key, uploadId).then(Mono.error(e)))
+                .doOnCancel(() -> abortMultipart(key, uploadId).subscribe()));
+    }
+
+    private Mono<String> createMultipart(String key) {
+        return request(HttpMethod.POST, key, query("uploads", ""), new HttpHeaders())
+                .exchangeToMono(response -> {
+                    if (!response.statusCode().is2xxSuccessful()) {
+                        return error(response, HttpMethod.POST, key);
+                    }
+                    return response.bodyToMono(String.class).flatMap(body -> {
+                        Matcher matcher = UPLOAD_ID.matcher(body);
+                        return matcher.find()
+                                ? Mono.just(matcher.group(1))
+                                : Mono.error(new IOException("S3 không trả về UploadId cho key " + key));
+                    });
+                });
+    }
+
+    private Mono<CompletedPart> uploadPart(String key, String uploadId, int partNumber, Part part) {
+        SortedMap<String, String> query = query("partNumber", Integer.toString(partNumber));
+        query.put("uploadId", uploadId);
+        return request(HttpMethod.PUT, key, query, part.headers())
+                .body(BodyInserters.fromDataBuffers(Flux.fromIterable(part.buffers())))
+                .exchangeToMono(response -> response.statusCode().is2xxSuccessful()
+                        ? response.releaseBody().thenReturn(new CompletedPart(partNumber,
+                                response.headers().asHttpHeaders().getETag(), part.size()))
+                        : error(response, HttpMethod.PUT, key));
+    }
+
+    private Mono<Void> completeMultipart(String key, String uploadId, List<CompletedPart> parts) {
+        StringBuilder body = new StringBuilder("<CompleteMultipartUpload>");
+        for (CompletedPart part : parts) {
+            body.append("<Part><PartNumber>").append(part.partNumber()).append("</PartNumber><ETag>")
+                    .append(part.eTag()).append("</ETag></Part>");
+        }
+        byte[] xml = body.append("</CompleteMultipartUpload>").toString().getBytes(StandardCharsets.UTF_8);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentLength(xml.length);
+        return request(HttpMethod.POST, key, query("uploadId", uploadId), headers)
+                .bodyValue(xml)
+                .exchangeToMono(response -> {
+                    if (!response.statusCode().is2xxSuccessful()) {
+                        return error(response, HttpMethod.POST, key);
+                    }
+                    // S3 có thể trả 200 rồi mới báo lỗi trong nội dung
+                    return response.bodyToMono(String.class).defaultIfEmpty("").flatMap(result -> result
+                            .contains("<Error>")
+                                    ? Mono.error(new IOException("S3 không hoàn tất được upload " + key + ": "
+                                            + errorCode(result)))
+                                    : Mono.empty());
+                });
+    }
+
+    private Mono<Void> abortMultipart(String key, String uploadId) {
+        return request(HttpMethod.DELETE, key, query("uploadId", uploadId), new HttpHeaders())
+                .exchangeToMono(ClientResponse::releaseBody)
+                .doOnSuccess(unused -> log.warn("Đã hủy multipart upload: key={}", key))
+                .onErrorResume(e -> {
+                    log.error("Không thể hủy multipart upload {}: {}", key, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    /** Request đã ký tới {@code key}; URI được gửi đúng như đã ký, không mã hóa lại. */
+    private WebClient.RequestBodySpec request(HttpMethod method, String key, SortedMap<String, String> query,
+            HttpHeaders headers) {
+        Instant now = Instant.now();
+        String canonicalUri = pathPrefix + "/" + S3RequestSigner.encode(key, false);
+        String canonicalQuery = S3RequestSigner.canonicalQuery(query);
+
+        SortedMap<String, String> signedHeaders = new TreeMap<>();
+        signedHeaders.put("host", host);
+        signedHeaders.put("x-amz-content-sha256", S3RequestSigner.UNSIGNED_PAYLOAD);
+        signedHeaders.put("x-amz-date", S3RequestSigner.amzDate(now));
+        String range = headers.getFirst(HttpHeaders.RANGE);
+        if (range != null) {
+            signedHeaders.put("range", range);
+        }
+        String authorization = signer.authorization(method.name(), canonicalUri, canonicalQuery, signedHeaders,
+                S3RequestSigner.UNSIGNED_PAYLOAD, now);
+
+        URI uri = URI.create(baseUrl + canonicalUri + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery));
+        return webClient.method(method)
+                .uri(uri)
+                .headers(requestHeaders -> {
+                    requestHeaders.addAll(headers);
+                    signedHeaders.forEach(requestHeaders::set);
+                    requestHeaders.set(HttpHeaders.AUTHORIZATION, authorization);
+                });
+    }
+
+    private static SortedMap<String, String> query(String name, String value) {
+        SortedMap<String, String> query = new TreeMap<>();
+        query.put(name, value);
+        return query;
+    }
+
+    private static <T> Mono<T> error(ClientResponse response, HttpMethod method, String key) {
+        return response.bodyToMono(String.class).defaultIfEmpty("")
+                .flatMap(body -> Mono.error(new IOException("S3 trả về " + response.statusCode().value() + " cho "
+                        + method + " " + key + ": " + errorCode(body))));
+    }
+
+    private static String errorCode(String body) {
+        Matcher matcher = ERROR_CODE.matcher(body);
+        return matcher.find() ? matcher.group(1) : "không rõ lỗi";
+    }
+
+    /** Một part đang chờ gửi: các buffer đã nhận, giữ nguyên không copy. */
+    private record Part(List<DataBuffer> buffers, long size) {
+        Part(List<DataBuffer> buffers) {
+            this(buffers, buffers.stream().mapToLong(DataBuffer::readableByteCount).sum());
+        }
+
+        HttpHeaders headers() {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentLength(size);
+            return headers;
+        }
+
+        void release() {
+            buffers.forEach(DataBufferUtils::release);
+        }
+    }
+
+    private record CompletedPart(int partNumber, String eTag, long size) {
+    }
+}
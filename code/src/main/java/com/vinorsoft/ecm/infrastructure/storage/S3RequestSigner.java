@@ -0,0 +1,114 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HexFormat;
+import java.util.SortedMap;
+import java.util.stream.Collectors;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Ký request S3 theo AWS Signature Version 4. Nội dung không được băm
+ * ({@link #UNSIGNED_PAYLOAD}) để upload không phải đọc mỗi part hai lần; kết
+ * nối HTTPS đã bảo vệ nội dung.
+ */
+final class S3RequestSigner {
+    static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+
+    private static final String ALGORITHM = "AWS4-HMAC-SHA256";
+    private static final String SERVICE = "s3";
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+            .withZone(ZoneOffset.UTC);
+
+    private final String accessKey;
+    private final String secretKey;
+    private final String region;
+
+    S3RequestSigner(String accessKey, String secretKey, String region) {
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        this.region = region;
+    }
+
+    static String amzDate(Instant time) {
+        return AMZ_DATE.format(time);
+    }
+
+    /**
+     * @param canonicalUri   path đã mã hóa, đúng như được gửi đi
+     * @param canonicalQuery query đã mã hóa và sắp xếp theo tên
+     * @param headers        header được ký, tên viết thường và đã sắp xếp;
+     *                       phải gồm {@code host} và {@code x-amz-date}
+     * @return giá trị header {@code Authorization}
+     */
+    String authorization(String method, String canonicalUri, String canonicalQuery,
+            SortedMap<String, String> headers, String payloadHash, Instant time) {
+        String amzDate = amzDate(time);
+        String date = amzDate.substring(0, 8);
+        String scope = date + "/" + region + "/" + SERVICE + "/aws4_request";
+        String signedHeaders = String.join(";", headers.keySet());
+        String canonicalHeaders = headers.entrySet().stream()
+                .map(header -> header.getKey() + ":" + header.getValue().trim() + "\n")
+                .collect(Collectors.joining());
+        String canonicalRequest = method + "\n" + canonicalUri + "\n" + canonicalQuery + "\n" + canonicalHeaders
+                + "\n" + signedHeaders + "\n" + payloadHash;
+        String stringToSign = ALGORITHM + "\n" + amzDate + "\n" + scope + "\n" + sha256Hex(canonicalRequest);
+
+        byte[] signingKey = hmac(hmac(hmac(hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date),
+                region), SERVICE), "aws4_request");
+        String signature = HexFormat.of().formatHex(hmac(signingKey, stringToSign));
+        return ALGORITHM + " Credential=" + accessKey + "/" + scope + ", SignedHeaders=" + signedHeaders
+                + ", Signature=" + signature;
+    }
+
+    /** Query chuẩn: tên và giá trị đã mã hóa, sắp xếp theo tên. */
+    static String canonicalQuery(SortedMap<String, String> query) {
+        return query.entrySet().stream()
+                .map(param -> encode(param.getKey(), true) + "=" + encode(param.getValue(), true))
+                .collect(Collectors.joining("&"));
+    }
+
+    /**
+     * Mã hóa URI theo quy tắc của SigV4: giữ nguyên {@code A-Z a-z 0-9 - _ . ~},
+     * còn lại mã hóa UTF-8 thành {@code %XX}; {@code /} được giữ nguyên trong
+     * key nếu {@code encodeSlash} là false.
+     */
+    static String encode(String value, boolean encodeSlash) {
+        StringBuilder encoded = new StringBuilder(value.length());
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-'
+                    || c == '_' || c == '.' || c == '~' || (c == '/' && !encodeSlash)) {
+                encoded.append(c);
+            } else {
+                encoded.append('%').append(HexFormat.of().withUpperCase().toHexDigits(b));
+            }
+        }
+        return encoded.toString();
+    }
+
+    static String sha256Hex(String value) {
+        try {
+            return HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 không được hỗ trợ", e);
+        }
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 không được hỗ trợ", e);
+        }
+    }
+}
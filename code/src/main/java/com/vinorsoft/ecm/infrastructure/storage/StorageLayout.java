@@ -0,0 +1,215 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Quyết định file của một category được lưu ở đâu dưới {@code upload.path}.
+ * Với layout {@link StorageLayoutType#SHARDED}, file được chia vào
+ * {@code <category>/ab/cd/} theo các ký tự hex đầu của UUID ngẫu nhiên trong tên
+ * file, để không thư mục nào chứa hàng triệu file.
+ * <p>
+ * Thư mục đã kiểm tra (chống path traversal, đã tạo trên đĩa) được cache nên
+ * {@code toRealPath()} và {@code Files.exists} không bị gọi lại ở mỗi upload.
+ * Thư mục bị xóa từ bên ngoài khi đang chạy sẽ không được tạo lại cho đến khi
+ * bị đẩy khỏi cache hoặc service restart.
+ */
+@Component
+@Slf4j
+public class StorageLayout {
+    private static final int MAX_SHARD_LEVELS = 4;
+    private static final Pattern HEX_PREFIX = Pattern.compile("^[0-9a-fA-F]{" + 2 * MAX_SHARD_LEVELS + "}");
+
+    @Value("${upload.path}")
+    private String baseUploadDir;
+
+    @Value("${upload.layout.type:sharded}")
+    private StorageLayoutType type;
+
+    @Value("${upload.layout.shard-levels:2}")
+    private int shardLevels;
+
+    @Value("${upload.layout.directory-cache-size:100000}")
+    private long directoryCacheSize;
+
+    private Path baseDir;
+    private Cache<String, Path> categoryDirs;
+    private Cache<Path, Boolean> createdDirs;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (shardLevels < 1 || shardLevels > MAX_SHARD_LEVELS) {
+            throw new IllegalStateException("upload.layout.shard-levels phải từ 1 đến " + MAX_SHARD_LEVELS);
+        }
+        baseDir = Files.createDirectories(Paths.get(baseUploadDir)).toRealPath();
+        categoryDirs = Caffeine.newBuilder().maximumSize(directoryCacheSize).build();
+        createdDirs = Caffeine.newBuilder().maximumSize(directoryCacheSize).build();
+        log.info("Layout lưu file: type={}, shardLevels={}", type, shardLevels);
+    }
+
+    public boolean isSharded() {
+        return type == StorageLayoutType.SHARDED;
+    }
+
+    /**
+     * Đường dẫn cho file mới {@code fileName} của {@code category}; thư mục
+     * cha đã tồn tại. Chỉ chạm đĩa (trên boundedElastic) khi thư mục chưa có
+     * trong cache.
+     */
+    public Mono<Path> newFilePath(String category, String fileName) {
+        Path categoryDir = categoryDirs.getIfPresent(category);
+        if (categoryDir != null) {
+            Path dir = directoryFor(categoryDir, fileName);
+            if (createdDirs.getIfPresent(dir) != null) {
+                return Mono.just(dir.resolve(fileName));
+            }
+        }
+        return Mono.fromCallable(() -> {
+            Path dir = directoryFor(categoryDir(category), fileName);
+            createDirectory(dir);
+            return dir.resolve(fileName);
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Vị trí của {@code fileName} ngay trong thư mục category (layout phẳng),
+     * để tìm file được tạo trước khi chuyển sang layout sharded mà chưa được
+     * {@link StorageLayoutMigrator} chuyển; trùng với {@link #newFilePath} khi
+     * layout là phẳng.
+     */
+    public Mono<Path> flatFilePath(String category, String fileName) {
+        Path categoryDir = categoryDirs.getIfPresent(category);
+        if (categoryDir != null) {
+            return Mono.just(categoryDir.resolve(fileName));
+        }
+        return Mono.fromCallable(() -> categoryDir(category).resolve(fileName))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Key tương đối {@code <category>/ab/cd/<fileName>} cho store không nằm
+     * trên đĩa local, chia theo cùng cách như {@link #newFilePath}.
+     */
+    public String objectKey(String category, String fileName) {
+        if (category == null || category.isBlank() || category.contains("..") || category.contains("/")) {
+            log.warn("Thư mục không hợp lệ: {}", category);
+            throw new IllegalArgumentException("Tên thư mục không hợp lệ");
+        }
+        StringBuilder key = new StringBuilder(category).append('/');
+        if (isSharded()) {
+            String shardKey = shardKey(fileName);
+            for (int level = 0; level < shardLevels; level++) {
+                key.append(shardKey, 2 * level, 2 * level + 2).append('/');
+            }
+        }
+        return key.append(fileName).toString();
+    }
+
+    /**
+     * Vị trí theo layout hiện tại của một file đang nằm ngay trong thư mục
+     * category (layout phẳng); {@code null} nếu file không nằm ở đó, tức là đã
+     * được chia hoặc không thuộc {@code upload.path}.
+     */
+    Path shardedLocation(Path filePath) {
+        Path file = filePath.toAbsolutePath().normalize();
+        Path categoryDir = file.getParent();
+        if (!isSharded() || categoryDir == null || !baseDir.equals(categoryDir.getParent())) {
+            return null;
+        }
+        return directoryFor(categoryDir, file.getFileName().toString()).resolve(file.getFileName());
+    }
+
+    /** Thư mục {@code upload.path} đã resolve, chứa các thư mục category. */
+    Path baseDir() {
+        return baseDir;
+    }
+
+    /** Tạo thư mục nếu chưa có trong cache (blocking). */
+    void createDirectory(Path dir) throws IOException {
+        if (createdDirs.getIfPresent(dir) == null) {
+            // createDirectories không chấp nhận thư mục đã có là symlink
+            if (!Files.isDirectory(dir)) {
+                Files.createDirectories(dir);
+            }
+            createdDirs.put(dir, Boolean.TRUE);
+        }
+    }
+
+    private Path directoryFor(Path categoryDir, String fileName) {
+        if (!isSharded()) {
+            return categoryDir;
+        }
+        String key = shardKey(fileName);
+        Path dir = categoryDir;
+        for (int level = 0; level < shardLevels; level++) {
+            dir = dir.resolve(key.substring(2 * level, 2 * level + 2));
+        }
+        return dir;
+    }
+
+    /**
+     * File mới được đặt tên {@code <UUID ngẫu nhiên>_<tên gốc>} nên
+     * các ký tự hex đầu đã phân bố đều. Tên không bắt đầu bằng hex (dữ liệu cũ)
+     * thì dùng SHA-256 của tên.
+     */
+    private static String shardKey(String fileName) {
+        if (HEX_PREFIX.matcher(fileName).find()) {
+            return fileName.toLowerCase();
+        }
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(fileName.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 không được hỗ trợ", e);
+        }
+    }
+
+    private Path categoryDir(String category) throws IOException {
+        Path cached = categoryDirs.getIfPresent(category);
+        if (cached != null) {
+            return cached;
+        }
+        if (category == null || category.isBlank() || category.contains("..") || category.contains("/")) {
+            log.warn("Thư mục không hợp lệ: {}", category);
+            throw new IllegalArgumentException("Tên thư mục không hợp lệ");
+        }
+        try {
+            Path categoryDir = baseDir.resolve(category).normalize();
+            // Kiểm tra xem đường dẫn có nằm trong upload.path không
+            if (!categoryDir.startsWith(baseDir) || categoryDir.equals(baseDir)) {
+                log.warn("Đường dẫn truy cập bị chặn: {}", categoryDir);
+                throw new SecurityException("Hành vi path traversal bị phát hiện!");
+            }
+            createDirectory(categoryDir);
+            // Thư mục category là symlink ra ngoài upload.path cũng bị chặn
+            if (!categoryDir.toRealPath().startsWith(baseDir)) {
+                log.warn("Đường dẫn truy cập bị chặn: {}", categoryDir);
+                throw new SecurityException("Hành vi path traversal bị phát hiện!");
+            }
+            categoryDirs.put(category, categoryDir);
+            return categoryDir;
+        } catch (IOException | InvalidPathException e) {
+            log.error("Lỗi khi kiểm tra thư mục: {}", e.getMessage(), e);
+            throw new IOException("Lỗi xử lý thư mục lưu trữ");
+        }
+    }
+}
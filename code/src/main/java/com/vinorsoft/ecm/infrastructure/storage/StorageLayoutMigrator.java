@@ -0,0 +1,270 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.vinorsoft.ecm.application.RenditionService;
+import com.vinorsoft.ecm.domain.FileECM;
+import com.vinorsoft.ecm.domain.FileECMRepository;
+import com.vinorsoft.ecm.infrastructure.cache.FileECMCache;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Chuyển các file đang nằm phẳng trong thư mục category sang layout sharded
+ * của {@link StorageLayout} và cập nhật {@code FILE_PATH}/{@code COMPRESSED_PATH},
+ * theo từng lô {@code upload.layout.migration.batch-size} bản ghi. Bật bằng
+ * {@code upload.layout.migration.enabled=true}; chạy nền sau khi service khởi
+ * động nên vẫn phục vụ request trong lúc chuyển.
+ * <p>
+ * Mỗi file được hard link sang vị trí mới trước, sau đó cả lô được cập nhật DB
+ * trong một transaction, rồi mới xóa đường dẫn cũ; download trong lúc chuyển
+ * luôn đọc được file dù đang theo đường dẫn nào. Dừng giữa chừng thì chạy lại
+ * được: bản ghi đã chuyển bị bỏ qua, link mới còn sót được dùng lại.
+ * <p>
+ * Sau các bản ghi, rendition ({@link RenditionService#FILE_NAME}) còn nằm phẳng
+ * trong thư mục category cũng được chuyển sang vị trí theo layout sharded, nơi
+ * {@link RenditionService} tìm chúng; rendition không có trong DB nên được tìm
+ * bằng cách duyệt thư mục.
+ * <p>
+ * Node khác có thể còn giữ đường dẫn cũ trong cache metadata tối đa
+ * {@code upload.cache.ttl}; nên chạy khi chỉ có một node hoặc lúc ít tải.
+ */
+@Component
+@Slf4j
+public class StorageLayoutMigrator {
+    private static final UUID FIRST_ID = new UUID(0, 0);
+
+    @Value("${upload.layout.migration.enabled:false}")
+    private boolean enabled;
+
+    @Value("${upload.layout.migration.batch-size:500}")
+    private int batchSize;
+
+    private final StorageLayout storageLayout;
+    private final FileECMRepository fileECMRepository;
+    private final FileECMCache fileECMCache;
+    private final TransactionalOperator transactionalOperator;
+
+    public StorageLayoutMigrator(StorageLayout storageLayout, FileECMRepository fileECMRepository,
+            FileECMCache fileECMCache, TransactionalOperator transactionalOperator) {
+        this.storageLayout = storageLayout;
+        this.fileECMRepository = fileECMRepository;
+        this.fileECMCache = fileECMCache;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (!storageLayout.isSharded()) {
+            log.warn("Bỏ qua chuyển layout: upload.layout.type không phải sharded");
+            return;
+        }
+        migrate().subscribe();
+    }
+
+    /** @return tổng số file đã chuyển. */
+    public Mono<Long> migrate() {
+        log.info("Bắt đầu chuyển file sang layout sharded: batchSize={}", batchSize);
+        return migrateBatch(FIRST_ID)
+                .expand(batch -> batch.scanned() < batchSize ? Mono.empty() : migrateBatch(batch.lastId()))
+                .reduce(0L, (total, batch) -> total + batch.moved())
+                .doOnSuccess(total -> log.info("Đã chuyển xong {} file sang layout sharded", total))
+                .flatMap(total -> Mono.fromCallable(this::moveFlatRenditions)
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .doOnNext(moved -> log.info("Đã chuyển {} rendition sang layout sharded", moved))
+                        .thenReturn(total))
+                .doOnError(e -> log.error("Lỗi khi chuyển layout: {}", e.getMessage(), e));
+    }
+
+    private Mono<Batch> migrateBatch(UUID afterId) {
+        return fileECMRepository.findOwnFilesAfter(afterId, batchSize)
+                .collectList()
+                .flatMap(files -> {
+                    if (files.isEmpty()) {
+                        return Mono.just(new Batch(afterId, 0, 0));
+                    }
+                    UUID lastId = files.get(files.size() - 1).getId();
+                    return Mono.fromCallable(() -> linkAll(files))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .flatMap(moves -> moves.isEmpty() ? Mono.just(0) : commit(moves))
+                            .map(moved -> new Batch(lastId, files.size(), moved))
+                            .doOnNext(batch -> log.info("Đã chuyển {}/{} file, đến id={}", batch.moved(),
+                                    batch.scanned(), lastId));
+                });
+    }
+
+    /** Tạo link ở vị trí mới cho các file còn nằm phẳng (blocking). */
+    private List<Move> linkAll(List<FileECM> files) {
+        List<Move> moves = new ArrayList<>();
+        for (FileECM file : files) {
+            Path filePath = Paths.get(file.getFilePath());
+            Path newFilePath = storageLayout.shardedLocation(filePath);
+            if (newFilePath == null) {
+                continue;
+            }
+            if (!Files.exists(filePath)) {
+                log.warn("Bỏ qua file không tồn tại trên hệ thống: fileId={}, path={}", file.getId(), filePath);
+                continue;
+            }
+            Path compressedPath = file.getCompressedPath() != null ? Paths.get(file.getCompressedPath()) : null;
+            Path newCompressedPath = compressedPath != null
+                    ? newFilePath.resolveSibling(compressedPath.getFileName())
+                    : null;
+            try {
+                storageLayout.createDirectory(newFilePath.getParent());
+                link(newFilePath, filePath);
+                if (compressedPath != null && Files.exists(compressedPath)) {
+                    link(newCompressedPath, compressedPath);
+                }
+                moves.add(new Move(file.getId(), filePath, newFilePath, compressedPath, newCompressedPath));
+            } catch (IOException e) {
+                log.error("Không thể chuyển file: fileId={}, path={}: {}", file.getId(), filePath, e.getMessage());
+                unlink(newFilePath, filePath);
+                unlink(newCompressedPath, compressedPath);
+            }
+        }
+        return moves;
+    }
+
+    /**
+     * Cập nhật đường dẫn của cả lô trong một transaction, sau đó xóa đường dẫn
+     * cũ của bản ghi đã cập nhật và link mới của bản ghi không cập nhật được.
+     */
+    private Mono<Integer> commit(List<Move> moves) {
+        return Flux.fromIterable(moves)
+                .concatMap(move -> fileECMRepository.updateFilePaths(move.fileId(), move.filePath().toString(),
+                        move.newFilePath().toString(),
+                        move.newCompressedPath() != null ? move.newCompressedPath().toString() : null)
+                        .map(updated -> updated > 0))
+                .collectList()
+                .as(transactionalOperator::transactional)
+                .onErrorResume(e -> Mono.fromRunnable(() -> moves.forEach(Move::deleteNew))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .then(Mono.error(e)))
+                .flatMap(updated -> Mono.fromCallable(() -> {
+                    int moved = 0;
+                    for (int i = 0; i < moves.size(); i++) {
+                        Move move = moves.get(i);
+                        fileECMCache.invalidate(move.fileId());
+                        if (updated.get(i)) {
+                            move.deleteOld();
+                            moved++;
+                        } else {
+                            log.warn("Bản ghi đã thay đổi trong lúc chuyển, giữ nguyên: fileId={}", move.fileId());
+                            move.deleteNew();
+                        }
+                    }
+                    return moved;
+                }).subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    /** Chuyển các rendition còn nằm phẳng trong thư mục category (blocking). */
+    private long moveFlatRenditions() throws IOException {
+        long moved = 0;
+        try (Stream<Path> categoryDirs = Files.list(storageLayout.baseDir())) {
+            for (Path categoryDir : categoryDirs.filter(dir -> Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS))
+                    .toList()) {
+                try (Stream<Path> files = Files.list(categoryDir)) {
+                    Iterable<Path> renditions = files
+                            .filter(path -> RenditionService.FILE_NAME.matcher(path.getFileName().toString())
+                                    .matches())::iterator;
+                    for (Path rendition : renditions) {
+                        if (moveRendition(rendition)) {
+                            moved++;
+                        }
+                    }
+                }
+            }
+        }
+        return moved;
+    }
+
+    private boolean moveRendition(Path rendition) {
+        Path newPath = storageLayout.shardedLocation(rendition);
+        if (newPath == null) {
+            return false;
+        }
+        try {
+            storageLayout.createDirectory(newPath.getParent());
+            try {
+                Files.createLink(newPath, rendition);
+            } catch (FileAlreadyExistsException e) {
+                // Đã được tạo lại ở vị trí mới; phiên bản bất biến nên hai bản giống nhau
+            }
+            Files.deleteIfExists(rendition);
+            return true;
+        } catch (IOException e) {
+            log.warn("Không thể chuyển rendition {}: {}", rendition, e.getMessage());
+            return false;
+        }
+    }
+
+    private static void link(Path link, Path existing) throws IOException {
+        try {
+            Files.createLink(link, existing);
+        } catch (FileAlreadyExistsException e) {
+            // Link còn sót từ lần chạy bị dừng giữa chừng
+            if (!Files.isSameFile(link, existing)) {
+                throw e;
+            }
+        }
+    }
+
+    /** Chỉ xóa {@code link} nếu đúng là link tới {@code existing} do lần chuyển này tạo. */
+    private static void unlink(Path link, Path existing) {
+        try {
+            if (link != null && Files.exists(link) && Files.isSameFile(link, existing)) {
+                Files.delete(link);
+            }
+        } catch (IOException e) {
+            log.warn("Không thể xóa {}: {}", link, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Không thể xóa {}: {}", path, e.getMessage());
+        }
+    }
+
+    private record Batch(UUID lastId, int scanned, int moved) {
+    }
+
+    private record Move(UUID fileId, Path filePath, Path newFilePath, Path compressedPath, Path newCompressedPath) {
+        void deleteOld() {
+            deleteQuietly(filePath);
+            deleteQuietly(compressedPath);
+        }
+
+        void deleteNew() {
+            deleteQuietly(newFilePath);
+            deleteQuietly(newCompressedPath);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+/** Cách xếp file trong thư mục category (cấu hình {@code upload.layout.type}). */
+public enum StorageLayoutType {
+    /** {@code <category>/<file>}: mọi file của category nằm chung một thư mục. */
+    FLAT,
+    /** {@code <category>/ab/cd/<file>}: chia theo các ký tự hex đầu của UUID trong tên file. */
+    SHARDED
+}
@@ -0,0 +1,287 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.vinorsoft.ecm.domain.FileECM;
+import com.vinorsoft.ecm.domain.FileECMRepository;
+import com.vinorsoft.ecm.domain.StoragePendingDelete;
+import com.vinorsoft.ecm.domain.StoragePendingDeleteRepository;
+import com.vinorsoft.ecm.infrastructure.cache.FileECMCache;
+import com.vinorsoft.ecm.infrastructure.metrics.EcmMetrics;
+import com.vinorsoft.ecm.infrastructure.metrics.PipelineStage;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Chuyển file riêng (không dùng blob) giữa tầng nóng ({@code local}, tức
+ * {@code upload.path}) và tầng lạnh {@code upload.tiering.cold-backend}
+ * ({@link ColdBlobStore} hoặc S3). Mỗi {@code upload.tiering.interval}, file
+ * không được đọc trong {@code demote-after} bị hạ xuống tầng lạnh; file đã được
+ * đọc từ {@code frequent-reads} lần trở lên trên tầng nóng được giữ lại đến
+ * {@code frequent-demote-after}. File trên tầng lạnh được đưa lại tầng nóng
+ * ngay sau lần đọc đầu tiên. Số lần đọc do {@link FileAccessTracker} đếm.
+ * <p>
+ * Nội dung được copy sang tầng đích dưới key mới trước, sau đó
+ * {@code STORAGE_BACKEND}/{@code FILE_PATH} được đổi bằng một câu UPDATE có
+ * điều kiện là vị trí cũ; không cập nhật được (file bị xóa hoặc đã được node
+ * khác chuyển) thì bản copy bị xóa. Bản cũ chỉ bị xóa sau
+ * {@code delete-delay} (lớn hơn {@code upload.cache.ttl}), nên download đang
+ * chạy hoặc node còn giữ metadata cũ trong cache vẫn đọc được: vị trí cũ được
+ * ghi vào {@code STORAGE_PENDING_DELETE} trong cùng transaction với câu UPDATE
+ * và được xóa bởi {@link #purgePendingDeletes()}, nên service dừng trong thời
+ * gian chờ thì bản cũ vẫn được xóa sau khi chạy lại. Xóa lỗi thì được thử lại
+ * sau {@code delete-retry}.
+ * <p>
+ * Bản nén video luôn ở lại tầng nóng: bản nén nhỏ và là bản được download mặc
+ * định, nên đọc bản nén không đưa file gốc lên lại.
+ */
+@Component
+@Slf4j
+public class StorageTiering {
+    private static final Pattern UUID_PREFIX = Pattern
+            .compile("^[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}_");
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    @Value("${upload.tiering.enabled:false}")
+    private boolean enabled;
+
+    @Value("${upload.tiering.cold-backend:cold}")
+    private String coldBackend;
+
+    @Value("${upload.tiering.demote-after:1d}")
+    private Duration demoteAfter;
+
+    @Value("${upload.tiering.frequent-reads:5}")
+    private int frequentReads;
+
+    @Value("${upload.tiering.frequent-demote-after:7d}")
+    private Duration frequentDemoteAfter;
+
+    @Value("${upload.tiering.batch-size:200}")
+    private int batchSize;
+
+    @Value("${upload.tiering.concurrency:2}")
+    private int concurrency;
+
+    @Value("${upload.tiering.delete-delay:15m}")
+    private Duration deleteDelay;
+
+    @Value("${upload.tiering.delete-retry:5m}")
+    private Duration deleteRetry;
+
+    private final BlobStores blobStores;
+    private final FileECMRepository fileECMRepository;
+    private final StoragePendingDeleteRepository pendingDeleteRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final FileECMCache fileECMCache;
+    private final FileAccessTracker fileAccessTracker;
+    private final EcmMetrics metrics;
+
+    /** File đang được đưa lên tầng nóng, để nhiều lần đọc cùng lúc chỉ tạo một lần chuyển. */
+    private final Set<UUID> promoting = ConcurrentHashMap.newKeySet();
+
+    public StorageTiering(BlobStores blobStores, FileECMRepository fileECMRepository,
+            StoragePendingDeleteRepository pendingDeleteRepository, TransactionalOperator transactionalOperator,
+            FileECMCache fileECMCache, FileAccessTracker fileAccessTracker, EcmMetrics metrics) {
+        this.blobStores = blobStores;
+        this.fileECMRepository = fileECMRepository;
+        this.pendingDeleteRepository = pendingDeleteRepository;
+        this.transactionalOperator = transactionalOperator;
+        this.fileECMCache = fileECMCache;
+        this.fileAccessTracker = fileAccessTracker;
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        if (LocalBlobStore.NAME.equals(coldBackend)) {
+            throw new IllegalStateException("upload.tiering.cold-backend phải khác tầng nóng " + LocalBlobStore.NAME);
+        }
+        blobStores.get(coldBackend);
+        log.info("Chuyển tầng lưu trữ: cold={}, demoteAfter={}, frequentReads={}, frequentDemoteAfter={}",
+                coldBackend, demoteAfter, frequentReads, frequentDemoteAfter);
+    }
+
+    /**
+     * Ghi nhận một lần đọc file. Nếu nội dung gốc được đọc từ tầng lạnh thì
+     * file được đưa lên tầng nóng ở nền; lần đọc hiện tại vẫn đọc từ tầng lạnh.
+     *
+     * @param compressedCopy lần đọc dùng bản nén (luôn nằm trên tầng nóng)
+     */
+    public void recordRead(FileECM file, boolean compressedCopy) {
+        fileAccessTracker.record(file.getId());
+        if (!enabled || compressedCopy || file.getBlobHash() != null
+                || !coldBackend.equals(file.getStorageBackend()) || !promoting.add(file.getId())) {
+            return;
+        }
+        move(file, blobStores.get(LocalBlobStore.NAME), PipelineStage.TIER_PROMOTE)
+                .doFinally(signal -> promoting.remove(file.getId()))
+                .subscribe(null, e -> log.error("Không thể đưa file lên tầng nóng: fileId={}: {}", file.getId(),
+                        e.getMessage()));
+    }
+
+    /**
+     * Hạ các file lâu không được đọc xuống tầng lạnh, theo từng lô cho đến khi
+     * hết file thỏa điều kiện.
+     */
+    @Scheduled(fixedDelayString = "${upload.tiering.interval:10m}",
+            initialDelayString = "${upload.tiering.interval:10m}")
+    public Mono<Void> demoteIdleFiles() {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        BlobStore cold = blobStores.get(coldBackend);
+        return demoteBatch(cold, now)
+                .expand(batch -> batch.scanned() < batchSize || batch.done() == 0
+                        ? Mono.empty()
+                        : demoteBatch(cold, now))
+                .reduce(0L, (total, batch) -> total + batch.done())
+                .doOnNext(total -> {
+                    if (total > 0) {
+                        log.info("Đã chuyển {} file xuống tầng lạnh {}", total, coldBackend);
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.error("Lỗi khi chuyển file xuống tầng lạnh: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Batch> demoteBatch(BlobStore cold, LocalDateTime now) {
+        return fileECMRepository.findIdleFiles(LocalBlobStore.NAME, now.minus(demoteAfter), frequentReads,
+                now.minus(frequentDemoteAfter), batchSize)
+                .flatMap(file -> move(file, cold, PipelineStage.TIER_DEMOTE)
+                        .onErrorResume(e -> {
+                            log.error("Không thể chuyển file xuống tầng lạnh: fileId={}: {}", file.getId(),
+                                    e.getMessage());
+                            return Mono.just(false);
+                        }), concurrency)
+                .reduce(new Batch(0, 0), (batch, moved) -> new Batch(batch.scanned() + 1,
+                        batch.done() + (moved ? 1 : 0)));
+    }
+
+    /** @return true nếu file đã được chuyển sang {@code target}. */
+    private Mono<Boolean> move(FileECM file, BlobStore target, PipelineStage stage) {
+        BlobStore source = blobStores.get(file.getStorageBackend());
+        String sourceKey = file.getFilePath();
+        return target.newKey(file.getCategory(), movedFileName(sourceKey))
+                .flatMap(targetKey -> copy(source, sourceKey, file.getFileSize(), target, targetKey)
+                        // Lỗi ở đây không xóa bản copy: UPDATE có thể đã được commit
+                        .then(updateLocation(file, source.name(), sourceKey, target.name(), targetKey))
+                        .flatMap(updated -> {
+                            fileECMCache.invalidate(file.getId());
+                            if (updated == 0) {
+                                log.warn("File đã bị xóa hoặc đổi chỗ trong lúc chuyển tầng, bỏ bản copy: "
+                                        + "fileId={}", file.getId());
+                                return target.delete(targetKey).thenReturn(false);
+                            }
+                            log.info("Đã chuyển file: fileId={}, {}:{} -> {}:{}", file.getId(), source.name(),
+                                    sourceKey, target.name(), targetKey);
+                            return Mono.just(true);
+                        }))
+                .as(moved -> metrics.timed(stage, moved));
+    }
+
+    private static Mono<Void> copy(BlobStore source, String sourceKey, long size, BlobStore target,
+            String targetKey) {
+        Path sourcePath = source.localPath(sourceKey);
+        return sourcePath != null
+                ? target.putFile(sourcePath, targetKey)
+                : target.put(targetKey, source.get(sourceKey, 0, size), size).then();
+    }
+
+    /**
+     * Đổi vị trí file và ghi vị trí cũ vào danh sách chờ xóa trong cùng
+     * transaction: không cập nhật được thì không có gì để xóa.
+     */
+    private Mono<Integer> updateLocation(FileECM file, String sourceBackend, String sourceKey,
+            String targetBackend, String targetKey) {
+        return fileECMRepository.updateStorageLocation(file.getId(), sourceBackend, sourceKey, targetBackend,
+                targetKey)
+                .flatMap(updated -> updated == 0
+                        ? Mono.just(0)
+                        : pendingDeleteRepository.schedule(sourceBackend, sourceKey, deleteDelay.toSeconds())
+                                .thenReturn(updated))
+                .as(transactionalOperator::transactional);
+    }
+
+    /**
+     * Xóa bản cũ của các file đã chuyển tầng khi đến hạn, theo từng lô. Chạy cả
+     * khi đã tắt chuyển tầng để không sót bản cũ đã được ghi từ trước.
+     */
+    @Scheduled(fixedDelayString = "${upload.tiering.delete-interval:1m}",
+            initialDelayString = "${upload.tiering.delete-interval:1m}")
+    public Mono<Void> purgePendingDeletes() {
+        return purgeBatch()
+                .expand(batch -> batch.scanned() < batchSize ? Mono.empty() : purgeBatch())
+                .reduce(0L, (total, batch) -> total + batch.done())
+                .doOnNext(total -> {
+                    if (total > 0) {
+                        log.info("Đã xóa {} bản cũ sau khi chuyển tầng", total);
+                    }
+                })
+                .onErrorResume(e -> {
+                    log.error("Lỗi khi xóa bản cũ sau khi chuyển tầng: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Batch> purgeBatch() {
+        return pendingDeleteRepository.claim(batchSize, deleteRetry.toSeconds())
+                .flatMap(this::purge, concurrency)
+                .reduce(new Batch(0, 0), (batch, deleted) -> new Batch(batch.scanned() + 1,
+                        batch.done() + (deleted ? 1 : 0)));
+    }
+
+    /** @return true nếu bản cũ đã được xóa (hoặc không còn) và dòng chờ xóa đã được bỏ. */
+    private Mono<Boolean> purge(StoragePendingDelete pending) {
+        return Mono.defer(() -> blobStores.get(pending.getStorageBackend()).delete(pending.getFilePath()))
+                .then(Mono.defer(() -> pendingDeleteRepository.deleteById(pending.getId())))
+                .doOnSuccess(ignored -> log.info("Đã xóa bản cũ sau khi chuyển tầng: {}:{}",
+                        pending.getStorageBackend(), pending.getFilePath()))
+                .thenReturn(true)
+                .onErrorResume(e -> {
+                    log.error("Không thể xóa bản cũ {}:{} (lần {}): {}", pending.getStorageBackend(),
+                            pending.getFilePath(), pending.getAttempts(), e.getMessage());
+                    return pendingDeleteRepository.recordFailure(pending.getId(), truncate(String.valueOf(e)))
+                            .onErrorResume(ignored -> Mono.empty())
+                            .thenReturn(false);
+                });
+    }
+
+    private static String truncate(String error) {
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    /**
+     * Tên file ở tầng mới: thay UUID đầu tên bằng UUID mới để mỗi lần chuyển
+     * có key riêng (hai node cùng chuyển một file không ghi đè lên nhau) mà
+     * tên không dài thêm sau nhiều lần chuyển qua lại.
+     */
+    static String movedFileName(String key) {
+        String fileName = key.substring(Math.max(key.lastIndexOf('/'), key.lastIndexOf('\\')) + 1);
+        return UUID.randomUUID() + "_" + UUID_PREFIX.matcher(fileName).replaceFirst("");
+    }
+
+    private record Batch(int scanned, int done) {
+    }
+}
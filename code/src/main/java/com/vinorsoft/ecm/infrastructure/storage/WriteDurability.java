@@ -0,0 +1,14 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+/**
+ * Mức đảm bảo dữ liệu đã xuống đĩa trước khi một lần ghi file được coi là
+ * xong (cấu hình {@code upload.write.durability}).
+ */
+public enum WriteDurability {
+    /** Chỉ đóng file, dữ liệu có thể còn trong page cache của hệ điều hành. */
+    NONE,
+    /** {@code force(false)} trước khi đóng (tương đương fdatasync). */
+    DATA,
+    /** {@code force(true)}: cả dữ liệu và metadata của file (tương đương fsync). */
+    FULL
+}
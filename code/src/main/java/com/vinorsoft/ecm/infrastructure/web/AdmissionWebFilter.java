@@ -0,0 +1,78 @@
+package com.vinorsoft.ecm.infrastructure.web;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionControl;
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionPool;
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionRejectedException;
+import com.vinorsoft.ecm.infrastructure.constants.ApiControllerConstants;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Xin chỗ trong {@link AdmissionControl} trước khi request upload/download
+ * được xử lý và giữ đến khi response được gửi xong (kể cả phần thân được
+ * stream) hoặc kết nối bị đóng. Không xin được thì trả về 429 với
+ * {@code Retry-After} mà không đọc body. Chạy sau Spring Security nên request
+ * chưa xác thực không chiếm chỗ.
+ */
+@Component
+@Slf4j
+public class AdmissionWebFilter implements WebFilter {
+    private static final String PREFIX = ApiControllerConstants.API_FILE_UPLOAD;
+    private static final String PUBLIC_DOWNLOAD_PREFIX = ApiControllerConstants.PUBLIC + "/download/";
+
+    private final AdmissionControl admissionControl;
+
+    public AdmissionWebFilter(AdmissionControl admissionControl) {
+        this.admissionControl = admissionControl;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!admissionControl.isEnabled()) {
+            return chain.filter(exchange);
+        }
+        ServerHttpRequest request = exchange.getRequest();
+        String path = request.getPath().pathWithinApplication().value();
+        HttpMethod method = request.getMethod();
+        AdmissionPool pool;
+        long amount = 1;
+        if (method == HttpMethod.POST && (path.equals(PREFIX + ApiControllerConstants.API_FILE_UPLOAD_UPLOAD)
+                || path.equals(PREFIX + ApiControllerConstants.API_FILE_UPLOAD_UPLOAD_MULTIPLE))
+                || method == HttpMethod.PUT && path.startsWith(PREFIX + ApiControllerConstants.API_FILE_UPLOAD_SESSIONS)
+                        && path.endsWith("/chunks")) {
+            pool = admissionControl.uploadBytes();
+            amount = admissionControl.uploadWeight(request.getHeaders().getContentLength());
+        } else if (path.equals(PREFIX + ApiControllerConstants.API_FILE_UPLOAD_DOWNLOAD)
+                || path.equals(PREFIX + ApiControllerConstants.API_FILE_UPLOAD_RENDITION)
+                || path.startsWith(PUBLIC_DOWNLOAD_PREFIX)) {
+            pool = admissionControl.downloads();
+        } else if (path.equals(PREFIX + ApiControllerConstants.API_FILE_UPLOAD_DOWNLOAD_MULTIPLE)) {
+            pool = admissionControl.zips();
+        } else {
+            return chain.filter(exchange);
+        }
+        return pool.admit(amount, permit -> chain.filter(exchange))
+                .onErrorResume(AdmissionRejectedException.class, e -> {
+                    ServerHttpResponse response = exchange.getResponse();
+                    if (response.isCommitted()) {
+                        return Mono.error(e);
+                    }
+                    log.warn("Từ chối request {} {}: {}", method, path, e.getMessage());
+                    response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+                    response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                            String.valueOf(Math.max(1, admissionControl.getRetryAfter().toSeconds())));
+                    return response.setComplete();
+                });
+    }
+}
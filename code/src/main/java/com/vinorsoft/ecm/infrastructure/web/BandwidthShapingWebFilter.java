@@ -0,0 +1,94 @@
+package com.vinorsoft.ecm.infrastructure.web;
+
+import java.security.Principal;
+import java.util.Map;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import com.vinorsoft.ecm.infrastructure.bandwidth.BandwidthShaper;
+import com.vinorsoft.ecm.infrastructure.constants.ApiControllerConstants;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Đưa nội dung response của các endpoint download qua
+ * {@link BandwidthShaper}, theo tên tài khoản đăng nhập (hoặc
+ * {@value #ANONYMOUS}) và tên endpoint ({@code download}, {@code rendition},
+ * {@code download-multiple}, {@code public-download} cho URL ký sẵn).
+ * <p>
+ * Download qua URL ký sẵn không có tài khoản và thường đi qua proxy cache,
+ * nên địa chỉ IP hay URL cũng không phân biệt được người xem: chúng không bị
+ * giới hạn theo client mà chỉ theo endpoint {@code public-download} và tổng,
+ * thay vì mọi người xem dùng chung một bucket {@value #ANONYMOUS}.
+ * <p>
+ * Response được bọc không còn là {@code ZeroCopyHttpOutputMessage}, nên khi bật
+ * giới hạn file được đọc theo từng buffer thay vì {@code transferTo}.
+ */
+@Component
+public class BandwidthShapingWebFilter implements WebFilter {
+    static final String ANONYMOUS = "anonymous";
+
+    private static final Map<String, String> ENDPOINTS = Map.of(
+            ApiControllerConstants.API_FILE_UPLOAD + ApiControllerConstants.API_FILE_UPLOAD_DOWNLOAD, "download",
+            ApiControllerConstants.API_FILE_UPLOAD + ApiControllerConstants.API_FILE_UPLOAD_RENDITION, "rendition",
+            ApiControllerConstants.API_FILE_UPLOAD + ApiControllerConstants.API_FILE_UPLOAD_DOWNLOAD_MULTIPLE,
+            "download-multiple");
+
+    private static final String PUBLIC_DOWNLOAD_PREFIX = ApiControllerConstants.PUBLIC + "/download/";
+
+    private final BandwidthShaper bandwidthShaper;
+
+    public BandwidthShapingWebFilter(BandwidthShaper bandwidthShaper) {
+        this.bandwidthShaper = bandwidthShaper;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        boolean publicDownload = path.startsWith(PUBLIC_DOWNLOAD_PREFIX);
+        String endpoint = publicDownload ? "public-download" : ENDPOINTS.get(path);
+        if (!bandwidthShaper.isEnabled() || endpoint == null) {
+            return chain.filter(exchange);
+        }
+        if (publicDownload) {
+            return chain.filter(exchange.mutate()
+                    .response(new ShapedResponse(exchange.getResponse(), null, endpoint))
+                    .build());
+        }
+        return exchange.getPrincipal()
+                .map(Principal::getName)
+                .defaultIfEmpty(ANONYMOUS)
+                .flatMap(client -> chain.filter(exchange.mutate()
+                        .response(new ShapedResponse(exchange.getResponse(), client, endpoint))
+                        .build()));
+    }
+
+    private class ShapedResponse extends ServerHttpResponseDecorator {
+        private final String client;
+        private final String endpoint;
+
+        ShapedResponse(ServerHttpResponse delegate, String client, String endpoint) {
+            super(delegate);
+            this.client = client;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return super.writeWith(bandwidthShaper.shape(body, client, endpoint));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            return super.writeAndFlushWith(Flux.from(body).map(part -> bandwidthShaper.shape(part, client, endpoint)));
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.vinorsoft.ecm.infrastructure.web;
+
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+
+import com.vinorsoft.ecm.infrastructure.storage.BlobStore;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Ghi file xuống response mà không nạp cả file lên heap. Trên Reactor Netty
+ * dùng zero-copy ({@link ZeroCopyHttpOutputMessage}, tức
+ * {@code FileChannel.transferTo}); server khác thì đọc theo từng buffer có kích
+ * thước cố định. File không nằm trên đĩa local được đọc theo luồng từ
+ * {@link BlobStore} (chỉ đoạn cần gửi).
+ * <p>
+ * Hỗ trợ {@code Range} (một khoảng, trả về 206), {@code If-Range} và
+ * {@code Accept-Ranges} để trình phát video có thể tua và tải tiếp, và
+ * {@code If-None-Match}/{@code If-Modified-Since} (trả về 304 không kèm nội
+ * dung).
+ */
+@Component
+@Slf4j
+public class FileDownloadWriter {
+    private static final int FALLBACK_BUFFER_SIZE = 64 * 1024;
+
+    public Mono<Void> write(ServerHttpRequest request, ServerHttpResponse response, BlobStore store, String key,
+            long length, MediaType contentType, String eTag, Instant lastModified) {
+        Path filePath = store.localPath(key);
+        if (filePath != null) {
+            return write(request, response, filePath, length, contentType, eTag, lastModified);
+        }
+        return write(request, response, length, contentType, eTag, lastModified,
+                (start, count) -> response.writeWith(store.get(key, start, count)));
+    }
+
+    public Mono<Void> write(ServerHttpRequest request, ServerHttpResponse response, Path filePath, long length,
+            MediaType contentType, String eTag, Instant lastModified) {
+        return write(request, response, length, contentType, eTag, lastModified, (start, count) -> {
+            if (response instanceof ZeroCopyHttpOutputMessage zeroCopyResponse) {
+                return zeroCopyResponse.writeWith(filePath, start, count);
+            }
+            return response.writeWith(DataBufferUtils.takeUntilByteCount(
+                    DataBufferUtils.readAsynchronousFileChannel(
+                            () -> AsynchronousFileChannel.open(filePath, StandardOpenOption.READ),
+                            start, response.bufferFactory(), FALLBACK_BUFFER_SIZE),
+                    count));
+        });
+    }
+
+    /**
+     * Nếu bản của client vẫn còn đúng ({@code If-None-Match} khớp
+     * {@code eTag}, hoặc không có {@code If-None-Match} và nội dung không đổi
+     * sau {@code If-Modified-Since}) thì đặt status 304 cùng ETag và
+     * Last-Modified; caller chỉ cần {@code response.setComplete()}. Chỉ dùng
+     * các giá trị được truyền vào nên gọi được trước khi mở file.
+     *
+     * @return true nếu đã đặt 304.
+     */
+    public boolean checkNotModified(ServerHttpRequest request, ServerHttpResponse response, String eTag,
+            Instant lastModified) {
+        if (request.getMethod() != HttpMethod.GET && request.getMethod() != HttpMethod.HEAD) {
+            return false;
+        }
+        HttpHeaders requestHeaders = request.getHeaders();
+        Instant lastModifiedSeconds = lastModified != null ? lastModified.truncatedTo(ChronoUnit.SECONDS) : null;
+        // If-Modified-Since bị bỏ qua khi có If-None-Match (RFC 9110, mục 13.1.3)
+        List<String> ifNoneMatch = requestHeaders.getIfNoneMatch();
+        boolean notModified = !ifNoneMatch.isEmpty()
+                ? eTag != null && ifNoneMatch.stream().anyMatch(tag -> weakMatches(tag.trim(), eTag))
+                : isNotModifiedSince(requestHeaders, lastModifiedSeconds);
+        if (!notModified) {
+            return false;
+        }
+        HttpHeaders headers = response.getHeaders();
+        response.setStatusCode(HttpStatus.NOT_MODIFIED);
+        if (eTag != null) {
+            headers.setETag(eTag);
+        }
+        if (lastModifiedSeconds != null) {
+            headers.setLastModified(lastModifiedSeconds);
+        }
+        return true;
+    }
+
+    private Mono<Void> write(ServerHttpRequest request, ServerHttpResponse response, long length,
+            MediaType contentType, String eTag, Instant lastModified, BodyWriter body) {
+        if (checkNotModified(request, response, eTag, lastModified)) {
+            return response.setComplete();
+        }
+        HttpHeaders headers = response.getHeaders();
+        Instant lastModifiedSeconds = lastModified != null ? lastModified.truncatedTo(ChronoUnit.SECONDS) : null;
+
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setContentType(contentType);
+        if (eTag != null) {
+            headers.setETag(eTag);
+        }
+        if (lastModifiedSeconds != null) {
+            headers.setLastModified(lastModifiedSeconds);
+        }
+
+        long start = 0;
+        long count = length;
+        String rangeHeader = request.getHeaders().getFirst(HttpHeaders.RANGE);
+        if (rangeHeader != null && request.getMethod() == HttpMethod.GET
+                && isIfRangeSatisfied(request.getHeaders(), eTag, lastModifiedSeconds)) {
+            HttpRange range = parseSingleRange(rangeHeader);
+            if (range != null) {
+                long rangeStart = range.getRangeStart(length);
+                long rangeEnd = range.getRangeEnd(length);
+                if (length == 0 || rangeStart >= length || rangeStart > rangeEnd) {
+                    log.warn("Range không hợp lệ: range={}, length={}", rangeHeader, length);
+                    response.setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+                    headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    headers.remove(HttpHeaders.CONTENT_TYPE);
+                    return response.setComplete();
+                }
+                start = rangeStart;
+                count = rangeEnd - rangeStart + 1;
+                response.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+                headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + rangeStart + "-" + rangeEnd + "/" + length);
+            }
+        }
+
+        headers.setContentLength(count);
+        if (request.getMethod() == HttpMethod.HEAD) {
+            return response.setComplete();
+        }
+
+        return body.write(start, count);
+    }
+
+    /**
+     * Chỉ phục vụ một khoảng; nhiều khoảng hoặc header sai cú pháp thì bỏ qua
+     * Range và trả về toàn bộ file (RFC 9110 cho phép).
+     */
+    private HttpRange parseSingleRange(String rangeHeader) {
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            log.warn("Bỏ qua Range không đọc được: {}", rangeHeader);
+            return null;
+        }
+    }
+
+    /**
+     * If-Range chỉ khớp với ETag mạnh hoặc đúng Last-Modified; không khớp thì
+     * gửi lại toàn bộ file thay vì một phần của bản đã thay đổi.
+     */
+    private boolean isIfRangeSatisfied(HttpHeaders requestHeaders, String eTag, Instant lastModified) {
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        ifRange = ifRange.trim();
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return eTag != null && !ifRange.startsWith("W/") && ifRange.equals(eTag);
+        }
+        if (lastModified == null) {
+            return false;
+        }
+        try {
+            long ifRangeDate = requestHeaders.getFirstDate(HttpHeaders.IF_RANGE);
+            return ifRangeDate == lastModified.toEpochMilli();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /** So sánh yếu (bỏ qua {@code W/}) như If-None-Match yêu cầu; {@code *} khớp với mọi ETag. */
+    private static boolean weakMatches(String requestTag, String eTag) {
+        if ("*".equals(requestTag)) {
+            return true;
+        }
+        return stripWeak(requestTag).equals(stripWeak(eTag));
+    }
+
+    private static String stripWeak(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    private boolean isNotModifiedSince(HttpHeaders requestHeaders, Instant lastModified) {
+        if (lastModified == null) {
+            return false;
+        }
+        try {
+            long ifModifiedSince = requestHeaders.getIfModifiedSince();
+            return ifModifiedSince != -1 && lastModified.toEpochMilli() <= ifModifiedSince;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /** Ghi {@code count} byte nội dung bắt đầu từ {@code start} sau khi header đã đặt xong. */
+    @FunctionalInterface
+    private interface BodyWriter {
+        Mono<Void> write(long start, long count);
+    }
+}
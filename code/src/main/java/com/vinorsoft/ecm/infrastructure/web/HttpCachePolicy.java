@@ -0,0 +1,64 @@
+package com.vinorsoft.ecm.infrastructure.web;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@code Cache-Control} của download và rendition theo category:
+ * {@code upload.http-cache.category-max-age} ({@code category=thời gian,...}),
+ * category khác dùng {@code upload.http-cache.max-age}. Thời gian 0 cho
+ * {@code no-cache}: client vẫn lưu bản sao nhưng phải hỏi lại mỗi lần, và
+ * nhận 304 nếu file không đổi.
+ */
+@Component
+@Slf4j
+public class HttpCachePolicy {
+    @Value("${upload.http-cache.max-age:0}")
+    private Duration defaultMaxAge;
+
+    @Value("${upload.http-cache.category-max-age:}")
+    private String categoryMaxAgeConfig;
+
+    /** Cho phép cache dùng chung (CDN, proxy) lưu lại; false thì chỉ trình duyệt. */
+    @Value("${upload.http-cache.public:false}")
+    private boolean shared;
+
+    private final Map<String, CacheControl> categories = new HashMap<>();
+    private CacheControl defaultCacheControl;
+
+    @PostConstruct
+    public void init() {
+        defaultCacheControl = cacheControl(defaultMaxAge);
+        for (String entry : categoryMaxAgeConfig.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            String[] parts = entry.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalStateException("upload.http-cache.category-max-age không hợp lệ: " + entry);
+            }
+            categories.put(parts[0].trim(), cacheControl(DurationStyle.detectAndParse(parts[1].trim())));
+        }
+        log.info("Cache-Control: default={}, categories={}", defaultCacheControl.getHeaderValue(), categories.size());
+    }
+
+    public CacheControl forCategory(String category) {
+        return categories.getOrDefault(category, defaultCacheControl);
+    }
+
+    private CacheControl cacheControl(Duration maxAge) {
+        CacheControl cacheControl = maxAge.isZero() || maxAge.isNegative()
+                ? CacheControl.noCache()
+                : CacheControl.maxAge(maxAge);
+        return shared ? cacheControl.cachePublic() : cacheControl.cachePrivate();
+    }
+}
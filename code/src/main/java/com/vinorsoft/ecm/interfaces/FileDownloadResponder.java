@@ -0,0 +1,64 @@
+package com.vinorsoft.ecm.interfaces;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+
+import com.vinorsoft.ecm.application.UploadService;
+import com.vinorsoft.ecm.domain.FileECM;
+import com.vinorsoft.ecm.infrastructure.metrics.EcmMetrics;
+import com.vinorsoft.ecm.infrastructure.web.FileDownloadWriter;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Gửi nội dung một phiên bản file (bản nén nếu có, trừ khi {@code original}),
+ * dùng chung cho download có đăng nhập và download bằng URL ký sẵn.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class FileDownloadResponder {
+    private final UploadService uploadService;
+    private final FileDownloadWriter fileDownloadWriter;
+    private final EcmMetrics metrics;
+
+    public Mono<Void> write(FileECM fileECM, boolean original, CacheControl cacheControl, ServerHttpRequest request,
+            ServerHttpResponse response) {
+        response.getHeaders().setCacheControl(cacheControl);
+        // Chỉ dùng metadata (đã cache) nên 304 không chạm đĩa. Nếu bản nén bị
+        // mất, bản gốc được gửi với ETag khác ở bước sau
+        if (fileDownloadWriter.checkNotModified(request, response,
+                fileECM.eTag(!original && fileECM.hasCompressedCopy()), lastModifiedOf(fileECM))) {
+            log.info("File không đổi (304): fileId={}, version={}", fileECM.getId(), fileECM.getVersion());
+            return response.setComplete();
+        }
+        return uploadService.resolveFileContent(fileECM, original)
+                .flatMap(content -> {
+                    log.info("File tải thành công: fileId={}, version={}, compressed={}", fileECM.getId(),
+                            fileECM.getVersion(), content.isCompressed());
+                    return fileDownloadWriter.write(request, response, content.getStore(), content.getKey(),
+                            content.getSize(), MediaType.parseMediaType(fileECM.getContentType()),
+                            fileECM.eTag(content.isCompressed()), lastModifiedOf(fileECM))
+                            .doOnSuccess(unused -> {
+                                if (request.getMethod() == HttpMethod.GET) {
+                                    metrics.recordBytesOut(response.getHeaders().getContentLength());
+                                }
+                            });
+                });
+    }
+
+    static Instant lastModifiedOf(FileECM fileECM) {
+        LocalDateTime updatedAt = fileECM.getUpdatedAt() != null ? fileECM.getUpdatedAt() : fileECM.getDateUpload();
+        return updatedAt != null ? updatedAt.atZone(ZoneId.systemDefault()).toInstant() : null;
+    }
+}
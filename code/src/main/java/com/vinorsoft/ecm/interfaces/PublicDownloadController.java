@@ -0,0 +1,73 @@
+package com.vinorsoft.ecm.interfaces;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.UUID;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.vinorsoft.ecm.application.UploadService;
+import com.vinorsoft.ecm.infrastructure.constants.ApiControllerConstants;
+import com.vinorsoft.ecm.infrastructure.metrics.EcmMetrics;
+import com.vinorsoft.ecm.infrastructure.security.PresignedUrlSigner;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Download bằng URL ký sẵn (cấp tại {@code presign}), không cần đăng nhập.
+ * Chữ ký được kiểm tra trước, không cần DB; metadata file được lấy từ cache.
+ * URL chỉ trỏ đến một phiên bản bất biến nên proxy/CDN được lưu response đến
+ * khi URL hết hạn.
+ */
+@RestController
+@RequestMapping(ApiControllerConstants.PUBLIC)
+@RequiredArgsConstructor
+@Slf4j
+public class PublicDownloadController {
+    private final UploadService uploadService;
+    private final FileDownloadResponder fileDownloadResponder;
+    private final PresignedUrlSigner presignedUrlSigner;
+    private final EcmMetrics metrics;
+
+    @GetMapping(ApiControllerConstants.PUBLIC_DOWNLOAD)
+    public Mono<Void> downloadFile(
+            @PathVariable UUID fileId,
+            @RequestParam(value = "original", required = false, defaultValue = "false") boolean original,
+            @RequestParam long expires,
+            @RequestParam String signature,
+            ServerHttpRequest request,
+            ServerHttpResponse response) {
+        if (!presignedUrlSigner.verify(fileId, original, expires, signature)) {
+            log.warn("URL download không hợp lệ hoặc đã hết hạn: fileId={}, expires={}", fileId, expires);
+            response.setStatusCode(HttpStatus.FORBIDDEN);
+            return response.setComplete();
+        }
+        CacheControl cacheControl = CacheControl
+                .maxAge(Duration.ofSeconds(presignedUrlSigner.secondsUntil(expires)))
+                .cachePublic();
+        return uploadService.getFileInfo(fileId)
+                .switchIfEmpty(Mono.error(new IOException("File không tồn tại.")))
+                .flatMap(fileECM -> fileDownloadResponder.write(fileECM, original, cacheControl, request, response))
+                .onErrorResume(e -> {
+                    log.warn("File không tìm thấy: fileId={}", fileId);
+                    if (response.isCommitted()) {
+                        return Mono.error(e);
+                    }
+                    response.getHeaders().remove(HttpHeaders.CACHE_CONTROL);
+                    response.setStatusCode(HttpStatus.NOT_FOUND);
+                    return response.setComplete();
+                })
+                .as(metrics::trackDownload);
+    }
+}
@@ -1,14 +1,21 @@
 package com.vinorsoft.ecm.interfaces;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -16,10 +23,23 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+import com.vinorsoft.ecm.application.FileContent;
+import com.vinorsoft.ecm.application.FileUploadResult;
+import com.vinorsoft.ecm.application.RenditionService;
 import com.vinorsoft.ecm.application.UploadService;
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionControl;
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionRejectedException;
+import com.vinorsoft.ecm.infrastructure.archive.ZipCompressionMode;
 import com.vinorsoft.ecm.infrastructure.constants.ApiControllerConstants;
 import com.vinorsoft.ecm.infrastructure.mapper.FileECMMapper;
+import com.vinorsoft.ecm.infrastructure.metrics.EcmMetrics;
+import com.vinorsoft.ecm.infrastructure.security.PresignedUrlSigner;
+import com.vinorsoft.ecm.infrastructure.web.FileDownloadWriter;
+import com.vinorsoft.ecm.infrastructure.web.HttpCachePolicy;
 import com.vinorsoft.ecm.interfaces.dto.FileECMDTO;
+import com.vinorsoft.ecm.interfaces.dto.FileUploadResultDTO;
+import com.vinorsoft.ecm.interfaces.dto.PresignedUrlDTO;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -34,7 +54,21 @@ public class UploadController {
     @Autowired
     private final UploadService uploadService;
     @Autowired
+    private final RenditionService renditionService;
+    @Autowired
     private final FileECMMapper fileEcmMapper;
+    @Autowired
+    private final FileDownloadWriter fileDownloadWriter;
+    @Autowired
+    private final FileDownloadResponder fileDownloadResponder;
+    @Autowired
+    private final HttpCachePolicy httpCachePolicy;
+    @Autowired
+    private final AdmissionControl admissionControl;
+    @Autowired
+    private final PresignedUrlSigner presignedUrlSigner;
+    @Autowired
+    private final EcmMetrics metrics;
 
     @PostMapping(ApiControllerConstants.API_FILE_UPLOAD_UPLOAD)
     public Mono<ResponseEntity<FileECMDTO>> uploadFile(
@@ -48,55 +82,170 @@ public class UploadController {
                 .map(ResponseEntity::ok)
                 .doOnSuccess(uuid -> log.info("Upload thành công: fileId={}", uuid))
                 .doOnError(e -> log.error("Upload thất bại: {}", e.getMessage(), e))
-                .onErrorResume(e -> Mono.just(ResponseEntity.badRequest().build()));
+                .onErrorResume(e -> Mono.just(ResponseEntity.badRequest().build()))
+                .as(metrics::trackUpload);
     }
 
+    /**
+     * Kết quả theo từng file: 200 nếu mọi file được lưu, 207 nếu chỉ một phần,
+     * 429 (kèm {@code Retry-After}) nếu không file nào được lưu và có file bị từ
+     * chối vì quá tải, 400 nếu không file nào được lưu.
+     */
     @PostMapping(ApiControllerConstants.API_FILE_UPLOAD_UPLOAD_MULTIPLE)
-    public Mono<ResponseEntity<List<FileECMDTO>>> uploadMutilpleFile(
+    public Mono<ResponseEntity<List<FileUploadResultDTO>>> uploadMutilpleFile(
             @RequestPart("files") Flux<FilePart> files,
             @RequestParam("category") String category) {
         log.info("Nhận request upload multiple files: category={}", category);
-        return files
-                .flatMap(file -> uploadService.saveFile(file, null, category))
+        return uploadService.saveFiles(files, category)
                 .collectList()
-                .map(fileDatas -> fileEcmMapper.toListDTO(fileDatas))
-                .map(ResponseEntity::ok)
-                .doOnSuccess(uuids -> log.info("Upload thành công: fileIds={}", uuids))
+                .map(results -> {
+                    long saved = results.stream().filter(FileUploadResult::isSaved).count();
+                    log.info("Upload nhiều file: {}/{} file được lưu", saved, results.size());
+                    if (saved == 0 && results.stream()
+                            .anyMatch(result -> result.getStatus() == FileUploadResult.Status.REJECTED)) {
+                        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                                .header(HttpHeaders.RETRY_AFTER,
+                                        String.valueOf(Math.max(1, admissionControl.getRetryAfter().toSeconds())))
+                                .body(fileEcmMapper.toResultDTOs(results));
+                    }
+                    HttpStatus status = saved == results.size() ? HttpStatus.OK
+                            : saved == 0 ? HttpStatus.BAD_REQUEST : HttpStatus.MULTI_STATUS;
+                    return ResponseEntity.status(status).body(fileEcmMapper.toResultDTOs(results));
+                })
                 .doOnError(e -> log.error("Upload thất bại: {}", e.getMessage(), e))
-                .onErrorResume(e -> Mono.just(ResponseEntity.badRequest().build()));
+                .onErrorResume(e -> Mono.just(ResponseEntity.badRequest().build()))
+                .as(metrics::trackUpload);
     }
 
     @GetMapping(ApiControllerConstants.API_FILE_UPLOAD_DOWNLOAD)
-    public Mono<ResponseEntity<byte[]>> downloadFile(
+    public Mono<Void> downloadFile(
             @RequestParam UUID fileId,
-            @RequestParam(value = "version", required = false) Integer version) {
-        log.info("Nhận request tải file: fileId={}, version={}", fileId, version);
-
-        return uploadService.getFileInfo(fileId)
-                .flatMap(fileECM -> uploadService.getFileContent(fileId)
-                        .map(fileData -> {
-                            log.info("File tải thành công: fileId={}, version={}", fileId, fileECM.getVersion());
-                            return ResponseEntity.ok()
-                                    .contentType(MediaType.parseMediaType(fileECM.getContentType()))
-                                    .body(fileData);
-                        }))
+            @RequestParam(value = "version", required = false) Integer version,
+            @RequestParam(value = "latest", required = false, defaultValue = "false") boolean latest,
+            @RequestParam(value = "original", required = false, defaultValue = "false") boolean original,
+            ServerHttpRequest request,
+            ServerHttpResponse response) {
+        log.info("Nhận request tải file: fileId={}, version={}, latest={}", fileId, version, latest);
+
+        return uploadService.getFileVersion(fileId, version, latest)
+                .switchIfEmpty(Mono.error(new IOException("File không tồn tại.")))
+                .flatMap(fileECM -> fileDownloadResponder.write(fileECM, original,
+                        httpCachePolicy.forCategory(fileECM.getCategory()), request, response))
+                .onErrorResume(e -> {
+                    log.warn("File không tìm thấy: fileId={}, version={}", fileId, version);
+                    if (response.isCommitted()) {
+                        return Mono.error(e);
+                    }
+                    response.getHeaders().remove(HttpHeaders.CACHE_CONTROL);
+                    response.setStatusCode(HttpStatus.NOT_FOUND);
+                    return response.setComplete();
+                })
+                .as(metrics::trackDownload);
+    }
+
+    /**
+     * Cấp URL download không cần đăng nhập cho phiên bản được chọn (như
+     * {@code download}), dùng được đến khi hết hạn {@code expiresIn} ({@code 10m},
+     * {@code PT10M}...; mặc định {@code upload.presign.default-ttl}).
+     */
+    @GetMapping(ApiControllerConstants.API_FILE_UPLOAD_PRESIGN)
+    public Mono<ResponseEntity<PresignedUrlDTO>> presignDownload(
+            @RequestParam UUID fileId,
+            @RequestParam(value = "version", required = false) Integer version,
+            @RequestParam(value = "latest", required = false, defaultValue = "false") boolean latest,
+            @RequestParam(value = "original", required = false, defaultValue = "false") boolean original,
+            @RequestParam(value = "expiresIn", required = false) String expiresIn) {
+        log.info("Nhận request cấp URL download: fileId={}, version={}, latest={}, expiresIn={}", fileId, version,
+                latest, expiresIn);
+        if (!presignedUrlSigner.isEnabled()) {
+            return Mono.just(ResponseEntity.notFound().build());
+        }
+        return Mono.fromCallable(() -> presignedUrlSigner.expiresAt(
+                        expiresIn != null ? DurationStyle.detectAndParse(expiresIn) : null))
+                // Phiên bản được chốt lúc cấp: URL luôn trỏ đến cùng một nội dung
+                .zipWith(uploadService.getFileVersion(fileId, version, latest)
+                        .switchIfEmpty(Mono.error(new IOException("File không tồn tại."))))
+                .map(tuple -> {
+                    long expires = tuple.getT1().getEpochSecond();
+                    UUID versionId = tuple.getT2().getId();
+                    String url = UriComponentsBuilder
+                            .fromPath(ApiControllerConstants.PUBLIC + ApiControllerConstants.PUBLIC_DOWNLOAD)
+                            .queryParamIfPresent("original", original ? Optional.of(true) : Optional.empty())
+                            .queryParam("expires", expires)
+                            .queryParam("signature", presignedUrlSigner.sign(versionId, original, expires))
+                            .buildAndExpand(versionId)
+                            .toUriString();
+                    return ResponseEntity.ok(new PresignedUrlDTO(url, tuple.getT1()));
+                })
+                .onErrorResume(IllegalArgumentException.class, e -> {
+                    log.warn("Request cấp URL download không hợp lệ: fileId={}: {}", fileId, e.getMessage());
+                    return Mono.just(ResponseEntity.badRequest().build());
+                })
                 .onErrorResume(e -> {
                     log.warn("File không tìm thấy: fileId={}, version={}", fileId, version);
                     return Mono.just(ResponseEntity.notFound().build());
                 });
     }
 
+    @GetMapping(ApiControllerConstants.API_FILE_UPLOAD_RENDITION)
+    public Mono<Void> downloadRendition(
+            @RequestParam UUID fileId,
+            @RequestParam(value = "size", required = false) Integer size,
+            @RequestParam(value = "version", required = false) Integer version,
+            @RequestParam(value = "latest", required = false, defaultValue = "false") boolean latest,
+            ServerHttpRequest request,
+            ServerHttpResponse response) {
+        log.info("Nhận request tải rendition: fileId={}, size={}, version={}, latest={}", fileId, size, version,
+                latest);
+
+        return uploadService.getFileVersion(fileId, version, latest)
+                .doOnNext(fileECM -> response.getHeaders()
+                        .setCacheControl(httpCachePolicy.forCategory(fileECM.getCategory())))
+                .flatMap(fileECM -> renditionService.getRendition(fileECM, size)
+                        .flatMap(content -> fileDownloadWriter.write(request, response, content.getStore(),
+                                content.getKey(), content.getSize(), MediaType.IMAGE_JPEG,
+                                renditionETagOf(content), FileDownloadResponder.lastModifiedOf(fileECM))
+                                .doOnSuccess(unused -> {
+                                    if (request.getMethod() == HttpMethod.GET) {
+                                        metrics.recordBytesOut(response.getHeaders().getContentLength());
+                                    }
+                                })))
+                .onErrorResume(e -> {
+                    if (response.isCommitted()) {
+                        return Mono.error(e);
+                    }
+                    response.getHeaders().remove(HttpHeaders.CACHE_CONTROL);
+                    if (e instanceof AdmissionRejectedException) {
+                        log.warn("Từ chối tạo rendition: fileId={}: {}", fileId, e.getMessage());
+                        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+                        response.getHeaders().set(HttpHeaders.RETRY_AFTER,
+                                String.valueOf(Math.max(1, admissionControl.getRetryAfter().toSeconds())));
+                    } else if (e instanceof IllegalArgumentException) {
+                        log.warn("Request rendition không hợp lệ: fileId={}: {}", fileId, e.getMessage());
+                        response.setStatusCode(HttpStatus.BAD_REQUEST);
+                    } else {
+                        log.warn("Không có rendition: fileId={}, size={}: {}", fileId, size, e.getMessage());
+                        response.setStatusCode(HttpStatus.NOT_FOUND);
+                    }
+                    return response.setComplete();
+                })
+                .as(metrics::trackDownload);
+    }
+
     @GetMapping(ApiControllerConstants.API_FILE_UPLOAD_DOWNLOAD_MULTIPLE)
-    public Mono<ResponseEntity<InputStreamResource>> downloadMultipleFiles(
+    public Mono<ResponseEntity<Flux<DataBuffer>>> downloadMultipleFiles(
             @RequestParam List<UUID> fileIds,
-            @RequestParam(value = "version", required = false) Integer version) {
-        log.info("Nhận request tải nhiều file: fileIds={}, version={}", fileIds, version);
+            @RequestParam(value = "version", required = false) Integer version,
+            @RequestParam(value = "latest", required = false, defaultValue = "false") boolean latest,
+            @RequestParam(value = "compression", required = false, defaultValue = "AUTO") ZipCompressionMode compression) {
+        log.info("Nhận request tải nhiều file: fileIds={}, version={}, latest={}, compression={}", fileIds, version,
+                latest, compression);
 
-        return uploadService.getMultipleFileContent(fileIds)
-                .map(inputStreamResource -> ResponseEntity.ok()
+        return uploadService.getMultipleFileContent(fileIds, version, latest, compression)
+                .map(zipContent -> ResponseEntity.ok()
                         .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"files.zip\"")
                         .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                        .body(inputStreamResource))
+                        .body(metrics.trackDownload(metrics.countBytesOut(zipContent))))
                 .onErrorResume(e -> {
                     log.warn("Lỗi khi tải nhiều file: {}", e.getMessage());
                     return Mono.just(ResponseEntity.badRequest().build());
@@ -121,9 +270,11 @@ public class UploadController {
 
     @GetMapping(ApiControllerConstants.API_FILE_UPLOAD_GET_FILE_INFO)
     public Mono<ResponseEntity<FileECMDTO>> getFileInfo(
-            @RequestParam UUID fileId) {
-        log.info("Nhận request lấy thông tin file: fileId={}", fileId);
-        return uploadService.getFileInfo(fileId)
+            @RequestParam UUID fileId,
+            @RequestParam(value = "version", required = false) Integer version,
+            @RequestParam(value = "latest", required = false, defaultValue = "false") boolean latest) {
+        log.info("Nhận request lấy thông tin file: fileId={}, version={}, latest={}", fileId, version, latest);
+        return uploadService.getFileVersion(fileId, version, latest)
                 .flatMap(fileECM -> {
                     FileECMDTO fileECMDto = fileEcmMapper.toDTO(fileECM);
                     log.info("File tải thành công: fileId={}, version={}", fileId, fileECM.getVersion());
@@ -142,11 +293,31 @@ public class UploadController {
             @RequestParam List<UUID> fileIds) {
         log.info("Nhận request lấy thông tin file: fileIds={}", fileIds);
         return uploadService.getFileInfos(fileIds)
-                .flatMap((fileECM) -> Mono.just(fileEcmMapper.toDTO(fileECM)))
+                .map(fileEcmMapper::toDTO)
+                .collectList().map(ResponseEntity::ok)
+                .onErrorResume(e -> {
+                    log.warn("File không tìm thấy: fileIds={}, error={}", fileIds, e.getMessage());
+                    return Mono.just(ResponseEntity.notFound().build());
+                });
+    }
+
+    @GetMapping(ApiControllerConstants.API_FILE_UPLOAD_GET_FILE_VERSIONS)
+    public Mono<ResponseEntity<List<FileECMDTO>>> getFileVersions(
+            @RequestParam UUID fileId) {
+        log.info("Nhận request lấy lịch sử phiên bản: fileId={}", fileId);
+        return uploadService.getFileVersions(fileId)
+                .map(fileEcmMapper::toDTO)
                 .collectList().map(ResponseEntity::ok)
                 .onErrorResume(e -> {
-                    log.warn("File không tìm thấy: fileId={}", fileIds);
+                    log.warn("File không tìm thấy: fileId={}, error={}", fileId, e.getMessage());
                     return Mono.just(ResponseEntity.notFound().build());
                 });
     }
+
+    // Rendition được tạo từ một phiên bản bất biến nên không đổi; tên file
+    // (<fileId>_r<size>.jpg) phân biệt các kích thước
+    private String renditionETagOf(FileContent content) {
+        String fileName = Paths.get(content.getKey()).getFileName().toString();
+        return "\"" + fileName.substring(0, fileName.lastIndexOf('.')) + "-" + content.getSize() + "\"";
+    }
 }
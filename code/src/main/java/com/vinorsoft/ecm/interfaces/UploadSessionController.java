@@ -0,0 +1,119 @@
+package com.vinorsoft.ecm.interfaces;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.vinorsoft.ecm.application.UploadSessionNotFoundException;
+import com.vinorsoft.ecm.application.UploadSessionService;
+import com.vinorsoft.ecm.application.UploadSessionStateException;
+import com.vinorsoft.ecm.application.UploadSessionStatus;
+import com.vinorsoft.ecm.infrastructure.constants.ApiControllerConstants;
+import com.vinorsoft.ecm.infrastructure.mapper.FileECMMapper;
+import com.vinorsoft.ecm.infrastructure.mapper.UploadSessionMapper;
+import com.vinorsoft.ecm.infrastructure.metrics.EcmMetrics;
+import com.vinorsoft.ecm.interfaces.dto.FileECMDTO;
+import com.vinorsoft.ecm.interfaces.dto.UploadSessionDTO;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Upload nhiều phần cho file lớn: tạo phiên, PUT từng chunk (nội dung thô của
+ * body) tại {@code offset}, xem các chunk đã nhận để gửi tiếp sau khi mất kết
+ * nối, rồi commit.
+ */
+@RestController
+@RequestMapping(ApiControllerConstants.API_FILE_UPLOAD)
+@RequiredArgsConstructor
+@Slf4j
+public class UploadSessionController {
+    private final UploadSessionService uploadSessionService;
+    private final UploadSessionMapper uploadSessionMapper;
+    private final FileECMMapper fileEcmMapper;
+    private final EcmMetrics metrics;
+
+    @PostMapping(ApiControllerConstants.API_FILE_UPLOAD_SESSIONS)
+    public Mono<ResponseEntity<UploadSessionDTO>> createSession(
+            @RequestParam("fileName") String fileName,
+            @RequestParam("contentType") String contentType,
+            @RequestParam("fileSize") long fileSize,
+            @RequestParam("category") String category,
+            @RequestParam(name = "fileId", required = false) UUID fileId) {
+        log.info("Nhận request tạo phiên upload: fileName={}, fileSize={}, category={}, fileId={}", fileName,
+                fileSize, category, fileId);
+        return uploadSessionService.createSession(fileName, contentType, fileSize, category, fileId)
+                .map(this::toDTO)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> errorResponse("tạo phiên upload", e));
+    }
+
+    @PutMapping(ApiControllerConstants.API_FILE_UPLOAD_SESSION_CHUNKS)
+    public Mono<ResponseEntity<Void>> writeChunk(
+            @PathVariable UUID sessionId,
+            @RequestParam("offset") long offset,
+            ServerHttpRequest request) {
+        return uploadSessionService.writeChunk(sessionId, offset, metrics.countBytesIn(request.getBody()))
+                .then(Mono.just(ResponseEntity.noContent().<Void>build()))
+                .onErrorResume(e -> errorResponse("ghi chunk", e))
+                .as(metrics::trackUpload);
+    }
+
+    @GetMapping(ApiControllerConstants.API_FILE_UPLOAD_SESSION)
+    public Mono<ResponseEntity<UploadSessionDTO>> getSession(@PathVariable UUID sessionId) {
+        return uploadSessionService.getStatus(sessionId)
+                .map(this::toDTO)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> errorResponse("lấy phiên upload", e));
+    }
+
+    @PostMapping(ApiControllerConstants.API_FILE_UPLOAD_SESSION_COMMIT)
+    public Mono<ResponseEntity<FileECMDTO>> commit(@PathVariable UUID sessionId) {
+        log.info("Nhận request commit phiên upload: sessionId={}", sessionId);
+        return uploadSessionService.commit(sessionId)
+                .map(fileEcmMapper::toDTO)
+                .map(ResponseEntity::ok)
+                .doOnSuccess(file -> log.info("Upload thành công: sessionId={}", sessionId))
+                .onErrorResume(e -> errorResponse("commit phiên upload", e));
+    }
+
+    @DeleteMapping(ApiControllerConstants.API_FILE_UPLOAD_SESSION)
+    public Mono<ResponseEntity<Void>> abort(@PathVariable UUID sessionId) {
+        log.info("Nhận request hủy phiên upload: sessionId={}", sessionId);
+        return uploadSessionService.abort(sessionId)
+                .then(Mono.just(ResponseEntity.noContent().<Void>build()))
+                .onErrorResume(e -> errorResponse("hủy phiên upload", e));
+    }
+
+    private UploadSessionDTO toDTO(UploadSessionStatus status) {
+        return uploadSessionMapper.toDTO(status.getSession(), status.getReceivedChunks());
+    }
+
+    private <T> Mono<ResponseEntity<T>> errorResponse(String action, Throwable e) {
+        log.warn("Lỗi khi {}: {}", action, e.getMessage());
+        HttpStatus status;
+        if (e instanceof UploadSessionNotFoundException) {
+            status = HttpStatus.NOT_FOUND;
+        } else if (e instanceof UploadSessionStateException) {
+            status = HttpStatus.CONFLICT;
+        } else if (e instanceof IllegalArgumentException || e instanceof IOException) {
+            status = HttpStatus.BAD_REQUEST;
+        } else {
+            log.error("Lỗi khi {}: {}", action, e.getMessage(), e);
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+        }
+        return Mono.just(ResponseEntity.status(status).build());
+    }
+}
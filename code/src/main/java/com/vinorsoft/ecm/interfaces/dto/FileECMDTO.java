@@ -8,9 +8,11 @@ import lombok.Data;
 @Data
 public class FileECMDTO {
     private UUID id;
+    private UUID documentId;
     private String fileName;
     private String contentType;
     private long fileSize;
+    private Long compressedSize;
     private String category;
     private Integer version;
     private LocalDateTime dateUpload;
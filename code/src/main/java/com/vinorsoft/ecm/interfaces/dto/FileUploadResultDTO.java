@@ -0,0 +1,14 @@
+package com.vinorsoft.ecm.interfaces.dto;
+
+import lombok.Data;
+
+@Data
+public class FileUploadResultDTO {
+    private String fileName;
+    /** {@code SAVED}, {@code FAILED} hoặc {@code REJECTED} (quá tải, gửi lại sau). */
+    private String status;
+    /** Bản ghi đã lưu; null nếu thất bại. */
+    private FileECMDTO file;
+    /** Lý do thất bại; null nếu thành công. */
+    private String error;
+}
@@ -0,0 +1,16 @@
+package com.vinorsoft.ecm.interfaces.dto;
+
+import java.time.Instant;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresignedUrlDTO {
+    /** Đường dẫn tương đối (không gồm host), dùng không cần đăng nhập đến {@link #expiresAt}. */
+    private String url;
+    private Instant expiresAt;
+}
@@ -0,0 +1,23 @@
+package com.vinorsoft.ecm.interfaces.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import lombok.Data;
+
+@Data
+public class UploadSessionDTO {
+    private UUID id;
+    private UUID fileId;
+    private String fileName;
+    private String contentType;
+    private String category;
+    private long fileSize;
+    private int chunkSize;
+    private int chunkCount;
+    /** Chỉ số các chunk đã nhận; chunk i bắt đầu tại i * chunkSize. */
+    private List<Integer> receivedChunks;
+    private String status;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,3 @@
+ALTER TABLE FILE_ECM
+    ADD COLUMN compressed_path VARCHAR(2000),
+    ADD COLUMN compressed_size BIGINT;
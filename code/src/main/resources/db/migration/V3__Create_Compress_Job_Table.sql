@@ -0,0 +1,20 @@
+CREATE TABLE COMPRESS_JOB (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    file_id UUID NOT NULL REFERENCES FILE_ECM (id) ON DELETE CASCADE,
+    status VARCHAR(20) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    max_attempts INTEGER NOT NULL,
+    -- PENDING: thời điểm được chạy (lần thử kế tiếp); RUNNING: hết hạn lease, job được nhận lại
+    available_at TIMESTAMP NOT NULL DEFAULT now(),
+    locked_by VARCHAR(255),
+    last_error VARCHAR(2000),
+    created_at TIMESTAMP NOT NULL DEFAULT now(),
+    updated_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_compress_job_claim ON COMPRESS_JOB (available_at)
+    WHERE status IN ('PENDING', 'RUNNING');
+
+-- Mỗi file chỉ có một job đang chờ/đang chạy
+CREATE UNIQUE INDEX idx_compress_job_active_file ON COMPRESS_JOB (file_id)
+    WHERE status IN ('PENDING', 'RUNNING');
@@ -0,0 +1,14 @@
+-- Mỗi nội dung (SHA-256) chỉ lưu một lần; REF_COUNT là số bản ghi FILE_ECM đang dùng
+CREATE TABLE FILE_BLOB (
+    hash VARCHAR(64) PRIMARY KEY,
+    file_path VARCHAR(2000) NOT NULL,
+    file_size BIGINT NOT NULL,
+    ref_count INTEGER NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+-- NULL: file lưu riêng theo cách cũ (UUID_vN_tên)
+ALTER TABLE FILE_ECM
+    ADD COLUMN blob_hash VARCHAR(64) REFERENCES FILE_BLOB (hash);
+
+CREATE INDEX idx_file_ecm_blob_hash ON FILE_ECM (blob_hash);
@@ -0,0 +1,26 @@
+-- Phiên upload nhiều phần (có thể tiếp tục sau khi mất kết nối)
+CREATE TABLE UPLOAD_SESSION (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    -- File cần tạo phiên bản mới; NULL nếu là file mới
+    file_id UUID,
+    file_name VARCHAR(1000) NOT NULL,
+    content_type VARCHAR(50) NOT NULL,
+    category VARCHAR(255) NOT NULL,
+    file_size BIGINT NOT NULL,
+    chunk_size INTEGER NOT NULL,
+    chunk_count INTEGER NOT NULL,
+    staging_path VARCHAR(2000) NOT NULL,
+    -- OPEN: đang nhận chunk; COMMITTING: đang tạo FileECM
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT now(),
+    -- Gia hạn mỗi lần nhận chunk; quá hạn thì phiên và file tạm bị xóa
+    expires_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_upload_session_expires ON UPLOAD_SESSION (expires_at);
+
+CREATE TABLE UPLOAD_CHUNK (
+    session_id UUID NOT NULL REFERENCES UPLOAD_SESSION (id) ON DELETE CASCADE,
+    chunk_index INTEGER NOT NULL,
+    PRIMARY KEY (session_id, chunk_index)
+);
@@ -0,0 +1,6 @@
+-- Backend đang giữ nội dung (BlobStore): local (upload.path) hoặc s3; FILE_PATH là key trong backend đó
+ALTER TABLE FILE_ECM
+    ADD COLUMN storage_backend VARCHAR(20) NOT NULL DEFAULT 'local';
+
+ALTER TABLE FILE_BLOB
+    ADD COLUMN storage_backend VARCHAR(20) NOT NULL DEFAULT 'local';
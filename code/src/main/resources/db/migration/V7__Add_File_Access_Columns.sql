@@ -0,0 +1,9 @@
+-- Thống kê đọc file cho việc chuyển tầng lưu trữ nóng/lạnh, được ghi dồn theo lô
+ALTER TABLE FILE_ECM
+    ADD COLUMN last_accessed_at TIMESTAMP,
+    -- Số lần đọc kể từ khi file được chuyển vào tầng hiện tại
+    ADD COLUMN access_count INTEGER NOT NULL DEFAULT 0;
+
+-- Tìm file lâu không được đọc trên tầng nóng
+CREATE INDEX idx_file_ecm_idle ON FILE_ECM (storage_backend, (COALESCE(last_accessed_at, date_upload)))
+    WHERE blob_hash IS NULL;
@@ -0,0 +1,25 @@
+-- Tài liệu logic; mỗi bản ghi FILE_ECM là một phiên bản của một tài liệu.
+-- LATEST_VERSION là số phiên bản đã cấp gần nhất, được tăng (và khóa dòng) khi lưu phiên bản mới
+CREATE TABLE FILE_DOCUMENT (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    latest_version INTEGER NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+ALTER TABLE FILE_ECM
+    ADD COLUMN document_id UUID REFERENCES FILE_DOCUMENT (id);
+
+-- Dữ liệu cũ không có liên kết giữa các phiên bản: mỗi bản ghi là một tài liệu riêng, id tài liệu trùng id bản ghi
+UPDATE FILE_ECM SET version = 1 WHERE version IS NULL;
+
+INSERT INTO FILE_DOCUMENT (id, latest_version, created_at)
+SELECT id, version, COALESCE(date_upload, now()) FROM FILE_ECM;
+
+UPDATE FILE_ECM SET document_id = id;
+
+ALTER TABLE FILE_ECM
+    ALTER COLUMN document_id SET NOT NULL,
+    ALTER COLUMN version SET NOT NULL;
+
+-- "Phiên bản N" và "phiên bản mới nhất" (quét ngược, LIMIT 1) của một tài liệu đều chỉ là một lần tra index
+CREATE UNIQUE INDEX idx_file_ecm_document_version ON FILE_ECM (document_id, version);
@@ -0,0 +1,13 @@
+-- Bản cũ của file đã chuyển tầng, chờ được xóa sau delete-delay; dòng chỉ bị xóa khi đã xóa được nội dung
+CREATE TABLE STORAGE_PENDING_DELETE (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    storage_backend VARCHAR(20) NOT NULL,
+    file_path VARCHAR(2000) NOT NULL,
+    -- Thời điểm được xóa (lần thử kế tiếp); đang được xóa thì là hết hạn lease
+    delete_after TIMESTAMP NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    last_error VARCHAR(2000),
+    created_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_storage_pending_delete_due ON STORAGE_PENDING_DELETE (delete_after);
@@ -0,0 +1,162 @@
+package com.vinorsoft.ecm.application.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.vinorsoft.ecm.application.FileContent;
+import com.vinorsoft.ecm.domain.FileECM;
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionControl;
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionPool;
+import com.vinorsoft.ecm.infrastructure.media.FfmpegRunner;
+import com.vinorsoft.ecm.infrastructure.metrics.EcmMetrics;
+import com.vinorsoft.ecm.infrastructure.storage.BlobStore;
+import com.vinorsoft.ecm.infrastructure.storage.BlobStores;
+import com.vinorsoft.ecm.infrastructure.storage.StorageLayout;
+import com.vinorsoft.ecm.infrastructure.storage.StorageLayoutType;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+class RenditionServiceImplTests {
+
+	@TempDir
+	Path tempDir;
+
+	private FfmpegRunner ffmpegRunner;
+	private RenditionServiceImpl service;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		StorageLayout layout = new StorageLayout();
+		ReflectionTestUtils.setField(layout, "baseUploadDir", tempDir.toString());
+		ReflectionTestUtils.setField(layout, "type", StorageLayoutType.SHARDED);
+		ReflectionTestUtils.setField(layout, "shardLevels", 2);
+		ReflectionTestUtils.setField(layout, "directoryCacheSize", 100L);
+		layout.init();
+
+		BlobStore local = mock(BlobStore.class);
+		when(local.localPath(any())).thenAnswer(invocation -> Paths.get(invocation.<String>getArgument(0)));
+		BlobStores blobStores = mock(BlobStores.class);
+		when(blobStores.get(any())).thenReturn(local);
+
+		// ffmpeg giả: chậm một chút rồi ghi ra file output (tham số cuối)
+		ffmpegRunner = mock(FfmpegRunner.class);
+		doAnswer(invocation -> {
+			List<String> arguments = invocation.getArgument(0);
+			Thread.sleep(200);
+			Files.write(Paths.get(arguments.get(arguments.size() - 1)), new byte[] { 1, 2, 3 });
+			return null;
+		}).when(ffmpegRunner).run(anyList(), any());
+
+		AdmissionControl admissionControl = mock(AdmissionControl.class);
+		when(admissionControl.transcodes()).thenReturn(new AdmissionPool("transcodes", 2, 8, Duration.ofSeconds(10)));
+
+		service = new RenditionServiceImpl(ffmpegRunner, layout, blobStores, admissionControl,
+				new EcmMetrics(new SimpleMeterRegistry()));
+		ReflectionTestUtils.setField(service, "enabled", true);
+		ReflectionTestUtils.setField(service, "sizesConfig", "256,1024");
+		ReflectionTestUtils.setField(service, "imageTypesConfig", "image/jpeg,image/png,image/gif");
+		ReflectionTestUtils.setField(service, "allowedMediaTypesConfig", "image/jpeg,image/png,video/mp4");
+		ReflectionTestUtils.setField(service, "workers", 2);
+		ReflectionTestUtils.setField(service, "timeout", Duration.ofSeconds(10));
+		ReflectionTestUtils.setField(service, "quality", 4);
+		service.init();
+	}
+
+	@AfterEach
+	void tearDown() {
+		service.destroy();
+	}
+
+	@Test
+	void concurrentRequestsRunFfmpegOnce() throws Exception {
+		FileECM file = file("image/png");
+
+		List<FileContent> contents = Flux.range(0, 8)
+				.flatMap(i -> service.getRendition(file, 256))
+				.collectList()
+				.block();
+
+		assertThat(contents).hasSize(8).allSatisfy(content -> {
+			assertThat(content.getKey()).endsWith(file.getId() + "_r256.jpg");
+			assertThat(content.getSize()).isEqualTo(3);
+		});
+		// Lần sau đọc từ đĩa
+		assertThat(service.getRendition(file, null).block().getKey()).isEqualTo(contents.get(0).getKey());
+		verify(ffmpegRunner, times(1)).run(anyList(), any());
+
+		service.deleteRenditions(file).block();
+		assertThat(Paths.get(contents.get(0).getKey())).doesNotExist();
+	}
+
+	@Test
+	void rejectsUnknownSizesAndUnsupportedTypes() {
+		StepVerifier.create(service.getRendition(file("image/png"), 300))
+				.expectError(IllegalArgumentException.class)
+				.verify();
+		assertThat(service.supports(file("application/pdf"))).isFalse();
+		assertThat(service.supports(file("video/mp4"))).isTrue();
+	}
+
+	@Test
+	void imageTypesOutsideAllowedMediaTypesAreIgnored() {
+		assertThat(service.supports(file("image/jpeg"))).isTrue();
+		assertThat(service.supports(file("image/gif"))).isFalse();
+	}
+
+	@Test
+	void flatRenditionFromBeforeShardingIsServedAndDeleted() throws Exception {
+		FileECM file = file("image/png");
+		Path flat = Files.createDirectories(tempDir.resolve("cam")).resolve(file.getId() + "_r256.jpg");
+		Files.write(flat, new byte[] { 1, 2 });
+
+		FileContent content = service.getRendition(file, 256).block();
+
+		assertThat(Paths.get(content.getKey())).isEqualTo(flat);
+		assertThat(content.getSize()).isEqualTo(2);
+		verify(ffmpegRunner, never()).run(anyList(), any());
+
+		service.deleteRenditions(file).block();
+		assertThat(flat).doesNotExist();
+	}
+
+	@Test
+	void videoUsesThumbnailFilterAndNeverUpscales() {
+		List<String> arguments = RenditionServiceImpl.arguments(Paths.get("in.mp4"), Paths.get("out.part"), 256,
+				true, 4);
+
+		assertThat(arguments).containsSequence("-vf",
+				"thumbnail,scale='min(iw,256)':'min(ih,256)':force_original_aspect_ratio=decrease");
+		assertThat(arguments).containsSequence("-frames:v", "1").endsWith("out.part");
+	}
+
+	private FileECM file(String contentType) {
+		FileECM file = new FileECM();
+		file.setId(UUID.randomUUID());
+		file.setCategory("cam");
+		file.setContentType(contentType);
+		file.setFilePath(tempDir.resolve("original").toString());
+		return file;
+	}
+}
@@ -0,0 +1,281 @@
+package com.vinorsoft.ecm.application.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.vinorsoft.ecm.application.FileUploadResult;
+import com.vinorsoft.ecm.application.FileUploadResult.Status;
+import com.vinorsoft.ecm.application.RenditionService;
+import com.vinorsoft.ecm.domain.FileBlob;
+import com.vinorsoft.ecm.domain.FileBlobRepository;
+import com.vinorsoft.ecm.domain.FileDocument;
+import com.vinorsoft.ecm.domain.FileDocumentRepository;
+import com.vinorsoft.ecm.domain.FileECM;
+import com.vinorsoft.ecm.domain.FileECMRepository;
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionControl;
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionPool;
+import com.vinorsoft.ecm.infrastructure.background.CompressJobQueue;
+import com.vinorsoft.ecm.infrastructure.metrics.EcmMetrics;
+import com.vinorsoft.ecm.infrastructure.storage.BlobStore;
+import com.vinorsoft.ecm.infrastructure.storage.BlobStores;
+import com.vinorsoft.ecm.infrastructure.storage.ContentAddressedStore;
+import com.vinorsoft.ecm.infrastructure.storage.FileIngestor;
+import com.vinorsoft.ecm.infrastructure.storage.LocalBlobStore;
+import com.vinorsoft.ecm.infrastructure.storage.StorageLayout;
+import com.vinorsoft.ecm.infrastructure.storage.StorageLayoutType;
+import com.vinorsoft.ecm.infrastructure.storage.WriteDurability;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class UploadServiceImplTests {
+
+	@TempDir
+	Path tempDir;
+
+	private FileECMRepository fileECMRepository;
+	private FileDocumentRepository fileDocumentRepository;
+	private CompressJobQueue compressJobQueue;
+	private TransactionalOperator transactionalOperator;
+	private AdmissionControl admissionControl;
+	private BlobStore store;
+	private AdmissionPool batchWrites;
+	private UploadServiceImpl service;
+
+	@BeforeEach
+	void setUp() {
+		fileECMRepository = mock(FileECMRepository.class);
+		when(fileECMRepository.insertAll(anyList(), anyInt()))
+				.thenAnswer(invocation -> Flux.fromIterable(invocation.<List<FileECM>>getArgument(0)));
+		fileDocumentRepository = mock(FileDocumentRepository.class);
+		when(fileDocumentRepository.createAll(any())).thenReturn(Mono.just(1));
+		compressJobQueue = mock(CompressJobQueue.class);
+		when(compressJobQueue.enqueueAll(anyList())).thenReturn(Mono.empty());
+		transactionalOperator = mock(TransactionalOperator.class);
+		when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+		// Kho giả: đếm số byte được ghi
+		store = mock(BlobStore.class);
+		when(store.name()).thenReturn("local");
+		when(store.newKey(anyString(), anyString()))
+				.thenAnswer(invocation -> Mono.just(invocation.getArgument(0) + "/" + invocation.getArgument(1)));
+		when(store.put(anyString(), any(), anyLong()))
+				.thenAnswer(invocation -> invocation.<Flux<DataBuffer>>getArgument(1)
+						.map(buffer -> (long) buffer.readableByteCount())
+						.reduce(0L, Long::sum));
+		when(store.delete(anyString())).thenReturn(Mono.just(true));
+		BlobStores blobStores = mock(BlobStores.class);
+		when(blobStores.primary()).thenReturn(store);
+
+		batchWrites = new AdmissionPool("batch-writes", 4, 16, Duration.ofSeconds(10));
+		admissionControl = mock(AdmissionControl.class);
+		when(admissionControl.batchWrites()).thenAnswer(invocation -> batchWrites);
+
+		service = new UploadServiceImpl(fileECMRepository, null, fileDocumentRepository, null, null, blobStores, null,
+				mock(RenditionService.class), null, null, compressJobQueue, transactionalOperator, admissionControl,
+				new EcmMetrics(new SimpleMeterRegistry()));
+		ReflectionTestUtils.setField(service, "allowedExtensionsConfig", "txt,jpg");
+		ReflectionTestUtils.setField(service, "allowedMediaTypesConfig", "text/plain,image/jpeg");
+		ReflectionTestUtils.setField(service, "storedExtensionsConfig", "jpg");
+		ReflectionTestUtils.setField(service, "maxFileSize", "10MB");
+		ReflectionTestUtils.setField(service, "BASE_UPLOAD_DIR", tempDir.toString());
+		ReflectionTestUtils.setField(service, "batchConcurrency", 2);
+		ReflectionTestUtils.setField(service, "batchInsertSize", 100);
+		service.init();
+	}
+
+	@Test
+	void resultsFollowRequestOrderWithPerFileStatus() {
+		StepVerifier.create(service.saveFiles(Flux.just(part("a.txt"), part("virus.exe"), part("b.txt")), "cam"))
+				.assertNext(result -> assertResult(result, "a.txt", Status.SAVED))
+				.assertNext(result -> {
+					assertResult(result, "virus.exe", Status.FAILED);
+					assertThat(result.getError()).isNotBlank();
+				})
+				.assertNext(result -> {
+					assertResult(result, "b.txt", Status.SAVED);
+					assertThat(result.getFile().getVersion()).isEqualTo(1);
+				})
+				.verifyComplete();
+
+		// File không hợp lệ không được ghi
+		verify(store, never()).newKey("cam", "virus.exe");
+		assertThat(batchWrites.getInUse()).isZero();
+	}
+
+	@Test
+	void failedInsertDiscardsWrittenContent() {
+		doReturn(Flux.error(new IllegalStateException("db"))).when(fileECMRepository).insertAll(anyList(), anyInt());
+
+		List<FileUploadResult> results = service.saveFiles(Flux.just(part("a.txt"), part("b.txt")), "cam")
+				.collectList()
+				.block();
+
+		assertThat(results).extracting(FileUploadResult::getStatus).containsOnly(Status.FAILED);
+		// Lỗi DB không được trả về client
+		assertThat(results).extracting(FileUploadResult::getError).containsOnly("Không lưu được bản ghi.");
+		verify(store).delete(endsWith("_a.txt"));
+		verify(store).delete(endsWith("_b.txt"));
+	}
+
+	@Test
+	void filesBeyondTheWriteQueueAreRejected() {
+		batchWrites = new AdmissionPool("batch-writes", 1, 0, Duration.ofSeconds(10));
+		doReturn(Mono.delay(Duration.ofMillis(300)).thenReturn(3L)).when(store).put(anyString(), any(), anyLong());
+
+		List<FileUploadResult> results = service.saveFiles(Flux.just(part("a.txt"), part("b.txt")), "cam")
+				.collectList()
+				.block();
+
+		// Hai file được ghi song song, file nào nhận lượt ghi trước là ngẫu nhiên
+		assertThat(results).extracting(FileUploadResult::getFileName).containsExactlyInAnyOrder("a.txt", "b.txt");
+		assertThat(results).extracting(FileUploadResult::getStatus)
+				.containsExactlyInAnyOrder(Status.SAVED, Status.REJECTED);
+		assertThat(batchWrites.getInUse()).isZero();
+	}
+
+	@Test
+	void cancelledUploadReleasesItsWritePermits() throws Exception {
+		doReturn(Mono.never()).when(store).put(anyString(), any(), anyLong());
+
+		Disposable upload = service.saveFiles(Flux.just(part("a.txt"), part("b.txt")), "cam").subscribe();
+		Thread.sleep(200);
+		assertThat(batchWrites.getInUse()).isEqualTo(2);
+
+		upload.dispose();
+
+		assertThat(batchWrites.getInUse()).isZero();
+	}
+
+	@Test
+	void failedInsertDeletesNewlyPublishedBlob() throws Exception {
+		UploadServiceImpl dedup = dedupService();
+		FileDocument document = new FileDocument();
+		document.setId(UUID.randomUUID());
+		document.setLatestVersion(1);
+		when(fileDocumentRepository.create()).thenReturn(Mono.just(document));
+		when(fileECMRepository.save(any())).thenReturn(Mono.error(new IllegalStateException("db")));
+
+		StepVerifier.create(dedup.saveFile(part("a.txt"), null, "cam"))
+				.expectErrorMessage("db")
+				.verify();
+
+		assertNoFilesLeft();
+	}
+
+	@Test
+	void failedBatchInsertDeletesNewlyPublishedBlobs() throws Exception {
+		UploadServiceImpl dedup = dedupService();
+		doReturn(Flux.error(new IllegalStateException("db"))).when(fileECMRepository).insertAll(anyList(), anyInt());
+
+		List<FileUploadResult> results = dedup.saveFiles(Flux.just(part("a.txt"), part("b.txt")), "cam")
+				.collectList()
+				.block();
+
+		assertThat(results).extracting(FileUploadResult::getStatus).containsOnly(Status.FAILED);
+		assertNoFilesLeft();
+	}
+
+	/** Dịch vụ bật dedup, lưu blob thật trong {@code tempDir}; mỗi hash được coi là nội dung mới. */
+	private UploadServiceImpl dedupService() throws Exception {
+		FileIngestor fileIngestor = new FileIngestor();
+		ReflectionTestUtils.setField(fileIngestor, "maxInFlight", 3);
+		ReflectionTestUtils.setField(fileIngestor, "durability", WriteDurability.DATA);
+		StorageLayout storageLayout = new StorageLayout();
+		ReflectionTestUtils.setField(storageLayout, "baseUploadDir", tempDir.toString());
+		ReflectionTestUtils.setField(storageLayout, "type", StorageLayoutType.SHARDED);
+		ReflectionTestUtils.setField(storageLayout, "shardLevels", 2);
+		ReflectionTestUtils.setField(storageLayout, "directoryCacheSize", 100L);
+		storageLayout.init();
+		LocalBlobStore localStore = new LocalBlobStore(storageLayout, fileIngestor);
+		ReflectionTestUtils.setField(localStore, "baseUploadDir", tempDir.toString());
+		localStore.init();
+		ContentAddressedStore contentAddressedStore = new ContentAddressedStore();
+		ReflectionTestUtils.setField(contentAddressedStore, "baseUploadDir", tempDir.toString());
+		contentAddressedStore.init();
+		BlobStores blobStores = mock(BlobStores.class);
+		when(blobStores.primary()).thenReturn(localStore);
+		when(blobStores.get(LocalBlobStore.NAME)).thenReturn(localStore);
+
+		FileBlobRepository fileBlobRepository = mock(FileBlobRepository.class);
+		when(fileBlobRepository.acquire(anyString(), anyString(), anyString(), anyLong())).thenAnswer(invocation -> {
+			FileBlob blob = new FileBlob();
+			blob.setHash(invocation.getArgument(0));
+			blob.setStorageBackend(invocation.getArgument(1));
+			blob.setFilePath(invocation.getArgument(2));
+			blob.setFileSize(invocation.getArgument(3));
+			blob.setRefCount(1);
+			return Mono.just(blob);
+		});
+
+		UploadServiceImpl dedup = new UploadServiceImpl(fileECMRepository, fileBlobRepository, fileDocumentRepository,
+				fileIngestor, contentAddressedStore, blobStores, null, mock(RenditionService.class), null, null,
+				compressJobQueue, transactionalOperator, admissionControl, new EcmMetrics(new SimpleMeterRegistry()));
+		ReflectionTestUtils.setField(dedup, "allowedExtensionsConfig", "txt,jpg");
+		ReflectionTestUtils.setField(dedup, "allowedMediaTypesConfig", "text/plain,image/jpeg");
+		ReflectionTestUtils.setField(dedup, "storedExtensionsConfig", "jpg");
+		ReflectionTestUtils.setField(dedup, "maxFileSize", "10MB");
+		ReflectionTestUtils.setField(dedup, "BASE_UPLOAD_DIR", tempDir.toString());
+		ReflectionTestUtils.setField(dedup, "batchConcurrency", 2);
+		ReflectionTestUtils.setField(dedup, "batchInsertSize", 100);
+		ReflectionTestUtils.setField(dedup, "dedupEnabled", true);
+		dedup.init();
+		return dedup;
+	}
+
+	/** Không còn blob hay file staging nào trên đĩa. */
+	private void assertNoFilesLeft() throws Exception {
+		try (Stream<Path> files = Files.walk(tempDir)) {
+			assertThat(files.filter(Files::isRegularFile)).isEmpty();
+		}
+	}
+
+	private static void assertResult(FileUploadResult result, String fileName, Status status) {
+		assertThat(result.getFileName()).isEqualTo(fileName);
+		assertThat(result.getStatus()).isEqualTo(status);
+		assertThat(result.isSaved()).isEqualTo(status == Status.SAVED);
+	}
+
+	private static FilePart part(String fileName) {
+		FilePart part = mock(FilePart.class);
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.TEXT_PLAIN);
+		when(part.filename()).thenReturn(fileName);
+		when(part.headers()).thenReturn(headers);
+		when(part.content()).thenAnswer(invocation -> Flux.just(DefaultDataBufferFactory.sharedInstance
+				.wrap("abc".getBytes(StandardCharsets.UTF_8))));
+		return part;
+	}
+}
@@ -0,0 +1,71 @@
+package com.vinorsoft.ecm.infrastructure.admission;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class AdmissionPoolTests {
+
+	@Test
+	void waitersAreGrantedInOrderWhenCapacityIsReleased() {
+		AdmissionPool pool = new AdmissionPool("test", 10, 5, Duration.ofSeconds(5));
+		AdmissionPool.Permit first = pool.acquire(6).block();
+		assertThat(pool.getInUse()).isEqualTo(6);
+
+		StepVerifier.create(pool.acquire(6))
+				.then(() -> {
+					assertThat(pool.getQueued()).isEqualTo(1);
+					first.release();
+				})
+				.assertNext(second -> {
+					assertThat(pool.getInUse()).isEqualTo(6);
+					second.release();
+					// Trả lại lần hai không có tác dụng
+					second.release();
+				})
+				.verifyComplete();
+		assertThat(pool.getInUse()).isZero();
+		assertThat(pool.getQueued()).isZero();
+	}
+
+	@Test
+	void rejectsWhenQueueIsFullOrWaitIsTooLong() {
+		AdmissionPool pool = new AdmissionPool("test", 1, 1, Duration.ofMillis(100));
+		AdmissionPool.Permit held = pool.acquire(1).block();
+		Disposable queued = pool.acquire(1).subscribe();
+
+		StepVerifier.create(pool.acquire(1))
+				.expectError(AdmissionRejectedException.class)
+				.verify();
+
+		queued.dispose();
+		assertThat(pool.getQueued()).isZero();
+		StepVerifier.create(pool.acquire(1))
+				.expectErrorSatisfies(e -> assertThat(e).isInstanceOf(AdmissionRejectedException.class)
+						.hasMessageContaining("chờ quá"))
+				.verify(Duration.ofSeconds(5));
+		assertThat(pool.getRejected()).isEqualTo(2);
+
+		held.release();
+		assertThat(pool.getInUse()).isZero();
+	}
+
+	@Test
+	void admitReleasesOnCompletionAndOversizedRequestsRunAlone() {
+		AdmissionPool pool = new AdmissionPool("test", 100, 0, Duration.ofSeconds(1));
+
+		StepVerifier.create(pool.admit(1_000, permit -> Mono.fromSupplier(pool::getInUse)))
+				.expectNext(100L)
+				.verifyComplete();
+		StepVerifier.create(pool.admit(1, permit -> Mono.error(new IllegalStateException())))
+				.expectError(IllegalStateException.class)
+				.verify();
+		assertThat(pool.getInUse()).isZero();
+	}
+}
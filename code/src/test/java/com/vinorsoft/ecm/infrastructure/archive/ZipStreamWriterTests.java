@@ -0,0 +1,148 @@
+package com.vinorsoft.ecm.infrastructure.archive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import reactor.core.publisher.Flux;
+
+class ZipStreamWriterTests {
+	@TempDir
+	Path tempDir;
+
+	private final ZipStreamWriter writer = new ZipStreamWriter();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(writer, "threads", 2);
+		ReflectionTestUtils.setField(writer, "compressionLevel", 6);
+		ReflectionTestUtils.setField(writer, "readAhead", 3);
+		ReflectionTestUtils.setField(writer, "readAheadChunks", 4);
+		writer.init();
+	}
+
+	@AfterEach
+	void tearDown() {
+		writer.destroy();
+	}
+
+	private Path writeArchive(List<ZipEntrySource> entries) {
+		Path archive = tempDir.resolve("out.zip");
+		DataBufferUtils.write(writer.write(entries), archive, StandardOpenOption.CREATE_NEW).block();
+		return archive;
+	}
+
+	@Test
+	void storedAndDeflatedEntriesRoundTrip() throws Exception {
+		byte[] random = new byte[300_000];
+		new Random(42).nextBytes(random);
+		Path video = Files.write(tempDir.resolve("clip.mp4"), random);
+		Path text = Files.writeString(tempDir.resolve("note.txt"), "xin chào ".repeat(50_000), StandardCharsets.UTF_8);
+		LocalDateTime time = LocalDateTime.of(2024, 5, 6, 7, 8, 10);
+
+		Path archive = writeArchive(List.of(
+				new ZipEntrySource("clip.mp4", video, random.length, time, true),
+				new ZipEntrySource("ghi chú.txt", text, Files.size(text), time, false)));
+
+		try (ZipFile zip = new ZipFile(archive.toFile())) {
+			ZipEntry stored = zip.getEntry("clip.mp4");
+			assertThat(stored.getMethod()).isEqualTo(ZipEntry.STORED);
+			assertThat(stored.getCompressedSize()).isEqualTo(random.length);
+			assertThat(zip.getInputStream(stored).readAllBytes()).isEqualTo(random);
+
+			ZipEntry deflated = zip.getEntry("ghi chú.txt");
+			assertThat(deflated.getMethod()).isEqualTo(ZipEntry.DEFLATED);
+			assertThat(deflated.getCompressedSize()).isLessThan(Files.size(text));
+			assertThat(deflated.getTimeLocal()).isEqualTo(time);
+			assertThat(zip.getInputStream(deflated).readAllBytes()).isEqualTo(Files.readAllBytes(text));
+		}
+	}
+
+	@Test
+	void parallelReadAheadKeepsRequestedOrder() throws Exception {
+		List<ZipEntrySource> entries = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < 40; i++) {
+			// Entry lớn xen kẽ entry nhỏ để các worker hoàn thành lệch nhau
+			Path file = Files.writeString(tempDir.resolve(i + ".txt"), String.valueOf(i).repeat(i % 2 == 0 ? 100_000 : 1));
+			entries.add(new ZipEntrySource(i + ".txt", file, Files.size(file), null, false));
+			names.add(i + ".txt");
+		}
+
+		try (ZipFile zip = new ZipFile(writeArchive(entries).toFile())) {
+			assertThat(zip.stream().map(ZipEntry::getName).toList()).isEqualTo(names);
+			for (ZipEntrySource entry : entries) {
+				assertThat(zip.getInputStream(zip.getEntry(entry.getName())).readAllBytes())
+						.isEqualTo(Files.readAllBytes(entry.getPath()));
+			}
+		}
+	}
+
+	@Test
+	void entryCountBeyondZip32UsesZip64EndRecord() throws Exception {
+		Path small = Files.writeString(tempDir.resolve("a.txt"), "a");
+		List<ZipEntrySource> entries = new ArrayList<>();
+		for (int i = 0; i < 70_000; i++) {
+			entries.add(new ZipEntrySource("a" + i + ".txt", small, 1, null, true));
+		}
+
+		try (ZipFile zip = new ZipFile(writeArchive(entries).toFile())) {
+			assertThat(zip.size()).isEqualTo(70_000);
+			assertThat(zip.getInputStream(zip.getEntry("a69999.txt")).readAllBytes()).containsExactly('a');
+		}
+	}
+
+	@Test
+	void streamedEntriesRoundTrip() throws Exception {
+		byte[] random = new byte[200_000];
+		new Random(7).nextBytes(random);
+		byte[] text = "nội dung từ S3 ".repeat(20_000).getBytes(StandardCharsets.UTF_8);
+
+		Path archive = writeArchive(List.of(
+				new ZipEntrySource("remote.bin", chunks(random), random.length, null, true),
+				new ZipEntrySource("remote.txt", chunks(text), text.length, null, false)));
+
+		try (ZipFile zip = new ZipFile(archive.toFile())) {
+			assertThat(zip.getInputStream(zip.getEntry("remote.bin")).readAllBytes()).isEqualTo(random);
+			ZipEntry deflated = zip.getEntry("remote.txt");
+			assertThat(deflated.getCompressedSize()).isLessThan(text.length);
+			assertThat(zip.getInputStream(deflated).readAllBytes()).isEqualTo(text);
+		}
+	}
+
+	private static Flux<DataBuffer> chunks(byte[] content) {
+		int chunkSize = 10_000;
+		return Flux.range(0, (content.length + chunkSize - 1) / chunkSize)
+				.map(i -> DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(content, i * chunkSize,
+						Math.min(content.length, (i + 1) * chunkSize))));
+	}
+
+	@Test
+	void missingFileFailsTheStream() {
+		Flux<?> archive = writer.write(List.of(
+				new ZipEntrySource("gone.txt", tempDir.resolve("gone.txt"), 1, null, false)));
+
+		assertThatThrownBy(archive::blockLast).hasRootCauseInstanceOf(NoSuchFileException.class);
+	}
+}
@@ -0,0 +1,43 @@
+package com.vinorsoft.ecm.infrastructure.bandwidth;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketTests {
+
+	private final AtomicLong clock = new AtomicLong();
+
+	@Test
+	void burstIsSentWithoutWaiting() {
+		TokenBucket bucket = new TokenBucket(1000, clock::get);
+
+		assertThat(bucket.charge(600, 100)).isZero();
+		assertThat(bucket.charge(400, 100)).isZero();
+	}
+
+	@Test
+	void debtIsRepaidAtTheGivenRate() {
+		TokenBucket bucket = new TokenBucket(1000, clock::get);
+
+		// Nợ 500 byte ở 100 byte/giây: chờ 5 giây
+		assertThat(bucket.charge(1500, 100)).isEqualTo(TimeUnit.SECONDS.toNanos(5));
+
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+		assertThat(bucket.charge(100, 100)).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+	}
+
+	@Test
+	void idleTimeRefillsUpToBurstOnly() {
+		TokenBucket bucket = new TokenBucket(1000, clock::get);
+		bucket.charge(1000, 100);
+
+		clock.addAndGet(TimeUnit.HOURS.toNanos(1));
+
+		assertThat(bucket.charge(1000, 100)).isZero();
+		assertThat(bucket.charge(100, 100)).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+	}
+}
@@ -0,0 +1,98 @@
+package com.vinorsoft.ecm.infrastructure.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+class EcmMetricsTests {
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final EcmMetrics metrics = new EcmMetrics(registry);
+
+	private long stageCount(PipelineStage stage, String outcome) {
+		return registry.get(EcmMetrics.STAGE_DURATION)
+				.tag("stage", stage.getTagValue())
+				.tag("outcome", outcome)
+				.timer()
+				.count();
+	}
+
+	private double inFlight(String operation) {
+		return registry.get(EcmMetrics.IN_FLIGHT).tag("operation", operation).gauge().value();
+	}
+
+	@Test
+	void timedRecordsOutcomeOnlyAfterSubscription() {
+		Mono<String> timed = metrics.timed(PipelineStage.DB_SAVE, Mono.just("ok"));
+		assertThat(stageCount(PipelineStage.DB_SAVE, EcmMetrics.OUTCOME_SUCCESS)).isZero();
+
+		StepVerifier.create(timed).expectNext("ok").verifyComplete();
+		StepVerifier.create(metrics.timed(PipelineStage.DB_SAVE, Mono.error(new IOException("lỗi"))))
+				.verifyError(IOException.class);
+		StepVerifier.create(metrics.timed(PipelineStage.ZIP_BUILD, Flux.never()))
+				.thenCancel()
+				.verify();
+
+		assertThat(stageCount(PipelineStage.DB_SAVE, EcmMetrics.OUTCOME_SUCCESS)).isEqualTo(1);
+		assertThat(stageCount(PipelineStage.DB_SAVE, EcmMetrics.OUTCOME_ERROR)).isEqualTo(1);
+		assertThat(stageCount(PipelineStage.ZIP_BUILD, EcmMetrics.OUTCOME_CANCELLED)).isEqualTo(1);
+	}
+
+	@Test
+	void recordAddsExternallyMeasuredDuration() {
+		metrics.record(PipelineStage.COMPRESS_RUN, Duration.ofSeconds(3), false);
+
+		assertThat(registry.get(EcmMetrics.STAGE_DURATION)
+				.tag("stage", "compress_run")
+				.tag("outcome", EcmMetrics.OUTCOME_ERROR)
+				.timer()
+				.totalTime(TimeUnit.SECONDS)).isEqualTo(3);
+	}
+
+	@Test
+	void inFlightGaugesFollowSubscriptionLifetime() {
+		Sinks.One<String> upload = Sinks.one();
+
+		StepVerifier uploadVerifier = StepVerifier.create(metrics.trackUpload(upload.asMono()))
+				.expectNext("done")
+				.expectComplete()
+				.verifyLater();
+		Disposable download = metrics.trackDownload(Flux.never()).subscribe();
+		assertThat(inFlight("upload")).isEqualTo(1);
+		assertThat(inFlight("download")).isEqualTo(1);
+
+		upload.tryEmitValue("done");
+		uploadVerifier.verify();
+		download.dispose();
+
+		assertThat(inFlight("upload")).isZero();
+		assertThat(inFlight("download")).isZero();
+	}
+
+	@Test
+	void byteCountersSumReadableBytes() {
+		DefaultDataBufferFactory factory = DefaultDataBufferFactory.sharedInstance;
+		Flux<DataBuffer> content = Flux.just(factory.wrap(new byte[100]), factory.wrap(new byte[28]));
+
+		StepVerifier.create(metrics.countBytesIn(content)).expectNextCount(2).verifyComplete();
+		StepVerifier.create(metrics.countBytesOut(Flux.just(factory.wrap(new byte[7])))).expectNextCount(1)
+				.verifyComplete();
+		metrics.recordBytesOut(1000);
+		metrics.recordBytesOut(-1);
+
+		assertThat(registry.get(EcmMetrics.BYTES_IN).counter().count()).isEqualTo(128);
+		assertThat(registry.get(EcmMetrics.BYTES_OUT).counter().count()).isEqualTo(1007);
+	}
+}
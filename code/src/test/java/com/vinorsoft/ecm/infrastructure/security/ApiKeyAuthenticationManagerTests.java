@@ -0,0 +1,42 @@
+package com.vinorsoft.ecm.infrastructure.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+
+import reactor.test.StepVerifier;
+
+class ApiKeyAuthenticationManagerTests {
+
+	private static final String SCANNER_KEY = "k".repeat(ApiKeyAuthenticationManager.MIN_KEY_LENGTH);
+	private static final String PORTAL_KEY = "p".repeat(ApiKeyAuthenticationManager.MIN_KEY_LENGTH);
+
+	private final ApiKeyAuthenticationManager manager = new ApiKeyAuthenticationManager(
+			Map.of(SCANNER_KEY, "scanner", PORTAL_KEY, "portal"));
+
+	@Test
+	void keyAuthenticatesItsPrincipal() {
+		StepVerifier.create(manager.authenticate(ApiKeyAuthenticationManager.unauthenticated(PORTAL_KEY)))
+				.assertNext(authentication -> {
+					assertThat(authentication.isAuthenticated()).isTrue();
+					assertThat(authentication.getName()).isEqualTo("portal");
+				})
+				.verifyComplete();
+	}
+
+	@Test
+	void unknownKeyIsRejected() {
+		StepVerifier.create(manager.authenticate(ApiKeyAuthenticationManager.unauthenticated(SCANNER_KEY + "x")))
+				.verifyError(BadCredentialsException.class);
+	}
+
+	@Test
+	void shortKeysAreRefused() {
+		assertThatThrownBy(() -> new ApiKeyAuthenticationManager(Map.of("short", "scanner")))
+				.isInstanceOf(IllegalStateException.class);
+	}
+}
@@ -0,0 +1,107 @@
+package com.vinorsoft.ecm.infrastructure.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.web.server.authentication.AuthenticationWebFilter;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class CachingAuthenticationManagerTests {
+
+	private final AtomicInteger verifications = new AtomicInteger();
+
+	private final ReactiveAuthenticationManager delegate = authentication -> {
+		verifications.incrementAndGet();
+		return "secret".equals(authentication.getCredentials())
+				? Mono.just(UsernamePasswordAuthenticationToken.authenticated(authentication.getName(), null,
+						List.of()))
+				: Mono.error(new BadCredentialsException("sai mật khẩu"));
+	};
+
+	private final CachingAuthenticationManager manager = new CachingAuthenticationManager(delegate, 100,
+			Duration.ofMinutes(5), new SimpleMeterRegistry());
+
+	@Test
+	void successfulCredentialsAreVerifiedOnce() {
+		for (int i = 0; i < 3; i++) {
+			StepVerifier.create(manager.authenticate(credentials("admin", "secret")))
+					.assertNext(authentication -> assertThat(authentication.getName()).isEqualTo("admin"))
+					.verifyComplete();
+		}
+
+		assertThat(verifications).hasValue(1);
+	}
+
+	@Test
+	void failedCredentialsAreNotCached() {
+		for (int i = 0; i < 2; i++) {
+			StepVerifier.create(manager.authenticate(credentials("admin", "wrong")))
+					.verifyError(BadCredentialsException.class);
+		}
+		StepVerifier.create(manager.authenticate(credentials("admin", "secret")))
+				.expectNextCount(1)
+				.verifyComplete();
+
+		assertThat(verifications).hasValue(3);
+	}
+
+	@Test
+	void wrongPasswordReturns401WithoutCacheWarnings() {
+		// Caffeine ghi log qua System.Logger, mặc định là java.util.logging
+		Logger caffeineLogger = Logger.getLogger("com.github.benmanes.caffeine");
+		List<LogRecord> warnings = new CopyOnWriteArrayList<>();
+		Handler handler = new Handler() {
+			@Override
+			public void publish(LogRecord record) {
+				if (record.getLevel().intValue() >= Level.WARNING.intValue()) {
+					warnings.add(record);
+				}
+			}
+
+			@Override
+			public void flush() {
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		caffeineLogger.addHandler(handler);
+		try {
+			WebTestClient client = WebTestClient
+					.bindToWebHandler(exchange -> exchange.getResponse().setComplete())
+					.webFilter(new AuthenticationWebFilter(manager))
+					.build();
+			for (int i = 0; i < 3; i++) {
+				client.get().uri("/api/v1/ecm/download")
+						.headers(headers -> headers.setBasicAuth("admin", "wrong"))
+						.exchange()
+						.expectStatus().isUnauthorized();
+			}
+		} finally {
+			caffeineLogger.removeHandler(handler);
+		}
+
+		assertThat(warnings).isEmpty();
+	}
+
+	private static UsernamePasswordAuthenticationToken credentials(String username, String password) {
+		return UsernamePasswordAuthenticationToken.unauthenticated(username, password);
+	}
+}
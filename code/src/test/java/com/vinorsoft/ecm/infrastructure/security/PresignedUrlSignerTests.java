@@ -0,0 +1,62 @@
+package com.vinorsoft.ecm.infrastructure.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class PresignedUrlSignerTests {
+
+	private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+	private final UUID fileId = UUID.randomUUID();
+
+	private static PresignedUrlSigner signer(Instant now, String secret) {
+		PresignedUrlSigner signer = new PresignedUrlSigner(Clock.fixed(now, ZoneOffset.UTC));
+		ReflectionTestUtils.setField(signer, "enabled", true);
+		ReflectionTestUtils.setField(signer, "secret", secret);
+		ReflectionTestUtils.setField(signer, "defaultTtl", Duration.ofMinutes(15));
+		ReflectionTestUtils.setField(signer, "maxTtl", Duration.ofDays(7));
+		signer.init();
+		return signer;
+	}
+
+	@Test
+	void signatureIsValidUntilExpiry() {
+		PresignedUrlSigner signer = signer(NOW, "s".repeat(32));
+		long expires = signer.expiresAt(null).getEpochSecond();
+		String signature = signer.sign(fileId, false, expires);
+
+		assertThat(expires).isEqualTo(NOW.plus(Duration.ofMinutes(15)).getEpochSecond());
+		assertThat(signer.verify(fileId, false, expires, signature)).isTrue();
+		assertThat(signer(Instant.ofEpochSecond(expires), "s".repeat(32)).verify(fileId, false, expires, signature))
+				.isFalse();
+	}
+
+	@Test
+	void signatureCoversEveryParameterAndTheSecret() {
+		PresignedUrlSigner signer = signer(NOW, "s".repeat(32));
+		long expires = NOW.getEpochSecond() + 60;
+		String signature = signer.sign(fileId, false, expires);
+
+		assertThat(signer.verify(UUID.randomUUID(), false, expires, signature)).isFalse();
+		assertThat(signer.verify(fileId, true, expires, signature)).isFalse();
+		assertThat(signer.verify(fileId, false, expires + 1, signature)).isFalse();
+		assertThat(signer(NOW, "t".repeat(32)).verify(fileId, false, expires, signature)).isFalse();
+	}
+
+	@Test
+	void validityIsBoundedByMaxTtl() {
+		PresignedUrlSigner signer = signer(NOW, "s".repeat(32));
+
+		assertThatThrownBy(() -> signer.expiresAt(Duration.ofDays(8))).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> signer.expiresAt(Duration.ZERO)).isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,194 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.reactivestreams.Publisher;
+
+import io.netty.handler.codec.http.HttpMethod;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+/**
+ * Máy chủ giả lập một phần API S3 (PUT/GET/HEAD/DELETE object, multipart
+ * upload) trong bộ nhớ, path-style, để test {@link S3BlobStore} không cần
+ * mạng. Chữ ký SigV4 của mỗi request được tính lại từ URI và header thực sự
+ * nhận được.
+ */
+class FakeS3Server implements AutoCloseable {
+	static final String BUCKET = "ecm-test";
+	static final String ACCESS_KEY = "test-access-key";
+	static final String SECRET_KEY = "test-secret-key";
+	static final String REGION = "us-east-1";
+
+	private static final Pattern SIGNED_HEADERS = Pattern.compile("SignedHeaders=([^,]+)");
+	private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+			.withZone(ZoneOffset.UTC);
+
+	final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+	final Map<String, SortedMap<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+	volatile int completedParts;
+
+	private final S3RequestSigner signer = new S3RequestSigner(ACCESS_KEY, SECRET_KEY, REGION);
+	private final DisposableServer server;
+
+	FakeS3Server() {
+		server = HttpServer.create().host("127.0.0.1").port(0).handle(this::handle).bindNow();
+	}
+
+	String endpoint() {
+		return "http://127.0.0.1:" + server.port();
+	}
+
+	@Override
+	public void close() {
+		server.disposeNow();
+	}
+
+	private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+		String uri = request.uri();
+		int queryStart = uri.indexOf('?');
+		String path = queryStart < 0 ? uri : uri.substring(0, queryStart);
+		String query = queryStart < 0 ? "" : uri.substring(queryStart + 1);
+		if (!isSignatureValid(request, path, query)) {
+			return error(response, 403, "SignatureDoesNotMatch");
+		}
+		String prefix = "/" + BUCKET + "/";
+		if (!path.startsWith(prefix)) {
+			return error(response, 404, "NoSuchBucket");
+		}
+		String key = URLDecoder.decode(path.substring(prefix.length()).replace("+", "%2B"), StandardCharsets.UTF_8);
+		Map<String, String> params = parseQuery(query);
+		HttpMethod method = request.method();
+
+		if (method.equals(HttpMethod.POST) && params.containsKey("uploads")) {
+			String uploadId = UUID.randomUUID().toString();
+			uploads.put(uploadId, new TreeMap<>());
+			return xml(response, "<InitiateMultipartUploadResult><UploadId>" + uploadId
+					+ "</UploadId></InitiateMultipartUploadResult>");
+		}
+		if (method.equals(HttpMethod.PUT) && params.containsKey("partNumber")) {
+			SortedMap<Integer, byte[]> parts = uploads.get(params.get("uploadId"));
+			if (parts == null) {
+				return error(response, 404, "NoSuchUpload");
+			}
+			int partNumber = Integer.parseInt(params.get("partNumber"));
+			return body(request).flatMap(bytes -> {
+				parts.put(partNumber, bytes);
+				return response.status(200).header("ETag", "\"part-" + partNumber + "\"").send().then();
+			});
+		}
+		if (method.equals(HttpMethod.POST) && params.containsKey("uploadId")) {
+			SortedMap<Integer, byte[]> parts = uploads.remove(params.get("uploadId"));
+			if (parts == null) {
+				return error(response, 404, "NoSuchUpload");
+			}
+			return body(request).flatMap(bytes -> {
+				ByteArrayOutputStream object = new ByteArrayOutputStream();
+				parts.values().forEach(object::writeBytes);
+				objects.put(key, object.toByteArray());
+				completedParts = parts.size();
+				return xml(response, "<CompleteMultipartUploadResult><Key>" + key
+						+ "</Key></CompleteMultipartUploadResult>");
+			});
+		}
+		if (method.equals(HttpMethod.DELETE) && params.containsKey("uploadId")) {
+			uploads.remove(params.get("uploadId"));
+			return response.status(204).send();
+		}
+		if (method.equals(HttpMethod.PUT)) {
+			return body(request).flatMap(bytes -> {
+				objects.put(key, bytes);
+				return response.status(200).header("ETag", "\"object\"").send().then();
+			});
+		}
+		if (method.equals(HttpMethod.DELETE)) {
+			objects.remove(key);
+			return response.status(204).send();
+		}
+
+		byte[] object = objects.get(key);
+		if (object == null) {
+			return method.equals(HttpMethod.HEAD) ? response.status(404).send() : error(response, 404, "NoSuchKey");
+		}
+		if (method.equals(HttpMethod.HEAD)) {
+			return response.status(200)
+					.header("Content-Length", Integer.toString(object.length))
+					.header("Last-Modified", "Wed, 21 Oct 2015 07:28:00 GMT")
+					.send();
+		}
+		String range = request.requestHeaders().get("Range");
+		if (range == null) {
+			return response.status(200).sendByteArray(Mono.just(object)).then();
+		}
+		String[] bounds = range.substring("bytes=".length()).split("-");
+		int start = Integer.parseInt(bounds[0]);
+		int end = Math.min(Integer.parseInt(bounds[1]), object.length - 1);
+		return response.status(206)
+				.header("Content-Range", "bytes " + start + "-" + end + "/" + object.length)
+				.sendByteArray(Mono.just(Arrays.copyOfRange(object, start, end + 1)))
+				.then();
+	}
+
+	private boolean isSignatureValid(HttpServerRequest request, String path, String query) {
+		String authorization = request.requestHeaders().get("Authorization");
+		String amzDate = request.requestHeaders().get("x-amz-date");
+		if (authorization == null || amzDate == null) {
+			return false;
+		}
+		Matcher matcher = SIGNED_HEADERS.matcher(authorization);
+		if (!matcher.find()) {
+			return false;
+		}
+		SortedMap<String, String> headers = new TreeMap<>();
+		for (String name : matcher.group(1).split(";")) {
+			headers.put(name, request.requestHeaders().get(name));
+		}
+		String expected = signer.authorization(request.method().name(), path, query, headers,
+				request.requestHeaders().get("x-amz-content-sha256"), Instant.from(AMZ_DATE.parse(amzDate)));
+		return expected.equals(authorization);
+	}
+
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> params = new TreeMap<>();
+		if (query.isEmpty()) {
+			return params;
+		}
+		for (String param : query.split("&")) {
+			int separator = param.indexOf('=');
+			String name = separator < 0 ? param : param.substring(0, separator);
+			String value = separator < 0 ? "" : param.substring(separator + 1);
+			params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+		}
+		return params;
+	}
+
+	private static Mono<byte[]> body(HttpServerRequest request) {
+		return request.receive().aggregate().asByteArray().defaultIfEmpty(new byte[0]);
+	}
+
+	private static Mono<Void> xml(HttpServerResponse response, String body) {
+		return response.status(200).header("Content-Type", "application/xml")
+				.sendString(Mono.just(body)).then();
+	}
+
+	private static Mono<Void> error(HttpServerResponse response, int status, String code) {
+		return response.status(status).header("Content-Type", "application/xml")
+				.sendString(Mono.just("<Error><Code>" + code + "</Code></Error>")).then();
+	}
+}
@@ -0,0 +1,74 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class FileAccessTrackerTests {
+
+	private static FileAccessTracker tracker(boolean enabled) {
+		FileAccessTracker tracker = new FileAccessTracker(null);
+		ReflectionTestUtils.setField(tracker, "enabled", enabled);
+		return tracker;
+	}
+
+	@Test
+	void countsReadsPerFileUntilDrained() {
+		FileAccessTracker tracker = tracker(true);
+		UUID a = UUID.randomUUID();
+		UUID b = UUID.randomUUID();
+		tracker.record(a);
+		tracker.record(b);
+		tracker.record(a);
+
+		assertThat(tracker.drain()).containsExactlyInAnyOrderEntriesOf(Map.of(a, 2, b, 1));
+		assertThat(tracker.drain()).isEmpty();
+	}
+
+	@Test
+	void concurrentReadsAreNotLostWhileDraining() {
+		FileAccessTracker tracker = tracker(true);
+		UUID fileId = UUID.randomUUID();
+		List<Map<UUID, Integer>> drained = new ArrayList<>();
+
+		CompletableFuture<Void> readers = CompletableFuture.allOf(IntStream.range(0, 4)
+				.mapToObj(i -> CompletableFuture.runAsync(() -> IntStream.range(0, 10_000)
+						.forEach(n -> tracker.record(fileId))))
+				.toArray(CompletableFuture[]::new));
+		while (!readers.isDone()) {
+			drained.add(tracker.drain());
+		}
+		drained.add(tracker.drain());
+
+		assertThat(drained.stream().mapToInt(reads -> reads.getOrDefault(fileId, 0)).sum()).isEqualTo(40_000);
+	}
+
+	@Test
+	void failedFlushIsMergedIntoNextOne() {
+		FileAccessTracker tracker = tracker(true);
+		UUID fileId = UUID.randomUUID();
+		tracker.record(fileId);
+		Map<UUID, Integer> failed = tracker.drain();
+		tracker.record(fileId);
+
+		tracker.restore(new ArrayList<>(failed.entrySet()));
+
+		assertThat(tracker.drain()).containsExactlyEntriesOf(Map.of(fileId, 2));
+	}
+
+	@Test
+	void ignoresReadsWhenTieringIsDisabled() {
+		FileAccessTracker tracker = tracker(false);
+		tracker.record(UUID.randomUUID());
+
+		assertThat(tracker.drain()).isEmpty();
+	}
+}
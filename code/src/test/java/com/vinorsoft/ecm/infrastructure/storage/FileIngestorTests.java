@@ -0,0 +1,111 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import reactor.core.publisher.Flux;
+
+class FileIngestorTests {
+	@TempDir
+	Path tempDir;
+
+	private final FileIngestor ingestor = new FileIngestor();
+	private final NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(PooledByteBufAllocator.DEFAULT);
+	private final List<DataBuffer> allocated = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		ReflectionTestUtils.setField(ingestor, "maxInFlight", 3);
+		ReflectionTestUtils.setField(ingestor, "durability", WriteDurability.DATA);
+	}
+
+	private Flux<DataBuffer> chunks(byte[] data, int chunkSize) {
+		return Flux.range(0, (data.length + chunkSize - 1) / chunkSize).map(i -> {
+			byte[] chunk = Arrays.copyOfRange(data, i * chunkSize, Math.min(data.length, (i + 1) * chunkSize));
+			DataBuffer buffer = bufferFactory.allocateBuffer(chunk.length).write(chunk);
+			allocated.add(buffer);
+			return buffer;
+		});
+	}
+
+	// Lệnh ghi đang chạy khi lỗi có thể release buffer sau khi Mono đã kết thúc
+	private void assertAllReleased() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 2000;
+		while (allocated.stream().anyMatch(buffer -> NettyDataBufferFactory.toByteBuf(buffer).refCnt() > 0)
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(allocated).isNotEmpty()
+				.allSatisfy(buffer -> assertThat(NettyDataBufferFactory.toByteBuf(buffer).refCnt()).isZero());
+	}
+
+	@Test
+	void ingestWritesContentInOrderAndReleasesBuffers() throws Exception {
+		byte[] data = new byte[1_000_003];
+		new Random(7).nextBytes(data);
+		Path target = tempDir.resolve("upload.bin");
+
+		IngestedFile result = ingestor.ingestHashed(chunks(data, 8192), target, data.length).block();
+
+		assertThat(result.getSize()).isEqualTo(data.length);
+		assertThat(Files.readAllBytes(target)).isEqualTo(data);
+		assertThat(result.getSha256())
+				.isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data)));
+		assertAllReleased();
+	}
+
+	@Test
+	void ingestOverLimitDeletesPartialFileAndReleasesBuffers() throws Exception {
+		byte[] data = new byte[100_000];
+		Path target = tempDir.resolve("too-big.bin");
+
+		assertThatThrownBy(() -> ingestor.ingest(chunks(data, 4096), target, 50_000).block())
+				.hasCauseInstanceOf(FileSizeLimitExceededException.class);
+
+		assertThat(target).doesNotExist();
+		assertAllReleased();
+	}
+
+	@Test
+	void writeAtAssemblesChunksWrittenOutOfOrder() throws Exception {
+		byte[] data = new byte[10 * 1024 + 17];
+		new Random(3).nextBytes(data);
+		Path target = tempDir.resolve("session.upload");
+		int chunkSize = 1024;
+
+		for (int index : new int[] { 10, 3, 0, 7, 1, 2, 9, 4, 8, 6, 5 }) {
+			int offset = index * chunkSize;
+			byte[] chunk = Arrays.copyOfRange(data, offset, Math.min(data.length, offset + chunkSize));
+			ingestor.writeAt(chunks(chunk, 300), target, offset, chunk.length).block();
+		}
+
+		assertThat(Files.readAllBytes(target)).isEqualTo(data);
+		assertAllReleased();
+	}
+
+	@Test
+	void writeAtRejectsShortChunk() throws Exception {
+		Path target = tempDir.resolve("short.upload");
+
+		assertThatThrownBy(() -> ingestor.writeAt(chunks(new byte[500], 100), target, 0, 1024).block())
+				.hasMessageContaining("500/1024");
+		assertAllReleased();
+	}
+}
@@ -0,0 +1,144 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+class S3BlobStoreTests {
+	private static final int PART_SIZE = 5 * 1024 * 1024;
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	@TempDir
+	Path tempDir;
+
+	private FakeS3Server server;
+	private S3BlobStore store;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		server = new FakeS3Server();
+		StorageLayout layout = new StorageLayout();
+		ReflectionTestUtils.setField(layout, "baseUploadDir", tempDir.toString());
+		ReflectionTestUtils.setField(layout, "type", StorageLayoutType.SHARDED);
+		ReflectionTestUtils.setField(layout, "shardLevels", 2);
+		ReflectionTestUtils.setField(layout, "directoryCacheSize", 100L);
+		layout.init();
+
+		store = new S3BlobStore(WebClient.builder(), layout);
+		ReflectionTestUtils.setField(store, "endpoint", server.endpoint());
+		ReflectionTestUtils.setField(store, "region", FakeS3Server.REGION);
+		ReflectionTestUtils.setField(store, "bucket", FakeS3Server.BUCKET);
+		ReflectionTestUtils.setField(store, "accessKey", FakeS3Server.ACCESS_KEY);
+		ReflectionTestUtils.setField(store, "secretKey", FakeS3Server.SECRET_KEY);
+		ReflectionTestUtils.setField(store, "pathStyleAccess", true);
+		ReflectionTestUtils.setField(store, "partSize", DataSize.ofBytes(PART_SIZE));
+		ReflectionTestUtils.setField(store, "uploadConcurrency", 3);
+		store.init();
+	}
+
+	@AfterEach
+	void tearDown() {
+		server.close();
+	}
+
+	@Test
+	void smallContentIsStoredWithSinglePutAndReadByRange() {
+		String key = store.newKey("cam", "3f2a9c1e_v1_ghi chú+1.txt").block();
+		byte[] content = "xin chào S3".getBytes(StandardCharsets.UTF_8);
+
+		StepVerifier.create(store.put(key, chunks(content), 1024)).expectNext((long) content.length).verifyComplete();
+
+		assertThat(key).isEqualTo("cam/3f/2a/3f2a9c1e_v1_ghi chú+1.txt");
+		assertThat(server.objects.get(key)).isEqualTo(content);
+		assertThat(server.completedParts).isZero();
+		assertThat(store.stat(key).block().getSize()).isEqualTo(content.length);
+		assertThat(read(store.get(key, 4, 4))).isEqualTo(Arrays.copyOfRange(content, 4, 8));
+	}
+
+	@Test
+	void largeContentIsUploadedInParts() {
+		byte[] content = random(2 * PART_SIZE + 123);
+
+		StepVerifier.create(store.put("cam/video.mp4", chunks(content), Long.MAX_VALUE))
+				.expectNext((long) content.length)
+				.verifyComplete();
+
+		assertThat(server.completedParts).isEqualTo(3);
+		assertThat(server.uploads).isEmpty();
+		assertThat(server.objects.get("cam/video.mp4")).isEqualTo(content);
+		assertThat(read(store.get("cam/video.mp4", PART_SIZE - 10, 20)))
+				.isEqualTo(Arrays.copyOfRange(content, PART_SIZE - 10, PART_SIZE + 10));
+	}
+
+	@Test
+	void oversizedContentAbortsMultipartUpload() {
+		byte[] content = random(2 * PART_SIZE);
+
+		StepVerifier.create(store.put("cam/big.mp4", chunks(content), PART_SIZE + CHUNK_SIZE))
+				.expectError(FileSizeLimitExceededException.class)
+				.verify();
+
+		assertThat(server.uploads).isEmpty();
+		assertThat(server.objects).isEmpty();
+	}
+
+	@Test
+	void missingKeysAreReportedAndDeleteRemovesObject() {
+		store.put("cam/a.txt", chunks(new byte[] { 1, 2, 3 }), 1024).block();
+
+		StepVerifier.create(store.stat("cam/missing.txt")).verifyComplete();
+		StepVerifier.create(store.get("cam/missing.txt", 0, 10)).expectError(IOException.class).verify();
+		StepVerifier.create(store.delete("cam/a.txt")).expectNext(true).verifyComplete();
+		StepVerifier.create(store.stat("cam/a.txt")).verifyComplete();
+	}
+
+	@Test
+	void putFileKeepsSourceFile() throws Exception {
+		byte[] content = random(3 * CHUNK_SIZE + 7);
+		Path source = Files.write(tempDir.resolve("staging.part"), content);
+
+		store.putFile(source, ContentAddressedStore.relativeBlobKey("ab".repeat(32))).block();
+
+		assertThat(server.objects.get("blobs/ab/ab/" + "ab".repeat(32))).isEqualTo(content);
+		assertThat(source).exists();
+	}
+
+	private static Flux<DataBuffer> chunks(byte[] content) {
+		return Flux.range(0, (content.length + CHUNK_SIZE - 1) / CHUNK_SIZE)
+				.map(i -> DefaultDataBufferFactory.sharedInstance.wrap(Arrays.copyOfRange(content, i * CHUNK_SIZE,
+						Math.min(content.length, (i + 1) * CHUNK_SIZE))));
+	}
+
+	private static byte[] read(Flux<DataBuffer> content) {
+		DataBuffer joined = DataBufferUtils.join(content).block();
+		byte[] bytes = new byte[joined.readableByteCount()];
+		joined.read(bytes);
+		DataBufferUtils.release(joined);
+		return bytes;
+	}
+
+	private static byte[] random(int size) {
+		byte[] bytes = new byte[size];
+		new Random(42).nextBytes(bytes);
+		return bytes;
+	}
+}
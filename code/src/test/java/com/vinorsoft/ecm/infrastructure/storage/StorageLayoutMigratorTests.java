@@ -0,0 +1,67 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.vinorsoft.ecm.domain.FileECMRepository;
+import com.vinorsoft.ecm.infrastructure.cache.FileECMCache;
+
+import reactor.core.publisher.Flux;
+
+class StorageLayoutMigratorTests {
+
+	@TempDir
+	Path tempDir;
+
+	private StorageLayoutMigrator migrator;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		StorageLayout layout = new StorageLayout();
+		ReflectionTestUtils.setField(layout, "baseUploadDir", tempDir.toString());
+		ReflectionTestUtils.setField(layout, "type", StorageLayoutType.SHARDED);
+		ReflectionTestUtils.setField(layout, "shardLevels", 2);
+		ReflectionTestUtils.setField(layout, "directoryCacheSize", 100L);
+		layout.init();
+
+		FileECMRepository fileECMRepository = mock(FileECMRepository.class);
+		when(fileECMRepository.findOwnFilesAfter(any(UUID.class), anyInt())).thenReturn(Flux.empty());
+		migrator = new StorageLayoutMigrator(layout, fileECMRepository, mock(FileECMCache.class),
+				mock(TransactionalOperator.class));
+		ReflectionTestUtils.setField(migrator, "batchSize", 10);
+	}
+
+	@Test
+	void flatRenditionsMoveToShardedLocation() throws Exception {
+		Path categoryDir = Files.createDirectories(tempDir.resolve("cam"));
+		Path rendition = Files.write(categoryDir.resolve("3f2a9c1e-0000-4000-8000-000000000001_r256.jpg"),
+				new byte[] { 1 });
+		Path other = Files.write(categoryDir.resolve("ghi chu.txt"), new byte[] { 2 });
+		// Rendition đã được tạo lại ở vị trí mới trước khi chuyển
+		Path regenerated = Files.createDirectories(categoryDir.resolve("7b/10"))
+				.resolve("7b10aa2e-0000-4000-8000-000000000002_r1024.jpg");
+		Files.write(regenerated, new byte[] { 3 });
+		Path stale = Files.write(categoryDir.resolve(regenerated.getFileName()), new byte[] { 3 });
+
+		assertThat(migrator.migrate().block()).isZero();
+
+		assertThat(rendition).doesNotExist();
+		assertThat(categoryDir.resolve("3f/2a").resolve(rendition.getFileName())).hasBinaryContent(new byte[] { 1 });
+		assertThat(stale).doesNotExist();
+		assertThat(regenerated).hasBinaryContent(new byte[] { 3 });
+		assertThat(other).exists();
+	}
+}
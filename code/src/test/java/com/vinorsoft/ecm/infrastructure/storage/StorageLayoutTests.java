@@ -0,0 +1,94 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import reactor.test.StepVerifier;
+
+class StorageLayoutTests {
+	private static final String FILE_NAME = "3f2a9c1e-7b4d-4e0a-9a55-0c1d2e3f4a5b_v1_report.pdf";
+
+	@TempDir
+	Path tempDir;
+
+	private StorageLayout layout(StorageLayoutType type) throws Exception {
+		StorageLayout layout = new StorageLayout();
+		ReflectionTestUtils.setField(layout, "baseUploadDir", tempDir.toString());
+		ReflectionTestUtils.setField(layout, "type", type);
+		ReflectionTestUtils.setField(layout, "shardLevels", 2);
+		ReflectionTestUtils.setField(layout, "directoryCacheSize", 100L);
+		layout.init();
+		return layout;
+	}
+
+	@Test
+	void shardedLayoutSplitsByUuidPrefixAndCreatesDirectories() throws Exception {
+		StorageLayout layout = layout(StorageLayoutType.SHARDED);
+		Path expected = tempDir.toRealPath().resolve("camera/3f/2a").resolve(FILE_NAME);
+
+		StepVerifier.create(layout.newFilePath("camera", FILE_NAME)).expectNext(expected).verifyComplete();
+
+		assertThat(expected.getParent()).isDirectory();
+	}
+
+	@Test
+	void flatLayoutKeepsFilesInCategoryDirectory() throws Exception {
+		StorageLayout layout = layout(StorageLayoutType.FLAT);
+
+		StepVerifier.create(layout.newFilePath("camera", FILE_NAME))
+				.expectNext(tempDir.toRealPath().resolve("camera").resolve(FILE_NAME))
+				.verifyComplete();
+	}
+
+	@Test
+	void namesWithoutUuidPrefixAreShardedByHash() throws Exception {
+		StorageLayout layout = layout(StorageLayoutType.SHARDED);
+
+		Path path = layout.newFilePath("camera", "legacy report.pdf").block();
+
+		assertThat(tempDir.toRealPath().resolve("camera").relativize(path.getParent()).toString())
+				.matches("[0-9a-f]{2}/[0-9a-f]{2}");
+		assertThat(layout.newFilePath("camera", "legacy report.pdf").block()).isEqualTo(path);
+	}
+
+	@Test
+	void cachedDirectoriesAreNotCheckedAgain() throws Exception {
+		StorageLayout layout = layout(StorageLayoutType.SHARDED);
+		Path first = layout.newFilePath("camera", FILE_NAME).block();
+		Files.delete(first.getParent());
+
+		// Thư mục đã có trong cache nên không được kiểm tra hay tạo lại
+		assertThat(layout.newFilePath("camera", FILE_NAME).block()).isEqualTo(first);
+		assertThat(first.getParent()).doesNotExist();
+	}
+
+	@Test
+	void rejectsCategoryOutsideUploadPath() throws Exception {
+		StorageLayout layout = layout(StorageLayoutType.SHARDED);
+		Files.createDirectories(tempDir.resolve("outside"));
+		Path base = tempDir.resolve("base");
+		ReflectionTestUtils.setField(layout, "baseUploadDir", base.toString());
+		layout.init();
+		Files.createSymbolicLink(base.resolve("escape"), tempDir.resolve("outside"));
+
+		StepVerifier.create(layout.newFilePath("..", FILE_NAME)).verifyError(IllegalArgumentException.class);
+		StepVerifier.create(layout.newFilePath("escape", FILE_NAME)).verifyError(SecurityException.class);
+	}
+
+	@Test
+	void shardedLocationOnlyMovesFilesDirectlyInCategoryDirectory() throws Exception {
+		StorageLayout layout = layout(StorageLayoutType.SHARDED);
+		Path base = tempDir.toRealPath();
+
+		assertThat(layout.shardedLocation(base.resolve("camera").resolve(FILE_NAME)))
+				.isEqualTo(base.resolve("camera/3f/2a").resolve(FILE_NAME));
+		assertThat(layout.shardedLocation(base.resolve("camera/3f/2a").resolve(FILE_NAME))).isNull();
+		assertThat(layout.shardedLocation(base.resolve("blobs/ab/cd/abcd"))).isNull();
+	}
+}
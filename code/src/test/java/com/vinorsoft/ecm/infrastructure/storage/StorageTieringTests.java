@@ -0,0 +1,216 @@
+package com.vinorsoft.ecm.infrastructure.storage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.reactive.TransactionalOperator;
+
+import com.vinorsoft.ecm.domain.FileECM;
+import com.vinorsoft.ecm.domain.FileECMRepository;
+import com.vinorsoft.ecm.domain.StoragePendingDelete;
+import com.vinorsoft.ecm.domain.StoragePendingDeleteRepository;
+import com.vinorsoft.ecm.infrastructure.cache.FileECMCache;
+import com.vinorsoft.ecm.infrastructure.metrics.EcmMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+class StorageTieringTests {
+	private static final String HOT_KEY = "cam/3f/2a/3f2a9c1e-0000-4000-8000-000000000001_a.mp4";
+	private static final String COLD_KEY = "cam/7b/10/7b10aa2e-0000-4000-8000-000000000002_a.mp4";
+
+	private BlobStore local;
+	private BlobStore cold;
+	private FileECMRepository fileECMRepository;
+	private StoragePendingDeleteRepository pendingDeleteRepository;
+	private FileECMCache fileECMCache;
+	private StorageTiering tiering;
+
+	@BeforeEach
+	void setUp() {
+		local = store(LocalBlobStore.NAME);
+		cold = store("cold");
+		fileECMRepository = mock(FileECMRepository.class);
+		pendingDeleteRepository = mock(StoragePendingDeleteRepository.class);
+		when(pendingDeleteRepository.schedule(anyString(), anyString(), anyLong())).thenReturn(Mono.just(1));
+		when(pendingDeleteRepository.deleteById(any(UUID.class))).thenReturn(Mono.empty());
+		when(pendingDeleteRepository.recordFailure(any(UUID.class), anyString())).thenReturn(Mono.just(1));
+		TransactionalOperator transactionalOperator = mock(TransactionalOperator.class);
+		when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+		fileECMCache = mock(FileECMCache.class);
+
+		tiering = new StorageTiering(new BlobStores(List.of(local, cold)), fileECMRepository, pendingDeleteRepository,
+				transactionalOperator, fileECMCache, mock(FileAccessTracker.class),
+				new EcmMetrics(new SimpleMeterRegistry()));
+		ReflectionTestUtils.setField(tiering, "enabled", true);
+		ReflectionTestUtils.setField(tiering, "coldBackend", "cold");
+		ReflectionTestUtils.setField(tiering, "demoteAfter", Duration.ofDays(1));
+		ReflectionTestUtils.setField(tiering, "frequentReads", 5);
+		ReflectionTestUtils.setField(tiering, "frequentDemoteAfter", Duration.ofDays(7));
+		ReflectionTestUtils.setField(tiering, "batchSize", 10);
+		ReflectionTestUtils.setField(tiering, "concurrency", 2);
+		ReflectionTestUtils.setField(tiering, "deleteDelay", Duration.ofMinutes(15));
+		ReflectionTestUtils.setField(tiering, "deleteRetry", Duration.ofMinutes(5));
+	}
+
+	@Test
+	void demoteCopiesToColdAndSchedulesDeleteOfHotCopy() {
+		FileECM file = file(LocalBlobStore.NAME, HOT_KEY);
+		Path hotPath = Path.of("/data/uploads").resolve(HOT_KEY);
+		when(local.localPath(HOT_KEY)).thenReturn(hotPath);
+		when(fileECMRepository.findIdleFiles(eq(LocalBlobStore.NAME), any(LocalDateTime.class), anyInt(),
+				any(LocalDateTime.class), anyInt())).thenReturn(Flux.just(file));
+		when(fileECMRepository.updateStorageLocation(any(), anyString(), anyString(), anyString(), anyString()))
+				.thenReturn(Mono.just(1));
+
+		StepVerifier.create(tiering.demoteIdleFiles()).verifyComplete();
+
+		ArgumentCaptor<String> targetKey = ArgumentCaptor.forClass(String.class);
+		verify(cold).putFile(eq(hotPath), targetKey.capture());
+		assertThat(targetKey.getValue()).startsWith("cam/").endsWith("_a.mp4").isNotEqualTo(HOT_KEY);
+		verify(fileECMRepository).updateStorageLocation(file.getId(), LocalBlobStore.NAME, HOT_KEY, "cold",
+				targetKey.getValue());
+		verify(pendingDeleteRepository).schedule(LocalBlobStore.NAME, HOT_KEY, 900);
+		verify(fileECMCache).invalidate(file.getId());
+		// Bản cũ chỉ bị xóa bởi job xóa khi đến hạn
+		verify(local, never()).delete(anyString());
+		verify(cold, never()).delete(anyString());
+	}
+
+	@Test
+	void lostLocationUpdateDiscardsCopyAndKeepsSource() {
+		FileECM file = file(LocalBlobStore.NAME, HOT_KEY);
+		when(local.localPath(HOT_KEY)).thenReturn(Path.of("/data/uploads").resolve(HOT_KEY));
+		when(fileECMRepository.findIdleFiles(eq(LocalBlobStore.NAME), any(LocalDateTime.class), anyInt(),
+				any(LocalDateTime.class), anyInt())).thenReturn(Flux.just(file));
+		// Node khác đã chuyển file hoặc file đã bị xóa trước câu UPDATE
+		when(fileECMRepository.updateStorageLocation(any(), anyString(), anyString(), anyString(), anyString()))
+				.thenReturn(Mono.just(0));
+
+		StepVerifier.create(tiering.demoteIdleFiles()).verifyComplete();
+
+		ArgumentCaptor<String> targetKey = ArgumentCaptor.forClass(String.class);
+		verify(cold).putFile(any(Path.class), targetKey.capture());
+		verify(cold).delete(targetKey.getValue());
+		verify(local, never()).delete(anyString());
+		verify(pendingDeleteRepository, never()).schedule(anyString(), anyString(), anyLong());
+	}
+
+	@Test
+	void coldReadPromotesToHotTier() {
+		FileECM file = file("cold", COLD_KEY);
+		when(cold.get(COLD_KEY, 0, file.getFileSize())).thenReturn(Flux.empty());
+		when(fileECMRepository.updateStorageLocation(any(), anyString(), anyString(), anyString(), anyString()))
+				.thenReturn(Mono.just(1));
+
+		tiering.recordRead(file, false);
+
+		ArgumentCaptor<String> targetKey = ArgumentCaptor.forClass(String.class);
+		verify(local).put(targetKey.capture(), any(), eq(file.getFileSize()));
+		verify(fileECMRepository).updateStorageLocation(file.getId(), "cold", COLD_KEY, LocalBlobStore.NAME,
+				targetKey.getValue());
+		verify(pendingDeleteRepository).schedule("cold", COLD_KEY, 900);
+	}
+
+	@Test
+	void compressedOrHotReadDoesNotPromote() {
+		tiering.recordRead(file("cold", COLD_KEY), true);
+		tiering.recordRead(file(LocalBlobStore.NAME, HOT_KEY), false);
+
+		verify(fileECMRepository, never()).updateStorageLocation(any(), anyString(), anyString(), anyString(),
+				anyString());
+		verify(local, never()).put(anyString(), any(), anyLong());
+	}
+
+	@Test
+	void purgeDeletesDueCopiesAndKeepsFailedOnes() {
+		StoragePendingDelete done = pendingDelete(LocalBlobStore.NAME, HOT_KEY);
+		StoragePendingDelete failing = pendingDelete("cold", COLD_KEY);
+		when(pendingDeleteRepository.claim(10, 300)).thenReturn(Flux.just(done, failing));
+		when(cold.delete(COLD_KEY)).thenReturn(Mono.error(new IOException("cold không truy cập được")));
+
+		StepVerifier.create(tiering.purgePendingDeletes()).verifyComplete();
+
+		verify(local).delete(HOT_KEY);
+		verify(pendingDeleteRepository).deleteById(done.getId());
+		verify(pendingDeleteRepository, never()).deleteById(failing.getId());
+		verify(pendingDeleteRepository).recordFailure(eq(failing.getId()), anyString());
+	}
+
+	@Test
+	void purgeKeepsRowsOfUnconfiguredBackend() {
+		StoragePendingDelete pending = pendingDelete("s3", COLD_KEY);
+		when(pendingDeleteRepository.claim(10, 300)).thenReturn(Flux.just(pending));
+
+		StepVerifier.create(tiering.purgePendingDeletes()).verifyComplete();
+
+		verify(pendingDeleteRepository, never()).deleteById(any(UUID.class));
+		verify(pendingDeleteRepository).recordFailure(eq(pending.getId()), anyString());
+	}
+
+	@Test
+	void movedFileNameReplacesLeadingUuid() {
+		String moved = StorageTiering
+				.movedFileName("/data/uploads/cam/3f/2a/3f2a9c1e-0000-4000-8000-000000000001_v2_a.mp4");
+
+		assertThat(moved).matches("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}_v2_a\\.mp4");
+		assertThat(moved).doesNotStartWith("3f2a9c1e");
+		assertThat(StorageTiering.movedFileName(moved).substring(37)).isEqualTo("v2_a.mp4");
+	}
+
+	@Test
+	void movedFileNameKeepsLegacyNames() {
+		assertThat(StorageTiering.movedFileName("cam/ab/cd/bao cao.pdf")).endsWith("_bao cao.pdf").hasSize(37 + 11);
+	}
+
+	private static BlobStore store(String name) {
+		BlobStore store = mock(BlobStore.class);
+		when(store.name()).thenReturn(name);
+		when(store.newKey(anyString(), anyString()))
+				.thenAnswer(invocation -> Mono.just(invocation.getArgument(0) + "/" + invocation.getArgument(1)));
+		when(store.putFile(any(Path.class), anyString())).thenReturn(Mono.empty());
+		when(store.put(anyString(), any(), anyLong())).thenReturn(Mono.just(0L));
+		when(store.delete(anyString())).thenReturn(Mono.just(true));
+		return store;
+	}
+
+	private static FileECM file(String storageBackend, String key) {
+		FileECM file = new FileECM();
+		file.setId(UUID.randomUUID());
+		file.setCategory("cam");
+		file.setFilePath(key);
+		file.setFileSize(1024);
+		file.setStorageBackend(storageBackend);
+		return file;
+	}
+
+	private static StoragePendingDelete pendingDelete(String storageBackend, String key) {
+		StoragePendingDelete pending = new StoragePendingDelete();
+		pending.setId(UUID.randomUUID());
+		pending.setStorageBackend(storageBackend);
+		pending.setFilePath(key);
+		pending.setAttempts(1);
+		return pending;
+	}
+}
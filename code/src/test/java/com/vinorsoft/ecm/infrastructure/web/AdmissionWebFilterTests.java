@@ -0,0 +1,58 @@
+package com.vinorsoft.ecm.infrastructure.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionControl;
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionPool;
+
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+class AdmissionWebFilterTests {
+
+	private AdmissionWebFilter filter;
+
+	@BeforeEach
+	void setUp() {
+		AdmissionControl admissionControl = mock(AdmissionControl.class);
+		when(admissionControl.isEnabled()).thenReturn(true);
+		when(admissionControl.getRetryAfter()).thenReturn(Duration.ofSeconds(7));
+		AdmissionPool zips = new AdmissionPool("zips", 1, 0, Duration.ofSeconds(1));
+		when(admissionControl.zips()).thenReturn(zips);
+		filter = new AdmissionWebFilter(admissionControl);
+	}
+
+	@Test
+	void downloadMultipleOverZipLimitGets429WithConfiguredRetryAfter() {
+		// ZIP đầu tiên đang được gửi giữ chỗ duy nhất
+		Disposable first = filter.filter(downloadMultiple(), exchange -> Mono.never()).subscribe();
+
+		MockServerWebExchange rejected = downloadMultiple();
+		filter.filter(rejected, exchange -> Mono.error(new AssertionError("không được tạo ZIP")))
+				.block(Duration.ofSeconds(5));
+
+		assertThat(rejected.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+		assertThat(rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("7");
+
+		first.dispose();
+		MockServerWebExchange admitted = downloadMultiple();
+		filter.filter(admitted, exchange -> exchange.getResponse().setComplete()).block(Duration.ofSeconds(5));
+		assertThat(admitted.getResponse().getStatusCode()).isNotEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+	}
+
+	private static MockServerWebExchange downloadMultiple() {
+		return MockServerWebExchange.from(MockServerHttpRequest.get("/api/v1/ecm/download-multiple")
+				.queryParam("fileIds", "1"));
+	}
+}
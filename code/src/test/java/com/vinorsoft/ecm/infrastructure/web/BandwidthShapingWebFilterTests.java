@@ -0,0 +1,71 @@
+package com.vinorsoft.ecm.infrastructure.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.security.Principal;
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+
+import com.vinorsoft.ecm.infrastructure.bandwidth.BandwidthShaper;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class BandwidthShapingWebFilterTests {
+	private static final int CHUNK = 16 * 1024;
+
+	private BandwidthShapingWebFilter filter;
+
+	@BeforeEach
+	void setUp() {
+		BandwidthShaper shaper = new BandwidthShaper();
+		ReflectionTestUtils.setField(shaper, "enabled", true);
+		ReflectionTestUtils.setField(shaper, "total", DataSize.ofBytes(0));
+		ReflectionTestUtils.setField(shaper, "perClient", DataSize.ofKilobytes(64));
+		ReflectionTestUtils.setField(shaper, "perEndpointConfig", "");
+		ReflectionTestUtils.setField(shaper, "weightsConfig", "");
+		ReflectionTestUtils.setField(shaper, "burst", DataSize.ofKilobytes(16));
+		shaper.init();
+		filter = new BandwidthShapingWebFilter(shaper);
+	}
+
+	@Test
+	void publicDownloadsDoNotShareAnonymousClientBucket() {
+		// 4 người xem x 128KB: dùng chung bucket 64KB/s của một client thì mất khoảng 8 giây
+		long start = System.nanoTime();
+		Flux.range(0, 4)
+				.flatMap(i -> send(MockServerWebExchange.from(MockServerHttpRequest.get("/public/download/" + i)), 8))
+				.blockLast(Duration.ofSeconds(10));
+
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+	}
+
+	@Test
+	void authenticatedDownloadsAreLimitedPerClient() {
+		MockServerWebExchange exchange = MockServerWebExchange
+				.from(MockServerHttpRequest.get("/api/v1/ecm/download").queryParam("fileId", "1"));
+		Principal admin = () -> "admin";
+
+		long start = System.nanoTime();
+		send(exchange.mutate().principal(Mono.just(admin)).build(), 5).block(Duration.ofSeconds(10));
+
+		// 80KB với burst 16KB ở 64KB/s: khoảng 1 giây
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThan(Duration.ofMillis(700));
+	}
+
+	private Mono<Void> send(ServerWebExchange exchange, int chunks) {
+		WebFilterChain chain = shaped -> shaped.getResponse().writeWith(Flux.range(0, chunks)
+				.map(i -> (DataBuffer) DefaultDataBufferFactory.sharedInstance.wrap(new byte[CHUNK])));
+		return filter.filter(exchange, chain);
+	}
+}
@@ -0,0 +1,129 @@
+package com.vinorsoft.ecm.infrastructure.web;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpResponse;
+
+class FileDownloadWriterTests {
+	private static final String ETAG = "\"file-v1-10\"";
+	private static final Instant LAST_MODIFIED = Instant.parse("2024-01-01T00:00:00Z");
+
+	@TempDir
+	Path tempDir;
+
+	private Path file;
+	private final FileDownloadWriter writer = new FileDownloadWriter();
+
+	@BeforeEach
+	void setUp() throws Exception {
+		file = Files.writeString(tempDir.resolve("data.txt"), "0123456789", StandardCharsets.UTF_8);
+	}
+
+	private MockServerHttpResponse write(MockServerHttpRequest request) {
+		MockServerHttpResponse response = new MockServerHttpResponse();
+		writer.write(request, response, file, 10, MediaType.TEXT_PLAIN, ETAG, LAST_MODIFIED).block();
+		return response;
+	}
+
+	@Test
+	void fullDownloadAdvertisesRanges() {
+		MockServerHttpResponse response = write(MockServerHttpRequest.get("/download").build());
+
+		assertThat(response.getStatusCode()).isNull();
+		assertThat(response.getHeaders().getFirst(HttpHeaders.ACCEPT_RANGES)).isEqualTo("bytes");
+		assertThat(response.getHeaders().getContentLength()).isEqualTo(10);
+		assertThat(response.getBodyAsString().block()).isEqualTo("0123456789");
+	}
+
+	@Test
+	void singleRangeReturnsPartialContent() {
+		MockServerHttpResponse response = write(MockServerHttpRequest.get("/download")
+				.header(HttpHeaders.RANGE, "bytes=2-5").build());
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+		assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 2-5/10");
+		assertThat(response.getBodyAsString().block()).isEqualTo("2345");
+	}
+
+	@Test
+	void suffixRangeReturnsTail() {
+		MockServerHttpResponse response = write(MockServerHttpRequest.get("/download")
+				.header(HttpHeaders.RANGE, "bytes=-3").build());
+
+		assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes 7-9/10");
+		assertThat(response.getBodyAsString().block()).isEqualTo("789");
+	}
+
+	@Test
+	void rangeBeyondEndIsNotSatisfiable() {
+		MockServerHttpResponse response = write(MockServerHttpRequest.get("/download")
+				.header(HttpHeaders.RANGE, "bytes=20-").build());
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+		assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE)).isEqualTo("bytes */10");
+	}
+
+	@Test
+	void staleIfRangeServesWholeFile() {
+		MockServerHttpResponse response = write(MockServerHttpRequest.get("/download")
+				.header(HttpHeaders.RANGE, "bytes=2-5")
+				.header(HttpHeaders.IF_RANGE, "\"other\"").build());
+
+		assertThat(response.getStatusCode()).isNull();
+		assertThat(response.getBodyAsString().block()).isEqualTo("0123456789");
+	}
+
+	@Test
+	void matchingIfRangeHonoursRange() {
+		MockServerHttpResponse response = write(MockServerHttpRequest.get("/download")
+				.header(HttpHeaders.RANGE, "bytes=2-5")
+				.header(HttpHeaders.IF_RANGE, ETAG).build());
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.PARTIAL_CONTENT);
+		assertThat(response.getBodyAsString().block()).isEqualTo("2345");
+	}
+
+	@Test
+	void matchingIfNoneMatchReturnsNotModifiedWithoutBody() {
+		MockServerHttpResponse response = write(MockServerHttpRequest.get("/download")
+				.header(HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + ETAG).build());
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+		assertThat(response.getHeaders().getETag()).isEqualTo(ETAG);
+		assertThat(response.getBodyAsString().block()).isEmpty();
+	}
+
+	@Test
+	void ifNoneMatchTakesPrecedenceOverIfModifiedSince() {
+		MockServerHttpResponse response = write(MockServerHttpRequest.get("/download")
+				.header(HttpHeaders.IF_NONE_MATCH, "\"file-v2-10\"")
+				.ifModifiedSince(LAST_MODIFIED.toEpochMilli()).build());
+
+		assertThat(response.getStatusCode()).isNull();
+		assertThat(response.getBodyAsString().block()).isEqualTo("0123456789");
+	}
+
+	@Test
+	void ifModifiedSinceReturnsNotModifiedOnlyWhenUnchanged() {
+		MockServerHttpResponse unchanged = write(MockServerHttpRequest.get("/download")
+				.ifModifiedSince(LAST_MODIFIED.toEpochMilli()).build());
+		MockServerHttpResponse changed = write(MockServerHttpRequest.get("/download")
+				.ifModifiedSince(LAST_MODIFIED.minusSeconds(1).toEpochMilli()).build());
+
+		assertThat(unchanged.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+		assertThat(changed.getStatusCode()).isNull();
+		assertThat(changed.getBodyAsString().block()).isEqualTo("0123456789");
+	}
+}
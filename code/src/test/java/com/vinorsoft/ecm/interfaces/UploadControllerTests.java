@@ -0,0 +1,84 @@
+package com.vinorsoft.ecm.interfaces;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.vinorsoft.ecm.application.FileUploadResult;
+import com.vinorsoft.ecm.application.UploadService;
+import com.vinorsoft.ecm.domain.FileECM;
+import com.vinorsoft.ecm.infrastructure.admission.AdmissionControl;
+import com.vinorsoft.ecm.infrastructure.mapper.FileECMMapperImpl;
+import com.vinorsoft.ecm.infrastructure.metrics.EcmMetrics;
+import com.vinorsoft.ecm.interfaces.dto.FileUploadResultDTO;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import reactor.core.publisher.Flux;
+
+class UploadControllerTests {
+
+	private UploadService uploadService;
+	private UploadController controller;
+
+	@BeforeEach
+	void setUp() {
+		uploadService = mock(UploadService.class);
+		AdmissionControl admissionControl = mock(AdmissionControl.class);
+		when(admissionControl.getRetryAfter()).thenReturn(Duration.ofSeconds(5));
+		controller = new UploadController(uploadService, null, new FileECMMapperImpl(), null, null, null,
+				admissionControl, null, new EcmMetrics(new SimpleMeterRegistry()));
+	}
+
+	@Test
+	void allFilesSavedIsOk() {
+		ResponseEntity<List<FileUploadResultDTO>> response = uploadReturning(
+				FileUploadResult.saved("a.txt", new FileECM()));
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getBody()).extracting(FileUploadResultDTO::getStatus).containsExactly("SAVED");
+	}
+
+	@Test
+	void partiallySavedIsMultiStatus() {
+		ResponseEntity<List<FileUploadResultDTO>> response = uploadReturning(
+				FileUploadResult.saved("a.txt", new FileECM()), FileUploadResult.failed("b.exe", "lỗi"));
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.MULTI_STATUS);
+		assertThat(response.getBody()).extracting(FileUploadResultDTO::getStatus).containsExactly("SAVED", "FAILED");
+		assertThat(response.getBody().get(1).getError()).isEqualTo("lỗi");
+		assertThat(response.getBody().get(1).getFile()).isNull();
+	}
+
+	@Test
+	void nothingSavedIsBadRequest() {
+		ResponseEntity<List<FileUploadResultDTO>> response = uploadReturning(FileUploadResult.failed("b.exe", "lỗi"));
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+	}
+
+	@Test
+	void nothingSavedBecauseOfOverloadIsTooManyRequests() {
+		ResponseEntity<List<FileUploadResultDTO>> response = uploadReturning(FileUploadResult.failed("b.exe", "lỗi"),
+				FileUploadResult.rejected("a.txt", "quá tải"));
+
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+		assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("5");
+		assertThat(response.getBody()).extracting(FileUploadResultDTO::getStatus).containsExactly("FAILED", "REJECTED");
+	}
+
+	private ResponseEntity<List<FileUploadResultDTO>> uploadReturning(FileUploadResult... results) {
+		when(uploadService.saveFiles(any(), eq("cam"))).thenReturn(Flux.just(results));
+		return controller.uploadMutilpleFile(Flux.empty(), "cam").block();
+	}
+}